@@ -14,6 +14,7 @@ import java.util.stream.Collectors;
 public class S3Service {
     private static final String BUCKET_NAME = System.getenv("PROCESSED_IMAGES_BUCKET");
     private static final S3Presigner presigner = S3Presigner.create();
+    private static final String THUMBNAIL = "thumbnail";
 
     public static List<Map<String, Object>> attachPresignedUrls(List<Map<String, AttributeValue>> items) {
         return items.stream()
@@ -27,13 +28,37 @@ public class S3Service {
                     if (s3Key != null) {
                         String url = generatePresignedUrl(s3Key, 15);
                         map.put("url", url);
+                        map.put("thumbnailUrl", url);
                     }
+                    attachRenditionUrls(map);
 
                     return map;
                 })
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Presigns each rendition stored with the image, so galleries can show the thumbnail instead of
+     * downloading the full image. Images processed before renditions existed keep the full image
+     * as their thumbnail.
+     */
+    @SuppressWarnings("unchecked")
+    private static void attachRenditionUrls(Map<String, Object> map) {
+        if (!(map.get("renditions") instanceof Map<?, ?> renditions)) {
+            return;
+        }
+
+        for (Map.Entry<?, ?> entry : renditions.entrySet()) {
+            if (entry.getValue() instanceof Map<?, ?> rendition && rendition.get("key") instanceof String key) {
+                String url = generatePresignedUrl(key, 15);
+                ((Map<String, Object>) rendition).put("url", url);
+                if (THUMBNAIL.equals(entry.getKey())) {
+                    map.put("thumbnailUrl", url);
+                }
+            }
+        }
+    }
+
     public static String generatePresignedUrl(String imageKey, int durationInMinutes) {
         GetObjectRequest getObjectRequest = GetObjectRequest.builder()
                 .bucket(BUCKET_NAME)
@@ -2,25 +2,47 @@ package com.process.handler;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
 import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.process.service.DynamoDbService;
 import com.process.service.EmailService;
 import com.process.service.S3Service;
-import com.process.service.SqsService;
 import com.process.util.*;
-
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+import software.amazon.awssdk.services.sqs.model.SqsException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.logging.Logger;
 
-public class ProcessImageHandler implements RequestHandler<SQSEvent, String> {
+public class ProcessImageHandler implements RequestHandler<SQSEvent, SQSBatchResponse> {
 
     private static final Logger logger = Logger.getLogger(ProcessImageHandler.class.getName());
+    // Room for the decoded frame and the encoded result of a large photo; the original is streamed
+    private static final int MEMORY_PER_RECORD_MB = 128;
+    // Decoding and encoding are CPU-bound, so they get one platform thread per core
+    private static final ExecutorService IMAGE_EXECUTOR = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "image-cpu");
+                thread.setDaemon(true);
+                return thread;
+            });
 
     private final S3Service s3Service;
     private final ProcessImage processImage;
-    private final String retryQueueName;
     private final String stagingBucket;
+    // Images too large to decode here are handed to the high-memory function through this queue
+    private final String highMemoryQueueUrl;
+    private final SqsClient sqsClient;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     public ProcessImageHandler() {
@@ -28,77 +50,184 @@ public class ProcessImageHandler implements RequestHandler<SQSEvent, String> {
         this.stagingBucket = System.getenv("STAGING_BUCKET");
         String processedBucket = System.getenv("PROCESSED_BUCKET");
         String imageTable = System.getenv("IMAGE_TABLE");
-        this.retryQueueName = System.getenv("RETRY_QUEUE");
+        String highMemoryQueueUrl = System.getenv("HIGH_MEMORY_QUEUE_URL");
+        this.highMemoryQueueUrl = highMemoryQueueUrl != null && !highMemoryQueueUrl.isEmpty() ? highMemoryQueueUrl : null;
+        this.sqsClient = this.highMemoryQueueUrl != null ? SqsClient.create() : null;
 
         this.s3Service = new S3Service(region, processedBucket);
         DynamoDbService dynamoDbService = new DynamoDbService(region, imageTable);
         EmailService emailService = new EmailService(region);
         ImageProcessor imageProcessor = new ImageProcessor();
-        SqsService sqsService = new SqsService(software.amazon.awssdk.regions.Region.of(region), retryQueueName);
 
-        this.processImage = new ProcessImage(s3Service, dynamoDbService, emailService, imageProcessor, sqsService);
+        this.processImage = new ProcessImage(s3Service, dynamoDbService, emailService, imageProcessor, IMAGE_EXECUTOR);
     }
 
+    /**
+     * Constructor with explicit dependencies.
+     *
+     * @param s3Service          Checks that the original still exists
+     * @param processImage       Processes each message's image
+     * @param sqsClient          Sends rerouted messages, or null without a high-memory queue
+     * @param highMemoryQueueUrl The queue images too large for this function are rerouted to, or null
+     */
+    ProcessImageHandler(S3Service s3Service, ProcessImage processImage, SqsClient sqsClient, String highMemoryQueueUrl) {
+        this.s3Service = s3Service;
+        this.processImage = processImage;
+        this.sqsClient = sqsClient;
+        this.highMemoryQueueUrl = highMemoryQueueUrl;
+        this.stagingBucket = System.getenv("STAGING_BUCKET");
+    }
+
+    /**
+     * Processes a batch and reports the messages that failed, so only those are redelivered by the
+     * queue (after its visibility timeout, and to the dead-letter queue after its receive limit).
+     */
     @Override
-    public String handleRequest(SQSEvent sqsEvent, Context context) {
-        logger.info("Starting to process " + sqsEvent.getRecords().size() + " messages");
-
-        for (SQSEvent.SQSMessage message : sqsEvent.getRecords()) {
-            logger.info("Processing message: " + message.getBody());
-
-            try {
-                // Parse JSON message body
-                Map<String, String> messageData = objectMapper.readValue(message.getBody(), Map.class);
-
-                // Extract values with null/empty checks
-                String bucket = getValueOrDefault(messageData, "bucket", stagingBucket);
-                String key = getValueOrDefault(messageData, "key", null);
-                String userId = getValueOrDefault(messageData, "userId", "");
-                String email = getValueOrDefault(messageData, "email", "");
-                String firstName = getValueOrDefault(messageData, "firstName", "");
-                String lastName = getValueOrDefault(messageData, "lastName", "");
-                String imageTitle = getValueOrDefault(messageData, "imageTitle", "");
-
-                // Get retry count from message attributes (or default to 1 if not present)
-                int retryCount = 1;
-                if (message.getMessageAttributes() != null &&
-                        message.getMessageAttributes().containsKey("RetryCount")) {
-                    retryCount = Integer.parseInt(
-                            message.getMessageAttributes().get("RetryCount").getStringValue());
-                }
-
-                // Log extracted values
-                logger.info("Message parts:");
-                logger.info("  Bucket: " + bucket);
-                logger.info("  Key: " + key);
-                logger.info("  UserId: " + userId);
-                logger.info("  FirstName: " + firstName);
-                logger.info("  LastName: " + lastName);
-                logger.info("  ImageTitle: " + imageTitle);
-                logger.info("  RetryCount: " + retryCount);
-
-                // Validate key is present
-                if (key == null || key.isEmpty()) {
-                    logger.warning("Missing required field 'key' in message");
-                    continue;
-                }
-
-                if (!s3Service.objectExists(bucket, key)) {
-                    logger.warning("Original file no longer exists: " + bucket + "/" + key);
-                    continue;
-                }
-
-                // Process image with retry count information
-                processImage.processImage(context, bucket, key, userId, email, firstName,
-                        lastName, imageTitle, retryCount);
-
-            } catch (Exception e) {
-                logger.severe("Error processing message: " + e.getMessage());
-                e.printStackTrace();
+    public SQSBatchResponse handleRequest(SQSEvent sqsEvent, Context context) {
+        List<SQSEvent.SQSMessage> records = sqsEvent.getRecords();
+        logger.info("Starting to process " + records.size() + " messages");
+
+        // A FIFO batch can hold several messages of one group; they must still run in order
+        Map<String, List<SQSEvent.SQSMessage>> groups = new LinkedHashMap<>();
+        for (SQSEvent.SQSMessage message : records) {
+            String group = isFifo(message) ? message.getAttributes().get("MessageGroupId") : null;
+            groups.computeIfAbsent(group != null ? group : message.getMessageId(), g -> new ArrayList<>()).add(message);
+        }
+
+        List<SQSBatchResponse.BatchItemFailure> failures = Collections.synchronizedList(new ArrayList<>());
+        Semaphore permits = new Semaphore(recordConcurrency(context));
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (List<SQSEvent.SQSMessage> group : groups.values()) {
+                executor.submit(() -> {
+                    permits.acquireUninterruptibly();
+                    int i = 0;
+                    try {
+                        for (; i < group.size(); i++) {
+                            if (!processRecord(group.get(i), context)) {
+                                break;
+                            }
+                        }
+                    } catch (Throwable t) {
+                        // An Error such as OutOfMemoryError must not let the queue delete the message
+                        logger.severe("Error processing message " + group.get(i).getMessageId() + ": " + t);
+                    } finally {
+                        // Later messages of a FIFO group must not overtake the failed one
+                        group.subList(i, group.size()).forEach(message -> failures.add(
+                                new SQSBatchResponse.BatchItemFailure(message.getMessageId())));
+                        permits.release();
+                    }
+                });
             }
         }
 
-        return "Processing complete";
+        logger.info("Processed " + records.size() + " messages, " + failures.size() + " failed");
+        return new SQSBatchResponse(new ArrayList<>(failures));
+    }
+
+    /**
+     * Processes one message.
+     *
+     * @return false if the message should be redelivered
+     */
+    private boolean processRecord(SQSEvent.SQSMessage message, Context context) {
+        logger.info("Processing message: " + message.getBody());
+
+        try {
+            // Parse JSON message body
+            Map<String, String> messageData = objectMapper.readValue(message.getBody(),
+                    new TypeReference<Map<String, String>>() {
+                    });
+
+            // Extract values with null/empty checks
+            String bucket = getValueOrDefault(messageData, "bucket", stagingBucket);
+            String key = getValueOrDefault(messageData, "key", null);
+            String userId = getValueOrDefault(messageData, "userId", "");
+            String email = getValueOrDefault(messageData, "email", "");
+            String firstName = getValueOrDefault(messageData, "firstName", "");
+            String lastName = getValueOrDefault(messageData, "lastName", "");
+            String imageTitle = getValueOrDefault(messageData, "imageTitle", "");
+            String contentHash = getValueOrDefault(messageData, "contentHash", null);
+
+            // The queue counts deliveries; the first receive is attempt 1
+            int retryCount = 1;
+            if (message.getAttributes() != null &&
+                    message.getAttributes().containsKey("ApproximateReceiveCount")) {
+                retryCount = Integer.parseInt(message.getAttributes().get("ApproximateReceiveCount"));
+            }
+
+            // Log extracted values
+            logger.info("Message parts:");
+            logger.info("  Bucket: " + bucket);
+            logger.info("  Key: " + key);
+            logger.info("  UserId: " + userId);
+            logger.info("  FirstName: " + firstName);
+            logger.info("  LastName: " + lastName);
+            logger.info("  ImageTitle: " + imageTitle);
+            logger.info("  RetryCount: " + retryCount);
+
+            // Validate key is present
+            // Redelivering these cannot help, so they count as handled
+            if (key == null || key.isEmpty()) {
+                logger.warning("Missing required field 'key' in message");
+                return true;
+            }
+
+            if (!s3Service.objectExists(bucket, key)) {
+                logger.warning("Original file no longer exists: " + bucket + "/" + key);
+                return true;
+            }
+
+            // Process image with retry count information
+            processImage.processImage(context, bucket, key, userId, email, firstName,
+                    lastName, imageTitle, retryCount, contentHash);
+            return true;
+
+        } catch (ImageTooLargeException e) {
+            return reroute(message, e);
+        } catch (Exception e) {
+            logger.severe("Error processing message " + message.getMessageId() + ": " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Hands a message whose image is too large for this function to the high-memory function,
+     * unchanged, so that it is not retried here.
+     *
+     * @return false if the message could not be handed over and should be redelivered
+     */
+    private boolean reroute(SQSEvent.SQSMessage message, ImageTooLargeException e) {
+        logger.info("Rerouting message " + message.getMessageId() + " to the high-memory queue: " + e.getMessage());
+        try {
+            sqsClient.sendMessage(SendMessageRequest.builder()
+                    .queueUrl(highMemoryQueueUrl)
+                    .messageBody(message.getBody())
+                    .build());
+            return true;
+        } catch (SqsException ex) {
+            logger.severe("Failed to reroute message " + message.getMessageId() + ": " + ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * How many records are processed at once: {@code MAX_CONCURRENT_RECORDS} if set, otherwise as
+     * many as the function's memory holds at {@value #MEMORY_PER_RECORD_MB} MB each. Decoding and
+     * encoding are further limited to one image per core by {@link ProcessImage}.
+     */
+    private static int recordConcurrency(Context context) {
+        String configured = System.getenv("MAX_CONCURRENT_RECORDS");
+        if (configured != null && !configured.isEmpty()) {
+            return Math.max(1, Integer.parseInt(configured));
+        }
+        int memoryMb = context != null && context.getMemoryLimitInMB() > 0 ? context.getMemoryLimitInMB() : MEMORY_PER_RECORD_MB;
+        return Math.max(1, memoryMb / MEMORY_PER_RECORD_MB);
+    }
+
+    private static boolean isFifo(SQSEvent.SQSMessage message) {
+        return message.getEventSourceArn() != null && message.getEventSourceArn().endsWith(".fifo")
+                && message.getAttributes() != null;
     }
 
     /**
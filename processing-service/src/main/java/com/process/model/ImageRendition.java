@@ -0,0 +1,13 @@
+package com.process.model;
+
+/**
+ * A rendition that has been stored in the processed bucket.
+ *
+ * @param rendition The kind of rendition
+ * @param key       Its S3 key
+ * @param width     Its width in pixels
+ * @param height    Its height in pixels
+ * @param size      Its size in bytes
+ */
+public record ImageRendition(Rendition rendition, String key, int width, int height, long size) {
+}
@@ -0,0 +1,41 @@
+package com.process.model;
+
+/**
+ * The downscaled copies of a processed image that are stored next to the full-size JPEG, so that
+ * galleries and previews do not have to download the original.
+ */
+public enum Rendition {
+    MEDIUM("medium", 1280),
+    THUMBNAIL("thumbnail", 320);
+
+    private final String name;
+    private final int maxDimension;
+
+    Rendition(String name, int maxDimension) {
+        this.name = name;
+        this.maxDimension = maxDimension;
+    }
+
+    /**
+     * @return The name the rendition is stored under in the photo table
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The length of the longer side of the rendition
+     */
+    public int getMaxDimension() {
+        return maxDimension;
+    }
+
+    /**
+     * Returns the S3 key of this rendition of a processed image.
+     *
+     * @param imageKey The key of the full-size image
+     */
+    public String key(String imageKey) {
+        return "renditions/" + name + "/" + imageKey;
+    }
+}
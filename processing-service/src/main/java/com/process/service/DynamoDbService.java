@@ -1,5 +1,6 @@
 package com.process.service;
 
+import com.process.model.ImageRendition;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
@@ -8,6 +9,7 @@ import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
 
 import java.time.Instant;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class DynamoDbService {
@@ -25,6 +27,20 @@ public class DynamoDbService {
 
 
     public void storeImageMetadata(String userId, String imageKey, String imageTitle,  String imageUrl) {
+        storeImageMetadata(userId, imageKey, imageTitle, imageUrl, null);
+    }
+
+    public void storeImageMetadata(String userId, String imageKey, String imageTitle, String imageUrl, String contentHash) {
+        storeImageMetadata(userId, imageKey, imageTitle, imageUrl, contentHash, List.of());
+    }
+
+    /**
+     * Stores image metadata together with the SHA-256 of the original upload, which keys the
+     * UserContentHashIndex used by the upload service to detect duplicates, and the renditions
+     * stored next to the image, keyed by rendition name.
+     */
+    public void storeImageMetadata(String userId, String imageKey, String imageTitle, String imageUrl, String contentHash,
+                                   List<ImageRendition> renditions) {
         try {
             Map<String, AttributeValue> item = new HashMap<>();
 
@@ -38,6 +54,21 @@ public class DynamoDbService {
             item.put("imageUrl", AttributeValue.builder().s(imageUrl).build());
             item.put("status", AttributeValue.fromS("active"));
             item.put("title", AttributeValue.builder().s(imageTitle).build());
+            // Index key attributes cannot be empty, so images without a hash stay out of the index
+            if (contentHash != null && !contentHash.isEmpty()) {
+                item.put("contentHash", AttributeValue.fromS(contentHash));
+            }
+            if (!renditions.isEmpty()) {
+                Map<String, AttributeValue> renditionMap = new HashMap<>();
+                for (ImageRendition rendition : renditions) {
+                    renditionMap.put(rendition.rendition().getName(), AttributeValue.fromM(Map.of(
+                            "key", AttributeValue.fromS(rendition.key()),
+                            "width", AttributeValue.fromN(Integer.toString(rendition.width())),
+                            "height", AttributeValue.fromN(Integer.toString(rendition.height())),
+                            "size", AttributeValue.fromN(Long.toString(rendition.size())))));
+                }
+                item.put("renditions", AttributeValue.fromM(renditionMap));
+            }
 
 
             PutItemRequest request = PutItemRequest.builder()
@@ -1,6 +1,6 @@
 package com.process.service;
 
-import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
@@ -39,34 +39,32 @@ public class S3Service {
     }
 
 
-    public byte[] getImageFromS3(String bucket, String key) throws IOException {
+    /**
+     * Opens the object for reading, so it can be decoded while it downloads instead of being
+     * buffered in memory first. The caller must close the stream, or abort it to drop the
+     * connection without reading the rest of the object.
+     */
+    public ResponseInputStream<GetObjectResponse> getImageStreamFromS3(String bucket, String key) throws IOException {
         try {
             GetObjectRequest getObjectRequest = GetObjectRequest.builder()
                     .bucket(bucket)
                     .key(key)
                     .build();
 
-            return s3Client.getObject(getObjectRequest, ResponseTransformer.toBytes()).asByteArray();
+            return s3Client.getObject(getObjectRequest);
         } catch (S3Exception e) {
             throw new IOException("Failed to retrieve image from S3: " + e.getMessage(), e);
         }
     }
 
-    public void uploadToProcessedBucket(byte[] imageData, String key) throws IOException {
-        try {
-            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                    .bucket(processedBucket)
-                    .key(key)
-                    .contentType("image/jpeg")
-                    .build();
-
-            s3Client.putObject(putObjectRequest, software.amazon.awssdk.core.sync.RequestBody.fromBytes(imageData));
-        } catch (S3Exception e) {
-            throw new IOException("Failed to upload processed image to S3: " + e.getMessage(), e);
-        }
+    /**
+     * Opens an upload of a JPEG to the processed bucket. Parts are sent while the image is still
+     * being written; the object appears when the stream is closed.
+     */
+    public S3UploadOutputStream openProcessedBucketUpload(String key) {
+        return new S3UploadOutputStream(s3Client, processedBucket, key, "image/jpeg");
     }
 
-
     public void deleteFromStagingBucket(String bucket, String key) throws IOException {
         try {
             DeleteObjectRequest deleteObjectRequest = DeleteObjectRequest.builder()
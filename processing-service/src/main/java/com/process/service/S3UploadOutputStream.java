@@ -0,0 +1,240 @@
+package com.process.service;
+
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Logger;
+
+/**
+ * Uploads what is written to it as an S3 object, sending each part as soon as it fills so that
+ * producing the data and uploading it overlap.
+ * <p>
+ * Data that never fills a part is sent with a single PutObject when the stream is closed; larger
+ * data becomes a multipart upload whose parts are sent on virtual threads, with at most
+ * {@link #MAX_PARTS_IN_FLIGHT} in flight so that a slow upload holds back the writer instead of
+ * buffering without bound. Parts are buffered in fixed-size chunks, so the data is copied once,
+ * from the writer into a chunk. {@link #close()} completes the upload; {@link #abort()} discards it.
+ */
+public final class S3UploadOutputStream extends OutputStream {
+    private static final Logger logger = Logger.getLogger(S3UploadOutputStream.class.getName());
+    // S3's minimum part size is 5 MiB for all but the last part
+    static final int PART_SIZE = 8 * 1024 * 1024;
+    private static final int CHUNK_SIZE = 256 * 1024;
+    private static final int MAX_PARTS_IN_FLIGHT = 2;
+
+    private final S3Client s3Client;
+    private final String bucket;
+    private final String key;
+    private final String contentType;
+    private final Semaphore partsInFlight = new Semaphore(MAX_PARTS_IN_FLIGHT);
+    private final List<Future<CompletedPart>> parts = new ArrayList<>();
+
+    private List<byte[]> chunks = new ArrayList<>();
+    // Bytes in the current part; the last chunk holds buffered % CHUNK_SIZE of them
+    private int buffered;
+    private long bytesWritten;
+    private String uploadId;
+    private ExecutorService partExecutor;
+    private boolean closed;
+
+    S3UploadOutputStream(S3Client s3Client, String bucket, String key, String contentType) {
+        this.s3Client = s3Client;
+        this.bucket = bucket;
+        this.key = key;
+        this.contentType = contentType;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Upload of " + bucket + "/" + key + " is already closed");
+        }
+
+        while (len > 0) {
+            if (buffered == PART_SIZE) {
+                sendPart();
+            }
+            int offsetInChunk = buffered % CHUNK_SIZE;
+            if (offsetInChunk == 0) {
+                chunks.add(new byte[CHUNK_SIZE]);
+            }
+            int n = Math.min(len, CHUNK_SIZE - offsetInChunk);
+            System.arraycopy(b, off, chunks.get(chunks.size() - 1), offsetInChunk, n);
+            buffered += n;
+            bytesWritten += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * @return The number of bytes written so far
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Sends what is left and completes the upload.
+     *
+     * @throws IOException If a part or the object could not be uploaded; the upload is then aborted
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        try {
+            if (uploadId == null) {
+                PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .contentType(contentType)
+                        .build();
+                s3Client.putObject(putObjectRequest, body(chunks, buffered));
+            } else {
+                if (buffered > 0) {
+                    sendPart();
+                }
+                List<CompletedPart> completedParts = new ArrayList<>(parts.size());
+                for (Future<CompletedPart> part : parts) {
+                    completedParts.add(awaitPart(part));
+                }
+                s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                        .build());
+            }
+            closed = true;
+            release();
+        } catch (SdkException e) {
+            abort();
+            throw new IOException("Failed to upload " + bucket + "/" + key + ": " + e.getMessage(), e);
+        } catch (IOException e) {
+            abort();
+            throw e;
+        }
+    }
+
+    /**
+     * Discards the upload, including any parts already sent. Does nothing once the stream is closed.
+     */
+    public void abort() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        if (uploadId != null) {
+            parts.forEach(part -> part.cancel(true));
+            try {
+                s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .build());
+            } catch (SdkException e) {
+                // The bucket's lifecycle rule cleans up incomplete uploads the abort misses
+                logger.warning("Failed to abort multipart upload " + uploadId + ": " + e.getMessage());
+            }
+        }
+        release();
+    }
+
+    private void sendPart() throws IOException {
+        try {
+            if (uploadId == null) {
+                uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .contentType(contentType)
+                        .build()).uploadId();
+                partExecutor = Executors.newVirtualThreadPerTaskExecutor();
+            }
+
+            partsInFlight.acquire();
+        } catch (SdkException e) {
+            throw new IOException("Failed to start multipart upload of " + bucket + "/" + key + ": " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to upload a part", e);
+        }
+
+        int partNumber = parts.size() + 1;
+        List<byte[]> partChunks = chunks;
+        int length = buffered;
+        parts.add(partExecutor.submit(() -> {
+            try {
+                UploadPartResponse response = s3Client.uploadPart(UploadPartRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .partNumber(partNumber)
+                        .contentLength((long) length)
+                        .build(), body(partChunks, length));
+                return CompletedPart.builder().partNumber(partNumber).eTag(response.eTag()).build();
+            } finally {
+                partsInFlight.release();
+            }
+        }));
+
+        // The part being sent keeps its chunks until it is done
+        chunks = new ArrayList<>();
+        buffered = 0;
+    }
+
+    private CompletedPart awaitPart(Future<CompletedPart> part) throws IOException {
+        try {
+            return part.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a part upload", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to upload part of " + bucket + "/" + key + ": " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private void release() {
+        chunks = new ArrayList<>();
+        buffered = 0;
+        if (partExecutor != null) {
+            partExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Streams the chunks rather than joining them, and can be replayed if the request is retried.
+     */
+    private RequestBody body(List<byte[]> data, int length) {
+        return RequestBody.fromContentProvider(() -> {
+            List<InputStream> streams = new ArrayList<>(data.size());
+            for (int i = 0; i < data.size(); i++) {
+                streams.add(new ByteArrayInputStream(data.get(i), 0, Math.min(CHUNK_SIZE, length - i * CHUNK_SIZE)));
+            }
+            return new SequenceInputStream(Collections.enumeration(streams));
+        }, length, contentType);
+    }
+}
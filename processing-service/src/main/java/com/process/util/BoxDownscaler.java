@@ -0,0 +1,100 @@
+package com.process.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+
+/**
+ * Shrinks an image by a power of two as its rows arrive, averaging each square block of pixels, so
+ * that the renditions of an image that is never in memory whole can be scaled from a small preview.
+ * Rows must be added top to bottom.
+ */
+final class BoxDownscaler {
+    private final int width;
+    private final int height;
+    private final int factor;
+    private final int shift;
+    private final int previewWidth;
+
+    private BufferedImage preview;
+    private int samples;
+    private int[] sums;
+    private int[] row;
+    private int[] previewRow;
+    private int rowsInBlock;
+    private int nextRow;
+    private int previewY;
+
+    /**
+     * @param width  The image width
+     * @param height The image height
+     * @param factor The power of two to shrink by
+     */
+    BoxDownscaler(int width, int height, int factor) {
+        if (Integer.bitCount(factor) != 1) {
+            throw new IllegalArgumentException("Factor must be a power of two: " + factor);
+        }
+        this.width = width;
+        this.height = height;
+        this.factor = factor;
+        this.shift = Integer.numberOfTrailingZeros(factor);
+        this.previewWidth = (width + factor - 1) / factor;
+    }
+
+    /**
+     * Adds the rows of a band of the image, which starts at row {@code top}. The preview takes the
+     * type of the first band, which must be opaque.
+     */
+    void add(BufferedImage band, int top) {
+        if (top != nextRow || band.getWidth() != width) {
+            throw new IllegalArgumentException("Expected a band of width " + width + " starting at row " + nextRow);
+        }
+        if (preview == null) {
+            preview = new BufferedImage(previewWidth, (height + factor - 1) / factor, band.getType());
+            samples = band.getRaster().getNumBands();
+            sums = new int[previewWidth * samples];
+            previewRow = new int[previewWidth * samples];
+        }
+
+        Raster raster = band.getRaster();
+        for (int y = 0; y < band.getHeight(); y++) {
+            row = raster.getPixels(0, y, width, 1, row);
+            for (int x = 0, i = 0; x < width; x++) {
+                int block = (x >> shift) * samples;
+                for (int s = 0; s < samples; s++) {
+                    sums[block + s] += row[i++];
+                }
+            }
+            nextRow++;
+            if (++rowsInBlock == factor) {
+                emitRow();
+            }
+        }
+    }
+
+    /**
+     * @return The preview, once every row has been added
+     */
+    BufferedImage getPreview() {
+        if (nextRow != height) {
+            throw new IllegalStateException("Only " + nextRow + " of " + height + " rows were added");
+        }
+        if (rowsInBlock > 0) {
+            emitRow();
+        }
+        return preview;
+    }
+
+    private void emitRow() {
+        for (int bx = 0; bx < previewWidth; bx++) {
+            // The last column and row of blocks can be narrower than the factor
+            int count = Math.min(factor, width - bx * factor) * rowsInBlock;
+            for (int s = 0; s < samples; s++) {
+                int i = bx * samples + s;
+                previewRow[i] = (sums[i] + count / 2) / count;
+                sums[i] = 0;
+            }
+        }
+        preview.getRaster().setPixels(0, previewY++, previewWidth, 1, previewRow);
+        rowsInBlock = 0;
+    }
+}
@@ -1,17 +1,66 @@
 package com.process.util;
 
+import com.process.model.Rendition;
+
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Logger;
 
 public class ImageProcessor {
     private static final Logger logger = Logger.getLogger(ImageProcessor.class.getName());
+    static final String FONT_RESOURCE = "/fonts/DejaVuSans-Bold.ttf";
+    private static final Font WATERMARK_FONT = loadFont(FONT_RESOURCE);
+    // A user's text changes once a day and common photo sizes share font sizes, so a few masks go a long way
+    static final int MAX_CACHED_MASKS = 64;
+    // Images at least this large are watermarked and encoded in parallel stripes
+    private static final long PARALLEL_PIXEL_THRESHOLD = getEnvLong("PARALLEL_PIXEL_THRESHOLD", 16_000_000L);
+    private static final int ENCODE_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    // Encodes stripes and renditions alongside the calling thread
+    private static final ForkJoinPool ENCODE_POOL = new ForkJoinPool(ENCODE_PARALLELISM);
+    // Formats whose readers let the compressed bytes be discarded as they are decoded
+    private static final Set<String> STREAMING_FORMATS = Set.of("jpeg", "png");
+    private static final Map<MaskKey, WatermarkMask> MASK_CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<MaskKey, WatermarkMask> eldest) {
+            return size() > MAX_CACHED_MASKS;
+        }
+    };
+
+    private final MemoryPlanner planner;
+
+    public ImageProcessor() {
+        this(MemoryPlanner.fromEnvironment());
+    }
+
+    /**
+     * @param planner Decides from each image's header whether it may be decoded here
+     */
+    public ImageProcessor(MemoryPlanner planner) {
+        this.planner = planner;
+    }
 
     public byte[] addWatermark(byte[] imageBytes, String firstName, String lastName) throws IOException {
         if (imageBytes == null || imageBytes.length == 0) {
@@ -20,81 +69,471 @@ public class ImageProcessor {
 
         logger.info("Image byte array size: " + imageBytes.length + " bytes");
 
-        ByteArrayInputStream inputStream = new ByteArrayInputStream(imageBytes);
+        return addWatermark(new ByteArrayInputStream(imageBytes), firstName, lastName);
+    }
+
+    /**
+     * Watermarks the image read from {@code imageStream}. The image is decoded as the stream
+     * delivers it, so decoding overlaps a download and its compressed bytes are not all kept in
+     * memory. The stream is not closed.
+     */
+    public byte[] addWatermark(InputStream imageStream, String firstName, String lastName) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        addWatermark(imageStream, firstName, lastName, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Watermarks the image read from {@code imageStream} and writes the JPEG to {@code out} as it
+     * is encoded, so an upload can send it while the rest is still being encoded. Neither stream is
+     * closed.
+     */
+    public void addWatermark(InputStream imageStream, String firstName, String lastName, OutputStream out)
+            throws IOException {
+        addWatermark(imageStream, firstName, lastName, out, Map.of());
+    }
+
+    /**
+     * Watermarks the image read from {@code imageStream}, writes the JPEG to {@code out} and writes
+     * downscaled renditions of the watermarked image to {@code renditionOutputs}. The renditions are
+     * scaled and encoded on the encode pool while the full-size image is encoded, each from the next
+     * larger one. Renditions at least as large as the image are skipped. No stream is closed.
+     *
+     * @return The dimensions of the renditions that were written
+     */
+    public Map<Rendition, Dimension> addWatermark(InputStream imageStream, String firstName, String lastName,
+                                                  OutputStream out, Map<Rendition, ? extends OutputStream> renditionOutputs)
+            throws IOException {
+        try (ImageSource source = open(imageStream)) {
+            return addWatermark(source, firstName, lastName, out, renditionOutputs);
+        }
+    }
+
+    /**
+     * Watermarks an image opened with {@link #open(InputStream)}; see
+     * {@link #addWatermark(InputStream, String, String, OutputStream, Map)}. The source is not closed.
+     */
+    public Map<Rendition, Dimension> addWatermark(ImageSource source, String firstName, String lastName,
+                                                  OutputStream out, Map<Rendition, ? extends OutputStream> renditionOutputs)
+            throws IOException {
+        int fontSize = Math.max(source.getWidth(), source.getHeight()) / 30;
+
+        // Create the watermark text
+        String date = LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE);
+        String watermarkText = firstName + " " + lastName + " - " + date;
+        WatermarkMask mask = getWatermarkMask(watermarkText, fontSize);
+
+        // Calculate center position
+        int x = (source.getWidth() - mask.getTextWidth()) / 2;
+        int y = (source.getHeight() + mask.getTextHeight() / 2) / 2;
+
+        if (source.isTiled()) {
+            return watermarkInBands(source, mask, x, y, out, renditionOutputs);
+        }
 
+        BufferedImage sourceImage = source.read();
+
+        logger.info("Read image successfully. Dimensions: " + sourceImage.getWidth() + "x" + sourceImage.getHeight());
+
+        BufferedImage watermarkedImage = drawingTarget(sourceImage);
+
+        long pixels = (long) sourceImage.getWidth() * sourceImage.getHeight();
+        StripedJpegEncoder.JoinedJpeg striped = null;
+        if (ENCODE_PARALLELISM > 1 && pixels >= PARALLEL_PIXEL_THRESHOLD) {
+            striped = watermarkInStripes(sourceImage, watermarkedImage, mask, x, y);
+        } else {
+            render(sourceImage, watermarkedImage, mask, x, y, 0, watermarkedImage.getHeight());
+        }
+
+        Map<Rendition, CompletableFuture<Dimension>> renditions = encodeRenditions(
+                watermarkedImage, watermarkedImage.getWidth(), watermarkedImage.getHeight(), renditionOutputs);
         try {
-            if (ImageIO.read(new ByteArrayInputStream(imageBytes.clone())) == null) {
-                throw new IOException("Invalid image format or corrupted image data");
+            if (striped != null) {
+                striped.writeTo(out);
+            } else {
+                StreamingImageOutputStream.writeJpeg(watermarkedImage, out);
             }
-        } catch (Exception e) {
-            throw new IOException("Error validating image format: " + e.getMessage(), e);
+        } finally {
+            // The renditions write to the caller's streams, so they must be done before this returns
+            awaitQuietly(renditions.values());
         }
+        return collectRenditions(renditions);
+    }
+
+    /**
+     * Watermarks and encodes an image too large to decode at once, a band of rows at a time. Each
+     * band is decoded on its own, the watermark is drawn into the bands it crosses, and the band is
+     * encoded as stripes joined to the output on the encode pool while the next band is decoded, so
+     * at most two bands are held. The full image is never in memory, so the renditions are scaled from a
+     * preview shrunk from the bands as they pass.
+     */
+    private static Map<Rendition, Dimension> watermarkInBands(ImageSource source, WatermarkMask mask, int x, int y,
+                                                              OutputStream out,
+                                                              Map<Rendition, ? extends OutputStream> renditionOutputs)
+            throws IOException {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int bandHeight = source.getBandHeight();
+        int longerSide = Math.max(width, height);
+        int largest = renditionOutputs.keySet().stream()
+                .mapToInt(Rendition::getMaxDimension)
+                .filter(maxDimension -> maxDimension < longerSide)
+                .max()
+                .orElse(0);
+        BoxDownscaler downscaler = largest > 0
+                ? new BoxDownscaler(width, height, previewFactor(longerSide, largest))
+                : null;
+        // Bands can be taller than the restart interval allows a stripe to be
+        int stripeHeight = Math.min(bandHeight, StripedJpegEncoder.maxStripeHeight(width));
+        StripedJpegEncoder.StripeWriter writer = new StripedJpegEncoder.StripeWriter(out, height, stripeHeight);
 
-        inputStream.reset();
+        logger.info("Decoding " + width + "x" + height + " image in " + (height + bandHeight - 1) / bandHeight
+                + " bands of " + bandHeight + " rows");
 
-        BufferedImage sourceImage;
+        CompletableFuture<Void> previous = CompletableFuture.completedFuture(null);
         try {
-            sourceImage = ImageIO.read(inputStream);
-            if (sourceImage == null) {
-                throw new IOException("Failed to read image data - ImageIO returned null");
+            for (int top = 0; top < height; top += bandHeight) {
+                int bottom = Math.min(height, top + bandHeight);
+                BufferedImage band = source.readBand(top, bottom);
+                BufferedImage watermarkedBand = drawingTarget(band);
+                render(band, watermarkedBand, mask, x, y - top, 0, bottom - top);
+
+                // Bands are written in order, and waiting here bounds the bands held to two
+                previous.join();
+                BufferedImage encodedBand = watermarkedBand;
+                int bandTop = top;
+                previous = CompletableFuture.runAsync(() -> {
+                    try {
+                        for (int stripeTop = 0; stripeTop < encodedBand.getHeight(); stripeTop += stripeHeight) {
+                            int rows = Math.min(stripeHeight, encodedBand.getHeight() - stripeTop);
+                            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+                            StreamingImageOutputStream.writeJpeg(encodedBand.getSubimage(0, stripeTop, width, rows), encoded);
+                            writer.write(encoded.toByteArray());
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    if (downscaler != null) {
+                        downscaler.add(encodedBand, bandTop);
+                    }
+                }, ENCODE_POOL);
             }
-        } catch (Exception e) {
-            throw new IOException("Error reading image data: " + e.getMessage(), e);
+            previous.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof UncheckedIOException cause ? cause.getCause()
+                    : new IOException("Failed to encode band", e.getCause());
+        } finally {
+            // The band being encoded writes to the caller's stream
+            awaitQuietly(List.of(previous));
         }
+        writer.finish();
 
-        logger.info("Read image successfully. Dimensions: " + sourceImage.getWidth() + "x" + sourceImage.getHeight());
+        if (downscaler == null) {
+            return Map.of();
+        }
+        Map<Rendition, CompletableFuture<Dimension>> renditions =
+                encodeRenditions(downscaler.getPreview(), width, height, renditionOutputs);
+        awaitQuietly(renditions.values());
+        return collectRenditions(renditions);
+    }
 
-        // Create a new buffered image with the same dimensions
-        BufferedImage watermarkedImage = new BufferedImage(
-                sourceImage.getWidth(),
-                sourceImage.getHeight(),
-                BufferedImage.TYPE_INT_RGB);
+    /**
+     * Returns the largest power of two that {@code longerSide} can be divided by and still be at
+     * least {@code maxDimension}, the factor a preview for a rendition of that size is shrunk by.
+     */
+    static int previewFactor(int longerSide, int maxDimension) {
+        int factor = 1;
+        while (longerSide / (factor * 2) >= maxDimension) {
+            factor *= 2;
+        }
+        return factor;
+    }
 
-        // Draw the original image onto the new image
-        Graphics2D g2d = watermarkedImage.createGraphics();
-        g2d.drawImage(sourceImage, 0, 0, null);
+    private static void awaitQuietly(Collection<? extends CompletableFuture<?>> futures) {
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .exceptionally(e -> null)
+                .join();
+    }
 
-        // Set up the font for the watermark
-        int fontSize = Math.max(sourceImage.getWidth(), sourceImage.getHeight()) / 30;
-        g2d.setFont(new Font("Arial", Font.BOLD, fontSize));
+    private static Map<Rendition, Dimension> collectRenditions(Map<Rendition, CompletableFuture<Dimension>> renditions)
+            throws IOException {
+        Map<Rendition, Dimension> written = new EnumMap<>(Rendition.class);
+        for (Map.Entry<Rendition, CompletableFuture<Dimension>> rendition : renditions.entrySet()) {
+            try {
+                written.put(rendition.getKey(), rendition.getValue().join());
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof UncheckedIOException cause ? cause.getCause()
+                        : new IOException("Failed to encode " + rendition.getKey().getName() + " rendition", e.getCause());
+            }
+        }
+        return written;
+    }
 
-        // Create the watermark text
-        String date = LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE);
-        String watermarkText = firstName + " " + lastName + " - " + date;
+    /**
+     * Starts scaling and encoding the renditions, largest first, each scaled from the one before so
+     * that no rendition is scaled down from the full image by a large factor.
+     *
+     * @param image       The watermarked image, or a preview of it at least as large as every rendition
+     * @param imageWidth  The width of the watermarked image
+     * @param imageHeight The height of the watermarked image
+     */
+    private static Map<Rendition, CompletableFuture<Dimension>> encodeRenditions(
+            BufferedImage image, int imageWidth, int imageHeight, Map<Rendition, ? extends OutputStream> outputs) {
+        Map<Rendition, CompletableFuture<Dimension>> renditions = new EnumMap<>(Rendition.class);
+        int longerSide = Math.max(imageWidth, imageHeight);
+        CompletableFuture<BufferedImage> previous = CompletableFuture.completedFuture(image);
 
-        // Calculate text dimensions to center it
-        FontMetrics fontMetrics = g2d.getFontMetrics();
-        int textWidth = fontMetrics.stringWidth(watermarkText);
-        int textHeight = fontMetrics.getHeight();
+        List<Rendition> largestFirst = outputs.keySet().stream()
+                .sorted(Comparator.comparingInt(Rendition::getMaxDimension).reversed())
+                .toList();
+        for (Rendition rendition : largestFirst) {
+            if (rendition.getMaxDimension() >= longerSide) {
+                continue;
+            }
 
-        // Calculate center position
-        int x = (sourceImage.getWidth() - textWidth) / 2;
-        int y = (sourceImage.getHeight() + textHeight / 2) / 2;
-
-        // Create a semi-transparent outline effect for better visibility
-        // First draw the outline/shadow
-        g2d.setStroke(new BasicStroke(3.0f));
-        g2d.setColor(new Color(0, 0, 0, 180)); // Dark shadow
-
-        // Draw the text outline for better visibility against any background
-        for (int i = -2; i <= 2; i++) {
-            for (int j = -2; j <= 2; j++) {
-                if (i != 0 || j != 0) { // Skip the center position
-                    g2d.drawString(watermarkText, x + i, y + j);
+            double scale = (double) rendition.getMaxDimension() / longerSide;
+            int width = Math.max(1, (int) Math.round(imageWidth * scale));
+            int height = Math.max(1, (int) Math.round(imageHeight * scale));
+            CompletableFuture<BufferedImage> scaled = previous.thenApplyAsync(
+                    larger -> scale(larger, width, height), ENCODE_POOL);
+            OutputStream output = outputs.get(rendition);
+            renditions.put(rendition, scaled.thenApplyAsync(scaledImage -> {
+                try {
+                    StreamingImageOutputStream.writeJpeg(scaledImage, output);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return new Dimension(width, height);
+            }, ENCODE_POOL));
+            previous = scaled;
+        }
+        return renditions;
+    }
+
+    /**
+     * Scales an opaque image down with bilinear filtering, halving it first while it is more than
+     * twice the target size, as a single bilinear step would skip most source pixels.
+     */
+    private static BufferedImage scale(BufferedImage image, int width, int height) {
+        BufferedImage current = image;
+        int currentWidth = image.getWidth();
+        int currentHeight = image.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            if (currentWidth < width * 2 && currentHeight < height * 2) {
+                currentWidth = width;
+                currentHeight = height;
+            }
+
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, image.getType());
+            Graphics2D g2d = next.createGraphics();
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2d.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            g2d.dispose();
+            current = next;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    /**
+     * Copies the source into the target if they differ and draws the part of the watermark that falls
+     * within rows {@code [top, bottom)}.
+     */
+    private static void render(BufferedImage sourceImage, BufferedImage watermarkedImage, WatermarkMask mask,
+                               int x, int y, int top, int bottom) {
+        Graphics2D g2d = null;
+        if (watermarkedImage != sourceImage) {
+            g2d = watermarkedImage.createGraphics();
+            g2d.clipRect(0, top, watermarkedImage.getWidth(), bottom - top);
+            g2d.drawImage(sourceImage, 0, 0, null);
+        }
+
+        if (!WatermarkCompositor.composite(watermarkedImage, mask, x, y, top, bottom)) {
+            if (g2d == null) {
+                g2d = watermarkedImage.createGraphics();
+                g2d.clipRect(0, top, watermarkedImage.getWidth(), bottom - top);
+            }
+            mask.drawAt(g2d, x, y);
+        }
+
+        if (g2d != null) {
+            g2d.dispose();
+        }
+    }
+
+    /**
+     * Watermarks and encodes a large image in horizontal stripes on all cores, so its latency scales
+     * with the vCPUs the function has rather than being bound to one. Either way the image is fully
+     * watermarked on return.
+     *
+     * @return The encoded stripes, or null if the image could not be striped and must be encoded in one piece
+     */
+    private static StripedJpegEncoder.JoinedJpeg watermarkInStripes(BufferedImage sourceImage, BufferedImage watermarkedImage,
+                                                                    WatermarkMask mask, int x, int y) {
+        int stripeHeight = StripedJpegEncoder.stripeHeight(
+                watermarkedImage.getWidth(), watermarkedImage.getHeight(), ENCODE_PARALLELISM);
+        if (stripeHeight == 0) {
+            render(sourceImage, watermarkedImage, mask, x, y, 0, watermarkedImage.getHeight());
+            return null;
+        }
+
+        // Track which stripes are rendered, so a failed join does not draw the watermark twice
+        boolean[] rendered = new boolean[(watermarkedImage.getHeight() + stripeHeight - 1) / stripeHeight];
+        StripedJpegEncoder.JoinedJpeg jpeg;
+        try {
+            jpeg = StripedJpegEncoder.encode(watermarkedImage, stripeHeight, ENCODE_POOL, (top, bottom) -> {
+                render(sourceImage, watermarkedImage, mask, x, y, top, bottom);
+                rendered[top / stripeHeight] = true;
+            });
+        } catch (IOException e) {
+            logger.warning("Striped encoding failed, encoding in one piece: " + e.getMessage());
+            for (int i = 0; i < rendered.length; i++) {
+                if (!rendered[i]) {
+                    int top = i * stripeHeight;
+                    render(sourceImage, watermarkedImage, mask, x, y, top,
+                            Math.min(watermarkedImage.getHeight(), top + stripeHeight));
                 }
             }
+            return null;
         }
 
-        // Now draw the main text in semi-transparent white
-        g2d.setColor(new Color(255, 255, 255, 180));
-        g2d.drawString(watermarkText, x, y);
+        logger.info("Encoded " + rendered.length + " stripes of " + stripeHeight + " rows in parallel");
+        return jpeg;
+    }
 
-        g2d.dispose();
+    /**
+     * Returns the rendered watermark for a text and font size, rendering it on first use. Masks are
+     * kept across invocations of a warm container.
+     */
+    public static WatermarkMask getWatermarkMask(String text, int fontSize) {
+        MaskKey key = new MaskKey(text, fontSize);
+        synchronized (MASK_CACHE) {
+            WatermarkMask mask = MASK_CACHE.get(key);
+            if (mask != null) {
+                return mask;
+            }
+        }
 
-        // Write the watermarked image to a byte array
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        ImageIO.write(watermarkedImage, "jpg", outputStream);
+        // Rendered outside the lock; two threads racing on a new key just render it twice
+        WatermarkMask mask = WatermarkMask.render(text, WATERMARK_FONT.deriveFont((float) fontSize));
+        synchronized (MASK_CACHE) {
+            MASK_CACHE.put(key, mask);
+        }
+        return mask;
+    }
 
-        return outputStream.toByteArray();
+    /**
+     * Loads the bundled watermark font, so the watermark looks the same whatever fonts the runtime
+     * has installed.
+     */
+    static Font loadFont(String resource) {
+        try (InputStream in = ImageProcessor.class.getResourceAsStream(resource)) {
+            if (in != null) {
+                return Font.createFont(Font.TRUETYPE_FONT, in);
+            }
+            logger.warning("Watermark font " + resource + " is missing, using the default font");
+        } catch (FontFormatException | IOException e) {
+            logger.warning("Could not load watermark font, using the default font: " + e.getMessage());
+        }
+        return new Font(Font.SANS_SERIF, Font.BOLD, 12);
+    }
+
+    /**
+     * Reads the header of the first image in {@code imageStream} and checks that it can be decoded
+     * here, before any pixels are decoded, so corrupt, unsupported or oversized images are rejected
+     * cheaply. The stream is not closed.
+     *
+     * @throws IOException             If the data is not a supported image
+     * @throws ImageTooLargeException If the planner does not admit the image
+     */
+    public ImageSource open(InputStream imageStream) throws IOException {
+        return open(imageStream, -1);
+    }
+
+    /**
+     * Reads the header of the first image in {@code imageStream}; see {@link #open(InputStream)}.
+     *
+     * @param compressedBytes The length of the stream, or -1 if it is not known, which lets the
+     *                        planner tell whether an image too large to decode at once can be
+     *                        decoded in bands, as the compressed image is then kept in memory
+     */
+    public ImageSource open(InputStream imageStream, long compressedBytes) throws IOException {
+        StreamingImageInputStream input = new StreamingImageInputStream(imageStream);
+        ImageReader reader = null;
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Invalid image format or corrupted image data");
+            }
+
+            reader = readers.next();
+            reader.setInput(input, true, true);
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            if (width <= 0 || height <= 0) {
+                throw new IOException("Invalid image dimensions");
+            }
+
+            ImageTypeSpecifier imageType = reader.getRawImageType(0);
+            long estimatedBytes = planner.estimate(width, height, imageType);
+            int bandHeight = estimatedBytes > planner.getBudgetBytes()
+                    ? planner.bandHeight(width, height, imageType, compressedBytes)
+                    : 0;
+            MemoryPlanner.Plan plan = planner.plan(estimatedBytes, bandHeight);
+            logger.info("Image header: " + width + "x" + height + ", estimated decode memory "
+                    + estimatedBytes / (1024 * 1024) + " MB, plan " + plan);
+            if (plan == MemoryPlanner.Plan.REROUTE || plan == MemoryPlanner.Plan.REJECT) {
+                throw new ImageTooLargeException(plan, width, height, estimatedBytes, planner.getBudgetBytes());
+            }
+
+            // These readers only read forward once they have parsed the header, but every band is
+            // read from the start of the image
+            boolean streaming = plan == MemoryPlanner.Plan.INLINE
+                    && STREAMING_FORMATS.contains(reader.getFormatName().toLowerCase(Locale.ROOT));
+            return new ImageSource(input, reader, streaming, width, height, estimatedBytes,
+                    plan == MemoryPlanner.Plan.TILED ? bandHeight : 0);
+        } catch (IOException | RuntimeException e) {
+            if (reader != null) {
+                reader.dispose();
+            }
+            input.close();
+            if (e instanceof IOException || e instanceof ImageTooLargeException) {
+                throw e;
+            }
+            throw new IOException("Error reading image header: " + e.getMessage(), e);
+        }
+    }
+
+    private static long getEnvLong(String name, long defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isEmpty() ? Long.parseLong(value) : defaultValue;
+    }
+
+    /**
+     * Returns whether an image of the given {@link BufferedImage} type is opaque and can be encoded
+     * as a JPEG as it is, so the watermark can be drawn onto it without a copy.
+     */
+    static boolean canDrawInPlace(int imageType) {
+        return switch (imageType) {
+            case BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_BGR, BufferedImage.TYPE_3BYTE_BGR,
+                    BufferedImage.TYPE_BYTE_GRAY -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Returns the image the watermark is drawn onto: the decoded image itself if it can be drawn on
+     * in place, otherwise a blank RGB image of the same size that {@link #render} copies it into.
+     * JPEG has no alpha channel, so only opaque images can be drawn on in place.
+     */
+    static BufferedImage drawingTarget(BufferedImage image) {
+        if (canDrawInPlace(image.getType())) {
+            return image;
+        }
+        return new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+    }
+
+    private record MaskKey(String text, int fontSize) {
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,107 @@
+package com.process.util;
+
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * An image whose header has been read and whose decode has been admitted by the
+ * {@link MemoryPlanner}, but whose pixels have not been decoded yet.
+ */
+public final class ImageSource implements Closeable {
+    private final StreamingImageInputStream input;
+    private final ImageReader reader;
+    private final boolean streaming;
+    private final int width;
+    private final int height;
+    private final long estimatedBytes;
+    private final int bandHeight;
+
+    /**
+     * @param streaming  Whether the reader only reads forward, so consumed data can be released
+     * @param bandHeight The rows to decode at a time, or 0 to decode the whole image at once
+     */
+    ImageSource(StreamingImageInputStream input, ImageReader reader, boolean streaming,
+                int width, int height, long estimatedBytes, int bandHeight) {
+        this.input = input;
+        this.reader = reader;
+        this.streaming = streaming;
+        this.width = width;
+        this.height = height;
+        this.estimatedBytes = estimatedBytes;
+        this.bandHeight = bandHeight;
+    }
+
+    /**
+     * Decodes the image. Can be called once.
+     */
+    BufferedImage read() throws IOException {
+        try {
+            if (streaming) {
+                input.releaseConsumed();
+            }
+            return reader.read(0);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Error reading image data: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decodes rows {@code [top, bottom)} of the image. Readers decode from the start of the image
+     * for every band, so the compressed data is kept and each band costs more than the last.
+     */
+    BufferedImage readBand(int top, int bottom) throws IOException {
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(new Rectangle(0, top, width, bottom - top));
+        try {
+            return reader.read(0, param);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Error reading image rows " + top + " to " + bottom + ": " + e.getMessage(), e);
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return The heap the planner expects the image to need, in bytes
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    /**
+     * @return Whether the image is too large to decode at once and is decoded in bands
+     */
+    public boolean isTiled() {
+        return bandHeight > 0;
+    }
+
+    /**
+     * @return The rows decoded at a time, or 0 if the image is decoded at once
+     */
+    public int getBandHeight() {
+        return bandHeight;
+    }
+
+    /**
+     * Releases the reader. The underlying stream is not closed.
+     */
+    @Override
+    public void close() throws IOException {
+        reader.dispose();
+        input.close();
+    }
+}
@@ -0,0 +1,26 @@
+package com.process.util;
+
+/**
+ * Thrown when an image's header shows that this function does not have the heap to decode it, even
+ * a band at a time. It carries a routing decision rather than a failure: the message should be
+ * handed to the high-memory function, or dropped if even that cannot decode the image, but not
+ * retried here.
+ */
+public class ImageTooLargeException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final MemoryPlanner.Plan plan;
+
+    public ImageTooLargeException(MemoryPlanner.Plan plan, int width, int height, long estimatedBytes, long budgetBytes) {
+        super("Image of " + width + "x" + height + " needs about " + estimatedBytes / (1024 * 1024)
+                + " MB to decode, over the budget of " + budgetBytes / (1024 * 1024) + " MB");
+        this.plan = plan;
+    }
+
+    /**
+     * @return {@link MemoryPlanner.Plan#REROUTE} or {@link MemoryPlanner.Plan#REJECT}
+     */
+    public MemoryPlanner.Plan getPlan() {
+        return plan;
+    }
+}
@@ -0,0 +1,173 @@
+package com.process.util;
+
+import com.process.model.Rendition;
+
+import javax.imageio.ImageTypeSpecifier;
+import java.awt.image.DataBuffer;
+import java.awt.image.SampleModel;
+import java.util.logging.Logger;
+
+/**
+ * Decides from an image's header whether this function has the heap to decode it, before any
+ * pixels are decoded.
+ * <p>
+ * The estimate covers the decoded frame, the opaque copy made when the frame cannot be drawn on in
+ * place, the first halving step of the renditions and the encoded stripes of a parallel encode.
+ * Images over the budget are decoded in bands of rows when two bands and the compressed image fit
+ * in it and at most {@link #MAX_BANDS} bands are needed, and are otherwise rerouted to the
+ * high-memory function when there is one, and rejected when there is not, rather than being
+ * retried until they reach the dead-letter queue.
+ */
+public final class MemoryPlanner {
+    private static final Logger logger = Logger.getLogger(MemoryPlanner.class.getName());
+    // Leaves room for the JVM, the SDK clients and the messages that are not being decoded
+    private static final double HEAP_FRACTION = 0.6;
+    // Opaque copies are TYPE_INT_RGB
+    private static final int COPY_BYTES_PER_PIXEL = 4;
+    // Baseline JPEG at the default quality stays well under half a byte per pixel
+    private static final double ENCODED_BYTES_PER_PIXEL = 0.5;
+    // The reader re-reads the image from the start for every band, so decode time grows with the
+    // square of the band count; past this it is cheaper to hand the image on
+    static final int MAX_BANDS = 8;
+
+    /**
+     * What to do with an image.
+     */
+    public enum Plan {
+        /** Decode it here */
+        INLINE,
+        /** Decode and encode it here a band of rows at a time */
+        TILED,
+        /** Hand it to the high-memory function */
+        REROUTE,
+        /** Too large for any function that could take it */
+        REJECT
+    }
+
+    private final long budgetBytes;
+    private final boolean canReroute;
+
+    /**
+     * @param budgetBytes The heap one decode may use
+     * @param canReroute  Whether there is a high-memory function to hand larger images to
+     */
+    public MemoryPlanner(long budgetBytes, boolean canReroute) {
+        this.budgetBytes = budgetBytes;
+        this.canReroute = canReroute;
+    }
+
+    /**
+     * Creates a planner with a budget of {@code DECODE_MEMORY_BUDGET_MB} if set, otherwise a share
+     * of the maximum heap for each image that may be decoded at once (one per core), and that
+     * reroutes when {@code HIGH_MEMORY_QUEUE_URL} is set.
+     */
+    public static MemoryPlanner fromEnvironment() {
+        String configured = System.getenv("DECODE_MEMORY_BUDGET_MB");
+        long budgetBytes = configured != null && !configured.isEmpty()
+                ? Long.parseLong(configured) * 1024 * 1024
+                : (long) (Runtime.getRuntime().maxMemory() * HEAP_FRACTION / Runtime.getRuntime().availableProcessors());
+        String highMemoryQueueUrl = System.getenv("HIGH_MEMORY_QUEUE_URL");
+        boolean canReroute = highMemoryQueueUrl != null && !highMemoryQueueUrl.isEmpty();
+
+        logger.info("Decode memory budget: " + budgetBytes / (1024 * 1024) + " MB"
+                + (canReroute ? ", larger images are rerouted" : ""));
+        return new MemoryPlanner(budgetBytes, canReroute);
+    }
+
+    /**
+     * Estimates the heap needed to watermark an image.
+     *
+     * @param width     The image width
+     * @param height    The image height
+     * @param imageType The type the reader decodes to, or null if it does not say
+     * @return The estimate in bytes
+     */
+    public long estimate(int width, int height, ImageTypeSpecifier imageType) {
+        long pixels = (long) width * height;
+        int bytesPerPixel = bytesPerPixel(imageType);
+        long estimate = pixels * bytesPerPixel;
+        if (imageType == null || !ImageProcessor.canDrawInPlace(imageType.getBufferedImageType())) {
+            estimate += pixels * COPY_BYTES_PER_PIXEL;
+            bytesPerPixel = COPY_BYTES_PER_PIXEL;
+        }
+        // The first halving step of the renditions
+        estimate += pixels * bytesPerPixel / 4;
+        estimate += (long) (pixels * ENCODED_BYTES_PER_PIXEL);
+        return estimate;
+    }
+
+    /**
+     * Picks the tallest band of rows for which two bands (one decoding while the other is encoded),
+     * the compressed image the reader re-reads for every band and the preview the renditions are
+     * scaled from fit in the budget.
+     *
+     * @param width           The image width
+     * @param height          The image height
+     * @param imageType       The type the reader decodes to, or null if it does not say
+     * @param compressedBytes The size of the compressed image, or -1 if it is not known
+     * @return The band height, a multiple of 16 and of the stripe height if it is taller than a
+     *         stripe, or 0 if no band fits or the image would need more than {@link #MAX_BANDS} bands
+     */
+    public int bandHeight(int width, int height, ImageTypeSpecifier imageType, long compressedBytes) {
+        int maxHeight = StripedJpegEncoder.maxStripeHeight(width);
+        if (maxHeight == 0) {
+            return 0;
+        }
+
+        long pixels = (long) width * height;
+        // Compressed images stay well under a byte per pixel
+        long fixed = compressedBytes >= 0 ? compressedBytes : pixels;
+        int longerSide = Math.max(width, height);
+        int largest = 0;
+        for (Rendition rendition : Rendition.values()) {
+            if (rendition.getMaxDimension() < longerSide) {
+                largest = Math.max(largest, rendition.getMaxDimension());
+            }
+        }
+        if (largest > 0) {
+            int factor = ImageProcessor.previewFactor(longerSide, largest);
+            fixed += (long) ((width + factor - 1) / factor) * ((height + factor - 1) / factor) * COPY_BYTES_PER_PIXEL;
+        }
+
+        double bytesPerRow = width * (bytesPerPixel(imageType) + ENCODED_BYTES_PER_PIXEL);
+        if (imageType == null || !ImageProcessor.canDrawInPlace(imageType.getBufferedImageType())) {
+            bytesPerRow += (double) width * COPY_BYTES_PER_PIXEL;
+        }
+        long rows = Math.min((long) ((budgetBytes - fixed) / (2 * bytesPerRow)), height + 15L) / 16 * 16;
+        if (rows < 16) {
+            return 0;
+        }
+        // Every band but the last is encoded as whole stripes
+        int bandHeight = (int) (rows > maxHeight ? rows / maxHeight * maxHeight : rows);
+        return (height + bandHeight - 1) / bandHeight <= MAX_BANDS ? bandHeight : 0;
+    }
+
+    /**
+     * @param estimatedBytes The estimate from {@link #estimate}
+     * @param bandHeight     The band height from {@link #bandHeight}
+     * @return What to do with the image
+     */
+    public Plan plan(long estimatedBytes, int bandHeight) {
+        if (estimatedBytes <= budgetBytes) {
+            return Plan.INLINE;
+        }
+        if (bandHeight > 0) {
+            return Plan.TILED;
+        }
+        return canReroute ? Plan.REROUTE : Plan.REJECT;
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    private static int bytesPerPixel(ImageTypeSpecifier imageType) {
+        if (imageType == null) {
+            return COPY_BYTES_PER_PIXEL;
+        }
+        SampleModel sampleModel = imageType.getSampleModel(1, 1);
+        int bits = DataBuffer.getDataTypeSize(sampleModel.getDataType()) * sampleModel.getNumDataElements();
+        // Packed sub-byte pixels still cost at least a byte each once converted
+        return Math.max(1, bits / 8);
+    }
+}
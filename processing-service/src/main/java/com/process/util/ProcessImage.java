@@ -1,12 +1,28 @@
 package com.process.util;
 
 import com.amazonaws.services.lambda.runtime.Context;
+import com.process.model.ImageRendition;
+import com.process.model.Rendition;
 import com.process.service.DynamoDbService;
 import com.process.service.EmailService;
 import com.process.service.S3Service;
-import com.process.service.SqsService;
-
-import java.util.UUID;
+import com.process.service.S3UploadOutputStream;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.awt.Dimension;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 public class ProcessImage {
@@ -16,15 +32,20 @@ public class ProcessImage {
     private final EmailService emailService;
     private final ImageProcessor imageProcessor;
     private final S3Service s3Service;
-    private final SqsService sqsService;
+    private final ExecutorService imageExecutor;
 
+    /**
+     * @param imageExecutor Runs the CPU-bound decode, watermark and encode step, so that however
+     *                      many messages are in flight, only as many images as it has threads are
+     *                      decoded at once
+     */
     public ProcessImage(S3Service s3Service, DynamoDbService dynamoDbService, EmailService emailService,
-                        ImageProcessor imageProcessor, SqsService sqsService) {
+                        ImageProcessor imageProcessor, ExecutorService imageExecutor) {
         this.dynamoDbService = dynamoDbService;
         this.emailService = emailService;
         this.imageProcessor = imageProcessor;
         this.s3Service = s3Service;
-        this.sqsService = sqsService;
+        this.imageExecutor = imageExecutor;
     }
 
     public void processImage(Context context, String bucket, String key, String userId,
@@ -36,44 +57,97 @@ public class ProcessImage {
     public void processImage(Context context, String bucket, String key, String userId,
                              String email, String firstName, String lastName, String imageTitle,
                              int retryCount) {
+        processImage(context, bucket, key, userId, email, firstName, lastName, imageTitle, retryCount, null);
+    }
+
+    /**
+     * Processes an image and records the SHA-256 of the original upload so that later uploads
+     * of the same content by the same user can be answered from the photo table.
+     */
+    public void processImage(Context context, String bucket, String key, String userId,
+                             String email, String firstName, String lastName, String imageTitle,
+                             int retryCount, String contentHash) {
         try {
             logger.info("Starting image processing " + (retryCount > 1 ? "(retry attempt #" + retryCount + ")" : ""));
             logger.info("Retrieving image from S3: " + bucket + "/" + key);
 
-            byte[] imageData = s3Service.getImageFromS3(bucket, key);
-
-            if (imageData == null || imageData.length == 0) {
-                logger.warning("Retrieved empty image data from S3");
-                return;
-            }
+            String processedKey = processedKey(bucket, key);
+            long watermarkedSize;
+            List<ImageRendition> renditions = new ArrayList<>();
+            try (ResponseInputStream<GetObjectResponse> imageStream = s3Service.getImageStreamFromS3(bucket, key)) {
+                Long contentLength = imageStream.response().contentLength();
+                if (contentLength != null && contentLength == 0) {
+                    logger.warning("Retrieved empty image data from S3");
+                    return;
+                }
 
-            logger.info("Retrieved image data size: " + imageData.length + " bytes");
+                logger.info("Streaming image data of size: " + contentLength + " bytes");
 
-            logger.info("Adding watermark to image");
+                // Read the header first, so images this function cannot decode are turned away
+                // before any email is sent or any pixels are decoded
+                ImageSource source;
+                try {
+                    source = imageProcessor.open(imageStream, contentLength != null ? contentLength : -1);
+                } catch (Exception e) {
+                    imageStream.abort();
+                    throw e;
+                }
 
-            // Only send processing start email on first attempt
-            if (retryCount == 1) {
-                emailService.sendProcessingStartEmail(email, firstName);
-            }
+                try (source) {
+                    logger.info("Adding watermark to image");
 
-            byte[] watermarkedImage = imageProcessor.addWatermark(imageData, firstName, lastName);
+                    // Only send processing start email on first attempt
+                    if (retryCount == 1) {
+                        emailService.sendProcessingStartEmail(email, firstName);
+                    }
 
-            if (watermarkedImage == null || watermarkedImage.length == 0) {
-                logger.warning("Watermarking process returned empty data");
-                return;
+                    // The watermarked image and its renditions are uploaded to S3 as they are encoded
+                    S3UploadOutputStream upload = s3Service.openProcessedBucketUpload(processedKey);
+                    Map<Rendition, S3UploadOutputStream> renditionUploads = new EnumMap<>(Rendition.class);
+                    for (Rendition rendition : Rendition.values()) {
+                        renditionUploads.put(rendition, s3Service.openProcessedBucketUpload(rendition.key(processedKey)));
+                    }
+                    try {
+                        Map<Rendition, Dimension> dimensions = watermark(source, firstName, lastName, upload, renditionUploads);
+                        watermarkedSize = upload.getBytesWritten();
+                        if (watermarkedSize == 0) {
+                            upload.abort();
+                            renditionUploads.values().forEach(S3UploadOutputStream::abort);
+                            logger.warning("Watermarking process returned empty data");
+                            return;
+                        }
+                        upload.close();
+
+                        for (Map.Entry<Rendition, S3UploadOutputStream> entry : renditionUploads.entrySet()) {
+                            Rendition rendition = entry.getKey();
+                            Dimension dimension = dimensions.get(rendition);
+                            if (dimension == null) {
+                                // The image is already smaller than this rendition
+                                entry.getValue().abort();
+                                continue;
+                            }
+                            entry.getValue().close();
+                            renditions.add(new ImageRendition(rendition, rendition.key(processedKey),
+                                    dimension.width, dimension.height, entry.getValue().getBytesWritten()));
+                        }
+                    } catch (Exception e) {
+                        upload.abort();
+                        renditionUploads.values().forEach(S3UploadOutputStream::abort);
+                        // Drop the connection rather than draining the rest of a rejected image
+                        imageStream.abort();
+                        throw e;
+                    }
+                }
             }
 
-            logger.info("Watermarked image size: " + watermarkedImage.length + " bytes");
-            String processedKey = UUID.randomUUID().toString().replace("-", "").substring(0, 16);
-
-            logger.info("Uploading processed image to S3");
-            s3Service.uploadToProcessedBucket(watermarkedImage, processedKey);
+            logger.info("Uploaded processed image of size: " + watermarkedSize + " bytes and "
+                    + renditions.size() + " renditions");
 
             logger.info("Storing image metadata in DynamoDB");
             String imageUrl = "https://" + System.getenv("PROCESSED_BUCKET") + ".s3." +
                     System.getenv("AWS_REGION") + ".amazonaws.com/" + processedKey;
 
-            dynamoDbService.storeImageMetadata(userId, processedKey, imageTitle, imageUrl);
+            dynamoDbService.storeImageMetadata(userId, processedKey, imageTitle, imageUrl, contentHash, renditions);
 
             logger.info("Deleting original image from staging bucket");
             s3Service.deleteFromStagingBucket(bucket, key);
@@ -91,6 +165,19 @@ public class ProcessImage {
             logger.info("Successfully processed image: " + key +
                     (retryCount > 1 ? " (after " + retryCount + " attempts)" : ""));
 
+        } catch (ImageTooLargeException e) {
+            if (e.getPlan() == MemoryPlanner.Plan.REROUTE) {
+                // The handler hands the message to the high-memory function
+                throw e;
+            }
+
+            // Retrying cannot make it fit, so the message is consumed
+            logger.severe("Rejected image " + key + ": " + e.getMessage());
+            try {
+                emailService.sendProcessingFailureEmail(email, firstName);
+            } catch (Exception emailEx) {
+                logger.warning("Could not send failure email: " + emailEx.getMessage());
+            }
         } catch (Exception e) {
             logger.severe("Error processing image: " + e.getClass().getName() + ": " + e.getMessage());
             if (e.getCause() != null) {
@@ -102,6 +189,7 @@ public class ProcessImage {
             }
 
             // Send failure email - only on first failure or final attempt
+            // Matches the retry queue's maxReceiveCount, after which the message goes to the DLQ
             boolean isFinalAttempt = retryCount >= 5;
             if (retryCount == 1 || isFinalAttempt) {
                 try {
@@ -115,12 +203,40 @@ public class ProcessImage {
                 }
             }
 
-            // Increment retry count and queue message for RetryQueue
-            int newRetryCount = retryCount + 1;
-            logger.info("Queuing image for retry attempt #" + newRetryCount + ": " + key);
-            sqsService.queueForRetry(bucket, key, userId, email, firstName, lastName, imageTitle, newRetryCount);
-
+            // The handler reports the message as failed and the queue redelivers it
             throw new RuntimeException("Failed to process image (retry attempt #" + retryCount + ")", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Derives the processed image's key from its staging object, which is unique per upload. A
+     * redelivered message therefore overwrites the objects an earlier attempt published before it
+     * failed, instead of leaving them orphaned under a key no metadata refers to.
+     */
+    static String processedKey(String bucket, String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest((bucket + "/" + key).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Watermarks the image on the image executor. The image is decoded as it downloads, so the
+     * executor's thread also waits on the network, but only for as long as the transfer outlasts
+     * the decode.
+     */
+    private Map<Rendition, Dimension> watermark(ImageSource source, String firstName, String lastName,
+                                                OutputStream out, Map<Rendition, ? extends OutputStream> renditionOutputs)
+            throws Exception {
+        Future<Map<Rendition, Dimension>> result = imageExecutor.submit(
+                () -> imageProcessor.addWatermark(source, firstName, lastName, out, renditionOutputs));
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+}
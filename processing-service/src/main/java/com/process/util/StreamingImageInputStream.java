@@ -0,0 +1,72 @@
+package com.process.util;
+
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An image input stream over a network stream that lets go of the bytes a reader has consumed.
+ * <p>
+ * {@link MemoryCacheImageInputStream} keeps everything it has read so that readers can seek back,
+ * and neither the JPEG nor the PNG reader ever flushes it, so the whole compressed file ends up in
+ * the cache anyway. Once {@link #releaseConsumed()} is called (when the reader starts decoding
+ * pixels, past any header it may re-read) this stream discards data more than {@link #LOOKBACK}
+ * bytes behind the read position, unless the reader holds a mark.
+ */
+final class StreamingImageInputStream extends MemoryCacheImageInputStream {
+    // How far behind the read position the reader may still seek
+    private static final int LOOKBACK = 64 * 1024;
+    // Flush in steps, as each flush walks the cache's block list
+    private static final int FLUSH_STEP = 1024 * 1024;
+
+    private boolean releasing;
+    private int marks;
+
+    StreamingImageInputStream(InputStream stream) {
+        super(stream);
+    }
+
+    /**
+     * Starts discarding consumed data.
+     */
+    void releaseConsumed() {
+        releasing = true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        release();
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        release();
+        return n;
+    }
+
+    @Override
+    public void mark() {
+        super.mark();
+        marks++;
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        if (marks > 0) {
+            marks--;
+        }
+    }
+
+    private void release() throws IOException {
+        if (releasing && marks == 0) {
+            long floor = getStreamPosition() - LOOKBACK;
+            if (floor - getFlushedPosition() >= FLUSH_STEP) {
+                flushBefore(floor);
+            }
+        }
+    }
+}
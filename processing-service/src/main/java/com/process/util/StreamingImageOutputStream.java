@@ -0,0 +1,69 @@
+package com.process.util;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageOutputStreamImpl;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An image output stream that writes straight through to an {@link OutputStream}.
+ * <p>
+ * The streams {@link ImageIO} creates for an {@code OutputStream} hold the encoded image in a
+ * memory or file cache until they are closed, in case the writer seeks back. The JPEG writer only
+ * writes forward, so this stream needs no cache and hands every byte on as soon as it is encoded.
+ * Seeking anywhere but the current position fails.
+ */
+final class StreamingImageOutputStream extends ImageOutputStreamImpl {
+    private final OutputStream out;
+
+    StreamingImageOutputStream(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Encodes {@code image} as a JPEG into {@code out}, which is not closed.
+     */
+    static void writeJpeg(BufferedImage image, OutputStream out) throws IOException {
+        try (StreamingImageOutputStream output = new StreamingImageOutputStream(out)) {
+            if (!ImageIO.write(image, "jpg", output)) {
+                throw new IOException("No JPEG writer for image type " + image.getType());
+            }
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkClosed();
+        flushBits();
+        out.write(b);
+        streamPos++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        flushBits();
+        out.write(b, off, len);
+        streamPos += len;
+    }
+
+    @Override
+    public int read() throws IOException {
+        throw new IOException("Streamed image output cannot be read back");
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        throw new IOException("Streamed image output cannot be read back");
+    }
+
+    @Override
+    public void seek(long pos) throws IOException {
+        checkClosed();
+        if (pos != streamPos) {
+            throw new IOException("Streamed image output cannot seek from " + streamPos + " to " + pos);
+        }
+        bitOffset = 0;
+    }
+}
@@ -0,0 +1,329 @@
+package com.process.util;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Encodes a large image as one baseline JPEG using several threads. The image is cut into horizontal
+ * stripes whose heights are whole MCU rows, each stripe is prepared and encoded on its own, and the
+ * stripes' entropy-coded data is joined with restart markers under the first stripe's header.
+ * <p>
+ * A restart marker resets exactly the state that differs between separately encoded stripes (the DC
+ * predictors and the bit buffer), so the result decodes to the same pixels as a single-threaded
+ * encode. This relies on every stripe being written with the same quantisation and Huffman tables,
+ * which holds for the default ImageIO writer; if the headers differ, encoding fails and the caller
+ * should fall back to a single encode.
+ * <p>
+ * {@link StripeWriter} joins stripes the caller encodes itself, one at a time, for images that are
+ * never held in memory whole.
+ */
+final class StripedJpegEncoder {
+    // Restart intervals are a 16-bit count of MCUs
+    private static final int MAX_RESTART_INTERVAL = 0xFFFF;
+    // Every sampling the writer uses has an MCU height dividing 16
+    private static final int MCU_ROW_ALIGNMENT = 16;
+
+    private StripedJpegEncoder() {
+    }
+
+    /**
+     * Prepares the rows of one stripe before it is encoded.
+     */
+    @FunctionalInterface
+    interface StripeRenderer {
+        /**
+         * @param top    The first row of the stripe
+         * @param bottom One past the last row of the stripe
+         */
+        void render(int top, int bottom);
+    }
+
+    /**
+     * Picks a stripe height that gives each thread a couple of stripes, is a whole number of MCU
+     * rows and keeps a stripe within the largest restart interval.
+     *
+     * @param width       The image width
+     * @param height      The image height
+     * @param parallelism The number of threads
+     * @return The stripe height, or 0 if the image is too wide to be striped
+     */
+    static int stripeHeight(int width, int height, int parallelism) {
+        int wanted = (height + 2 * parallelism - 1) / (2 * parallelism);
+        wanted = (wanted + MCU_ROW_ALIGNMENT - 1) / MCU_ROW_ALIGNMENT * MCU_ROW_ALIGNMENT;
+        return Math.min(wanted, maxStripeHeight(width));
+    }
+
+    /**
+     * @param width The image width
+     * @return The tallest stripe, in whole MCU rows, that fits in one restart interval, or 0 if the
+     *         image is too wide to be striped
+     */
+    static int maxStripeHeight(int width) {
+        // Worst case: one 8x8 MCU per block, as for greyscale images
+        int mcusPerRow = (width + 7) / 8;
+        return MAX_RESTART_INTERVAL / mcusPerRow * 8 / MCU_ROW_ALIGNMENT * MCU_ROW_ALIGNMENT;
+    }
+
+    /**
+     * Renders and encodes the stripes of {@code image} on {@code executor} and checks that they can
+     * be joined. Nothing is written until {@link JoinedJpeg#writeTo(OutputStream)} is called, so
+     * the caller can still fall back to a single encode if this fails.
+     *
+     * @param image        The image, whose stripes the renderer finishes before they are encoded
+     * @param stripeHeight The stripe height, a multiple of 16
+     * @param executor     Runs one task per stripe
+     * @param renderer     Prepares each stripe
+     * @return The joinable stripes
+     * @throws IOException If a stripe cannot be encoded or the stripes cannot be joined
+     */
+    static JoinedJpeg encode(BufferedImage image, int stripeHeight, ExecutorService executor,
+                             StripeRenderer renderer) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (stripeHeight <= 0 || stripeHeight % MCU_ROW_ALIGNMENT != 0) {
+            throw new IOException("Stripe height must be a positive multiple of " + MCU_ROW_ALIGNMENT);
+        }
+
+        List<Callable<byte[]>> tasks = new ArrayList<>();
+        for (int top = 0; top < height; top += stripeHeight) {
+            int stripeTop = top;
+            int stripeBottom = Math.min(height, top + stripeHeight);
+            tasks.add(() -> {
+                renderer.render(stripeTop, stripeBottom);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                StreamingImageOutputStream.writeJpeg(image.getSubimage(0, stripeTop, width, stripeBottom - stripeTop), out);
+                return out.toByteArray();
+            });
+        }
+
+        List<byte[]> stripes = new ArrayList<>(tasks.size());
+        try {
+            for (Future<byte[]> future : executor.invokeAll(tasks)) {
+                stripes.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while encoding stripes", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException cause ? cause : new IOException(e.getCause());
+        }
+
+        return join(stripes, height, stripeHeight);
+    }
+
+    /**
+     * Checks that separately encoded stripes share their tables and can be joined.
+     *
+     * @param stripes      The stripes, top to bottom
+     * @param height       The height of the whole image
+     * @param stripeHeight The height of every stripe but the last
+     * @return The joinable stripes
+     * @throws IOException If the stripes cannot be joined
+     */
+    static JoinedJpeg join(List<byte[]> stripes, int height, int stripeHeight) throws IOException {
+        byte[] first = stripes.get(0);
+        Header header = Header.parse(first);
+        int restartInterval = restartInterval(header, stripeHeight);
+
+        List<Header> headers = new ArrayList<>(stripes.size());
+        for (int i = 0; i < stripes.size(); i++) {
+            Header stripeHeader = i == 0 ? header : Header.parse(stripes.get(i));
+            if (!header.sameTables(first, stripeHeader, stripes.get(i))) {
+                throw new IOException("Stripe " + i + " was encoded with different tables");
+            }
+            headers.add(stripeHeader);
+        }
+        return new JoinedJpeg(stripes, headers, height, restartInterval);
+    }
+
+    private static int restartInterval(Header header, int stripeHeight) throws IOException {
+        int restartInterval = header.mcusPerRow * (stripeHeight / header.mcuHeight);
+        if (stripeHeight % header.mcuHeight != 0 || restartInterval > MAX_RESTART_INTERVAL) {
+            throw new IOException("Stripes do not align with restart intervals");
+        }
+        return restartInterval;
+    }
+
+    /**
+     * Writes the first stripe's header up to and including its SOS segment, with the full height
+     * and a restart interval.
+     */
+    private static void writeHead(OutputStream out, byte[] first, Header header, int height,
+                                  int restartInterval) throws IOException {
+        byte[] head = Arrays.copyOf(first, header.sosStart);
+        head[header.heightOffset] = (byte) (height >> 8);
+        head[header.heightOffset + 1] = (byte) height;
+        out.write(head);
+        out.write(new byte[]{(byte) 0xFF, (byte) 0xDD, 0, 4, (byte) (restartInterval >> 8), (byte) restartInterval});
+        out.write(first, header.sosStart, header.dataStart - header.sosStart);
+    }
+
+    /**
+     * Writes the entropy-coded data of stripe {@code index}, after a restart marker unless it is the first.
+     */
+    private static void writeData(OutputStream out, byte[] stripe, Header header, int index) throws IOException {
+        if (index > 0) {
+            out.write(0xFF);
+            out.write(0xD0 + (index - 1) % 8);
+        }
+        // Entropy-coded data runs from the end of the SOS segment to the EOI marker
+        out.write(stripe, header.dataStart, stripe.length - 2 - header.dataStart);
+    }
+
+    /**
+     * Joins stripes into {@code out} as they arrive, top to bottom, so that only the stripe being
+     * written is held rather than all of them. Unlike {@link #encode}, a stripe whose tables do not
+     * match is only found once earlier stripes have been written, so the output is then unusable.
+     */
+    static final class StripeWriter {
+        private final OutputStream out;
+        private final int height;
+        private final int stripeHeight;
+        private byte[] first;
+        private Header header;
+        private int count;
+
+        /**
+         * @param out          Receives the JPEG; it is not closed
+         * @param height       The height of the whole image
+         * @param stripeHeight The height of every stripe but the last, a multiple of 16
+         */
+        StripeWriter(OutputStream out, int height, int stripeHeight) {
+            this.out = out;
+            this.height = height;
+            this.stripeHeight = stripeHeight;
+        }
+
+        /**
+         * Writes the next stripe, a complete JPEG of the image's width.
+         */
+        void write(byte[] stripe) throws IOException {
+            Header stripeHeader = Header.parse(stripe);
+            if (count == 0) {
+                writeHead(out, stripe, stripeHeader, height, restartInterval(stripeHeader, stripeHeight));
+                first = stripe;
+                header = stripeHeader;
+            } else if (!header.sameTables(first, stripeHeader, stripe)) {
+                throw new IOException("Stripe " + count + " was encoded with different tables");
+            }
+            writeData(out, stripe, stripeHeader, count++);
+        }
+
+        /**
+         * Ends the JPEG once every stripe has been written.
+         */
+        void finish() throws IOException {
+            if (count != (height + stripeHeight - 1) / stripeHeight) {
+                throw new IOException("Wrote " + count + " stripes of an image of " + height + " rows");
+            }
+            out.write(0xFF);
+            out.write(0xD9);
+        }
+    }
+
+    /**
+     * Encoded stripes that have been checked to share their tables and can be written as one JPEG.
+     */
+    static final class JoinedJpeg {
+        private final List<byte[]> stripes;
+        private final List<Header> headers;
+        private final int height;
+        private final int restartInterval;
+
+        private JoinedJpeg(List<byte[]> stripes, List<Header> headers, int height, int restartInterval) {
+            this.stripes = stripes;
+            this.headers = headers;
+            this.height = height;
+            this.restartInterval = restartInterval;
+        }
+
+        /**
+         * Writes the JPEG to {@code out}, which is not closed.
+         */
+        void writeTo(OutputStream out) throws IOException {
+            if (stripes.size() == 1) {
+                out.write(stripes.get(0));
+                return;
+            }
+
+            writeHead(out, stripes.get(0), headers.get(0), height, restartInterval);
+            for (int i = 0; i < stripes.size(); i++) {
+                writeData(out, stripes.get(i), headers.get(i), i);
+            }
+
+            out.write(0xFF);
+            out.write(0xD9);
+        }
+    }
+
+    /**
+     * The parts of a baseline JPEG header the join needs.
+     */
+    private record Header(int heightOffset, int sosStart, int dataStart, int mcusPerRow, int mcuHeight) {
+
+        static Header parse(byte[] jpeg) throws IOException {
+            if (jpeg.length < 4 || (jpeg[0] & 0xFF) != 0xFF || (jpeg[1] & 0xFF) != 0xD8
+                    || (jpeg[jpeg.length - 2] & 0xFF) != 0xFF || (jpeg[jpeg.length - 1] & 0xFF) != 0xD9) {
+                throw new IOException("Not a complete JPEG stream");
+            }
+
+            int heightOffset = -1;
+            int mcusPerRow = 0;
+            int mcuHeight = 0;
+            int pos = 2;
+            while (pos + 4 <= jpeg.length) {
+                if ((jpeg[pos] & 0xFF) != 0xFF) {
+                    throw new IOException("Malformed JPEG header at " + pos);
+                }
+                int marker = jpeg[pos + 1] & 0xFF;
+                int length = ((jpeg[pos + 2] & 0xFF) << 8) | (jpeg[pos + 3] & 0xFF);
+
+                if (marker == 0xC0) {
+                    heightOffset = pos + 5;
+                    int width = ((jpeg[pos + 7] & 0xFF) << 8) | (jpeg[pos + 8] & 0xFF);
+                    int components = jpeg[pos + 9] & 0xFF;
+                    int maxH = 1;
+                    int maxV = 1;
+                    for (int c = 0; c < components; c++) {
+                        int sampling = jpeg[pos + 11 + c * 3] & 0xFF;
+                        maxH = Math.max(maxH, sampling >> 4);
+                        maxV = Math.max(maxV, sampling & 0x0F);
+                    }
+                    // A single-component scan is not interleaved, so its MCU is one 8x8 block
+                    int mcuWidth = components == 1 ? 8 : 8 * maxH;
+                    mcuHeight = components == 1 ? 8 : 8 * maxV;
+                    mcusPerRow = (width + mcuWidth - 1) / mcuWidth;
+                } else if (marker == 0xC1 || marker == 0xC2 || marker == 0xDD) {
+                    throw new IOException("Only baseline JPEGs without restart intervals can be joined");
+                } else if (marker == 0xDA) {
+                    if (heightOffset < 0) {
+                        throw new IOException("JPEG has no baseline frame header");
+                    }
+                    return new Header(heightOffset, pos, pos + 2 + length, mcusPerRow, mcuHeight);
+                }
+                pos += 2 + length;
+            }
+            throw new IOException("JPEG has no scan");
+        }
+
+        /**
+         * Returns whether another stripe's header matches this one in everything but its height.
+         */
+        boolean sameTables(byte[] jpeg, Header other, byte[] otherJpeg) {
+            if (other.dataStart != dataStart || other.heightOffset != heightOffset) {
+                return false;
+            }
+            return Arrays.equals(jpeg, 0, heightOffset, otherJpeg, 0, heightOffset)
+                    && Arrays.equals(jpeg, heightOffset + 2, dataStart, otherJpeg, heightOffset + 2, dataStart);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.process.util;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The Vector API versions of {@link WatermarkCompositor#blendRow} and
+ * {@link WatermarkCompositor#blendBytes}. Only this class refers to {@code jdk.incubator.vector}, so
+ * it is never loaded when the module is not enabled.
+ */
+final class VectorBlend {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    // Bytes are widened to shorts for the multiply, so load half a register of bytes at a time
+    private static final VectorSpecies<Short> SHORT_SPECIES = ShortVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Byte> BYTE_SPECIES = VectorSpecies.of(byte.class,
+            VectorShape.forBitSize(SHORT_SPECIES.vectorBitSize() / 2));
+
+    private VectorBlend() {
+    }
+
+    static void blendRow(int[] src, int srcOffset, int[] dst, int dstOffset, int length) {
+        IntVector opaque = IntVector.broadcast(SPECIES, 255);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            IntVector s = IntVector.fromArray(SPECIES, src, srcOffset + i);
+            IntVector alpha = s.lanewise(VectorOperators.LSHR, 24);
+            // Most of a mask is transparent; leave those pixels untouched
+            if (!alpha.compare(VectorOperators.NE, 0).anyTrue()) {
+                continue;
+            }
+
+            IntVector d = IntVector.fromArray(SPECIES, dst, dstOffset + i);
+            IntVector inverse = opaque.sub(alpha);
+            IntVector r = channel(s, 16).add(div255(channel(d, 16).mul(inverse)));
+            IntVector g = channel(s, 8).add(div255(channel(d, 8).mul(inverse)));
+            IntVector b = channel(s, 0).add(div255(channel(d, 0).mul(inverse)));
+            r.lanewise(VectorOperators.LSHL, 16)
+                    .or(g.lanewise(VectorOperators.LSHL, 8))
+                    .or(b)
+                    .intoArray(dst, dstOffset + i);
+        }
+
+        WatermarkCompositor.blendRow(src, srcOffset + i, dst, dstOffset + i, length - i);
+    }
+
+    static void blendBytes(byte[] color, byte[] inverseAlpha, int srcOffset, byte[] dst, int dstOffset, int length) {
+        int i = 0;
+        for (int bound = BYTE_SPECIES.loopBound(length); i < bound; i += BYTE_SPECIES.length()) {
+            ByteVector inverseBytes = ByteVector.fromArray(BYTE_SPECIES, inverseAlpha, srcOffset + i);
+            if (inverseBytes.compare(VectorOperators.EQ, (byte) 0xFF).allTrue()) {
+                continue;
+            }
+
+            // Products of two bytes fit in an unsigned short; LSHR treats the lanes as unsigned
+            ShortVector inverse = widen(inverseBytes);
+            ShortVector d = widen(ByteVector.fromArray(BYTE_SPECIES, dst, dstOffset + i));
+            ShortVector c = widen(ByteVector.fromArray(BYTE_SPECIES, color, srcOffset + i));
+            ShortVector rounded = d.mul(inverse).add((short) 128);
+            ShortVector blended = c.add(rounded.add(rounded.lanewise(VectorOperators.LSHR, 8))
+                    .lanewise(VectorOperators.LSHR, 8));
+            ((ByteVector) blended.convertShape(VectorOperators.S2B, BYTE_SPECIES, 0)).intoArray(dst, dstOffset + i);
+        }
+
+        WatermarkCompositor.blendBytes(color, inverseAlpha, srcOffset + i, dst, dstOffset + i, length - i);
+    }
+
+    private static ShortVector widen(ByteVector bytes) {
+        return ((ShortVector) bytes.convertShape(VectorOperators.B2S, SHORT_SPECIES, 0)).and((short) 0xFF);
+    }
+
+    private static IntVector channel(IntVector pixels, int shift) {
+        return pixels.lanewise(VectorOperators.LSHR, shift).and(0xFF);
+    }
+
+    private static IntVector div255(IntVector value) {
+        IntVector rounded = value.add(128);
+        return rounded.add(rounded.lanewise(VectorOperators.LSHR, 8)).lanewise(VectorOperators.LSHR, 8);
+    }
+}
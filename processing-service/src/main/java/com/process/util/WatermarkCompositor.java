@@ -0,0 +1,180 @@
+package com.process.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.util.logging.Logger;
+
+/**
+ * Blends a {@link WatermarkMask} straight into an opaque image's pixel array with the Vector API,
+ * row by row and without allocating, instead of going through Java2D.
+ * <p>
+ * The vector loops need the {@code jdk.incubator.vector} module. Without it, Java2D's native loops
+ * are faster than the scalar loops here, so {@link #composite(BufferedImage, WatermarkMask, int, int)}
+ * declines and the caller draws the mask with Java2D. The scalar loops finish the pixels left over
+ * after the last full vector of each row.
+ */
+public final class WatermarkCompositor {
+    private static final Logger logger = Logger.getLogger(WatermarkCompositor.class.getName());
+    private static final boolean VECTOR_ENABLED = isVectorEnabled();
+
+    private WatermarkCompositor() {
+    }
+
+    /**
+     * Composites the mask so that the text's baseline starts at ({@code x}, {@code y}).
+     *
+     * @param target An opaque image
+     * @param mask   The rendered watermark
+     * @param x      The x coordinate of the text origin
+     * @param y      The y coordinate of the baseline
+     * @return false if the image's pixel layout is not supported and the caller must draw the mask itself
+     */
+    public static boolean composite(BufferedImage target, WatermarkMask mask, int x, int y) {
+        return VECTOR_ENABLED && composite(target, mask, x, y, 0, target.getHeight(), true);
+    }
+
+    /**
+     * Composites only the part of the mask that falls within rows {@code [minRow, maxRow)} of the
+     * image, so that horizontal stripes can be watermarked independently.
+     *
+     * @return false if the caller must draw the mask itself
+     */
+    public static boolean composite(BufferedImage target, WatermarkMask mask, int x, int y, int minRow, int maxRow) {
+        return VECTOR_ENABLED && composite(target, mask, x, y, minRow, maxRow, true);
+    }
+
+    /**
+     * Composites the mask with the given row blender; see {@link #composite(BufferedImage, WatermarkMask, int, int)}.
+     *
+     * @param useVector Whether to blend with the Vector API rather than scalar loops; requires {@code jdk.incubator.vector}
+     */
+    public static boolean composite(BufferedImage target, WatermarkMask mask, int x, int y, boolean useVector) {
+        return composite(target, mask, x, y, 0, target.getHeight(), useVector);
+    }
+
+    private static boolean composite(BufferedImage target, WatermarkMask mask, int x, int y,
+                                     int minRow, int maxRow, boolean useVector) {
+        int type = target.getType();
+        if (type != BufferedImage.TYPE_INT_RGB && type != BufferedImage.TYPE_3BYTE_BGR) {
+            return false;
+        }
+
+        BufferedImage maskImage = mask.getImage();
+        int left = x - mask.getOriginX();
+        int top = y - mask.getOriginY();
+
+        // Clip the mask to the image
+        int fromX = Math.max(0, -left);
+        int fromY = Math.max(0, Math.max(0, minRow) - top);
+        int toX = Math.min(maskImage.getWidth(), target.getWidth() - left);
+        int toY = Math.min(maskImage.getHeight(), Math.min(target.getHeight(), maxRow) - top);
+        if (fromX >= toX || fromY >= toY) {
+            return true;
+        }
+
+        int[] maskPixels = ((DataBufferInt) maskImage.getRaster().getDataBuffer()).getData();
+        int maskStride = maskImage.getWidth();
+        int length = toX - fromX;
+        Raster raster = target.getRaster();
+
+        if (type == BufferedImage.TYPE_INT_RGB) {
+            int[] pixels = ((DataBufferInt) raster.getDataBuffer()).getData();
+            int stride = target.getWidth();
+            for (int row = fromY; row < toY; row++) {
+                int srcOffset = row * maskStride + fromX;
+                int dstOffset = (top + row) * stride + left + fromX;
+                if (useVector) {
+                    VectorBlend.blendRow(maskPixels, srcOffset, pixels, dstOffset, length);
+                } else {
+                    blendRow(maskPixels, srcOffset, pixels, dstOffset, length);
+                }
+            }
+        } else {
+            byte[] pixels = ((DataBufferByte) raster.getDataBuffer()).getData();
+            int stride = target.getWidth() * 3;
+            byte[][] planes = useVector ? mask.getBgrPlanes() : null;
+            for (int row = fromY; row < toY; row++) {
+                int srcOffset = row * maskStride + fromX;
+                int dstOffset = (top + row) * stride + (left + fromX) * 3;
+                if (useVector) {
+                    VectorBlend.blendBytes(planes[0], planes[1], srcOffset * 3, pixels, dstOffset, length * 3);
+                } else {
+                    blendRowBgr(maskPixels, srcOffset, pixels, dstOffset, length);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Blends premultiplied ARGB source pixels over opaque RGB destination pixels.
+     */
+    static void blendRow(int[] src, int srcOffset, int[] dst, int dstOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            int s = src[srcOffset + i];
+            int alpha = s >>> 24;
+            if (alpha == 0) {
+                continue;
+            }
+            int d = dst[dstOffset + i];
+            int inverse = 255 - alpha;
+            int r = ((s >> 16) & 0xFF) + div255(((d >> 16) & 0xFF) * inverse);
+            int g = ((s >> 8) & 0xFF) + div255(((d >> 8) & 0xFF) * inverse);
+            int b = (s & 0xFF) + div255((d & 0xFF) * inverse);
+            dst[dstOffset + i] = (r << 16) | (g << 8) | b;
+        }
+    }
+
+    /**
+     * Blends premultiplied ARGB source pixels over opaque pixels stored as blue, green, red bytes.
+     */
+    static void blendRowBgr(int[] src, int srcOffset, byte[] dst, int dstOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            int s = src[srcOffset + i];
+            int alpha = s >>> 24;
+            if (alpha == 0) {
+                continue;
+            }
+            int inverse = 255 - alpha;
+            int p = dstOffset + i * 3;
+            dst[p] = (byte) ((s & 0xFF) + div255((dst[p] & 0xFF) * inverse));
+            dst[p + 1] = (byte) (((s >> 8) & 0xFF) + div255((dst[p + 1] & 0xFF) * inverse));
+            dst[p + 2] = (byte) (((s >> 16) & 0xFF) + div255((dst[p + 2] & 0xFF) * inverse));
+        }
+    }
+
+    /**
+     * Blends bytes of premultiplied colour over opaque bytes, given the inverse alpha of each byte.
+     */
+    static void blendBytes(byte[] color, byte[] inverseAlpha, int srcOffset, byte[] dst, int dstOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            int inverse = inverseAlpha[srcOffset + i] & 0xFF;
+            if (inverse == 255) {
+                continue;
+            }
+            int p = dstOffset + i;
+            dst[p] = (byte) ((color[srcOffset + i] & 0xFF) + div255((dst[p] & 0xFF) * inverse));
+        }
+    }
+
+    /**
+     * Divides a product of two bytes by 255, rounding to nearest, without a division.
+     */
+    static int div255(int value) {
+        value += 128;
+        return (value + (value >>> 8)) >>> 8;
+    }
+
+    private static boolean isVectorEnabled() {
+        if ("false".equalsIgnoreCase(System.getenv("WATERMARK_VECTOR"))) {
+            return false;
+        }
+        boolean present = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+        if (!present) {
+            logger.info("jdk.incubator.vector is not enabled, drawing watermarks with Java2D");
+        }
+        return present;
+    }
+}
@@ -0,0 +1,145 @@
+package com.process.util;
+
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * A watermark text rendered once, with its dark outline and light fill, into a premultiplied ARGB
+ * image that can be drawn onto any number of photos in a single blit.
+ */
+public final class WatermarkMask {
+    // The outline is drawn at every offset up to this many pixels from the text
+    private static final int OUTLINE = 2;
+    private static final Color OUTLINE_COLOR = new Color(0, 0, 0, 180);
+    private static final Color FILL_COLOR = new Color(255, 255, 255, 180);
+
+    private final BufferedImage image;
+    private final int originX;
+    private final int originY;
+    private final int textWidth;
+    private final int textHeight;
+    private volatile byte[][] bgrPlanes;
+
+    private WatermarkMask(BufferedImage image, int originX, int originY, int textWidth, int textHeight) {
+        this.image = image;
+        this.originX = originX;
+        this.originY = originY;
+        this.textWidth = textWidth;
+        this.textHeight = textHeight;
+    }
+
+    /**
+     * Renders {@code text} in {@code font}. Compositing the mask over a photo gives the same result
+     * as drawing each outline offset and then the fill onto the photo directly.
+     *
+     * @param text The watermark text
+     * @param font The font, already at its final size
+     * @return The rendered mask
+     */
+    public static WatermarkMask render(String text, Font font) {
+        // Measure with the same default rendering hints the mask is drawn with
+        BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D measure = scratch.createGraphics();
+        measure.setFont(font);
+        FontMetrics fontMetrics = measure.getFontMetrics();
+        FontRenderContext renderContext = measure.getFontRenderContext();
+        measure.dispose();
+
+        GlyphVector glyphs = font.createGlyphVector(renderContext, text);
+        Rectangle bounds = glyphs.getPixelBounds(renderContext, 0, 0);
+
+        int width = Math.max(1, bounds.width + 2 * OUTLINE);
+        int height = Math.max(1, bounds.height + 2 * OUTLINE);
+        int originX = OUTLINE - bounds.x;
+        int originY = OUTLINE - bounds.y;
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setFont(font);
+
+        g2d.setColor(OUTLINE_COLOR);
+        for (int i = -OUTLINE; i <= OUTLINE; i++) {
+            for (int j = -OUTLINE; j <= OUTLINE; j++) {
+                if (i != 0 || j != 0) {
+                    g2d.drawString(text, originX + i, originY + j);
+                }
+            }
+        }
+
+        g2d.setColor(FILL_COLOR);
+        g2d.drawString(text, originX, originY);
+        g2d.dispose();
+
+        return new WatermarkMask(image, originX, originY, fontMetrics.stringWidth(text), fontMetrics.getHeight());
+    }
+
+    /**
+     * Draws the mask so that the text's baseline starts at ({@code x}, {@code y}).
+     *
+     * @param g2d The graphics of the target image
+     * @param x   The x coordinate of the text origin
+     * @param y   The y coordinate of the baseline
+     */
+    public void drawAt(Graphics2D g2d, int x, int y) {
+        g2d.drawImage(image, x - originX, y - originY, null);
+    }
+
+    /**
+     * Returns the mask split into two byte planes laid out like a {@code TYPE_3BYTE_BGR} raster: the
+     * premultiplied blue, green and red of each pixel, and its inverse alpha repeated for each of the
+     * three bytes. Blending a BGR row then becomes the same operation on every byte. The planes are
+     * built on first use.
+     *
+     * @return The colour plane and the inverse alpha plane, each {@code width * height * 3} bytes
+     */
+    public byte[][] getBgrPlanes() {
+        byte[][] planes = bgrPlanes;
+        if (planes == null) {
+            int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            byte[] color = new byte[pixels.length * 3];
+            byte[] inverseAlpha = new byte[pixels.length * 3];
+            for (int i = 0; i < pixels.length; i++) {
+                int pixel = pixels[i];
+                byte inverse = (byte) (255 - (pixel >>> 24));
+                color[i * 3] = (byte) pixel;
+                color[i * 3 + 1] = (byte) (pixel >> 8);
+                color[i * 3 + 2] = (byte) (pixel >> 16);
+                inverseAlpha[i * 3] = inverse;
+                inverseAlpha[i * 3 + 1] = inverse;
+                inverseAlpha[i * 3 + 2] = inverse;
+            }
+            planes = new byte[][]{color, inverseAlpha};
+            bgrPlanes = planes;
+        }
+        return planes;
+    }
+
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    public int getOriginX() {
+        return originX;
+    }
+
+    public int getOriginY() {
+        return originY;
+    }
+
+    /**
+     * @return The advance width of the text, as used to centre it
+     */
+    public int getTextWidth() {
+        return textWidth;
+    }
+
+    /**
+     * @return The line height of the font, as used to centre the text
+     */
+    public int getTextHeight() {
+        return textHeight;
+    }
+}
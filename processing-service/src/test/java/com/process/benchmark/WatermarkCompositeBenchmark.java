@@ -0,0 +1,85 @@
+package com.process.benchmark;
+
+import com.process.util.ImageProcessor;
+import com.process.util.WatermarkCompositor;
+import com.process.util.WatermarkMask;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares blending the watermark mask of a 4000x3000 photo with Java2D against the scalar and Vector API
+ * loops of {@link WatermarkCompositor}. JPEGs decode to {@code TYPE_3BYTE_BGR}.
+ * Run with {@code MAVEN_OPTS=--add-modules=jdk.incubator.vector mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.process.benchmark.WatermarkCompositeBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Djava.awt.headless=true"})
+@State(Scope.Benchmark)
+public class WatermarkCompositeBenchmark {
+
+    @Param({"TYPE_INT_RGB", "TYPE_3BYTE_BGR"})
+    public String imageType;
+
+    private BufferedImage image;
+    private WatermarkMask mask;
+    private int x;
+    private int y;
+
+    @Setup
+    public void setup() throws Exception {
+        int type = BufferedImage.class.getField(imageType).getInt(null);
+        image = new BufferedImage(4000, 3000, type);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setPaint(new java.awt.GradientPaint(0, 0, java.awt.Color.ORANGE, 4000, 3000, java.awt.Color.BLUE));
+        g2d.fillRect(0, 0, 4000, 3000);
+        g2d.dispose();
+
+        mask = ImageProcessor.getWatermarkMask("Jane Doe - 2024-05-01", 4000 / 30);
+        x = (image.getWidth() - mask.getTextWidth()) / 2;
+        y = (image.getHeight() + mask.getTextHeight() / 2) / 2;
+    }
+
+    @Benchmark
+    public BufferedImage java2d() {
+        Graphics2D g2d = image.createGraphics();
+        mask.drawAt(g2d, x, y);
+        g2d.dispose();
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage scalar() {
+        WatermarkCompositor.composite(image, mask, x, y, false);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage vector() {
+        WatermarkCompositor.composite(image, mask, x, y, true);
+        return image;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(WatermarkCompositeBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
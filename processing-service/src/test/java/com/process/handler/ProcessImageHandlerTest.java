@@ -0,0 +1,248 @@
+package com.process.handler;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+import com.process.service.S3Service;
+import com.process.util.ImageTooLargeException;
+import com.process.util.MemoryPlanner;
+import com.process.util.ProcessImage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
+import software.amazon.awssdk.services.sqs.model.SqsException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ProcessImageHandlerTest {
+    private static final String STANDARD_QUEUE = "arn:aws:sqs:us-east-1:123456789012:image-queue";
+    private static final String FIFO_QUEUE = "arn:aws:sqs:us-east-1:123456789012:image-queue.fifo";
+    private static final String HIGH_MEMORY_QUEUE_URL = "https://sqs.us-east-1.amazonaws.com/123456789012/high-memory";
+
+    @Mock
+    private S3Service s3Service;
+
+    @Mock
+    private ProcessImage processImage;
+
+    @Mock
+    private SqsClient sqsClient;
+
+    @Mock
+    private Context context;
+
+    private ProcessImageHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        handler = new ProcessImageHandler(s3Service, processImage, sqsClient, HIGH_MEMORY_QUEUE_URL);
+        when(s3Service.objectExists(anyString(), anyString())).thenReturn(true);
+        // Two records at a time at 128 MB each
+        lenient().when(context.getMemoryLimitInMB()).thenReturn(256);
+    }
+
+    private static SQSEvent.SQSMessage message(String queueArn, String key, String group) {
+        SQSEvent.SQSMessage message = new SQSEvent.SQSMessage();
+        message.setMessageId("id-" + key);
+        message.setEventSourceArn(queueArn);
+        message.setBody("{\"bucket\":\"staging\",\"key\":\"" + key + "\",\"userId\":\"user123\"}");
+        message.setAttributes(group != null
+                ? Map.of("MessageGroupId", group, "ApproximateReceiveCount", "1")
+                : Map.of("ApproximateReceiveCount", "1"));
+        return message;
+    }
+
+    private static SQSEvent event(SQSEvent.SQSMessage... messages) {
+        SQSEvent event = new SQSEvent();
+        event.setRecords(List.of(messages));
+        return event;
+    }
+
+    private static List<String> failedIds(SQSBatchResponse response) {
+        List<String> ids = new ArrayList<>();
+        for (SQSBatchResponse.BatchItemFailure failure : response.getBatchItemFailures()) {
+            ids.add(failure.getItemIdentifier());
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    private void whenProcessing(Answer<Void> answer) {
+        doAnswer(answer).when(processImage).processImage(any(), anyString(), anyString(), anyString(),
+                anyString(), anyString(), anyString(), anyString(), anyInt(), any());
+    }
+
+    private void verifyProcessed(String key) {
+        verify(processImage).processImage(any(), eq("staging"), eq(key), anyString(),
+                anyString(), anyString(), anyString(), anyString(), anyInt(), any());
+    }
+
+    private void verifyNotProcessed(String key) {
+        verify(processImage, never()).processImage(any(), anyString(), eq(key), anyString(),
+                anyString(), anyString(), anyString(), anyString(), anyInt(), any());
+    }
+
+    @Test
+    void testMixedBatchReportsOnlyFailedMessages() {
+        // Setup - a message without a key cannot succeed on redelivery, so it counts as handled
+        whenProcessing(invocation -> {
+            if (invocation.getArgument(2).equals("b")) {
+                throw new IllegalStateException("Processed bucket unavailable");
+            }
+            return null;
+        });
+        SQSEvent.SQSMessage missingKey = message(STANDARD_QUEUE, "d", null);
+        missingKey.setBody("{\"userId\":\"user123\"}");
+
+        // Execute
+        SQSBatchResponse response = handler.handleRequest(event(message(STANDARD_QUEUE, "a", null),
+                message(STANDARD_QUEUE, "b", null), message(STANDARD_QUEUE, "c", null), missingKey), context);
+
+        // Verify
+        assertEquals(List.of("id-b"), failedIds(response));
+        verifyProcessed("a");
+        verifyProcessed("c");
+    }
+
+    @Test
+    void testFifoGroupReportsFailedMessageAndTheRestOfItsGroup() {
+        // Setup
+        whenProcessing(invocation -> {
+            if (invocation.getArgument(2).equals("g1-2")) {
+                throw new IllegalStateException("Processed bucket unavailable");
+            }
+            return null;
+        });
+
+        // Execute
+        SQSBatchResponse response = handler.handleRequest(event(message(FIFO_QUEUE, "g1-1", "g1"),
+                message(FIFO_QUEUE, "g2-1", "g2"), message(FIFO_QUEUE, "g1-2", "g1"),
+                message(FIFO_QUEUE, "g1-3", "g1")), context);
+
+        // Verify - the third message is not processed ahead of the second
+        assertEquals(List.of("id-g1-2", "id-g1-3"), failedIds(response));
+        verifyProcessed("g1-1");
+        verifyProcessed("g2-1");
+        verifyNotProcessed("g1-3");
+    }
+
+    @Test
+    void testErrorMidGroupReportsTheRestOfItsGroup() {
+        // Setup - an Error is not caught per record, so the group handler must still report it
+        whenProcessing(invocation -> {
+            if (invocation.getArgument(2).equals("g1-2")) {
+                throw new OutOfMemoryError("Java heap space");
+            }
+            return null;
+        });
+
+        // Execute
+        SQSBatchResponse response = handler.handleRequest(event(message(FIFO_QUEUE, "g1-1", "g1"),
+                message(FIFO_QUEUE, "g1-2", "g1"), message(FIFO_QUEUE, "g1-3", "g1"),
+                message(FIFO_QUEUE, "g2-1", "g2")), context);
+
+        // Verify
+        assertEquals(List.of("id-g1-2", "id-g1-3"), failedIds(response));
+        verifyProcessed("g2-1");
+        verifyNotProcessed("g1-3");
+    }
+
+    @Test
+    void testImageTooLargeIsReroutedAndFailedRerouteIsReported() {
+        // Setup
+        whenProcessing(invocation -> {
+            throw new ImageTooLargeException(MemoryPlanner.Plan.REROUTE, 20000, 15000, 1L << 32, 1L << 30);
+        });
+        when(sqsClient.sendMessage(any(SendMessageRequest.class)))
+                .thenReturn(null)
+                .thenThrow(SqsException.builder().message("Queue unavailable").build());
+
+        // Execute - one at a time, so the first send succeeds and the second fails
+        SQSBatchResponse rerouted = handler.handleRequest(event(message(STANDARD_QUEUE, "a", null)), context);
+        SQSBatchResponse failed = handler.handleRequest(event(message(STANDARD_QUEUE, "b", null)), context);
+
+        // Verify
+        assertEquals(List.of(), failedIds(rerouted));
+        assertEquals(List.of("id-b"), failedIds(failed));
+        verify(sqsClient, times(2)).sendMessage(argThat((SendMessageRequest request) ->
+                request.queueUrl().equals(HIGH_MEMORY_QUEUE_URL) && request.messageBody().contains("\"key\":\"")));
+    }
+
+    @Test
+    void testRecordsRunConcurrentlyWithinPermits() {
+        // Setup - the first two records wait for each other, so they can only finish if they overlap
+        CountDownLatch overlapping = new CountDownLatch(2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        whenProcessing(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                overlapping.countDown();
+                assertTrue(overlapping.await(10, TimeUnit.SECONDS), "Records did not run concurrently");
+                Thread.sleep(20);
+            } finally {
+                running.decrementAndGet();
+            }
+            return null;
+        });
+
+        // Execute
+        SQSBatchResponse response = handler.handleRequest(event(message(STANDARD_QUEUE, "a", null),
+                message(STANDARD_QUEUE, "b", null), message(STANDARD_QUEUE, "c", null),
+                message(STANDARD_QUEUE, "d", null), message(STANDARD_QUEUE, "e", null),
+                message(STANDARD_QUEUE, "f", null)), context);
+
+        // Verify - 256 MB allows two records at once
+        assertEquals(List.of(), failedIds(response));
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    void testGroupsOverlapButEachGroupRunsInOrder() {
+        // Setup - group g1's first message waits until g2 has processed a message
+        CountDownLatch g2Started = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        whenProcessing(invocation -> {
+            String key = invocation.getArgument(2);
+            if (key.equals("g1-1")) {
+                assertTrue(g2Started.await(10, TimeUnit.SECONDS), "Groups did not run concurrently");
+            }
+            order.add(key);
+            if (key.startsWith("g2")) {
+                g2Started.countDown();
+            }
+            return null;
+        });
+
+        // Execute
+        SQSBatchResponse response = handler.handleRequest(event(message(FIFO_QUEUE, "g1-1", "g1"),
+                message(FIFO_QUEUE, "g1-2", "g1"), message(FIFO_QUEUE, "g2-1", "g2"),
+                message(FIFO_QUEUE, "g1-3", "g1"), message(FIFO_QUEUE, "g2-2", "g2")), context);
+
+        // Verify
+        assertEquals(List.of(), failedIds(response));
+        assertEquals(List.of("g1-1", "g1-2", "g1-3"), order.stream().filter(key -> key.startsWith("g1")).toList());
+        assertEquals(List.of("g2-1", "g2-2"), order.stream().filter(key -> key.startsWith("g2")).toList());
+        // g2 finished its first message while g1 was still waiting on its first
+        assertTrue(order.indexOf("g2-1") < order.indexOf("g1-1"));
+    }
+}
@@ -0,0 +1,230 @@
+package com.process.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class S3UploadOutputStreamTest {
+    private static final int PART_SIZE = S3UploadOutputStream.PART_SIZE;
+
+    @Mock
+    private S3Client s3Client;
+
+    // The bytes of each part sent, by part number
+    private final Map<Integer, byte[]> sentParts = new ConcurrentHashMap<>();
+
+    private S3UploadOutputStream newStream() {
+        return new S3UploadOutputStream(s3Client, "bucket", "key", "image/jpeg");
+    }
+
+    private static byte[] data(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] read(RequestBody body) throws IOException {
+        try (InputStream in = body.contentStreamProvider().newStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    private void stubMultipartUpload() {
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(invocation -> {
+            UploadPartRequest request = invocation.getArgument(0);
+            byte[] part = read(invocation.getArgument(1));
+            assertEquals(request.contentLength().longValue(), part.length);
+            sentParts.put(request.partNumber(), part);
+            return UploadPartResponse.builder().eTag("etag-" + request.partNumber()).build();
+        });
+    }
+
+    private byte[] joinedParts() {
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        for (int partNumber = 1; partNumber <= sentParts.size(); partNumber++) {
+            joined.writeBytes(sentParts.get(partNumber));
+        }
+        return joined.toByteArray();
+    }
+
+    private byte[] verifySinglePut() throws IOException {
+        ArgumentCaptor<PutObjectRequest> request = ArgumentCaptor.forClass(PutObjectRequest.class);
+        ArgumentCaptor<RequestBody> body = ArgumentCaptor.forClass(RequestBody.class);
+        verify(s3Client).putObject(request.capture(), body.capture());
+        assertEquals("bucket", request.getValue().bucket());
+        assertEquals("key", request.getValue().key());
+        assertEquals("image/jpeg", request.getValue().contentType());
+        verify(s3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+        return read(body.getValue());
+    }
+
+    @Test
+    void testCloseWithoutDataPutsEmptyObject() throws IOException {
+        // Execute
+        S3UploadOutputStream stream = newStream();
+        stream.close();
+
+        // Verify
+        assertEquals(0, verifySinglePut().length);
+        assertEquals(0, stream.getBytesWritten());
+    }
+
+    @Test
+    void testDataFillingOnePartIsPutAsSingleObject() throws IOException {
+        // Setup
+        byte[] data = data(PART_SIZE);
+
+        // Execute
+        S3UploadOutputStream stream = newStream();
+        stream.write(data);
+        stream.close();
+
+        // Verify
+        assertArrayEquals(data, verifySinglePut());
+        assertEquals(PART_SIZE, stream.getBytesWritten());
+    }
+
+    @Test
+    void testByteOverOnePartStartsMultipartUpload() throws IOException {
+        // Setup
+        stubMultipartUpload();
+        byte[] data = data(PART_SIZE + 1);
+
+        // Execute
+        S3UploadOutputStream stream = newStream();
+        stream.write(data);
+        stream.close();
+
+        // Verify
+        assertEquals(2, sentParts.size());
+        assertEquals(PART_SIZE, sentParts.get(1).length);
+        assertEquals(1, sentParts.get(2).length);
+        assertArrayEquals(data, joinedParts());
+        verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    }
+
+    @Test
+    void testMultipartUploadCompletesPartsInOrder() throws IOException {
+        // Setup - written in uneven pieces, so chunks and parts are filled across writes
+        stubMultipartUpload();
+        byte[] data = data(3 * PART_SIZE + 12345);
+
+        // Execute
+        S3UploadOutputStream stream = newStream();
+        for (int off = 0; off < data.length; off += 100_003) {
+            stream.write(data, off, Math.min(100_003, data.length - off));
+        }
+        stream.close();
+        // Closing again does nothing
+        stream.close();
+
+        // Verify
+        assertArrayEquals(data, joinedParts());
+        ArgumentCaptor<CompleteMultipartUploadRequest> complete = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3Client).completeMultipartUpload(complete.capture());
+        assertEquals("upload-1", complete.getValue().uploadId());
+        assertEquals(Arrays.asList(1, 2, 3, 4), complete.getValue().multipartUpload().parts().stream()
+                .map(CompletedPart::partNumber)
+                .toList());
+        assertEquals("etag-4", complete.getValue().multipartUpload().parts().get(3).eTag());
+        verify(s3Client, never()).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    }
+
+    @Test
+    void testAbortDiscardsMultipartUpload() throws IOException {
+        // Setup
+        stubMultipartUpload();
+
+        // Execute
+        S3UploadOutputStream stream = newStream();
+        stream.write(data(PART_SIZE + 1));
+        stream.abort();
+        stream.close();
+
+        // Verify
+        ArgumentCaptor<AbortMultipartUploadRequest> abort = ArgumentCaptor.forClass(AbortMultipartUploadRequest.class);
+        verify(s3Client).abortMultipartUpload(abort.capture());
+        assertEquals("upload-1", abort.getValue().uploadId());
+        verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+        assertThrows(IOException.class, () -> stream.write(1));
+    }
+
+    @Test
+    void testAbortOfSinglePartUploadSendsNothing() throws IOException {
+        // Execute
+        S3UploadOutputStream stream = newStream();
+        stream.write(data(100));
+        stream.abort();
+
+        // Verify
+        verifyNoInteractions(s3Client);
+    }
+
+    @Test
+    void testCloseAbortsUploadWhenClientFails() throws IOException {
+        // Setup - a client-side failure, such as a timeout, rather than an error response from S3
+        stubMultipartUpload();
+        when(s3Client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+                .thenThrow(SdkClientException.create("Unable to execute HTTP request"));
+
+        // Execute
+        S3UploadOutputStream stream = newStream();
+        stream.write(data(PART_SIZE + 1));
+        IOException e = assertThrows(IOException.class, stream::close);
+
+        // Verify
+        assertInstanceOf(SdkClientException.class, e.getCause());
+        verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    }
+
+    @Test
+    void testCloseAbortsUploadWhenPartFails() throws IOException {
+        // Setup
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenThrow(S3Exception.builder().message("Slow down").statusCode(503).build());
+
+        // Execute
+        S3UploadOutputStream stream = newStream();
+        stream.write(data(PART_SIZE + 1));
+        assertThrows(IOException.class, stream::close);
+
+        // Verify
+        verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void testClosePropagatesFailedPutAsIOException() {
+        // Setup
+        when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+                .thenThrow(SdkClientException.create("Unable to execute HTTP request"));
+
+        // Execute & Verify
+        S3UploadOutputStream stream = newStream();
+        IOException e = assertThrows(IOException.class, stream::close);
+        assertInstanceOf(SdkClientException.class, e.getCause());
+    }
+}
@@ -0,0 +1,189 @@
+package com.process.util;
+
+import com.process.model.Rendition;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static com.process.util.StripedJpegEncoderTest.assertSamePixels;
+import static com.process.util.StripedJpegEncoderTest.decode;
+import static com.process.util.StripedJpegEncoderTest.testImage;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageProcessorTest {
+    private static final int WIDTH = 2000;
+    private static final int HEIGHT = 1501;
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(image, format, out), "No " + format + " writer");
+        return out.toByteArray();
+    }
+
+    private static byte[] png(BufferedImage image) throws IOException {
+        return encode(image, "png");
+    }
+
+    private static BufferedImage openAndRead(ImageProcessor processor, byte[] data) throws IOException {
+        try (ImageSource source = processor.open(new ByteArrayInputStream(data), data.length)) {
+            assertFalse(source.isTiled());
+            return source.read();
+        }
+    }
+
+    private static Map<Rendition, ByteArrayOutputStream> renditionOutputs() {
+        Map<Rendition, ByteArrayOutputStream> outputs = new EnumMap<>(Rendition.class);
+        for (Rendition rendition : Rendition.values()) {
+            outputs.put(rendition, new ByteArrayOutputStream());
+        }
+        return outputs;
+    }
+
+    private static double meanDifference(BufferedImage expected, BufferedImage actual) {
+        long total = 0;
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                int a = expected.getRGB(x, y);
+                int b = actual.getRGB(x, y);
+                for (int shift = 0; shift < 24; shift += 8) {
+                    total += Math.abs((a >> shift & 0xff) - (b >> shift & 0xff));
+                }
+            }
+        }
+        return (double) total / ((long) expected.getWidth() * expected.getHeight() * 3);
+    }
+
+    @Test
+    void testTiledWatermarkMatchesInlineWatermark() throws IOException {
+        // Setup - a PNG decodes to a type that needs an opaque copy
+        byte[] png = png(testImage(WIDTH, HEIGHT, BufferedImage.TYPE_3BYTE_BGR));
+        ImageProcessor inline = new ImageProcessor(new MemoryPlanner(Long.MAX_VALUE, false));
+        ImageProcessor tiled = new ImageProcessor(new MemoryPlanner(20L * 1024 * 1024, false));
+        ByteArrayOutputStream inlineOut = new ByteArrayOutputStream();
+        ByteArrayOutputStream tiledOut = new ByteArrayOutputStream();
+        Map<Rendition, ByteArrayOutputStream> inlineRenditions = renditionOutputs();
+        Map<Rendition, ByteArrayOutputStream> tiledRenditions = renditionOutputs();
+
+        // Execute
+        Map<Rendition, Dimension> inlineDimensions;
+        try (ImageSource source = inline.open(new ByteArrayInputStream(png), png.length)) {
+            assertFalse(source.isTiled());
+            inlineDimensions = inline.addWatermark(source, "Jane", "Doe", inlineOut, inlineRenditions);
+        }
+        Map<Rendition, Dimension> tiledDimensions;
+        try (ImageSource source = tiled.open(new ByteArrayInputStream(png), png.length)) {
+            assertTrue(source.isTiled());
+            assertTrue((HEIGHT + source.getBandHeight() - 1) / source.getBandHeight() > 1);
+            tiledDimensions = tiled.addWatermark(source, "Jane", "Doe", tiledOut, tiledRenditions);
+        }
+
+        // Verify - the bands are encoded as stripes of the same JPEG
+        assertSamePixels(decode(inlineOut.toByteArray()), decode(tiledOut.toByteArray()));
+
+        // The tiled renditions are scaled from a box-filtered preview rather than the full image
+        assertEquals(inlineDimensions, tiledDimensions);
+        assertEquals(Map.of(Rendition.MEDIUM, new Dimension(1280, 961), Rendition.THUMBNAIL, new Dimension(320, 240)),
+                tiledDimensions);
+        for (Rendition rendition : Rendition.values()) {
+            BufferedImage expected = decode(inlineRenditions.get(rendition).toByteArray());
+            BufferedImage actual = decode(tiledRenditions.get(rendition).toByteArray());
+            assertEquals(expected.getWidth(), actual.getWidth());
+            assertEquals(expected.getHeight(), actual.getHeight());
+            assertTrue(meanDifference(expected, actual) < 3, rendition + " rendition differs");
+        }
+    }
+
+    @Test
+    void testOpenReroutesImageThatWouldNeedTooManyBands() throws IOException {
+        // Setup - this budget fits only 16-row bands, which would re-read the image 94 times
+        byte[] png = png(testImage(WIDTH, HEIGHT, BufferedImage.TYPE_3BYTE_BGR));
+        long fixedBytes = png.length + (long) WIDTH * HEIGHT * 4;
+        ImageProcessor processor = new ImageProcessor(new MemoryPlanner(fixedBytes + 16L * 2 * WIDTH * 15 / 2, true));
+
+        // Execute & Verify
+        ImageTooLargeException e = assertThrows(ImageTooLargeException.class,
+                () -> processor.open(new ByteArrayInputStream(png), png.length));
+        assertEquals(MemoryPlanner.Plan.REROUTE, e.getPlan());
+    }
+
+    @Test
+    void testOpaqueImagesAreDrawnOnInPlace() throws IOException {
+        // Setup
+        ImageProcessor processor = new ImageProcessor(new MemoryPlanner(Long.MAX_VALUE, false));
+        BufferedImage colourJpeg = openAndRead(processor, encode(testImage(400, 300, BufferedImage.TYPE_INT_RGB), "jpg"));
+        BufferedImage greyJpeg = openAndRead(processor, encode(testImage(400, 300, BufferedImage.TYPE_BYTE_GRAY), "jpg"));
+        BufferedImage colourPng = openAndRead(processor, png(testImage(400, 300, BufferedImage.TYPE_3BYTE_BGR)));
+        BufferedImage intRgb = testImage(400, 300, BufferedImage.TYPE_INT_RGB);
+
+        // Execute & Verify - the decoded image itself is the drawing target, so nothing is copied
+        assertEquals(BufferedImage.TYPE_3BYTE_BGR, colourJpeg.getType());
+        assertSame(colourJpeg, ImageProcessor.drawingTarget(colourJpeg));
+        assertEquals(BufferedImage.TYPE_BYTE_GRAY, greyJpeg.getType());
+        assertSame(greyJpeg, ImageProcessor.drawingTarget(greyJpeg));
+        assertEquals(BufferedImage.TYPE_3BYTE_BGR, colourPng.getType());
+        assertSame(colourPng, ImageProcessor.drawingTarget(colourPng));
+        assertSame(intRgb, ImageProcessor.drawingTarget(intRgb));
+    }
+
+    @Test
+    void testTranslucentAndIndexedImagesAreCopiedToRgb() throws IOException {
+        ImageProcessor processor = new ImageProcessor(new MemoryPlanner(Long.MAX_VALUE, false));
+        for (int type : new int[]{BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_BYTE_INDEXED}) {
+            // Setup
+            byte[] png = png(testImage(400, 300, type));
+            BufferedImage decoded = openAndRead(processor, png);
+
+            // Execute
+            BufferedImage target = ImageProcessor.drawingTarget(decoded);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (ImageSource source = processor.open(new ByteArrayInputStream(png), png.length)) {
+                processor.addWatermark(source, "Jane", "Doe", out, Map.of());
+            }
+
+            // Verify - the copy is opaque RGB
+            assertNotSame(decoded, target, "Type " + type);
+            assertEquals(BufferedImage.TYPE_INT_RGB, target.getType());
+            assertEquals(400, target.getWidth());
+            assertEquals(300, target.getHeight());
+            BufferedImage watermarked = decode(out.toByteArray());
+            assertEquals(400, watermarked.getWidth());
+            assertEquals(300, watermarked.getHeight());
+            // The top rows have no watermark. JPEG is lossy on the palette image's dithering, but
+            // an image that was not copied into the target would come out black, over 100 away
+            assertTrue(meanDifference(decoded.getSubimage(0, 0, 400, 60), watermarked.getSubimage(0, 0, 400, 60)) < 30,
+                    "Type " + type + " output differs");
+        }
+    }
+
+    @Test
+    void testOpenRejectsTruncatedHeader() throws IOException {
+        // Setup - the start of the JPEG, cut off before its frame header
+        byte[] jpeg = encode(testImage(400, 300, BufferedImage.TYPE_INT_RGB), "jpg");
+        byte[] truncated = Arrays.copyOf(jpeg, 20);
+        ImageProcessor processor = new ImageProcessor(new MemoryPlanner(Long.MAX_VALUE, false));
+
+        // Execute & Verify
+        assertThrows(IOException.class, () -> processor.open(new ByteArrayInputStream(truncated), truncated.length));
+    }
+
+    @Test
+    void testOpenRejectsUnknownFormat() {
+        // Setup
+        byte[] data = "This is plain text, not an image".getBytes(StandardCharsets.US_ASCII);
+        ImageProcessor processor = new ImageProcessor(new MemoryPlanner(Long.MAX_VALUE, false));
+
+        // Execute & Verify
+        IOException e = assertThrows(IOException.class,
+                () -> processor.open(new ByteArrayInputStream(data), data.length));
+        assertEquals("Invalid image format or corrupted image data", e.getMessage());
+    }
+}
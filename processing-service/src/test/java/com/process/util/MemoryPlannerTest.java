@@ -0,0 +1,86 @@
+package com.process.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageTypeSpecifier;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MemoryPlannerTest {
+    private static final ImageTypeSpecifier ARGB = ImageTypeSpecifier.createFromBufferedImageType(BufferedImage.TYPE_INT_ARGB);
+    private static final int WIDTH = 2000;
+    private static final int HEIGHT = 1501;
+    private static final long COMPRESSED_BYTES = 1_000_000;
+    // The compressed image and the full-size preview of a 2000x1501 image, whose medium rendition
+    // is not a power of two smaller
+    private static final long FIXED_BYTES = COMPRESSED_BYTES + (long) WIDTH * HEIGHT * 4;
+    // Two bands of decoded ARGB rows, their opaque copies and their encoded stripes
+    private static final long BYTES_PER_ROW_PAIR = 2 * 17000;
+
+    @Test
+    void testPlanDecodesImageWithinBudgetInline() {
+        // Setup
+        MemoryPlanner planner = new MemoryPlanner(64L * 1024 * 1024, true);
+
+        // Execute & Verify
+        assertEquals(MemoryPlanner.Plan.INLINE, planner.plan(planner.estimate(WIDTH, HEIGHT, ARGB), 0));
+    }
+
+    @Test
+    void testBandHeightTilesImageInAtMostMaxBands() {
+        // Setup - just enough for bands of 192 rows, the shortest that cover the image in eight
+        MemoryPlanner planner = new MemoryPlanner(FIXED_BYTES + 192 * BYTES_PER_ROW_PAIR, true);
+
+        // Execute
+        int bandHeight = planner.bandHeight(WIDTH, HEIGHT, ARGB, COMPRESSED_BYTES);
+
+        // Verify
+        assertEquals(192, bandHeight);
+        assertEquals(MemoryPlanner.MAX_BANDS, (HEIGHT + bandHeight - 1) / bandHeight);
+        assertEquals(MemoryPlanner.Plan.TILED, planner.plan(planner.estimate(WIDTH, HEIGHT, ARGB), bandHeight));
+    }
+
+    @Test
+    void testBandHeightReroutesImageThatWouldNeedTooManyBands() {
+        // Setup - a budget just over the fixed costs fits 16-row bands, 94 of them
+        MemoryPlanner planner = new MemoryPlanner(FIXED_BYTES + 16 * BYTES_PER_ROW_PAIR, true);
+
+        // Execute
+        int bandHeight = planner.bandHeight(WIDTH, HEIGHT, ARGB, COMPRESSED_BYTES);
+
+        // Verify
+        assertEquals(0, bandHeight);
+        assertEquals(MemoryPlanner.Plan.REROUTE, planner.plan(planner.estimate(WIDTH, HEIGHT, ARGB), bandHeight));
+    }
+
+    @Test
+    void testBandHeightRejectsImageThatWouldNeedTooManyBandsWithoutHighMemoryFunction() {
+        // Setup
+        MemoryPlanner planner = new MemoryPlanner(FIXED_BYTES + 176 * BYTES_PER_ROW_PAIR, false);
+
+        // Execute
+        int bandHeight = planner.bandHeight(WIDTH, HEIGHT, ARGB, COMPRESSED_BYTES);
+
+        // Verify - 176-row bands would take nine
+        assertEquals(0, bandHeight);
+        assertEquals(MemoryPlanner.Plan.REJECT, planner.plan(planner.estimate(WIDTH, HEIGHT, ARGB), bandHeight));
+    }
+
+    @Test
+    void testBandHeightIsZeroWhenNoBandFits() {
+        // Setup
+        MemoryPlanner planner = new MemoryPlanner(FIXED_BYTES, true);
+
+        // Execute & Verify
+        assertEquals(0, planner.bandHeight(WIDTH, HEIGHT, ARGB, COMPRESSED_BYTES));
+    }
+
+    @Test
+    void testPreviewFactorIsLargestPowerOfTwoAboveRendition() {
+        // Execute & Verify
+        assertEquals(1, ImageProcessor.previewFactor(2000, 1280));
+        assertEquals(8, ImageProcessor.previewFactor(12000, 1280));
+        assertEquals(32, ImageProcessor.previewFactor(12000, 320));
+    }
+}
@@ -0,0 +1,109 @@
+package com.process.util;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.process.service.DynamoDbService;
+import com.process.service.EmailService;
+import com.process.service.S3Service;
+import com.process.service.S3UploadOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.process.util.StripedJpegEncoderTest.testImage;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ProcessImageTest {
+    private static final String STAGING_KEY = "uploads/Jane Doe-jane@example.com-Beach-5f0c.jpeg";
+
+    @Mock
+    private S3Service s3Service;
+
+    @Mock
+    private DynamoDbService dynamoDbService;
+
+    @Mock
+    private EmailService emailService;
+
+    private final ExecutorService imageExecutor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void tearDown() {
+        imageExecutor.shutdownNow();
+    }
+
+    private static byte[] jpeg(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(testImage(width, height, BufferedImage.TYPE_INT_RGB), "jpg", out);
+        return out.toByteArray();
+    }
+
+    @Test
+    void testProcessedKeyIsStablePerStagingObject() {
+        String key = ProcessImage.processedKey("staging", STAGING_KEY);
+
+        assertEquals(16, key.length());
+        assertEquals(key, ProcessImage.processedKey("staging", STAGING_KEY));
+        assertNotEquals(key, ProcessImage.processedKey("staging", "uploads/other.jpeg"));
+    }
+
+    @Test
+    void testFailedRenditionUploadIsOverwrittenOnRedelivery() throws Exception {
+        // Setup - the full image and medium rendition are published, then the thumbnail fails
+        byte[] jpeg = jpeg(1400, 1000);
+        when(s3Service.getImageStreamFromS3("staging", STAGING_KEY)).thenAnswer(invocation -> new ResponseInputStream<>(
+                GetObjectResponse.builder().contentLength((long) jpeg.length).build(),
+                AbortableInputStream.create(new ByteArrayInputStream(jpeg))));
+        List<String> openedKeys = new ArrayList<>();
+        List<S3UploadOutputStream> closedUploads = new ArrayList<>();
+        when(s3Service.openProcessedBucketUpload(anyString())).thenAnswer(invocation -> {
+            String key = invocation.getArgument(0);
+            openedKeys.add(key);
+            S3UploadOutputStream upload = mock(S3UploadOutputStream.class);
+            lenient().when(upload.getBytesWritten()).thenReturn(1000L);
+            if (key.startsWith("renditions/thumbnail/")) {
+                lenient().doThrow(new IOException("Slow down")).when(upload).close();
+            } else {
+                lenient().doAnswer(close -> closedUploads.add(upload)).when(upload).close();
+            }
+            return upload;
+        });
+        ProcessImage processImage = new ProcessImage(s3Service, dynamoDbService, emailService,
+                new ImageProcessor(), imageExecutor);
+
+        // Execute - the first delivery and its redelivery
+        for (int attempt = 1; attempt <= 2; attempt++) {
+            int retryCount = attempt;
+            assertThrows(RuntimeException.class, () -> processImage.processImage(mock(Context.class), "staging",
+                    STAGING_KEY, "user123", "jane@example.com", "Jane", "Doe", "Beach", retryCount, null));
+        }
+
+        // Verify - both attempts published the same objects, so the retry overwrote the first
+        String processedKey = ProcessImage.processedKey("staging", STAGING_KEY);
+        List<String> attemptKeys = List.of(processedKey, "renditions/medium/" + processedKey,
+                "renditions/thumbnail/" + processedKey);
+        assertEquals(6, openedKeys.size());
+        assertEquals(attemptKeys, openedKeys.subList(0, 3));
+        assertEquals(attemptKeys, openedKeys.subList(3, 6));
+        assertEquals(4, closedUploads.size());
+        verifyNoInteractions(dynamoDbService);
+        verify(s3Service, never()).deleteFromStagingBucket(anyString(), anyString());
+    }
+}
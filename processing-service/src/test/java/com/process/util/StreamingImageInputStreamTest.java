@@ -0,0 +1,180 @@
+package com.process.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
+import static com.process.util.StripedJpegEncoderTest.assertSamePixels;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamingImageInputStreamTest {
+    // Noise compresses poorly, so these images are well past the 64 KB lookback and 1 MB flush step
+    private static final int WIDTH = 1600;
+    private static final int HEIGHT = 1200;
+
+    /**
+     * A network stream: it returns a few bytes per read and cannot be rewound, so every byte is read
+     * from it once.
+     */
+    private static final class ThrottledStream extends InputStream {
+        private final InputStream in;
+        private final int maxRead;
+
+        ThrottledStream(byte[] data, int maxRead) {
+            this.in = new ByteArrayInputStream(data);
+            this.maxRead = maxRead;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return in.read(b, off, Math.min(len, maxRead));
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            throw new IOException("Stream cannot be rewound");
+        }
+    }
+
+    private static byte[] noise(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] noiseImage(String format) throws IOException {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(7);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(image, format, out));
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes through the stream the way {@link ImageProcessor#open} and {@link ImageSource#read} do,
+     * and then through them.
+     */
+    private static void assertDecodesFromThrottledStream(String format) throws IOException {
+        // Setup
+        byte[] data = noiseImage(format);
+        BufferedImage expected = ImageIO.read(new ByteArrayInputStream(data));
+
+        // Execute
+        BufferedImage actual;
+        long flushedPosition;
+        try (StreamingImageInputStream input = new StreamingImageInputStream(new ThrottledStream(data, 1000))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                assertEquals(WIDTH, reader.getWidth(0));
+                input.releaseConsumed();
+                actual = reader.read(0);
+                flushedPosition = input.getFlushedPosition();
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        BufferedImage opened;
+        ImageProcessor processor = new ImageProcessor(new MemoryPlanner(Long.MAX_VALUE, false));
+        try (ImageSource source = processor.open(new ThrottledStream(data, 1000), -1)) {
+            opened = source.read();
+        }
+
+        // Verify
+        assertSamePixels(expected, actual);
+        assertSamePixels(expected, opened);
+        assertTrue(data.length > 1024 * 1024 + 64 * 1024, format + " test image is too small to be flushed");
+        assertTrue(flushedPosition > 0, "Consumed " + format + " data was not released");
+    }
+
+    @Test
+    void testJpegDecodesFromThrottledStream() throws IOException {
+        assertDecodesFromThrottledStream("jpg");
+    }
+
+    @Test
+    void testPngDecodesFromThrottledStream() throws IOException {
+        assertDecodesFromThrottledStream("png");
+    }
+
+    @Test
+    void testSeekWithinLookbackReadsSameBytes() throws IOException {
+        // Setup
+        byte[] data = noise(3 * 1024 * 1024);
+
+        try (StreamingImageInputStream input = new StreamingImageInputStream(new ThrottledStream(data, 777))) {
+            input.releaseConsumed();
+            input.readFully(new byte[data.length - 1024]);
+
+            // Execute
+            input.seek(data.length - 60 * 1024);
+            byte[] reread = new byte[4096];
+            input.readFully(reread);
+
+            // Verify
+            assertArrayEquals(Arrays.copyOfRange(data, data.length - 60 * 1024, data.length - 56 * 1024), reread);
+        }
+    }
+
+    @Test
+    void testSeekPastReleasedDataFailsInsteadOfReadingWrongBytes() throws IOException {
+        // Setup
+        byte[] data = noise(3 * 1024 * 1024);
+
+        try (StreamingImageInputStream input = new StreamingImageInputStream(new ThrottledStream(data, 777))) {
+            input.releaseConsumed();
+            input.readFully(new byte[data.length - 1024]);
+            assertTrue(input.getFlushedPosition() > 0);
+
+            // Execute & Verify
+            assertThrows(IndexOutOfBoundsException.class, () -> input.seek(0));
+        }
+    }
+
+    @Test
+    void testMarkHoldsDataUntilReset() throws IOException {
+        // Setup
+        byte[] data = noise(3 * 1024 * 1024);
+
+        try (StreamingImageInputStream input = new StreamingImageInputStream(new ThrottledStream(data, 777))) {
+            input.releaseConsumed();
+            input.readFully(new byte[100]);
+
+            // Execute - read far past the lookback while the mark is held
+            input.mark();
+            input.readFully(new byte[data.length - 1024]);
+            input.reset();
+            byte[] reread = new byte[100];
+            input.readFully(reread);
+
+            // Verify
+            assertArrayEquals(Arrays.copyOfRange(data, 100, 200), reread);
+        }
+    }
+}
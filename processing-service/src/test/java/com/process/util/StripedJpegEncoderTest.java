@@ -0,0 +1,206 @@
+package com.process.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StripedJpegEncoderTest {
+    // Stripes run on four threads whatever the machine has
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Draws a gradient with random translucent shapes, so that every stripe has detail and the
+     * chroma differs across stripe boundaries.
+     */
+    static BufferedImage testImage(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setPaint(new GradientPaint(0, 0, Color.ORANGE, width, height, Color.BLUE));
+        g2d.fillRect(0, 0, width, height);
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            g2d.setColor(new Color(random.nextInt(0x1000000) | random.nextInt(256) << 24, true));
+            g2d.fillOval(random.nextInt(width), random.nextInt(height), random.nextInt(width / 3) + 1, random.nextInt(height / 3) + 1);
+        }
+        g2d.dispose();
+        return image;
+    }
+
+    static BufferedImage decode(byte[] jpeg) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(jpeg));
+        assertNotNull(image, "Output is not a readable JPEG");
+        return image;
+    }
+
+    static void assertSamePixels(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                if (expected.getRGB(x, y) != actual.getRGB(x, y)) {
+                    fail("Pixel (" + x + ", " + y + ") differs");
+                }
+            }
+        }
+    }
+
+    private static byte[] encodeWhole(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StreamingImageOutputStream.writeJpeg(image, out);
+        return out.toByteArray();
+    }
+
+    private byte[] encodeStriped(BufferedImage image, StripedJpegEncoder.StripeRenderer renderer) throws IOException {
+        int stripeHeight = StripedJpegEncoder.stripeHeight(image.getWidth(), image.getHeight(), 4);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StripedJpegEncoder.encode(image, stripeHeight, executor, renderer).writeTo(out);
+        return out.toByteArray();
+    }
+
+    private static byte[] encodeAtQuality(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (MemoryCacheImageOutputStream output = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    void testStripedColourImageMatchesSingleEncode() throws IOException {
+        // Setup - a height that is not a multiple of 16 leaves a short last stripe
+        BufferedImage image = testImage(1000, 733, BufferedImage.TYPE_3BYTE_BGR);
+
+        // Execute
+        byte[] striped = encodeStriped(image, (top, bottom) -> {
+        });
+
+        // Verify
+        assertSamePixels(decode(encodeWhole(image)), decode(striped));
+    }
+
+    @Test
+    void testStripedGreyImageMatchesSingleEncode() throws IOException {
+        // Setup - a greyscale scan has 8-row MCUs
+        BufferedImage image = testImage(611, 1001, BufferedImage.TYPE_BYTE_GRAY);
+
+        // Execute
+        byte[] striped = encodeStriped(image, (top, bottom) -> {
+        });
+
+        // Verify
+        assertSamePixels(decode(encodeWhole(image)), decode(striped));
+    }
+
+    @Test
+    void testStripedTranslucentSourceMatchesSingleEncode() throws IOException {
+        // Setup - as in ImageProcessor, each stripe of an ARGB source is drawn onto an opaque image
+        BufferedImage source = testImage(800, 517, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage whole = new BufferedImage(800, 517, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = whole.createGraphics();
+        g2d.drawImage(source, 0, 0, null);
+        g2d.dispose();
+        BufferedImage target = new BufferedImage(800, 517, BufferedImage.TYPE_INT_RGB);
+
+        // Execute
+        byte[] striped = encodeStriped(target, (top, bottom) -> {
+            Graphics2D stripe = target.createGraphics();
+            stripe.clipRect(0, top, target.getWidth(), bottom - top);
+            stripe.drawImage(source, 0, 0, null);
+            stripe.dispose();
+        });
+
+        // Verify
+        assertSamePixels(decode(encodeWhole(whole)), decode(striped));
+    }
+
+    @Test
+    void testStripeHeightIsWholeMcuRowsWithinRestartInterval() {
+        // Execute & Verify
+        assertEquals(16, StripedJpegEncoder.stripeHeight(100, 10, 4));
+        assertEquals(0, StripedJpegEncoder.stripeHeight(100, 4000, 4) % 16);
+        // 2500 MCUs per row leave room for 26 rows of 8x8 MCUs in one restart interval
+        assertEquals(208, StripedJpegEncoder.stripeHeight(20000, 4000, 4));
+        assertEquals(0, StripedJpegEncoder.maxStripeHeight(600_000));
+    }
+
+    @Test
+    void testJoinRejectsStripesWithDifferentTables() throws IOException {
+        // Setup
+        BufferedImage image = testImage(320, 64, BufferedImage.TYPE_3BYTE_BGR);
+        byte[] first = encodeWhole(image.getSubimage(0, 0, 320, 32));
+        byte[] second = encodeAtQuality(image.getSubimage(0, 32, 320, 32), 0.3f);
+
+        // Execute & Verify - the caller then encodes the image in one piece
+        IOException e = assertThrows(IOException.class, () -> StripedJpegEncoder.join(List.of(first, second), 64, 32));
+        assertEquals("Stripe 1 was encoded with different tables", e.getMessage());
+    }
+
+    @Test
+    void testJoinRejectsStripesThatAreNotWholeMcuRows() throws IOException {
+        // Setup - colour stripes have 16-row MCUs
+        BufferedImage image = testImage(320, 48, BufferedImage.TYPE_3BYTE_BGR);
+        byte[] first = encodeWhole(image.getSubimage(0, 0, 320, 24));
+        byte[] second = encodeWhole(image.getSubimage(0, 24, 320, 24));
+
+        // Execute & Verify
+        assertThrows(IOException.class, () -> StripedJpegEncoder.join(List.of(first, second), 48, 24));
+    }
+
+    @Test
+    void testStripeWriterMatchesSingleEncode() throws IOException {
+        // Setup
+        BufferedImage image = testImage(500, 300, BufferedImage.TYPE_3BYTE_BGR);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StripedJpegEncoder.StripeWriter writer = new StripedJpegEncoder.StripeWriter(out, 300, 64);
+
+        // Execute
+        for (int top = 0; top < 300; top += 64) {
+            writer.write(encodeWhole(image.getSubimage(0, top, 500, Math.min(64, 300 - top))));
+        }
+        writer.finish();
+
+        // Verify
+        assertSamePixels(decode(encodeWhole(image)), decode(out.toByteArray()));
+    }
+
+    @Test
+    void testStripeWriterRejectsStripeWithDifferentTables() throws IOException {
+        // Setup
+        BufferedImage image = testImage(320, 64, BufferedImage.TYPE_3BYTE_BGR);
+        StripedJpegEncoder.StripeWriter writer = new StripedJpegEncoder.StripeWriter(new ByteArrayOutputStream(), 64, 32);
+        writer.write(encodeWhole(image.getSubimage(0, 0, 320, 32)));
+
+        // Execute & Verify
+        assertThrows(IOException.class, () -> writer.write(encodeAtQuality(image.getSubimage(0, 32, 320, 32), 0.3f)));
+    }
+}
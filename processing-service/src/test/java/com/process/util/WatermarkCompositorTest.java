@@ -0,0 +1,126 @@
+package com.process.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import static com.process.util.StripedJpegEncoderTest.testImage;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class WatermarkCompositorTest {
+    private static final int WIDTH = 643;
+    private static final int HEIGHT = 401;
+    private static final boolean VECTOR_PRESENT = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private final WatermarkMask mask = ImageProcessor.getWatermarkMask("Jane Doe - 2024-01-01", 48);
+
+    private static BufferedImage copy(BufferedImage image) {
+        BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
+        copy.setData(image.getRaster());
+        return copy;
+    }
+
+    private static BufferedImage drawWithJava2d(BufferedImage image, WatermarkMask mask, int x, int y) {
+        BufferedImage target = copy(image);
+        Graphics2D g2d = target.createGraphics();
+        mask.drawAt(g2d, x, y);
+        g2d.dispose();
+        return target;
+    }
+
+    private static BufferedImage composite(BufferedImage image, WatermarkMask mask, int x, int y, boolean useVector) {
+        BufferedImage target = copy(image);
+        assertTrue(WatermarkCompositor.composite(target, mask, x, y, useVector));
+        return target;
+    }
+
+    private static void assertSameImage(BufferedImage expected, BufferedImage actual, String message) {
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                if (expected.getRGB(x, y) != actual.getRGB(x, y)) {
+                    fail(message + ": pixel (" + x + ", " + y + ") is " + Integer.toHexString(actual.getRGB(x, y))
+                            + ", expected " + Integer.toHexString(expected.getRGB(x, y)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Text origins that place the mask in the middle of the image, across each edge and corner, and
+     * entirely outside it.
+     */
+    private int[][] positions() {
+        int maskWidth = mask.getImage().getWidth();
+        int maskHeight = mask.getImage().getHeight();
+        int centreX = (WIDTH - maskWidth) / 2 + mask.getOriginX();
+        int centreY = (HEIGHT - maskHeight) / 2 + mask.getOriginY();
+        return new int[][]{
+                {centreX, centreY},
+                {mask.getOriginX() - maskWidth / 3, centreY},
+                {WIDTH - maskWidth / 2, centreY},
+                {centreX, mask.getOriginY() - maskHeight / 2},
+                {centreX, HEIGHT + mask.getOriginY() - maskHeight / 3},
+                {-maskWidth / 2, -3},
+                {WIDTH - 7, HEIGHT + 5},
+                {-maskWidth - 10, centreY},
+                {centreX, HEIGHT + maskHeight},
+        };
+    }
+
+    private void assertBlendsMatchJava2d(int type) {
+        BufferedImage image = testImage(WIDTH, HEIGHT, type);
+        for (int[] position : positions()) {
+            String at = "mask at (" + position[0] + ", " + position[1] + ")";
+            BufferedImage expected = drawWithJava2d(image, mask, position[0], position[1]);
+            assertSameImage(expected, composite(image, mask, position[0], position[1], false), "Scalar " + at);
+            if (VECTOR_PRESENT) {
+                assertSameImage(expected, composite(image, mask, position[0], position[1], true), "Vector " + at);
+            }
+        }
+    }
+
+    @Test
+    void testRgbBlendsMatchJava2d() {
+        assertBlendsMatchJava2d(BufferedImage.TYPE_INT_RGB);
+    }
+
+    @Test
+    void testBgrBlendsMatchJava2d() {
+        assertBlendsMatchJava2d(BufferedImage.TYPE_3BYTE_BGR);
+    }
+
+    @Test
+    void testUnsupportedTypeIsLeftToCaller() {
+        // Setup
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+
+        // Execute & Verify
+        assertFalse(WatermarkCompositor.composite(image, mask, 10, 40, false));
+        assertFalse(WatermarkCompositor.composite(image, mask, 10, 40));
+    }
+
+    @Test
+    void testStripesMatchWholeImage() {
+        // Needs the vector blend, which the public stripe overload is limited to
+        assumeTrue(VECTOR_PRESENT);
+
+        for (int type : new int[]{BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR}) {
+            // Setup
+            BufferedImage image = testImage(WIDTH, HEIGHT, type);
+            int x = (WIDTH - mask.getTextWidth()) / 2;
+            int y = (HEIGHT + mask.getTextHeight() / 2) / 2;
+            BufferedImage expected = drawWithJava2d(image, mask, x, y);
+
+            // Execute - rows that split the mask
+            BufferedImage striped = copy(image);
+            for (int top = 0; top < HEIGHT; top += 13) {
+                assertTrue(WatermarkCompositor.composite(striped, mask, x, y, top, Math.min(HEIGHT, top + 13)));
+            }
+
+            // Verify
+            assertSameImage(expected, striped, "Striped image of type " + type);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.process.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Font;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WatermarkMaskTest {
+
+    @Test
+    void testCacheReturnsSameMaskForSameTextAndSize() {
+        // Execute
+        WatermarkMask mask = ImageProcessor.getWatermarkMask("Cache Same - 2024-01-01", 40);
+
+        // Verify
+        assertSame(mask, ImageProcessor.getWatermarkMask("Cache Same - 2024-01-01", 40));
+        assertNotSame(mask, ImageProcessor.getWatermarkMask("Cache Same - 2024-01-01", 41));
+        assertNotSame(mask, ImageProcessor.getWatermarkMask("Cache Same - 2024-01-02", 40));
+    }
+
+    @Test
+    void testCacheEvictsLeastRecentlyUsedMask() {
+        // Setup
+        WatermarkMask evicted = ImageProcessor.getWatermarkMask("Cache Evicted", 12);
+        WatermarkMask kept = ImageProcessor.getWatermarkMask("Cache Kept", 12);
+
+        // Execute - fill the cache, using the kept mask halfway through
+        for (int i = 0; i < ImageProcessor.MAX_CACHED_MASKS - 1; i++) {
+            ImageProcessor.getWatermarkMask("Cache Filler " + i, 12);
+            if (i == ImageProcessor.MAX_CACHED_MASKS / 2) {
+                assertSame(kept, ImageProcessor.getWatermarkMask("Cache Kept", 12));
+            }
+        }
+
+        // Verify - 64 newer masks pushed out the first, but the one used since is still cached
+        assertSame(kept, ImageProcessor.getWatermarkMask("Cache Kept", 12));
+        assertNotSame(evicted, ImageProcessor.getWatermarkMask("Cache Evicted", 12));
+    }
+
+    @Test
+    void testBundledFontIsLoaded() {
+        // Execute
+        Font font = ImageProcessor.loadFont(ImageProcessor.FONT_RESOURCE);
+
+        // Verify
+        assertTrue(font.getFamily().startsWith("DejaVu Sans"), font.getFamily());
+    }
+
+    @Test
+    void testMissingFontFallsBackToSansSerif() {
+        // Execute
+        Font font = ImageProcessor.loadFont("/fonts/Missing.ttf");
+        WatermarkMask mask = WatermarkMask.render("Jane Doe - 2024-01-01", font.deriveFont(24f));
+
+        // Verify - the fallback still renders a watermark
+        assertEquals(Font.SANS_SERIF, font.getName());
+        assertTrue(font.isBold());
+        assertTrue(mask.getTextWidth() > 0);
+        assertTrue(mask.getTextHeight() > 0);
+    }
+}
@@ -70,10 +70,19 @@ public class DeleteImageHandler implements RequestHandler<APIGatewayProxyRequest
                 return ResponseUtils.errorResponse(404, "Corrupt image record: missing or invalid S3Key");
             }
             String oldKey = item.get(S3_KEY).s();
-            String newKey = "recycle/" + oldKey;
+            String newKey = S3Utils.RECYCLE_PREFIX + oldKey;
 
             s3Utils.copyObject(bucketName, oldKey, newKey);
             s3Utils.deleteObject(bucketName, oldKey);
+            // The renditions go to the recycle bin too, so its lifecycle rule expires them with the image
+            for (Map.Entry<String, String> rendition : S3Utils.renditionKeys(item).entrySet()) {
+                String renditionKey = rendition.getValue();
+                if (!renditionKey.startsWith(S3Utils.RECYCLE_PREFIX)) {
+                    s3Utils.copyObject(bucketName, renditionKey, S3Utils.RECYCLE_PREFIX + renditionKey);
+                    s3Utils.deleteObject(bucketName, renditionKey);
+                    dynamoUtils.updateRenditionKey(tableName, imageKey, rendition.getKey(), S3Utils.RECYCLE_PREFIX + renditionKey);
+                }
+            }
             dynamoUtils.updateImageStatus(tableName, imageKey, "inactive");
             dynamoUtils.updateS3Key(tableName, imageKey, newKey);
 
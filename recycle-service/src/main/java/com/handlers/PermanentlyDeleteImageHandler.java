@@ -60,6 +60,11 @@ public class PermanentlyDeleteImageHandler implements RequestHandler<APIGatewayP
             }
 
             s3Utils.deleteObject(bucketName, key);
+            // Renditions are moved to the recycle bin with the image, but those of images recycled
+            // before that still have their original keys
+            for (String renditionKey : S3Utils.renditionKeys(item).values()) {
+                s3Utils.deleteObject(bucketName, renditionKey);
+            }
             dynamoUtils.deleteRecordFromDynamo(tableName, imageKey);
 
             return ResponseUtils.successResponse(200, Map.of("message","Image permanently deleted"));
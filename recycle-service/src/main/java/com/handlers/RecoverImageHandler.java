@@ -73,6 +73,16 @@ public class RecoverImageHandler implements RequestHandler<APIGatewayProxyReques
 
             s3Utils.deleteObject(bucketName, recycleKey);
 
+            for (Map.Entry<String, String> rendition : S3Utils.renditionKeys(item).entrySet()) {
+                String renditionKey = rendition.getValue();
+                if (renditionKey.startsWith(S3Utils.RECYCLE_PREFIX)) {
+                    String restoredKey = renditionKey.substring(S3Utils.RECYCLE_PREFIX.length());
+                    s3Utils.copyObject(bucketName, renditionKey, restoredKey);
+                    s3Utils.deleteObject(bucketName, renditionKey);
+                    dynamoUtils.updateRenditionKey(tableName, imageKey, rendition.getKey(), restoredKey);
+                }
+            }
+
             dynamoUtils.updateImageStatus(tableName, imageKey, "active");
             dynamoUtils.updateS3Key(tableName, imageKey, originalKey);
 
@@ -85,4 +85,24 @@ public class DynamoDBUtils {
         dynamoDbClient.updateItem(request);
     }
 
+    public void updateRenditionKey(String tableName, String imageKey, String rendition, String newKey) {
+        String url = imageUrl + imageKey;
+        Map<String, AttributeValue> key = Map.of(
+                "imageKey", AttributeValue.builder().s(imageKey).build(),
+                "imageUrl", AttributeValue.builder().s(url).build());
+
+        UpdateItemRequest request = UpdateItemRequest.builder()
+                .tableName(tableName)
+                .key(key)
+                .updateExpression("SET #renditions.#rendition.#key = :newKey")
+                .expressionAttributeNames(Map.of(
+                        "#renditions", "renditions",
+                        "#rendition", rendition,
+                        "#key", "key"))
+                .expressionAttributeValues(Map.of(":newKey", AttributeValue.fromS(newKey)))
+                .build();
+
+        dynamoDbClient.updateItem(request);
+    }
+
 }
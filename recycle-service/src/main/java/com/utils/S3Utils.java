@@ -5,9 +5,12 @@ import com.factories.AwsFactory;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.s3.S3Client;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class S3Utils {
+    public static final String RECYCLE_PREFIX = "recycle/";
+    private static final String RENDITIONS = "renditions";
 
     private final S3Client s3Client;
 
@@ -32,6 +35,22 @@ public class S3Utils {
         return null;
     }
 
+    /**
+     * Returns the S3 key of each rendition recorded on an image item, by rendition name.
+     */
+    public static Map<String, String> renditionKeys(Map<String, AttributeValue> item) {
+        Map<String, String> keys = new LinkedHashMap<>();
+        if (item.containsKey(RENDITIONS) && item.get(RENDITIONS).hasM()) {
+            for (Map.Entry<String, AttributeValue> rendition : item.get(RENDITIONS).m().entrySet()) {
+                AttributeValue value = rendition.getValue();
+                if (value.hasM() && value.m().containsKey("key") && value.m().get("key").s() != null) {
+                    keys.put(rendition.getKey(), value.m().get("key").s());
+                }
+            }
+        }
+        return keys;
+    }
+
     public void copyObject(String bucketName, String sourceKey, String destKey) {
         s3Client.copyObject(builder -> builder
                 .sourceBucket(bucketName)
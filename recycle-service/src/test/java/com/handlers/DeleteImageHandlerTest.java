@@ -199,4 +199,27 @@ public class DeleteImageHandlerTest {
         assertEquals("{\"message\":\"Missing or empty userId\"}", response.getBody());
     }
 
+    @Test
+    void testImageDeletionMovesRenditionsToRecycleBin() {
+        // Arrange
+        Map<String, AttributeValue> item = Map.of(
+                "imageKey", AttributeValue.builder().s("image123.jpg").build(),
+                "renditions", AttributeValue.fromM(Map.of(
+                        "thumbnail", AttributeValue.fromM(Map.of("key", AttributeValue.fromS("renditions/thumbnail/image123.jpg"))),
+                        "medium", AttributeValue.fromM(Map.of("key", AttributeValue.fromS("renditions/medium/image123.jpg"))))));
+        when(mockDynamoUtils.getItemFromDynamo(anyString(), eq("image123"))).thenReturn(item);
+
+        // Act
+        APIGatewayProxyResponseEvent response = mockHandler.handleRequest(request, mockContext);
+
+        // Assert
+        assertEquals(200, response.getStatusCode());
+        verify(mockS3Utils).copyObject(eq("mock-bucket"), eq("image123.jpg"), eq("recycle/image123.jpg"));
+        for (String name : new String[]{"thumbnail", "medium"}) {
+            String key = "renditions/" + name + "/image123.jpg";
+            verify(mockS3Utils).copyObject(eq("mock-bucket"), eq(key), eq("recycle/" + key));
+            verify(mockS3Utils).deleteObject(eq("mock-bucket"), eq(key));
+            verify(mockDynamoUtils).updateRenditionKey(eq("MockTable"), eq("image123"), eq(name), eq("recycle/" + key));
+        }
+    }
 }
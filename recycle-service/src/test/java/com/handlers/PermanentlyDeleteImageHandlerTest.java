@@ -84,6 +84,37 @@ public class PermanentlyDeleteImageHandlerTest {
         }
     }
 
+    @Test
+    void testHandleRequest_DeletesRenditions() {
+        APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent();
+        request.setPathParameters(Map.of("imageKey", IMAGE_ID));
+        request.setQueryStringParameters(Map.of("userId", USER_ID));
+
+        String IMAGE_TABLE = System.getenv("IMAGE_TABLE");
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put(PermanentlyDeleteImageHandler.S_3_KEY, AttributeValue.builder().s(S3_KEY).build());
+        item.put("userId", AttributeValue.builder().s(USER_ID).build());
+        item.put("renditions", AttributeValue.fromM(Map.of(
+                "thumbnail", AttributeValue.fromM(Map.of("key", AttributeValue.fromS("renditions/thumbnail/" + IMAGE_ID))),
+                "medium", AttributeValue.fromM(Map.of("key", AttributeValue.fromS("renditions/medium/" + IMAGE_ID))))));
+        when(mockDynamoUtils.getItemFromDynamo(IMAGE_TABLE, IMAGE_ID)).thenReturn(item);
+
+        try (MockedStatic<ResponseUtils> mockedResponseUtils = mockStatic(ResponseUtils.class)) {
+            APIGatewayProxyResponseEvent successResponse = new APIGatewayProxyResponseEvent()
+                    .withStatusCode(200);
+            mockedResponseUtils.when(() -> ResponseUtils.successResponse(eq(200), any()))
+                    .thenReturn(successResponse);
+
+            APIGatewayProxyResponseEvent response = handler.handleRequest(request, mockContext);
+
+            assertEquals(successResponse, response);
+            verify(mockS3Utils).deleteObject(eq(System.getenv("PRIMARY_BUCKET")), eq(S3_KEY));
+            verify(mockS3Utils).deleteObject(eq(System.getenv("PRIMARY_BUCKET")), eq("renditions/thumbnail/" + IMAGE_ID));
+            verify(mockS3Utils).deleteObject(eq(System.getenv("PRIMARY_BUCKET")), eq("renditions/medium/" + IMAGE_ID));
+            verify(mockDynamoUtils).deleteRecordFromDynamo(eq(IMAGE_TABLE), eq(IMAGE_ID));
+        }
+    }
+
     @Test
     void testHandleRequest_MissingPathParameters() {
         APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent();
@@ -114,4 +114,31 @@ class RecoverImageHandlerTest {
         verify(dynamoDBUtils).updateS3Key(tableName, imageKey, imageKey);
     }
 
+    @Test
+    void testHandleRequest_RestoresRenditionsFromRecycleBin() {
+        String imageKey = "test.jpg";
+        String userId = "user1";
+
+        Map<String, AttributeValue> fakeItem = Map.of(
+                "userId", AttributeValue.fromS(userId),
+                "renditions", AttributeValue.fromM(Map.of(
+                        "thumbnail", AttributeValue.fromM(Map.of("key", AttributeValue.fromS("recycle/renditions/thumbnail/test.jpg"))),
+                        // Recycled before renditions were moved with the image
+                        "medium", AttributeValue.fromM(Map.of("key", AttributeValue.fromS("renditions/medium/test.jpg"))))));
+
+        when(dynamoDBUtils.getItemFromDynamo(tableName, imageKey)).thenReturn(fakeItem);
+
+        APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent()
+                .withPathParameters(Map.of("imageKey", imageKey))
+                .withQueryStringParameters(Map.of("userId", userId));
+
+        APIGatewayProxyResponseEvent response = handler.handleRequest(request, context);
+
+        assertEquals(200, response.getStatusCode());
+        verify(s3Utils).copyObject(bucketName, "recycle/renditions/thumbnail/test.jpg", "renditions/thumbnail/test.jpg");
+        verify(s3Utils).deleteObject(bucketName, "recycle/renditions/thumbnail/test.jpg");
+        verify(dynamoDBUtils).updateRenditionKey(tableName, imageKey, "thumbnail", "renditions/thumbnail/test.jpg");
+        verify(s3Utils, never()).copyObject(bucketName, "renditions/medium/test.jpg", "medium/test.jpg");
+        verify(dynamoDBUtils, never()).updateRenditionKey(tableName, imageKey, "medium", "renditions/medium/test.jpg");
+    }
 }
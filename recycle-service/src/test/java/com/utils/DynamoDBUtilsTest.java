@@ -105,4 +105,24 @@ public class DynamoDBUtilsTest {
         assertEquals("s3Key", capturedRequest.expressionAttributeNames().get("#newS3KeyField"));
         assertEquals(newS3Key, capturedRequest.expressionAttributeValues().get(":newS3Key").s());
     }
+
+    @Test
+    void testUpdateRenditionKey() {
+        String newKey = "recycle/renditions/thumbnail/path.jpg";
+
+        dynamoDBUtils.updateRenditionKey(TABLE_NAME, IMAGE_ID_VALUE, "thumbnail", newKey);
+
+        ArgumentCaptor<UpdateItemRequest> requestCaptor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(mockDynamoDbClient).updateItem(requestCaptor.capture());
+
+        UpdateItemRequest capturedRequest = requestCaptor.getValue();
+        assertEquals(TABLE_NAME, capturedRequest.tableName());
+        assertEquals(IMAGE_ID_VALUE, capturedRequest.key().get("imageKey").s());
+        assertEquals(IMAGE_URL, capturedRequest.key().get("imageUrl").s());
+        assertEquals("SET #renditions.#rendition.#key = :newKey", capturedRequest.updateExpression());
+        assertEquals("renditions", capturedRequest.expressionAttributeNames().get("#renditions"));
+        assertEquals("thumbnail", capturedRequest.expressionAttributeNames().get("#rendition"));
+        assertEquals("key", capturedRequest.expressionAttributeNames().get("#key"));
+        assertEquals(newKey, capturedRequest.expressionAttributeValues().get(":newKey").s());
+    }
 }
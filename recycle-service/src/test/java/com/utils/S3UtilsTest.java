@@ -126,4 +126,18 @@ public class S3UtilsTest {
         assertEquals(bucket, request.destinationBucket());
         assertEquals(destKey, request.destinationKey());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testRenditionKeys() {
+        Map<String, AttributeValue> item = Map.of(
+                "userId", AttributeValue.fromS("user"),
+                "renditions", AttributeValue.fromM(Map.of(
+                        "thumbnail", AttributeValue.fromM(Map.of(
+                                "key", AttributeValue.fromS("renditions/thumbnail/a.jpg"),
+                                "width", AttributeValue.fromN("320"))),
+                        "broken", AttributeValue.fromS("not a map"))));
+
+        assertEquals(Map.of("thumbnail", "renditions/thumbnail/a.jpg"), S3Utils.renditionKeys(item));
+        assertTrue(S3Utils.renditionKeys(Map.of("userId", AttributeValue.fromS("user"))).isEmpty());
+    }
+}
@@ -8,18 +8,55 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.amazonaws.services.lambda.runtime.LambdaLogger;
 
+import com.auth.JwtClaims;
+import com.auth.JwtClaimsCache;
+import com.model.Base64ImagePayload;
+import com.model.ByteArrayImagePayload;
+import com.model.IdempotentResponse;
+import com.model.ImagePayload;
+import com.model.UploadRequest;
+import com.repository.S3Repository;
+import com.repository.UploadSessionRepository;
+import com.service.IdempotencyConflictException;
+import com.service.IdempotencyService;
 import com.service.ImageService;
-import java.util.Base64;
+import com.service.RateLimitExceededException;
+import com.service.UploadRateLimiter;
+import com.service.UploadSessionService;
+import com.util.ContentHash;
+import com.util.MultipartFormParser;
+import com.util.UploadRequestParser;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 public class App implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
+    private static final String DIRECT_UPLOAD_PATH = "/upload/presign";
+    private static final String BATCH_UPLOAD_PATH = "/upload/batch";
+    private static final String UPLOAD_SESSIONS_PATH = "/upload/sessions";
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     private ImageService imageService;
     private final ObjectMapper objectMapper;
+    private final UploadRequestParser uploadRequestParser;
+    private final MultipartFormParser multipartFormParser;
+    private final JwtClaimsCache jwtClaimsCache;
+    private UploadSessionService uploadSessionService;
+    private UploadRateLimiter uploadRateLimiter;
+    private IdempotencyService idempotencyService;
 
     public App() {
         this.imageService = new ImageService();
         this.objectMapper = new ObjectMapper();
+        this.uploadRequestParser = new UploadRequestParser(objectMapper.getFactory());
+        this.multipartFormParser = new MultipartFormParser();
+        this.jwtClaimsCache = new JwtClaimsCache();
+        this.uploadRateLimiter = new UploadRateLimiter();
+        this.idempotencyService = new IdempotencyService();
     }
     
     // Setter for ImageService - needed for testing
@@ -27,6 +64,21 @@ public class App implements RequestHandler<APIGatewayProxyRequestEvent, APIGatew
         this.imageService = imageService;
     }
 
+    // Setter for UploadRateLimiter - needed for testing
+    public void setUploadRateLimiter(UploadRateLimiter uploadRateLimiter) {
+        this.uploadRateLimiter = uploadRateLimiter;
+    }
+
+    // Setter for IdempotencyService - needed for testing
+    public void setIdempotencyService(IdempotencyService idempotencyService) {
+        this.idempotencyService = idempotencyService;
+    }
+
+    // Setter for UploadSessionService - needed for testing
+    public void setUploadSessionService(UploadSessionService uploadSessionService) {
+        this.uploadSessionService = uploadSessionService;
+    }
+
     /**
      * Handles incoming API Gateway requests for image uploads.
      * Processes the request, extracts user information from JWT token,
@@ -48,44 +100,48 @@ public class App implements RequestHandler<APIGatewayProxyRequestEvent, APIGatew
                 return handleOptions(input, context);
             }
 
-            String body = input.getBody();
-            JsonNode requestJson = objectMapper.readTree(body);
-            
-            String token;
-                token = input.getHeaders().get("Authorization");
-                if (token != null && token.startsWith("Bearer ")) {
-                    token = token.substring(7);
-                } else {
-                    logger.log("ERROR: No valid token found in request");
-                    throw new IllegalArgumentException("Authentication token is required");
-                }
+            if (isSessionRoute(input)) {
+                return handleSessionRequest(input, headers, context);
+            }
 
+            boolean batchUpload = isRoute(input, BATCH_UPLOAD_PATH);
+            List<UploadRequest> batchRequests = batchUpload ? parseBatchRequest(input) : null;
+            UploadRequest uploadRequest = batchUpload ? null : parseUploadRequest(input);
             
-            String name = extractNameFromToken(token, logger);
-            String email = extractEmailFromToken(token, logger);
-            String userId = extractSubFromToken(token, logger);
+            JwtClaims claims = getClaims(extractToken(input, logger), logger);
+            String name = claims.name();
+            String email = claims.email();
+            String userId = claims.sub();
 
-            String imageBase64 = requestJson.has("image") ? requestJson.get("image").asText() : null;
-            String contentType = requestJson.has("contentType") ? requestJson.get("contentType").asText() : null;
-            
-            String imageTitle = null;
-            if (requestJson.has("imageTitle")) {
-                imageTitle = requestJson.get("imageTitle").asText();
-            }
-            
-            if (imageBase64 == null || imageBase64.isEmpty()) {
-                logger.log("ERROR: Image data is required but was missing or empty");
-                throw new IllegalArgumentException("Image data is required");
+            Callable<String> upload = () -> {
+                uploadRateLimiter.acquire(userId, batchUpload ? batchRequests.size() : 1, context);
+                return objectMapper.writeValueAsString(
+                        routeUpload(input, name, email, userId, batchRequests, uploadRequest, context));
+            };
+
+            String idempotencyKey = getHeader(input, IDEMPOTENCY_KEY_HEADER);
+            IdempotentResponse response = idempotencyKey != null
+                    ? idempotencyService.execute(userId, idempotencyKey, fingerprint(input), upload, context)
+                    : new IdempotentResponse(upload.call(), false);
+
+            Map<String, String> responseHeaders = headers;
+            if (response.replayed()) {
+                logger.log("Replayed stored response for idempotency key: " + idempotencyKey);
+                responseHeaders = new HashMap<>(headers);
+                responseHeaders.put("Idempotent-Replayed", "true");
+                responseHeaders.put("Access-Control-Expose-Headers", "Idempotent-Replayed");
             }
-            
-            Map<String, Object> response = imageService.processImageUpload(name, email, imageBase64, contentType, imageTitle, userId, context);
-            logger.log("Image upload response from upload lambda: " + response);
-            
 
             return new APIGatewayProxyResponseEvent()
                 .withStatusCode(200)
-                .withHeaders(headers)
-                .withBody(objectMapper.writeValueAsString(response));
+                .withHeaders(responseHeaders)
+                .withBody(response.body());
+        } catch (IdempotencyConflictException e) {
+            logger.log("Rejected upload - " + e.getMessage());
+            return getErrorResponse(e.getStatusCode(), headers, e);
+        } catch (RateLimitExceededException e) {
+            logger.log("Rejected upload - " + e.getMessage());
+            return getRateLimitResponse(headers, e);
         } catch (IllegalArgumentException e) {
             logger.log("ERROR: Bad request - " + e.getMessage());
             Map<String, String> errorResponse = new HashMap<>();
@@ -108,118 +164,273 @@ public class App implements RequestHandler<APIGatewayProxyRequestEvent, APIGatew
     }
 
     /**
-     * Extracts the name from a JWT token.
-     * Attempts to find name in common JWT claim fields.
-     * @param token The JWT token string
-     * @param logger The Lambda logger
-     * @return The extracted name
+     * Checks whether the request targets the given sub-route of the upload API, such as the
+     * presigned direct upload or batch upload endpoint.
+     *
+     * @param input The API Gateway request event
+     * @param path  The route path
+     * @return True if the request's resource (or path) ends with the route
      */
-    private String extractNameFromToken(String token, LambdaLogger logger) {
-        try {
-            String[] parts = token.split("\\.");
-            if (parts.length != 3) {
-                logger.log("Invalid JWT token format");
-                return "unknown-user";
-            }
-            
-            try {
-                String payload = new String(Base64.getUrlDecoder().decode(parts[1]));
-                JsonNode payloadJson = objectMapper.readTree(payload);
-                
-                if (payloadJson.has("name")) {
-                    return payloadJson.get("name").asText();
-                } else if (payloadJson.has("sub")) {
-                    return payloadJson.get("sub").asText();
-                } else if (payloadJson.has("cognito:name")) {
-                    return payloadJson.get("cognito:name").asText();
-                }
-                
-                logger.log("No name field found in token");
-                return "unknown-user";
-            } catch (Exception e) {
-                logger.log("Error decoding token payload: " + e.getMessage());
-                return "unknown-user";
+    private boolean isRoute(APIGatewayProxyRequestEvent input, String path) {
+        String resource = input.getResource() != null ? input.getResource() : input.getPath();
+        return resource != null && resource.endsWith(path);
+    }
+
+    /**
+     * Performs a parsed upload request: a batch upload, a presigned direct upload or a single image upload.
+     *
+     * @return The response body
+     * @throws Exception If the upload fails
+     */
+    private Map<String, Object> routeUpload(APIGatewayProxyRequestEvent input, String name, String email, String userId,
+                                            List<UploadRequest> batchRequests, UploadRequest uploadRequest,
+                                            Context context) throws Exception {
+        final var logger = context.getLogger();
+
+        if (batchRequests != null) {
+            Map<String, Object> response = imageService.processBatchUpload(name, email, batchRequests, userId, context);
+            logger.log("Batch upload of " + batchRequests.size() + " images finished in " + response.get("elapsedMs") + " ms");
+            return response;
+        }
+
+        if (isRoute(input, DIRECT_UPLOAD_PATH)) {
+            return imageService.createDirectUpload(name, email, uploadRequest.contentType(),
+                    uploadRequest.contentLength(), uploadRequest.imageTitle(), userId, context);
+        }
+
+        ImagePayload image = uploadRequest.image();
+        String contentType = uploadRequest.contentType();
+        String imageTitle = uploadRequest.imageTitle();
+
+        if (image == null || image.size() == 0) {
+            logger.log("ERROR: Image data is required but was missing or empty");
+            throw new IllegalArgumentException("Image data is required");
+        }
+
+        Map<String, Object> response = imageService.processImageUpload(name, email, image, contentType, imageTitle, userId, context);
+        logger.log("Image upload response from upload lambda: " + response);
+        return response;
+    }
+
+    /**
+     * Identifies the request an idempotency key was first used for, so reusing the key for a
+     * different request is refused instead of replaying an unrelated response. A 32-bit string
+     * hash would let two different bodies collide, so the method, path, content type and body are
+     * hashed with SHA-256.
+     */
+    static String fingerprint(APIGatewayProxyRequestEvent input) {
+        return ContentHash.sha256Hex(input.getHttpMethod(),
+                input.getResource() != null ? input.getResource() : input.getPath(),
+                getHeader(input, "Content-Type"), input.getBody());
+    }
+
+    /**
+     * Parses a single-image upload according to its Content-Type:
+     * {@code multipart/form-data} forms are streamed by {@link MultipartFormParser}, {@code image/*}
+     * bodies are the image itself (titled by the {@code imageTitle} query parameter), and anything
+     * else is read as the JSON envelope with a base64 {@code image} field.
+     *
+     * @param input The API Gateway request event
+     * @return The parsed upload request
+     * @throws IOException If the body cannot be read
+     */
+    private UploadRequest parseUploadRequest(APIGatewayProxyRequestEvent input) throws IOException {
+        String contentType = getHeader(input, "Content-Type");
+        String mediaType = mediaType(contentType);
+
+        if (mediaType.equals("multipart/form-data")) {
+            return multipartFormParser.parse(getBinaryBody(input), contentType);
+        }
+        if (mediaType.startsWith("image/")) {
+            Map<String, String> query = input.getQueryStringParameters();
+            return new UploadRequest(getBinaryBody(input), mediaType, query != null ? query.get("imageTitle") : null);
+        }
+        return uploadRequestParser.parse(input.getBody());
+    }
+
+    /**
+     * Parses a batch upload: a multipart form with one file part per image, or the JSON batch body.
+     *
+     * @param input The API Gateway request event
+     * @return The parsed upload requests in request order
+     * @throws IOException If the body cannot be read
+     */
+    private List<UploadRequest> parseBatchRequest(APIGatewayProxyRequestEvent input) throws IOException {
+        String contentType = getHeader(input, "Content-Type");
+        if (mediaType(contentType).equals("multipart/form-data")) {
+            return multipartFormParser.parseAll(getBinaryBody(input), contentType);
+        }
+        return uploadRequestParser.parseBatch(input.getBody());
+    }
+
+    /**
+     * Returns the request body as bytes. API Gateway base64-encodes bodies of its binary media
+     * types; those are decoded lazily, straight from the event's string.
+     */
+    private ImagePayload getBinaryBody(APIGatewayProxyRequestEvent input) {
+        String body = input.getBody();
+        if (body == null || body.isEmpty()) {
+            throw new IllegalArgumentException("Request body is required");
+        }
+        if (Boolean.TRUE.equals(input.getIsBase64Encoded())) {
+            return Base64ImagePayload.of(body);
+        }
+        return new ByteArrayImagePayload(body.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static String mediaType(String contentType) {
+        if (contentType == null || contentType.isEmpty()) {
+            return "application/json";
+        }
+        return contentType.split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Looks up a request header; HTTP header names are case-insensitive and clients differ in how they send them.
+     */
+    private static String getHeader(APIGatewayProxyRequestEvent input, String name) {
+        if (input.getHeaders() == null) {
+            return null;
+        }
+        for (Map.Entry<String, String> header : input.getHeaders().entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
             }
-        } catch (Exception e) {
-            logger.log("Failed to extract name from token: " + e.getMessage());
-            return "unknown-user";
         }
+        return null;
     }
 
     /**
-     * Extracts the email from a JWT token.
-     * @param token The JWT token string
-     * @param logger The Lambda logger
-     * @return The extracted email
+     * Checks whether the request targets the resumable upload session API.
+     *
+     * @param input The API Gateway request event
+     * @return True if the request's resource is {@code /upload/sessions} or one of its sub-resources
      */
-    private String extractEmailFromToken(String token, LambdaLogger logger) {
-        try {
-            String[] parts = token.split("\\.");
-            if (parts.length != 3) {
-                logger.log("Invalid JWT token format");
-                return "unknown-email";
+    private boolean isSessionRoute(APIGatewayProxyRequestEvent input) {
+        return input.getResource() != null && input.getResource().contains(UPLOAD_SESSIONS_PATH);
+    }
+
+    /**
+     * Handles the resumable upload session API:
+     * {@code POST /upload/sessions} creates a session,
+     * {@code PUT /upload/sessions/{sessionId}/parts/{partNumber}} uploads a base64 chunk,
+     * {@code GET /upload/sessions/{sessionId}} reports which chunks have arrived,
+     * {@code POST /upload/sessions/{sessionId}/complete} assembles and enqueues the image and
+     * {@code DELETE /upload/sessions/{sessionId}} abandons it.
+     *
+     * @param input   The API Gateway request event
+     * @param headers The response headers
+     * @param context The Lambda execution context
+     * @return API Gateway response with the session service's result
+     * @throws Exception If the request fails
+     */
+    private APIGatewayProxyResponseEvent handleSessionRequest(APIGatewayProxyRequestEvent input, Map<String, String> headers,
+                                                              Context context) throws Exception {
+        final var logger = context.getLogger();
+        JwtClaims claims = getClaims(extractToken(input, logger), logger);
+        UploadSessionService sessions = getUploadSessionService();
+
+        String resource = input.getResource();
+        String method = input.getHttpMethod();
+        Map<String, String> pathParameters = input.getPathParameters() != null ? input.getPathParameters() : Map.of();
+        String sessionId = pathParameters.get("sessionId");
+
+        Map<String, Object> response;
+        if (resource.endsWith(UPLOAD_SESSIONS_PATH) && method.equals("POST")) {
+            if (input.getBody() == null || input.getBody().isEmpty()) {
+                throw new IllegalArgumentException("Request body is required");
             }
-            
-            try {
-                String payload = new String(Base64.getUrlDecoder().decode(parts[1]));
-                JsonNode payloadJson = objectMapper.readTree(payload);
-                
-                if (payloadJson.has("email")) {
-                    return payloadJson.get("email").asText();
-                } else if (payloadJson.has("mail")) {
-                    return payloadJson.get("mail").asText();
-                }
-                
-                logger.log("No email field found in token");
-                return "unknown-email";
-            } catch (Exception e) {
-                logger.log("Error decoding token payload: " + e.getMessage());
-                return "unknown-email";
+            // A session is charged as one image when it is created; its chunks are free
+            uploadRateLimiter.acquire(claims.sub(), 1, context);
+            JsonNode body = objectMapper.readTree(input.getBody());
+            response = sessions.createSession(claims.name(), claims.email(), body.path("contentType").asText(null),
+                    body.path("imageTitle").asText(null), body.path("size").asLong(), claims.sub(), context);
+        } else if (resource.endsWith("/parts/{partNumber}") && method.equals("PUT")) {
+            if (input.getBody() == null) {
+                throw new IllegalArgumentException("Part data is required");
             }
-        } catch (Exception e) {
-            logger.log("Failed to extract email from token: " + e.getMessage());
-            return "unknown-email";
+            int partNumber = Integer.parseInt(pathParameters.get("partNumber"));
+            response = sessions.uploadPart(sessionId, partNumber, Base64ImagePayload.of(input.getBody()), claims.sub(), context);
+        } else if (resource.endsWith("/complete") && method.equals("POST")) {
+            response = sessions.completeSession(sessionId, claims.sub(), context);
+        } else if (resource.endsWith("{sessionId}") && method.equals("GET")) {
+            response = sessions.getSession(sessionId, claims.sub());
+        } else if (resource.endsWith("{sessionId}") && method.equals("DELETE")) {
+            response = sessions.abortSession(sessionId, claims.sub());
+        } else {
+            throw new IllegalArgumentException("Unsupported upload session request: " + method + " " + resource);
+        }
+
+        return new APIGatewayProxyResponseEvent()
+            .withStatusCode(200)
+            .withHeaders(headers)
+            .withBody(objectMapper.writeValueAsString(response));
+    }
+
+    /**
+     * Extracts the bearer token from the Authorization header.
+     *
+     * @param input  The API Gateway request event
+     * @param logger The Lambda logger
+     * @return The JWT token string
+     * @throws IllegalArgumentException If no bearer token was sent
+     */
+    private String extractToken(APIGatewayProxyRequestEvent input, LambdaLogger logger) {
+        String token = input.getHeaders() != null ? input.getHeaders().get("Authorization") : null;
+        if (token != null && token.startsWith("Bearer ")) {
+            return token.substring(7);
         }
+        logger.log("ERROR: No valid token found in request");
+        throw new IllegalArgumentException("Authentication token is required");
     }
 
+    private synchronized UploadSessionService getUploadSessionService() {
+        if (uploadSessionService == null) {
+            uploadSessionService = new UploadSessionService(new S3Repository(), new UploadSessionRepository(), imageService);
+        }
+        return uploadSessionService;
+    }
 
     /**
-     * Extracts the subject (sub) from a JWT token.
-     * The 'sub' claim is a unique identifier for the user.
+     * Resolves the user claims for a JWT, decoding the payload at most once per token.
+     * Tokens that cannot be decoded resolve to placeholder identities, as before.
      *
      * @param token The JWT token string
      * @param logger The Lambda logger
-     * @return The extracted subject identifier
+     * @return The user's claims
      */
-    private String extractSubFromToken(String token, LambdaLogger logger) {
+    private JwtClaims getClaims(String token, LambdaLogger logger) {
         try {
-            String[] parts = token.split("\\.");
-            if (parts.length != 3) {
-                logger.log("Invalid JWT token format");
-                return "unknown-sub";
-            }
-
-            try {
-                String payload = new String(Base64.getUrlDecoder().decode(parts[1]));
-                JsonNode payloadJson = objectMapper.readTree(payload);
-
-                if (payloadJson.has("sub")) {
-                    return payloadJson.get("sub").asText();
-                } else if (payloadJson.has("cognito:sub")) {
-                    return payloadJson.get("cognito:sub").asText();
-                } else if (payloadJson.has("user_id")) {
-                    return payloadJson.get("user_id").asText();
-                }
-
-                logger.log("No subject identifier found in token");
-                return "unknown-sub";
-            } catch (Exception e) {
-                logger.log("Error decoding token payload: " + e.getMessage());
-                return "unknown-sub";
-            }
+            return jwtClaimsCache.get(token);
         } catch (Exception e) {
-            logger.log("Failed to extract subject from token: " + e.getMessage());
-            return "unknown-sub";
+            logger.log("Failed to extract claims from token: " + e.getMessage());
+            return JwtClaims.UNKNOWN;
+        }
+    }
+
+    /**
+     * Creates a 429 response telling the client when to retry.
+     *
+     * @param headers The HTTP headers to include in the response
+     * @param e The rate limit that was exceeded
+     * @return API Gateway response with a Retry-After header
+     */
+    private APIGatewayProxyResponseEvent getRateLimitResponse(Map<String, String> headers, RateLimitExceededException e) {
+        Map<String, String> rateLimitHeaders = new HashMap<>(headers);
+        rateLimitHeaders.put("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+        rateLimitHeaders.put("Access-Control-Expose-Headers", "Retry-After");
+
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", e.getMessage());
+        errorResponse.put("retryAfterSeconds", e.getRetryAfterSeconds());
+
+        try {
+            return new APIGatewayProxyResponseEvent()
+                    .withStatusCode(429)
+                    .withHeaders(rateLimitHeaders)
+                    .withBody(objectMapper.writeValueAsString(errorResponse));
+        } catch (Exception ex) {
+            return getErrorResponse(headers, ex);
         }
     }
 
@@ -231,12 +442,24 @@ public class App implements RequestHandler<APIGatewayProxyRequestEvent, APIGatew
      * @return API Gateway response with error details
      */
     private APIGatewayProxyResponseEvent getErrorResponse(Map<String, String> headers, Exception e) {
+        return getErrorResponse(500, headers, e);
+    }
+
+    /**
+     * Creates an error response with the given status code and exception message.
+     *
+     * @param statusCode The HTTP status code
+     * @param headers The HTTP headers to include in the response
+     * @param e The exception that caused the error
+     * @return API Gateway response with error details
+     */
+    private APIGatewayProxyResponseEvent getErrorResponse(int statusCode, Map<String, String> headers, Exception e) {
         Map<String, String> errorResponse = new HashMap<>();
         errorResponse.put("error", e.getMessage());
 
         try {
             return new APIGatewayProxyResponseEvent()
-                    .withStatusCode(500)
+                    .withStatusCode(statusCode)
                     .withHeaders(headers)
                     .withBody(objectMapper.writeValueAsString(errorResponse));
         } catch (Exception ex) {
@@ -271,8 +494,8 @@ public class App implements RequestHandler<APIGatewayProxyRequestEvent, APIGatew
         Map<String, String> headers = new HashMap<>();
         headers.put("Content-Type", "application/json");
         headers.put("Access-Control-Allow-Origin", "*");
-        headers.put("Access-Control-Allow-Methods", "POST, OPTIONS");
-        headers.put("Access-Control-Allow-Headers", "Content-Type,X-Amz-Date,Authorization,X-Api-Key");
+        headers.put("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
+        headers.put("Access-Control-Allow-Headers", "Content-Type,X-Amz-Date,Authorization,X-Api-Key,Idempotency-Key");
         return headers;
     }
 }
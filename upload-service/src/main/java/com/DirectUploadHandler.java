@@ -0,0 +1,63 @@
+package com;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.S3Event;
+import com.amazonaws.services.lambda.runtime.events.models.s3.S3EventNotification;
+
+import com.repository.S3Repository;
+import com.repository.SqsRepository;
+import com.service.ImageService;
+import java.util.Map;
+
+/**
+ * Handles ObjectCreated notifications for images that clients uploaded straight to the staging
+ * bucket with a presigned URL, and enqueues them for processing exactly as {@link App} does for
+ * uploads that pass through API Gateway.
+ */
+public class DirectUploadHandler implements RequestHandler<S3Event, String> {
+    private final S3Repository s3Repository;
+    private final ImageService imageService;
+
+    public DirectUploadHandler() {
+        this.s3Repository = new S3Repository();
+        this.imageService = new ImageService(s3Repository, new SqsRepository());
+    }
+
+    public DirectUploadHandler(S3Repository s3Repository, ImageService imageService) {
+        this.s3Repository = s3Repository;
+        this.imageService = imageService;
+    }
+
+    /**
+     * Reads the metadata signed into each new object and sends its processing message.
+     * Images rejected by header validation are not counted; other failures are rethrown so Lambda
+     * retries the notification.
+     *
+     * @param event   The S3 event notification
+     * @param context The Lambda execution context
+     * @return A summary of how many objects were enqueued
+     */
+    @Override
+    public String handleRequest(S3Event event, Context context) {
+        int enqueued = 0;
+
+        for (S3EventNotification.S3EventNotificationRecord record : event.getRecords()) {
+            String key = record.getS3().getObject().getUrlDecodedKey();
+            context.getLogger().log("Direct upload received: " + key);
+
+            try {
+                Map<String, String> metadata = s3Repository.getObjectMetadata(key);
+                Map<String, Object> result = imageService.enqueueStagedImage(key, metadata, context);
+                if (!Boolean.TRUE.equals(result.get("rejected"))) {
+                    enqueued++;
+                }
+            } catch (Exception e) {
+                context.getLogger().log("ERROR: Failed to enqueue direct upload " + key + " - " + e.getMessage());
+                throw new RuntimeException("Failed to enqueue direct upload: " + key, e);
+            }
+        }
+
+        return "Enqueued " + enqueued + " direct uploads";
+    }
+}
@@ -0,0 +1,98 @@
+package com.auth;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.Base64;
+
+/**
+ * The user claims the upload service reads from a Cognito JWT.
+ * The token has already been verified by the API Gateway authorizer, so only the payload is decoded.
+ *
+ * @param name      The display name, falling back to the subject
+ * @param email     The email address
+ * @param sub       The unique user identifier
+ * @param expiresAt The {@code exp} claim in epoch seconds, or 0 if absent
+ */
+public record JwtClaims(String name, String email, String sub, long expiresAt) {
+
+    public static final JwtClaims UNKNOWN = new JwtClaims("unknown-user", "unknown-email", "unknown-sub", 0);
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * Decodes the payload segment of a JWT in a single pass.
+     *
+     * @param token The JWT without the "Bearer " prefix
+     * @return The extracted claims; fields missing from the token get the same defaults as before
+     * @throws IllegalArgumentException If the token is not a three-part JWT or its payload is not JSON
+     */
+    public static JwtClaims parse(String token) {
+        int firstDot = token.indexOf('.');
+        int secondDot = firstDot < 0 ? -1 : token.indexOf('.', firstDot + 1);
+        if (secondDot < 0 || token.indexOf('.', secondDot + 1) >= 0) {
+            throw new IllegalArgumentException("Invalid JWT token format");
+        }
+
+        byte[] payload;
+        try {
+            payload = Base64.getUrlDecoder().decode(token.substring(firstDot + 1, secondDot));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid JWT payload encoding", e);
+        }
+        return parsePayload(payload);
+    }
+
+    private static JwtClaims parsePayload(byte[] payload) {
+        String name = null;
+        String cognitoName = null;
+        String email = null;
+        String mail = null;
+        String sub = null;
+        String cognitoSub = null;
+        String userId = null;
+        long expiresAt = 0;
+
+        try (JsonParser parser = JSON_FACTORY.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("JWT payload is not a JSON object");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+
+                switch (field) {
+                    case "name" -> name = parser.getValueAsString();
+                    case "cognito:name" -> cognitoName = parser.getValueAsString();
+                    case "email" -> email = parser.getValueAsString();
+                    case "mail" -> mail = parser.getValueAsString();
+                    case "sub" -> sub = parser.getValueAsString();
+                    case "cognito:sub" -> cognitoSub = parser.getValueAsString();
+                    case "user_id" -> userId = parser.getValueAsString();
+                    case "exp" -> expiresAt = parser.getValueAsLong();
+                    default -> parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Error decoding token payload: " + e.getMessage(), e);
+        }
+
+        return new JwtClaims(
+                firstNonNull(name, sub, cognitoName, UNKNOWN.name()),
+                firstNonNull(email, mail, UNKNOWN.email()),
+                firstNonNull(sub, cognitoSub, userId, UNKNOWN.sub()),
+                expiresAt);
+    }
+
+    private static String firstNonNull(String... values) {
+        for (String value : values) {
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,88 @@
+package com.auth;
+
+import java.time.Clock;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of decoded JWT claims, kept on the handler so it survives warm invocations.
+ * Entries are keyed by the token's signature segment and expire with the token's {@code exp} claim,
+ * so repeated uploads from the same session skip decoding entirely.
+ */
+public class JwtClaimsCache {
+    private static final int DEFAULT_MAX_ENTRIES = 256;
+    // Upper bound for tokens without an exp claim
+    private static final long DEFAULT_MAX_TTL_MILLIS = 60 * 60 * 1000L;
+
+    private final Map<String, Entry> entries;
+    private final long maxTtlMillis;
+    private final Clock clock;
+
+    public JwtClaimsCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_TTL_MILLIS, Clock.systemUTC());
+    }
+
+    public JwtClaimsCache(int maxEntries, long maxTtlMillis, Clock clock) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.maxTtlMillis = maxTtlMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the claims for a token, decoding it only if it is not already cached.
+     *
+     * @param token The JWT without the "Bearer " prefix
+     * @return The token's claims
+     * @throws IllegalArgumentException If the token cannot be decoded
+     */
+    public JwtClaims get(String token) {
+        int signatureStart = token.lastIndexOf('.') + 1;
+        if (signatureStart <= 0 || signatureStart == token.length()) {
+            return JwtClaims.parse(token);
+        }
+
+        String signature = token.substring(signatureStart);
+        long now = clock.millis();
+
+        synchronized (entries) {
+            Entry entry = entries.get(signature);
+            // Compare the signed content as well so a reused signature can never alias another payload
+            if (entry != null && entry.expiresAtMillis > now
+                    && entry.signedContent.length() == signatureStart - 1 && token.startsWith(entry.signedContent)) {
+                return entry.claims;
+            }
+        }
+
+        JwtClaims claims = JwtClaims.parse(token);
+        long expiresAtMillis = now + maxTtlMillis;
+        if (claims.expiresAt() > 0) {
+            expiresAtMillis = Math.min(expiresAtMillis, claims.expiresAt() * 1000);
+        }
+
+        if (expiresAtMillis > now) {
+            synchronized (entries) {
+                entries.put(signature, new Entry(token.substring(0, signatureStart - 1), claims, expiresAtMillis));
+            }
+        }
+        return claims;
+    }
+
+    /**
+     * Returns the number of cached tokens.
+     *
+     * @return The cache size
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private record Entry(String signedContent, JwtClaims claims, long expiresAtMillis) {
+    }
+}
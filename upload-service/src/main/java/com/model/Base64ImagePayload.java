@@ -0,0 +1,149 @@
+package com.model;
+
+import java.io.InputStream;
+import java.util.Base64;
+
+/**
+ * Image payload backed by a base64 region of a larger character sequence, typically the raw API
+ * Gateway request body. Bytes are decoded lazily while the stream is read, so no decoded copy of
+ * the image is ever materialized.
+ */
+public class Base64ImagePayload implements ImagePayload {
+    private final CharSequence source;
+    private final int start;
+    private final int end;
+    private final long size;
+
+    /**
+     * Creates a payload over {@code source[start, end)}, validating the base64 alphabet up front so
+     * malformed input is rejected before any upload starts.
+     *
+     * @param source The character sequence holding the base64 text
+     * @param start  Index of the first base64 character
+     * @param end    Index one past the last base64 character
+     * @throws IllegalArgumentException If the region is not valid base64
+     */
+    public Base64ImagePayload(CharSequence source, int start, int end) {
+        if (start < 0 || end > source.length() || start > end) {
+            throw new IllegalArgumentException("Invalid base64 region");
+        }
+        this.source = source;
+        this.start = start;
+        this.end = end;
+        this.size = decodedLength(source, start, end);
+    }
+
+    /**
+     * Creates a payload over a complete base64 string.
+     *
+     * @param base64 The base64-encoded image data
+     * @return The payload
+     */
+    public static Base64ImagePayload of(String base64) {
+        return new Base64ImagePayload(base64, 0, base64.length());
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public InputStream openStream() {
+        return Base64.getDecoder().wrap(new CharSequenceInputStream(source, start, end));
+    }
+
+    /**
+     * Slices the decoded bytes without decoding what precedes the slice: every four base64
+     * characters decode to three bytes, so decoding can start at the quantum that holds the first
+     * byte of the slice.
+     */
+    @Override
+    public ImagePayload slice(long offset, long length) {
+        if (offset < 0 || length < 0 || offset + length > size) {
+            throw new IllegalArgumentException("Slice is outside the payload");
+        }
+        int quantumStart = start + (int) (offset / 3) * 4;
+        return new SlicedImagePayload(new Base64ImagePayload(source, quantumStart, end), offset % 3, length);
+    }
+
+    /**
+     * Returns the number of base64 characters backing this payload.
+     *
+     * @return The encoded length
+     */
+    public int encodedLength() {
+        return end - start;
+    }
+
+    private static long decodedLength(CharSequence source, int start, int end) {
+        int padding = 0;
+        for (int i = start; i < end; i++) {
+            char c = source.charAt(i);
+            if (c == '=') {
+                padding++;
+                if (padding > 2) {
+                    throw new IllegalArgumentException("Invalid base64 image data");
+                }
+            } else if (padding > 0 || !isBase64Char(c)) {
+                throw new IllegalArgumentException("Invalid base64 image data");
+            }
+        }
+
+        int length = end - start;
+        if (padding > 0 && length % 4 != 0) {
+            throw new IllegalArgumentException("Invalid base64 image data");
+        }
+
+        int dataChars = length - padding;
+        int remainder = dataChars % 4;
+        if (remainder == 1) {
+            throw new IllegalArgumentException("Invalid base64 image data");
+        }
+        return (dataChars / 4) * 3L + (remainder == 0 ? 0 : remainder - 1);
+    }
+
+    private static boolean isBase64Char(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '+' || c == '/';
+    }
+
+    /**
+     * Exposes an ASCII region of a character sequence as bytes without copying it.
+     */
+    private static class CharSequenceInputStream extends InputStream {
+        private final CharSequence source;
+        private final int end;
+        private int position;
+
+        CharSequenceInputStream(CharSequence source, int start, int end) {
+            this.source = source;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() {
+            return position < end ? source.charAt(position++) : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (position >= end) {
+                return -1;
+            }
+            int count = Math.min(length, end - position);
+            for (int i = 0; i < count; i++) {
+                buffer[offset + i] = (byte) source.charAt(position++);
+            }
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return end - position;
+        }
+    }
+}
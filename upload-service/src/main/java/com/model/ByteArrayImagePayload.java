@@ -0,0 +1,25 @@
+package com.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+/**
+ * Image payload over bytes that are already in memory.
+ */
+public class ByteArrayImagePayload implements ImagePayload {
+    private final byte[] data;
+
+    public ByteArrayImagePayload(byte[] data) {
+        this.data = data;
+    }
+
+    @Override
+    public long size() {
+        return data.length;
+    }
+
+    @Override
+    public InputStream openStream() {
+        return new ByteArrayInputStream(data);
+    }
+}
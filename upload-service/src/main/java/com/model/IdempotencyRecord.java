@@ -0,0 +1,14 @@
+package com.model;
+
+/**
+ * A stored idempotency key.
+ *
+ * @param status              {@code in_progress} while the first request runs, then {@code completed}
+ * @param fingerprint         Identifies the request the key was first used for
+ * @param responseBody        The response of the completed request, or null while in progress
+ * @param lockExpiresAtMillis When an in-progress request is presumed dead and the key can be taken over
+ */
+public record IdempotencyRecord(String status, String fingerprint, String responseBody, long lockExpiresAtMillis) {
+    public static final String IN_PROGRESS = "in_progress";
+    public static final String COMPLETED = "completed";
+}
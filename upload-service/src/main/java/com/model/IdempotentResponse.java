@@ -0,0 +1,10 @@
+package com.model;
+
+/**
+ * The response to a request sent with an idempotency key.
+ *
+ * @param body     The JSON response body
+ * @param replayed True if the body was stored by an earlier request with the same key
+ */
+public record IdempotentResponse(String body, boolean replayed) {
+}
@@ -0,0 +1,20 @@
+package com.model;
+
+/**
+ * Format and dimensions of an image, read from its header without decoding any pixels.
+ *
+ * @param contentType The MIME type identified from the file's magic bytes
+ * @param width       The image width in pixels
+ * @param height      The image height in pixels
+ */
+public record ImageHeader(String contentType, int width, int height) {
+
+    /**
+     * Returns the number of pixels a full decode of the image would produce.
+     *
+     * @return width times height
+     */
+    public long pixels() {
+        return (long) width * height;
+    }
+}
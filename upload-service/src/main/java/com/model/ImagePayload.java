@@ -0,0 +1,38 @@
+package com.model;
+
+import java.io.InputStream;
+
+/**
+ * Decoded image bytes that can be read more than once without being held in memory as a whole.
+ * Every call to {@link #openStream()} starts again from the first byte, so the same payload can be
+ * sniffed, hashed and uploaded in separate passes.
+ */
+public interface ImagePayload {
+
+    /**
+     * Returns the number of decoded bytes in the payload.
+     *
+     * @return The decoded size in bytes
+     */
+    long size();
+
+    /**
+     * Opens a new stream over the decoded bytes, positioned at the start of the payload.
+     *
+     * @return A fresh input stream over the decoded image
+     */
+    InputStream openStream();
+
+    /**
+     * Returns a payload over part of this one, such as the file part of a multipart body.
+     * The default implementation skips ahead on every open; payloads that can seek override it.
+     *
+     * @param offset The index of the first byte of the slice
+     * @param length The number of bytes in the slice
+     * @return The sliced payload
+     * @throws IllegalArgumentException If the range is not within this payload
+     */
+    default ImagePayload slice(long offset, long length) {
+        return new SlicedImagePayload(this, offset, length);
+    }
+}
@@ -0,0 +1,34 @@
+package com.model;
+
+import java.io.InputStream;
+
+/**
+ * Stands in for an image that failed validation while a batch was parsed, so that the error is
+ * reported for that image when it is processed instead of failing the whole batch. Every access
+ * throws the validation error.
+ */
+public class InvalidImagePayload implements ImagePayload {
+    private final String error;
+
+    /**
+     * @param error Why the image was rejected
+     */
+    public InvalidImagePayload(String error) {
+        this.error = error;
+    }
+
+    @Override
+    public long size() {
+        throw new IllegalArgumentException(error);
+    }
+
+    @Override
+    public InputStream openStream() {
+        throw new IllegalArgumentException(error);
+    }
+
+    @Override
+    public ImagePayload slice(long offset, long length) {
+        throw new IllegalArgumentException(error);
+    }
+}
@@ -0,0 +1,15 @@
+package com.model;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * A presigned S3 PUT that a client can use to upload an image directly to the staging bucket.
+ *
+ * @param url        The presigned URL
+ * @param key        The object key the URL writes to
+ * @param headers    Headers that were signed and must be sent unchanged with the PUT
+ * @param expiration When the URL stops being valid
+ */
+public record PresignedUpload(String url, String key, Map<String, String> headers, Instant expiration) {
+}
@@ -0,0 +1,111 @@
+package com.model;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * A byte range of another payload. Each stream opens the source, skips to the range and stops at
+ * its end, so the slice is never copied.
+ */
+public class SlicedImagePayload implements ImagePayload {
+    private final ImagePayload source;
+    private final long offset;
+    private final long length;
+
+    /**
+     * @param source The payload to slice
+     * @param offset The index of the first byte of the slice
+     * @param length The number of bytes in the slice
+     * @throws IllegalArgumentException If the range is not within the source
+     */
+    public SlicedImagePayload(ImagePayload source, long offset, long length) {
+        if (offset < 0 || length < 0 || offset + length > source.size()) {
+            throw new IllegalArgumentException("Slice is outside the payload");
+        }
+        this.source = source;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public long size() {
+        return length;
+    }
+
+    @Override
+    public InputStream openStream() {
+        InputStream in = source.openStream();
+        try {
+            in.skipNBytes(offset);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new BoundedInputStream(in, length);
+    }
+
+    @Override
+    public ImagePayload slice(long offset, long length) {
+        if (offset < 0 || length < 0 || offset + length > this.length) {
+            throw new IllegalArgumentException("Slice is outside the payload");
+        }
+        return source.slice(this.offset + offset, length);
+    }
+
+    /**
+     * Reads at most a fixed number of bytes from the wrapped stream.
+     */
+    private static class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long remaining) {
+            super(in);
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (remaining <= 0) {
+                return -1;
+            }
+            int count = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (count > 0) {
+                remaining -= count;
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.model;
+
+/**
+ * A processed image already recorded in the photo table.
+ *
+ * @param imageKey The processed object's key
+ * @param imageUrl The URL of the processed image
+ * @param title    The image title, or null if it has none
+ */
+public record StoredImage(String imageKey, String imageUrl, String title) {
+}
@@ -0,0 +1,23 @@
+package com.model;
+
+/**
+ * The stored state of a token bucket.
+ *
+ * @param tokens          Tokens left at {@code updatedAtMillis}
+ * @param updatedAtMillis When the bucket was last drawn from
+ */
+public record TokenBucket(double tokens, long updatedAtMillis) {
+
+    /**
+     * Returns the bucket as it stands at {@code nowMillis}, after refilling at a constant rate.
+     *
+     * @param nowMillis      The current time
+     * @param capacity       The maximum number of tokens the bucket holds
+     * @param tokensPerMilli The refill rate
+     * @return The refilled bucket
+     */
+    public TokenBucket refill(long nowMillis, double capacity, double tokensPerMilli) {
+        long elapsed = Math.max(0, nowMillis - updatedAtMillis);
+        return new TokenBucket(Math.min(capacity, tokens + elapsed * tokensPerMilli), nowMillis);
+    }
+}
@@ -0,0 +1,16 @@
+package com.model;
+
+/**
+ * Fields extracted from an upload request body.
+ *
+ * @param image         The decoded image payload, or null if the request carried none
+ * @param contentType   The client-declared content type (optional)
+ * @param imageTitle    The image title (optional)
+ * @param contentLength The size in bytes the client declares it will upload directly to S3 (optional)
+ */
+public record UploadRequest(ImagePayload image, String contentType, String imageTitle, Long contentLength) {
+
+    public UploadRequest(ImagePayload image, String contentType, String imageTitle) {
+        this(image, contentType, imageTitle, null);
+    }
+}
@@ -0,0 +1,41 @@
+package com.model;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome and transfer statistics of an S3 upload.
+ *
+ * @param url                 The URL of the uploaded object
+ * @param bytes               Number of bytes uploaded
+ * @param elapsedMillis       Wall-clock time of the whole upload
+ * @param parts               Number of parts, 1 for a single PUT
+ * @param partLatenciesMillis Latency of each part upload in part order
+ */
+public record UploadResult(String url, long bytes, long elapsedMillis, int parts, List<Long> partLatenciesMillis) {
+
+    /**
+     * Returns the effective throughput of the upload.
+     *
+     * @return Bytes per second, or 0 if the upload took no measurable time
+     */
+    public long bytesPerSecond() {
+        return elapsedMillis > 0 ? bytes * 1000 / elapsedMillis : 0;
+    }
+
+    /**
+     * Returns the statistics as a map suitable for JSON responses and log lines.
+     *
+     * @return The upload statistics
+     */
+    public Map<String, Object> toStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("bytes", bytes);
+        stats.put("elapsedMs", elapsedMillis);
+        stats.put("bytesPerSecond", bytesPerSecond());
+        stats.put("parts", parts);
+        stats.put("partLatenciesMs", partLatenciesMillis);
+        return stats;
+    }
+}
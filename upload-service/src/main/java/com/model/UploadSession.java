@@ -0,0 +1,46 @@
+package com.model;
+
+import java.util.Map;
+
+/**
+ * A resumable upload: an S3 multipart upload plus what is needed to validate its chunks and
+ * enqueue the finished image.
+ *
+ * @param sessionId   The public session identifier
+ * @param userId      The user who created the session; only they may use it
+ * @param key         The staging object key the parts are assembled into
+ * @param uploadId    The S3 multipart upload ID, never exposed to clients
+ * @param contentType The content type declared when the session was created
+ * @param size        The total image size in bytes
+ * @param partSize    The size of every part except the last
+ * @param status      {@code open}, {@code assembled} (the object exists but could not be enqueued),
+ *                    {@code completed} or {@code aborted}
+ * @param metadata    The object metadata used to build the processing message
+ * @param expiresAt   Epoch second after which the session can no longer be used
+ */
+public record UploadSession(String sessionId, String userId, String key, String uploadId, String contentType,
+                            long size, int partSize, String status, Map<String, String> metadata, long expiresAt) {
+    public static final String OPEN = "open";
+    public static final String ASSEMBLED = "assembled";
+    public static final String COMPLETED = "completed";
+    public static final String ABORTED = "aborted";
+
+    /**
+     * Returns the number of parts the image is split into.
+     *
+     * @return The part count
+     */
+    public int partCount() {
+        return (int) ((size + partSize - 1) / partSize);
+    }
+
+    /**
+     * Returns the exact size the given part must have.
+     *
+     * @param partNumber The 1-based part number
+     * @return The expected part size in bytes
+     */
+    public long expectedPartSize(int partNumber) {
+        return partNumber < partCount() ? partSize : size - (long) (partCount() - 1) * partSize;
+    }
+}
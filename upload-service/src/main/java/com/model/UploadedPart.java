@@ -0,0 +1,12 @@
+package com.model;
+
+/**
+ * One part of an S3 multipart upload as acknowledged by S3.
+ *
+ * @param partNumber     The 1-based part number
+ * @param size           The part size in bytes
+ * @param eTag           The ETag S3 returned for the part
+ * @param checksumCrc32c The base64 CRC32C S3 verified for the part
+ */
+public record UploadedPart(int partNumber, long size, String eTag, String checksumCrc32c) {
+}
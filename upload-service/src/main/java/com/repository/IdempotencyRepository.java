@@ -0,0 +1,158 @@
+package com.repository;
+
+import com.model.IdempotencyRecord;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Stores idempotency keys and the responses of the requests that used them. Items carry an
+ * {@code expiresAt} TTL, after which a key can be used again.
+ */
+public class IdempotencyRepository {
+    private final DynamoDbClient dynamoDbClient;
+    private final String tableName;
+
+    public IdempotencyRepository() {
+        String regionName = System.getenv("AWS_REGION");
+        Region region = (regionName != null && !regionName.isEmpty())
+            ? Region.of(regionName)
+            : Region.US_EAST_1;
+
+        this.dynamoDbClient = DynamoDbClient.builder()
+                .region(region)
+                .build();
+        this.tableName = System.getenv("IDEMPOTENCY_TABLE");
+    }
+
+    public IdempotencyRepository(DynamoDbClient dynamoDbClient, String tableName) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.tableName = tableName;
+    }
+
+    /**
+     * Returns whether an idempotency table is configured.
+     *
+     * @return true if keys can be recorded
+     */
+    public boolean isEnabled() {
+        return tableName != null && !tableName.isEmpty();
+    }
+
+    /**
+     * Claims a key for a new request. The write succeeds only if the key is unused, or if the request
+     * that claimed it is still marked in progress past its lock, meaning its Lambda died.
+     *
+     * @param id                  The scoped key
+     * @param fingerprint         Identifies the request
+     * @param nowMillis           The current time
+     * @param lockExpiresAtMillis When the claim may be taken over if the request never completes
+     * @param expiresAtSeconds    Epoch second after which the item may be deleted
+     * @return true if the key was claimed, false if it is held or completed
+     */
+    public boolean tryLock(String id, String fingerprint, long nowMillis, long lockExpiresAtMillis, long expiresAtSeconds) {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("idempotencyKey", AttributeValue.fromS(id));
+        item.put("status", AttributeValue.fromS(IdempotencyRecord.IN_PROGRESS));
+        item.put("fingerprint", AttributeValue.fromS(fingerprint));
+        item.put("lockExpiresAt", AttributeValue.fromN(String.valueOf(lockExpiresAtMillis)));
+        item.put("expiresAt", AttributeValue.fromN(String.valueOf(expiresAtSeconds)));
+
+        try {
+            dynamoDbClient.putItem(PutItemRequest.builder()
+                    .tableName(tableName)
+                    .item(item)
+                    .conditionExpression("attribute_not_exists(idempotencyKey) OR (#status = :inProgress AND lockExpiresAt < :now)")
+                    .expressionAttributeNames(Map.of("#status", "status"))
+                    .expressionAttributeValues(Map.of(
+                            ":inProgress", AttributeValue.fromS(IdempotencyRecord.IN_PROGRESS),
+                            ":now", AttributeValue.fromN(String.valueOf(nowMillis))))
+                    .build());
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads a key with a strongly consistent read.
+     *
+     * @param id The scoped key
+     * @return The stored key, or empty if it is unused
+     */
+    public Optional<IdempotencyRecord> find(String id) {
+        GetItemResponse response = dynamoDbClient.getItem(GetItemRequest.builder()
+                .tableName(tableName)
+                .key(Map.of("idempotencyKey", AttributeValue.fromS(id)))
+                .consistentRead(true)
+                .build());
+
+        if (!response.hasItem() || response.item().isEmpty()) {
+            return Optional.empty();
+        }
+        Map<String, AttributeValue> item = response.item();
+        return Optional.of(new IdempotencyRecord(
+                item.get("status").s(),
+                item.get("fingerprint").s(),
+                item.containsKey("responseBody") ? item.get("responseBody").s() : null,
+                Long.parseLong(item.get("lockExpiresAt").n())));
+    }
+
+    /**
+     * Stores the response of the request holding a key.
+     *
+     * @param id               The scoped key
+     * @param responseBody     The response to replay
+     * @param expiresAtSeconds Epoch second after which the item may be deleted
+     */
+    public void complete(String id, String responseBody, long expiresAtSeconds) {
+        dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                .tableName(tableName)
+                .key(Map.of("idempotencyKey", AttributeValue.fromS(id)))
+                .updateExpression("SET #status = :completed, responseBody = :responseBody, expiresAt = :expiresAt")
+                .expressionAttributeNames(Map.of("#status", "status"))
+                .expressionAttributeValues(Map.of(
+                        ":completed", AttributeValue.fromS(IdempotencyRecord.COMPLETED),
+                        ":responseBody", AttributeValue.fromS(responseBody),
+                        ":expiresAt", AttributeValue.fromN(String.valueOf(expiresAtSeconds))))
+                .build());
+    }
+
+    /**
+     * Releases a key whose request failed, so a retry runs the request again. The key is deleted
+     * only while it still holds the lock the failed request took: once that lock expires, another
+     * attempt may have taken the key over, and its claim or response must survive.
+     *
+     * @param id                  The scoped key
+     * @param fingerprint         Identifies the request that took the lock
+     * @param lockExpiresAtMillis The lock expiry that request wrote
+     * @return true if the key was released, false if it is no longer held by that lock
+     */
+    public boolean delete(String id, String fingerprint, long lockExpiresAtMillis) {
+        try {
+            dynamoDbClient.deleteItem(DeleteItemRequest.builder()
+                    .tableName(tableName)
+                    .key(Map.of("idempotencyKey", AttributeValue.fromS(id)))
+                    .conditionExpression("#status = :inProgress AND fingerprint = :fingerprint AND lockExpiresAt = :lockExpiresAt")
+                    .expressionAttributeNames(Map.of("#status", "status"))
+                    .expressionAttributeValues(Map.of(
+                            ":inProgress", AttributeValue.fromS(IdempotencyRecord.IN_PROGRESS),
+                            ":fingerprint", AttributeValue.fromS(fingerprint),
+                            ":lockExpiresAt", AttributeValue.fromN(String.valueOf(lockExpiresAtMillis))))
+                    .build());
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.repository;
+
+import com.model.StoredImage;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Read access to the photo table written by the processing service.
+ */
+public class ImageMetadataRepository {
+    private static final String CONTENT_HASH_INDEX = "UserContentHashIndex";
+
+    private final DynamoDbClient dynamoDbClient;
+    private final String tableName;
+
+    public ImageMetadataRepository() {
+        String regionName = System.getenv("AWS_REGION");
+        Region region = (regionName != null && !regionName.isEmpty())
+            ? Region.of(regionName)
+            : Region.US_EAST_1;
+
+        this.dynamoDbClient = DynamoDbClient.builder()
+                .region(region)
+                .build();
+        this.tableName = System.getenv("IMAGE_TABLE");
+    }
+
+    public ImageMetadataRepository(DynamoDbClient dynamoDbClient, String tableName) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.tableName = tableName;
+    }
+
+    /**
+     * Returns whether a photo table is configured.
+     *
+     * @return true if lookups can be made
+     */
+    public boolean isEnabled() {
+        return tableName != null && !tableName.isEmpty();
+    }
+
+    /**
+     * Finds an active image the user has already uploaded with the same content.
+     *
+     * @param userId      The owner of the image
+     * @param contentHash The SHA-256 of the original upload, as written by the processing service
+     * @return The stored image, or empty if the user has no active image with that content
+     */
+    public Optional<StoredImage> findActiveByContentHash(String userId, String contentHash) {
+        QueryResponse response = dynamoDbClient.query(QueryRequest.builder()
+                .tableName(tableName)
+                .indexName(CONTENT_HASH_INDEX)
+                .keyConditionExpression("userId = :userId AND contentHash = :contentHash")
+                .filterExpression("#status = :active")
+                .expressionAttributeNames(Map.of("#status", "status"))
+                .expressionAttributeValues(Map.of(
+                        ":userId", AttributeValue.fromS(userId),
+                        ":contentHash", AttributeValue.fromS(contentHash),
+                        ":active", AttributeValue.fromS("active")))
+                .build());
+
+        return response.items().stream()
+                .findFirst()
+                .map(item -> new StoredImage(
+                        item.get("imageKey").s(),
+                        item.get("imageUrl").s(),
+                        item.containsKey("title") ? item.get("title").s() : null));
+    }
+}
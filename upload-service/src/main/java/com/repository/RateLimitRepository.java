@@ -0,0 +1,109 @@
+package com.repository;
+
+import com.model.TokenBucket;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Per-user token buckets shared by every upload container. Buckets are replaced with conditional
+ * writes against the state they were computed from, so concurrent requests can never spend the same
+ * token twice.
+ */
+public class RateLimitRepository {
+    private final DynamoDbClient dynamoDbClient;
+    private final String tableName;
+
+    public RateLimitRepository() {
+        String regionName = System.getenv("AWS_REGION");
+        Region region = (regionName != null && !regionName.isEmpty())
+            ? Region.of(regionName)
+            : Region.US_EAST_1;
+
+        this.dynamoDbClient = DynamoDbClient.builder()
+                .region(region)
+                .build();
+        this.tableName = System.getenv("RATE_LIMIT_TABLE");
+    }
+
+    public RateLimitRepository(DynamoDbClient dynamoDbClient, String tableName) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.tableName = tableName;
+    }
+
+    /**
+     * Returns whether a rate limit table is configured.
+     *
+     * @return true if buckets can be read and written
+     */
+    public boolean isEnabled() {
+        return tableName != null && !tableName.isEmpty();
+    }
+
+    /**
+     * Reads a user's bucket with a strongly consistent read.
+     *
+     * @param userId The user
+     * @return The bucket, or empty if the user has none (a full bucket)
+     */
+    public Optional<TokenBucket> find(String userId) {
+        GetItemResponse response = dynamoDbClient.getItem(GetItemRequest.builder()
+                .tableName(tableName)
+                .key(Map.of("userId", AttributeValue.fromS(userId)))
+                .consistentRead(true)
+                .build());
+
+        if (!response.hasItem() || response.item().isEmpty()) {
+            return Optional.empty();
+        }
+        Map<String, AttributeValue> item = response.item();
+        return Optional.of(new TokenBucket(
+                Double.parseDouble(item.get("tokens").n()),
+                Long.parseLong(item.get("updatedAt").n())));
+    }
+
+    /**
+     * Replaces a user's bucket only if it still holds {@code expected}.
+     *
+     * @param userId           The user
+     * @param expected         The bucket the update was computed from, or null if the user had none
+     * @param updated          The new bucket
+     * @param expiresAtSeconds Epoch second after which the item may be deleted; by then it would be full again
+     * @return true if the bucket was replaced, false if another request changed it first
+     */
+    public boolean compareAndSet(String userId, TokenBucket expected, TokenBucket updated, long expiresAtSeconds) {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("userId", AttributeValue.fromS(userId));
+        item.put("tokens", AttributeValue.fromN(String.valueOf(updated.tokens())));
+        item.put("updatedAt", AttributeValue.fromN(String.valueOf(updated.updatedAtMillis())));
+        item.put("expiresAt", AttributeValue.fromN(String.valueOf(expiresAtSeconds)));
+
+        PutItemRequest.Builder request = PutItemRequest.builder()
+                .tableName(tableName)
+                .item(item);
+
+        if (expected == null) {
+            request.conditionExpression("attribute_not_exists(userId)");
+        } else {
+            request.conditionExpression("tokens = :tokens AND updatedAt = :updatedAt")
+                    .expressionAttributeValues(Map.of(
+                            ":tokens", AttributeValue.fromN(String.valueOf(expected.tokens())),
+                            ":updatedAt", AttributeValue.fromN(String.valueOf(expected.updatedAtMillis()))));
+        }
+
+        try {
+            dynamoDbClient.putItem(request.build());
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+    }
+}
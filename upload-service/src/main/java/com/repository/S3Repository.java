@@ -1,27 +1,98 @@
 package com.repository;
 
+import com.model.ByteArrayImagePayload;
+import com.model.ImagePayload;
+import com.model.PresignedUpload;
+import com.model.UploadResult;
+import com.model.UploadedPart;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.ChecksumAlgorithm;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListPartsRequest;
+import software.amazon.awssdk.services.s3.model.ListPartsResponse;
+import software.amazon.awssdk.services.s3.model.Part;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
-import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32C;
 
 public class S3Repository {
+    // S3 rejects any part but the last that is smaller than this, but only at CompleteMultipartUpload
+    static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    // Below the 10 MiB MAX_IMAGE_BYTES, so the larger uploads that reach this Lambda go in two parts
+    private static final long DEFAULT_MULTIPART_THRESHOLD = 6L * 1024 * 1024;
+    private static final int DEFAULT_PART_SIZE = (int) MIN_PART_SIZE;
+    private static final int DEFAULT_UPLOAD_CONCURRENCY = 4;
+
     private final S3Client s3Client;
     private final String bucketName;
+    private final long multipartThreshold;
+    private final int partSize;
+    private final int uploadConcurrency;
+    private S3Presigner s3Presigner;
 
     public S3Repository() {
         this.s3Client = S3Client.builder()
                 .region(Region.US_EAST_1)
                 .build();
         this.bucketName = System.getenv("STAGING_BUCKET");
+        this.multipartThreshold = getEnvLong("S3_MULTIPART_THRESHOLD_BYTES", DEFAULT_MULTIPART_THRESHOLD);
+        this.partSize = validatePartSize(getEnvLong("S3_MULTIPART_PART_SIZE_BYTES", DEFAULT_PART_SIZE));
+        this.uploadConcurrency = (int) getEnvLong("S3_UPLOAD_CONCURRENCY", DEFAULT_UPLOAD_CONCURRENCY);
     }
 
     public S3Repository(S3Client s3Client, String bucketName) {
+        this(s3Client, bucketName, DEFAULT_MULTIPART_THRESHOLD, DEFAULT_PART_SIZE, DEFAULT_UPLOAD_CONCURRENCY);
+    }
+
+    public S3Repository(S3Client s3Client, S3Presigner s3Presigner, String bucketName) {
+        this(s3Client, bucketName);
+        this.s3Presigner = s3Presigner;
+    }
+
+    /**
+     * Constructor with explicit multipart settings.
+     *
+     * @param s3Client           The S3 client
+     * @param bucketName         The staging bucket
+     * @param multipartThreshold Payloads of at least this many bytes are uploaded in parts
+     * @param partSize           Size of each part; S3 requires at least 5 MiB for all but the last
+     * @param uploadConcurrency  Maximum number of parts buffered and in flight at once
+     */
+    public S3Repository(S3Client s3Client, String bucketName, long multipartThreshold, int partSize, int uploadConcurrency) {
         this.s3Client = s3Client;
         this.bucketName = bucketName;
+        this.multipartThreshold = multipartThreshold;
+        this.partSize = partSize;
+        this.uploadConcurrency = uploadConcurrency;
     }
 
     /**
@@ -33,22 +104,278 @@ public class S3Repository {
      * @return The URL to the uploaded file
      */
     public String uploadFile(String fileName, byte[] fileData, String contentType, Map<String, String> metadata) {
-        PutObjectRequest.Builder requestBuilder = PutObjectRequest.builder()
+        return upload(fileName, new ByteArrayImagePayload(fileData), contentType, metadata).url();
+    }
+
+    /**
+     * Streams an image payload to the S3 bucket with metadata.
+     * The payload is decoded while the request body is being sent, so only the SDK's transfer
+     * buffer is held in memory regardless of image size.
+     *
+     * @param fileName    The name/path to use for the file in S3
+     * @param payload     The image payload to stream
+     * @param contentType The MIME type of the file
+     * @param metadata    Additional metadata to attach to the S3 object
+     * @return The URL to the uploaded file
+     */
+    public String uploadFile(String fileName, ImagePayload payload, String contentType, Map<String, String> metadata) {
+        return upload(fileName, payload, contentType, metadata).url();
+    }
+
+    /**
+     * Uploads an image payload and reports transfer statistics. Payloads below the multipart
+     * threshold are streamed in a single PUT; larger ones are split into parts that are uploaded
+     * concurrently on virtual threads.
+     *
+     * @param fileName    The name/path to use for the file in S3
+     * @param payload     The image payload to upload
+     * @param contentType The MIME type of the file
+     * @param metadata    Additional metadata to attach to the S3 object
+     * @return The object URL together with throughput and per-part latency
+     */
+    public UploadResult upload(String fileName, ImagePayload payload, String contentType, Map<String, String> metadata) {
+        long started = System.nanoTime();
+
+        if (payload.size() < multipartThreshold) {
+            PutObjectRequest.Builder requestBuilder = PutObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(fileName)
+                    .contentLength(payload.size())
+                    .contentType(contentType);
+
+            if (metadata != null) {
+                requestBuilder.metadata(metadata);
+            }
+
+            s3Client.putObject(requestBuilder.build(),
+                    RequestBody.fromContentProvider(payload::openStream, payload.size(), contentType));
+
+            long elapsed = elapsedMillis(started);
+            return new UploadResult(getFileUrl(fileName), payload.size(), elapsed, 1, List.of(elapsed));
+        }
+
+        List<Long> partLatencies = multipartUpload(fileName, payload, contentType, metadata);
+        return new UploadResult(getFileUrl(fileName), payload.size(), elapsedMillis(started), partLatencies.size(), partLatencies);
+    }
+
+    /**
+     * Uploads the payload in parts. The payload stream is read sequentially into part buffers, and
+     * a semaphore bounds how many parts are buffered or in flight so memory stays at
+     * {@code uploadConcurrency * partSize}. Each part carries a CRC32C computed while it is read,
+     * which S3 verifies on receipt. Any failure aborts the upload so no orphaned parts are billed.
+     *
+     * @return The latency of each part in part order
+     */
+    private List<Long> multipartUpload(String fileName, ImagePayload payload, String contentType, Map<String, String> metadata) {
+        String uploadId = createMultipartUpload(fileName, contentType, metadata);
+
+        List<Future<UploadedPart>> futures = new ArrayList<>();
+        long[] partLatencies = new long[(int) ((payload.size() + partSize - 1) / partSize)];
+        Semaphore permits = new Semaphore(uploadConcurrency);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             InputStream in = payload.openStream()) {
+            for (int partNumber = 1; partNumber <= partLatencies.length && failure.get() == null; partNumber++) {
+                int length = (int) Math.min(partSize, payload.size() - (long) (partNumber - 1) * partSize);
+
+                permits.acquire();
+                byte[] part = in.readNBytes(length);
+                if (part.length != length) {
+                    permits.release();
+                    throw new IOException("Image payload ended after " + ((long) (partNumber - 1) * partSize + part.length) + " bytes");
+                }
+
+                int number = partNumber;
+                futures.add(executor.submit(() -> {
+                    try {
+                        long partStarted = System.nanoTime();
+                        UploadedPart completed = uploadPart(fileName, uploadId, number, part);
+                        partLatencies[number - 1] = elapsedMillis(partStarted);
+                        return completed;
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                        throw e;
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+
+            List<UploadedPart> completedParts = new ArrayList<>();
+            for (Future<UploadedPart> future : futures) {
+                completedParts.add(future.get());
+            }
+
+            completeMultipartUpload(fileName, uploadId, completedParts);
+        } catch (Exception e) {
+            abortMultipartUpload(fileName, uploadId);
+
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException("Multipart upload failed for " + fileName + ": " + cause.getMessage(), cause);
+        }
+
+        List<Long> latencies = new ArrayList<>(partLatencies.length);
+        for (long latency : partLatencies) {
+            latencies.add(latency);
+        }
+        return latencies;
+    }
+
+    /**
+     * Starts a multipart upload whose parts carry CRC32C checksums.
+     *
+     * @param fileName    The name/path of the object the parts assemble into
+     * @param contentType The MIME type of the object
+     * @param metadata    Additional metadata to attach to the object, or null
+     * @return The S3 upload ID
+     */
+    public String createMultipartUpload(String fileName, String contentType, Map<String, String> metadata) {
+        CreateMultipartUploadRequest.Builder createBuilder = CreateMultipartUploadRequest.builder()
                 .bucket(bucketName)
                 .key(fileName)
-                .contentLength((long) fileData.length)
-                .contentType(contentType);
-        
+                .contentType(contentType)
+                .checksumAlgorithm(ChecksumAlgorithm.CRC32_C);
+
         if (metadata != null) {
-            requestBuilder.metadata(metadata);
+            createBuilder.metadata(metadata);
+        }
+
+        return s3Client.createMultipartUpload(createBuilder.build()).uploadId();
+    }
+
+    /**
+     * Uploads one part of a multipart upload. The CRC32C is computed here and verified by S3, so a
+     * part corrupted in transit is rejected rather than assembled. Re-uploading a part number
+     * replaces the earlier part.
+     *
+     * @param fileName   The name/path of the object
+     * @param uploadId   The S3 upload ID
+     * @param partNumber The 1-based part number
+     * @param part       The part bytes
+     * @return The acknowledged part
+     */
+    public UploadedPart uploadPart(String fileName, String uploadId, int partNumber, byte[] part) {
+        CRC32C crc = new CRC32C();
+        crc.update(part);
+        String checksum = Base64.getEncoder().encodeToString(
+                ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+
+        UploadPartResponse response = s3Client.uploadPart(UploadPartRequest.builder()
+                .bucket(bucketName)
+                .key(fileName)
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .contentLength((long) part.length)
+                .checksumAlgorithm(ChecksumAlgorithm.CRC32_C)
+                .checksumCRC32C(checksum)
+                .build(), RequestBody.fromBytes(part));
+
+        return new UploadedPart(partNumber, part.length, response.eTag(), checksum);
+    }
+
+    /**
+     * Lists the parts S3 has received for a multipart upload, following pagination.
+     *
+     * @param fileName The name/path of the object
+     * @param uploadId The S3 upload ID
+     * @return The uploaded parts in part order
+     */
+    public List<UploadedPart> listParts(String fileName, String uploadId) {
+        List<UploadedPart> parts = new ArrayList<>();
+        Integer marker = null;
+
+        ListPartsResponse response;
+        do {
+            response = s3Client.listParts(ListPartsRequest.builder()
+                    .bucket(bucketName)
+                    .key(fileName)
+                    .uploadId(uploadId)
+                    .partNumberMarker(marker)
+                    .build());
+
+            for (Part part : response.parts()) {
+                parts.add(new UploadedPart(part.partNumber(), part.size(), part.eTag(), part.checksumCRC32C()));
+            }
+            marker = response.nextPartNumberMarker();
+        } while (Boolean.TRUE.equals(response.isTruncated()));
+
+        return parts;
+    }
+
+    /**
+     * Assembles the uploaded parts into the final object.
+     *
+     * @param fileName The name/path of the object
+     * @param uploadId The S3 upload ID
+     * @param parts    Every part of the object in part order
+     */
+    public void completeMultipartUpload(String fileName, String uploadId, List<UploadedPart> parts) {
+        List<CompletedPart> completedParts = new ArrayList<>(parts.size());
+        for (UploadedPart part : parts) {
+            completedParts.add(CompletedPart.builder()
+                    .partNumber(part.partNumber())
+                    .eTag(part.eTag())
+                    .checksumCRC32C(part.checksumCrc32c())
+                    .build());
+        }
+
+        s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                .bucket(bucketName)
+                .key(fileName)
+                .uploadId(uploadId)
+                .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                .build());
+    }
+
+    /**
+     * Aborts a multipart upload so S3 discards its parts. Failures are ignored.
+     *
+     * @param fileName The name/path of the object
+     * @param uploadId The S3 upload ID
+     */
+    public void abortMultipartUpload(String fileName, String uploadId) {
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(fileName)
+                    .uploadId(uploadId)
+                    .build());
+        } catch (Exception e) {
+            // The bucket lifecycle rule removes anything an abort leaves behind
         }
+    }
 
+    private String getFileUrl(String fileName) {
         return String.format("https://%s.s3.%s.amazonaws.com/%s",
-                bucketName, 
-                Region.EU_CENTRAL_1.toString(), 
+                bucketName,
+                Region.EU_CENTRAL_1.toString(),
                 fileName);
     }
 
+    private static long elapsedMillis(long startedNanos) {
+        return (System.nanoTime() - startedNanos) / 1_000_000;
+    }
+
+    static int validatePartSize(long partSize) {
+        if (partSize < MIN_PART_SIZE || partSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("S3_MULTIPART_PART_SIZE_BYTES must be between " + MIN_PART_SIZE
+                    + " and " + Integer.MAX_VALUE + " bytes, was " + partSize);
+        }
+        return (int) partSize;
+    }
+
+    private static long getEnvLong(String name, long defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isEmpty() ? Long.parseLong(value) : defaultValue;
+    }
+
     /**
      * Uploads a file to the S3 bucket without additional metadata.
      *
@@ -60,4 +387,107 @@ public class S3Repository {
     public String uploadFile(String fileName, byte[] fileData, String contentType) {
         return uploadFile(fileName, fileData, contentType, null);
     }
+
+    /**
+     * Creates a presigned PUT for the staging bucket. The content type, content length and metadata
+     * are part of the signature, so the client cannot upload under a different identity than the one
+     * we issued, nor upload more bytes than it declared.
+     *
+     * @param fileName      The name/path the client will upload to
+     * @param contentType   The MIME type the client must send
+     * @param contentLength The exact size in bytes the client must send
+     * @param metadata      Metadata the client must send as {@code x-amz-meta-*} headers
+     * @param expiry        How long the URL stays valid
+     * @return The presigned upload
+     */
+    public PresignedUpload createPresignedUpload(String fileName, String contentType, long contentLength,
+                                                 Map<String, String> metadata, Duration expiry) {
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(fileName)
+                .contentType(contentType)
+                .contentLength(contentLength)
+                .metadata(metadata)
+                .build();
+
+        PresignedPutObjectRequest presigned = getPresigner().presignPutObject(PutObjectPresignRequest.builder()
+                .signatureDuration(expiry)
+                .putObjectRequest(putObjectRequest)
+                .build());
+
+        Map<String, String> headers = new HashMap<>();
+        for (Map.Entry<String, List<String>> header : presigned.signedHeaders().entrySet()) {
+            // The host header is set by the HTTP client from the URL
+            if (!header.getKey().equalsIgnoreCase("host")) {
+                headers.put(header.getKey(), String.join(",", header.getValue()));
+            }
+        }
+
+        return new PresignedUpload(presigned.url().toString(), fileName, headers, presigned.expiration());
+    }
+
+    /**
+     * Returns the user metadata stored on an object in the bucket.
+     * S3 lower-cases metadata keys, so callers should look them up case-insensitively.
+     *
+     * @param fileName The name/path of the object
+     * @return The object's user metadata
+     */
+    public Map<String, String> getObjectMetadata(String fileName) {
+        return s3Client.headObject(HeadObjectRequest.builder()
+                .bucket(bucketName)
+                .key(fileName)
+                .build())
+                .metadata();
+    }
+
+    /**
+     * Opens a ranged read of the first bytes of an object, enough to inspect its header
+     * without downloading the whole file.
+     *
+     * @param fileName The name/path of the object
+     * @param length   The maximum number of bytes to read
+     * @return A stream over at most {@code length} bytes from the start of the object
+     */
+    public InputStream openObjectPrefix(String fileName, long length) {
+        return openObjectRange(fileName, 0, length);
+    }
+
+    /**
+     * Opens a ranged read of part of an object, for reading further into a header that did not
+     * fit in the prefix.
+     *
+     * @param fileName The name/path of the object
+     * @param offset   The first byte to read; it must lie within the object
+     * @param length   The maximum number of bytes to read
+     * @return A stream over at most {@code length} bytes starting at {@code offset}
+     */
+    public InputStream openObjectRange(String fileName, long offset, long length) {
+        return s3Client.getObject(GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(fileName)
+                .range("bytes=" + offset + "-" + (offset + length - 1))
+                .build());
+    }
+
+    /**
+     * Deletes an object from the bucket.
+     *
+     * @param fileName The name/path of the object
+     */
+    public void deleteFile(String fileName) {
+        s3Client.deleteObject(DeleteObjectRequest.builder()
+                .bucket(bucketName)
+                .key(fileName)
+                .build());
+    }
+
+    private synchronized S3Presigner getPresigner() {
+        if (s3Presigner == null) {
+            s3Presigner = S3Presigner.builder()
+                    .region(Region.US_EAST_1)
+                    .build();
+        }
+        return s3Presigner;
+    }
 }
@@ -1,22 +1,61 @@
 package com.repository;
 
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
 import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
 import software.amazon.awssdk.services.sqs.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResultEntry;
 import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
 import software.amazon.awssdk.services.sqs.model.SendMessageResponse;
+import software.amazon.awssdk.services.sqs.model.SqsException;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.amazonaws.services.lambda.runtime.Context;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class SqsRepository {
+    // SQS allows at most 10 message attributes, so these are carried in the JSON body only
+    private static final Set<String> BODY_ONLY_FIELDS = Set.of("width", "height", "contentHash");
+    private static final int MAX_BATCH_SIZE = 10;
+    private static final long DEFAULT_BATCH_LINGER_MILLIS = 5;
+    // Entries that fail on the SQS side (not the sender's fault) are re-queued this many times in total
+    private static final int MAX_ENTRY_ATTEMPTS = 3;
+    // Used when a message carries no usable user id
+    private static final String DEFAULT_MESSAGE_GROUP = "userUploads";
+    private static final int MAX_MESSAGE_GROUP_ID_LENGTH = 128;
 
     private final SqsClient sqsClient;
+    private final SqsAsyncClient sqsAsyncClient;
     private final String queueUrl;
     private final ObjectMapper objectMapper;
+    private final ObjectMapper compactObjectMapper;
+    private final long batchLingerMillis;
+    private final int messageGroupShards;
+    private final boolean fairQueue;
+
+    private final List<PendingMessage> pending = new ArrayList<>();
+    private final AtomicLong entrySequence = new AtomicLong();
+    private ScheduledExecutorService flushScheduler;
+    private ScheduledFuture<?> scheduledFlush;
 
     public SqsRepository() {
         // Get region from environment variable or use default
@@ -28,24 +67,78 @@ public class SqsRepository {
         this.sqsClient = SqsClient.builder()
                 .region(region)
                 .build();
+        this.sqsAsyncClient = "batch".equalsIgnoreCase(System.getenv("SQS_PUBLISH_MODE"))
+                ? SqsAsyncClient.builder().region(region).build()
+                : null;
         this.queueUrl = System.getenv("QUEUE_URL");
         this.objectMapper = new ObjectMapper();
+        this.compactObjectMapper = createCompactObjectMapper();
+        String linger = System.getenv("SQS_BATCH_LINGER_MILLIS");
+        this.batchLingerMillis = linger != null && !linger.isEmpty() ? Long.parseLong(linger) : DEFAULT_BATCH_LINGER_MILLIS;
+        String shards = System.getenv("SQS_MESSAGE_GROUP_SHARDS");
+        this.messageGroupShards = shards != null && !shards.isEmpty() ? Integer.parseInt(shards) : 0;
+        this.fairQueue = "true".equalsIgnoreCase(System.getenv("SQS_FAIR_QUEUE"));
     }
 
     public SqsRepository(SqsClient sqsClient, String queueUrl) {
+        this(sqsClient, null, queueUrl, DEFAULT_BATCH_LINGER_MILLIS);
+    }
+
+    /**
+     * Constructor for the batched publishing mode. When {@code sqsAsyncClient} is null every
+     * message is sent individually with the blocking client.
+     *
+     * @param sqsClient         The blocking client used for single sends
+     * @param sqsAsyncClient    The async client used for batched sends, or null to disable batching
+     * @param queueUrl          The queue to publish to
+     * @param batchLingerMillis How long a message may wait for others to share its batch
+     */
+    public SqsRepository(SqsClient sqsClient, SqsAsyncClient sqsAsyncClient, String queueUrl, long batchLingerMillis) {
+        this(sqsClient, sqsAsyncClient, queueUrl, batchLingerMillis, 0, false);
+    }
+
+    /**
+     * Constructor that also sets how messages are grouped. On a FIFO queue messages in one group are
+     * delivered in order and one batch at a time, while different groups are consumed in parallel. On
+     * a standard queue with {@code fairQueue} set, the group id instead marks the tenant for SQS fair
+     * queues, so a user with a large backlog cannot hold back other users' messages.
+     *
+     * @param sqsClient          The blocking client used for single sends
+     * @param sqsAsyncClient     The async client used for batched sends, or null to disable batching
+     * @param queueUrl           The queue to publish to
+     * @param batchLingerMillis  How long a message may wait for others to share its batch
+     * @param messageGroupShards 0 to give every user their own group, or the number of groups users are hashed into
+     * @param fairQueue          Whether to send group ids to a standard queue
+     */
+    public SqsRepository(SqsClient sqsClient, SqsAsyncClient sqsAsyncClient, String queueUrl, long batchLingerMillis,
+                         int messageGroupShards, boolean fairQueue) {
         this.sqsClient = sqsClient;
+        this.sqsAsyncClient = sqsAsyncClient;
         this.queueUrl = queueUrl;
         this.objectMapper = new ObjectMapper();
+        this.compactObjectMapper = createCompactObjectMapper();
+        this.batchLingerMillis = batchLingerMillis;
+        this.messageGroupShards = messageGroupShards;
+        this.fairQueue = fairQueue;
     }
 
     /**
-     * Send message (attribute) to SQS
+     * Send message (attribute) to SQS.
+     * In batch mode the message is published through {@link #sendMessageAsync} and this call waits for it.
      * @param messageAttributes
      * @param context
      * @return
      * @throws Exception
      */
     public Map<String, Object> sendMessage(Map<String, String> messageAttributes, Context context) throws Exception {
+        if (sqsAsyncClient != null) {
+            try {
+                return sendMessageAsync(messageAttributes, context).join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+
         Map<String, Object> result = new HashMap<>();
         messageAttributes.put("messageType", "userUpload");
 
@@ -53,6 +146,9 @@ public class SqsRepository {
 
         Map<String, MessageAttributeValue> sqsMessageAttributes = new HashMap<>();
         for (Map.Entry<String, String> entry : messageAttributes.entrySet()) {
+            if (BODY_ONLY_FIELDS.contains(entry.getKey())) {
+                continue;
+            }
             sqsMessageAttributes.put(entry.getKey(),
                     MessageAttributeValue.builder()
                             .dataType("String")
@@ -68,9 +164,11 @@ public class SqsRepository {
                 .messageAttributes(sqsMessageAttributes);
         context.getLogger().log("Message body: " + messageBody);
         // Only add FIFO-specific attributes if using a FIFO queue
-        if (queueUrl != null && queueUrl.endsWith(".fifo")) {
-            requestBuilder.messageGroupId("userUploads")
+        if (isFifoQueue()) {
+            requestBuilder.messageGroupId(messageGroupId(messageAttributes))
                     .messageDeduplicationId(messageDeduplicationId);
+        } else if (fairQueue) {
+            requestBuilder.messageGroupId(messageGroupId(messageAttributes));
         }
 
         try {
@@ -90,4 +188,204 @@ public class SqsRepository {
             throw e;
         }
     }
+
+    /**
+     * Publishes a message without blocking the caller. In batch mode the message is buffered for up
+     * to the linger time and sent with up to nine others in one {@code SendMessageBatch} call, using a
+     * body-only encoding; without an async client it is sent immediately with {@link #sendMessage}.
+     * Lambda freezes the container between invocations, so callers must wait for the returned future
+     * before their handler returns.
+     *
+     * @param messageAttributes The message fields
+     * @param context           The Lambda execution context
+     * @return A future completed with the same result map as {@link #sendMessage}, or completed
+     *         exceptionally with an {@link SqsException} if SQS rejected the entry
+     */
+    public CompletableFuture<Map<String, Object>> sendMessageAsync(Map<String, String> messageAttributes, Context context) {
+        if (sqsAsyncClient == null) {
+            try {
+                return CompletableFuture.completedFuture(sendMessage(messageAttributes, context));
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        messageAttributes.put("messageType", "userUpload");
+        String messageBody;
+        try {
+            messageBody = compactObjectMapper.writeValueAsString(messageAttributes);
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        PendingMessage message = new PendingMessage(String.valueOf(entrySequence.incrementAndGet()), messageBody,
+                UUID.randomUUID().toString(), new HashMap<>(messageAttributes), new CompletableFuture<>());
+        enqueue(message);
+        return message.future;
+    }
+
+    /**
+     * Sends every buffered message immediately instead of waiting for the linger time to pass.
+     */
+    public void flush() {
+        List<PendingMessage> batch;
+        while (!(batch = drain()).isEmpty()) {
+            sendBatch(batch);
+        }
+    }
+
+    private void enqueue(PendingMessage message) {
+        List<PendingMessage> fullBatch = null;
+
+        synchronized (pending) {
+            pending.add(message);
+            if (pending.size() >= MAX_BATCH_SIZE) {
+                fullBatch = drainLocked();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = getFlushScheduler().schedule(this::flush, batchLingerMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (fullBatch != null) {
+            sendBatch(fullBatch);
+        }
+    }
+
+    private List<PendingMessage> drain() {
+        synchronized (pending) {
+            return drainLocked();
+        }
+    }
+
+    private List<PendingMessage> drainLocked() {
+        int size = Math.min(pending.size(), MAX_BATCH_SIZE);
+        List<PendingMessage> batch = new ArrayList<>(pending.subList(0, size));
+        pending.subList(0, size).clear();
+
+        if (pending.isEmpty() && scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void sendBatch(List<PendingMessage> batch) {
+        List<SendMessageBatchRequestEntry> entries = new ArrayList<>(batch.size());
+        Map<String, PendingMessage> byId = new HashMap<>();
+
+        for (PendingMessage message : batch) {
+            SendMessageBatchRequestEntry.Builder entry = SendMessageBatchRequestEntry.builder()
+                    .id(message.id)
+                    .messageBody(message.body);
+            if (isFifoQueue()) {
+                entry.messageGroupId(messageGroupId(message.fields))
+                        .messageDeduplicationId(message.deduplicationId);
+            } else if (fairQueue) {
+                entry.messageGroupId(messageGroupId(message.fields));
+            }
+            entries.add(entry.build());
+            byId.put(message.id, message);
+        }
+
+        sqsAsyncClient.sendMessageBatch(SendMessageBatchRequest.builder()
+                        .queueUrl(queueUrl)
+                        .entries(entries)
+                        .build())
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        batch.forEach(message -> message.future.completeExceptionally(error));
+                    } else {
+                        completeBatch(response, byId);
+                    }
+                });
+    }
+
+    private void completeBatch(SendMessageBatchResponse response, Map<String, PendingMessage> byId) {
+        for (SendMessageBatchResultEntry entry : response.successful()) {
+            PendingMessage message = byId.get(entry.id());
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", true);
+            result.put("messageId", entry.messageId());
+            result.put("messageAttributes", message.fields);
+            result.put("messageDeduplicationId", message.deduplicationId);
+            message.future.complete(result);
+        }
+
+        for (BatchResultErrorEntry entry : response.failed()) {
+            PendingMessage message = byId.get(entry.id());
+
+            if (!Boolean.TRUE.equals(entry.senderFault()) && ++message.attempts < MAX_ENTRY_ATTEMPTS) {
+                enqueue(message);
+                continue;
+            }
+            message.future.completeExceptionally(SqsException.builder()
+                    .message("SQS rejected message: " + entry.message())
+                    .awsErrorDetails(AwsErrorDetails.builder()
+                            .errorCode(entry.code())
+                            .errorMessage(entry.message())
+                            .build())
+                    .build());
+        }
+    }
+
+    /**
+     * Returns the message group for a message: the uploading user, or with sharding enabled one of
+     * {@code messageGroupShards} groups chosen by hashing the user. Either way a user's images keep
+     * their order while different users are processed in parallel.
+     */
+    String messageGroupId(Map<String, String> fields) {
+        String userId = fields.get("userId");
+        if (userId == null || userId.isEmpty()) {
+            return DEFAULT_MESSAGE_GROUP;
+        }
+        if (messageGroupShards > 0) {
+            return "uploads-" + Math.floorMod(userId.hashCode(), messageGroupShards);
+        }
+        if (userId.length() > MAX_MESSAGE_GROUP_ID_LENGTH || !userId.chars().allMatch(c -> c >= 0x21 && c <= 0x7e)) {
+            // Group ids are limited to 128 printable ASCII characters
+            return "user-" + Integer.toHexString(userId.hashCode());
+        }
+        return userId;
+    }
+
+    private boolean isFifoQueue() {
+        return queueUrl != null && queueUrl.endsWith(".fifo");
+    }
+
+    private synchronized ScheduledExecutorService getFlushScheduler() {
+        if (flushScheduler == null) {
+            flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "sqs-batch-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return flushScheduler;
+    }
+
+    private static ObjectMapper createCompactObjectMapper() {
+        // Empty fields are omitted; the processing service treats a missing field the same as an empty one
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.setDefaultPropertyInclusion(JsonInclude.Value.construct(JsonInclude.Include.NON_EMPTY, JsonInclude.Include.NON_EMPTY));
+        return mapper;
+    }
+
+    private static final class PendingMessage {
+        private final String id;
+        private final String body;
+        private final String deduplicationId;
+        private final Map<String, String> fields;
+        private final CompletableFuture<Map<String, Object>> future;
+        private int attempts;
+
+        private PendingMessage(String id, String body, String deduplicationId, Map<String, String> fields,
+                               CompletableFuture<Map<String, Object>> future) {
+            this.id = id;
+            this.body = body;
+            this.deduplicationId = deduplicationId;
+            this.fields = fields;
+            this.future = future;
+        }
+    }
 }
@@ -0,0 +1,134 @@
+package com.repository;
+
+import com.model.UploadSession;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Stores resumable upload sessions. Each session is a single small item; the parts themselves are
+ * tracked by S3, so uploading a chunk never writes to the table. Items carry an {@code expiresAt}
+ * TTL so abandoned sessions are removed by DynamoDB.
+ */
+public class UploadSessionRepository {
+    private final DynamoDbClient dynamoDbClient;
+    private final String tableName;
+
+    public UploadSessionRepository() {
+        String regionName = System.getenv("AWS_REGION");
+        Region region = (regionName != null && !regionName.isEmpty())
+            ? Region.of(regionName)
+            : Region.US_EAST_1;
+
+        this.dynamoDbClient = DynamoDbClient.builder()
+                .region(region)
+                .build();
+        this.tableName = System.getenv("UPLOAD_SESSION_TABLE");
+    }
+
+    public UploadSessionRepository(DynamoDbClient dynamoDbClient, String tableName) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.tableName = tableName;
+    }
+
+    /**
+     * Stores a new session.
+     *
+     * @param session The session to store
+     */
+    public void save(UploadSession session) {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("sessionId", AttributeValue.fromS(session.sessionId()));
+        item.put("userId", AttributeValue.fromS(session.userId()));
+        item.put("objectKey", AttributeValue.fromS(session.key()));
+        item.put("uploadId", AttributeValue.fromS(session.uploadId()));
+        item.put("contentType", AttributeValue.fromS(session.contentType()));
+        item.put("size", AttributeValue.fromN(String.valueOf(session.size())));
+        item.put("partSize", AttributeValue.fromN(String.valueOf(session.partSize())));
+        item.put("status", AttributeValue.fromS(session.status()));
+        item.put("expiresAt", AttributeValue.fromN(String.valueOf(session.expiresAt())));
+
+        Map<String, AttributeValue> metadata = new HashMap<>();
+        session.metadata().forEach((name, value) -> metadata.put(name, AttributeValue.fromS(value)));
+        item.put("metadata", AttributeValue.fromM(metadata));
+
+        dynamoDbClient.putItem(PutItemRequest.builder()
+                .tableName(tableName)
+                .item(item)
+                .conditionExpression("attribute_not_exists(sessionId)")
+                .build());
+    }
+
+    /**
+     * Finds a session by ID with a strongly consistent read, so a session is visible to the chunk
+     * requests that immediately follow its creation.
+     *
+     * @param sessionId The session ID
+     * @return The session, or empty if it does not exist
+     */
+    public Optional<UploadSession> find(String sessionId) {
+        GetItemResponse response = dynamoDbClient.getItem(GetItemRequest.builder()
+                .tableName(tableName)
+                .key(Map.of("sessionId", AttributeValue.fromS(sessionId)))
+                .consistentRead(true)
+                .build());
+
+        if (!response.hasItem() || response.item().isEmpty()) {
+            return Optional.empty();
+        }
+
+        Map<String, AttributeValue> item = response.item();
+        Map<String, String> metadata = new HashMap<>();
+        if (item.containsKey("metadata")) {
+            item.get("metadata").m().forEach((name, value) -> metadata.put(name, value.s()));
+        }
+
+        return Optional.of(new UploadSession(
+                item.get("sessionId").s(),
+                item.get("userId").s(),
+                item.get("objectKey").s(),
+                item.get("uploadId").s(),
+                item.get("contentType").s(),
+                Long.parseLong(item.get("size").n()),
+                Integer.parseInt(item.get("partSize").n()),
+                item.get("status").s(),
+                metadata,
+                Long.parseLong(item.get("expiresAt").n())));
+    }
+
+    /**
+     * Moves a session from one status to another. The update is conditional, so of two concurrent
+     * completions only one succeeds.
+     *
+     * @param sessionId The session ID
+     * @param expected  The status the session must currently have
+     * @param status    The new status
+     * @return true if the status was changed, false if the session was no longer in {@code expected}
+     */
+    public boolean updateStatus(String sessionId, String expected, String status) {
+        try {
+            dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(tableName)
+                    .key(Map.of("sessionId", AttributeValue.fromS(sessionId)))
+                    .updateExpression("SET #status = :status")
+                    .conditionExpression("#status = :expected")
+                    .expressionAttributeNames(Map.of("#status", "status"))
+                    .expressionAttributeValues(Map.of(
+                            ":status", AttributeValue.fromS(status),
+                            ":expected", AttributeValue.fromS(expected)))
+                    .build());
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.service;
+
+/**
+ * Thrown when an idempotency key cannot be used for a request: the first request with the key is
+ * still running, or the key was first used for a different request.
+ */
+public class IdempotencyConflictException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    public IdempotencyConflictException(int statusCode, String message) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * Returns the HTTP status to report: 409 for a request still in progress, 422 for a reused key.
+     *
+     * @return The HTTP status code
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
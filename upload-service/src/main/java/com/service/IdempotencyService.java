@@ -0,0 +1,174 @@
+package com.service;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.model.IdempotencyRecord;
+import com.model.IdempotentResponse;
+import com.repository.IdempotencyRepository;
+
+import java.time.Clock;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+
+/**
+ * Makes upload requests safe to retry. A client sends the same {@code Idempotency-Key} header on
+ * every attempt of one logical upload; the first attempt runs and its response is stored, later
+ * attempts get the stored response back instead of uploading the images again.
+ * <p>
+ * Keys are scoped to the user, so two users can never see each other's responses. If the
+ * idempotency table cannot be reached the request runs without protection rather than failing.
+ */
+public class IdempotencyService {
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final long LOCK_MILLIS = 60_000;
+    private static final int COMPLETE_ATTEMPTS = 3;
+    private static final long DEFAULT_TTL_SECONDS = 24 * 60 * 60;
+
+    private final IdempotencyRepository idempotencyRepository;
+    private final long ttlSeconds;
+    private final Clock clock;
+
+    /**
+     * Default constructor that keeps responses for {@code IDEMPOTENCY_TTL_SECONDS}.
+     */
+    public IdempotencyService() {
+        this(new IdempotencyRepository(),
+                ImageService.getEnvLong("IDEMPOTENCY_TTL_SECONDS", DEFAULT_TTL_SECONDS),
+                Clock.systemUTC());
+    }
+
+    /**
+     * @param idempotencyRepository The key store
+     * @param ttlSeconds            How long a completed response can be replayed
+     * @param clock                 The clock locks and expiry are computed from
+     */
+    public IdempotencyService(IdempotencyRepository idempotencyRepository, long ttlSeconds, Clock clock) {
+        this.idempotencyRepository = idempotencyRepository;
+        this.ttlSeconds = ttlSeconds;
+        this.clock = clock;
+    }
+
+    /**
+     * Runs {@code action} once per key. If the action throws, the key is released so the client can
+     * retry the same request.
+     *
+     * @param userId      The user, as given by the JWT {@code sub}
+     * @param key         The client's idempotency key
+     * @param fingerprint Identifies the request, so a key reused for a different request is rejected
+     * @param action      Performs the upload and returns the JSON response body
+     * @param context     The Lambda execution context
+     * @return The response body, and whether it was replayed from an earlier attempt
+     * @throws IllegalArgumentException      If the key is empty, too long or not printable ASCII
+     * @throws IdempotencyConflictException If the key is in use by a running or a different request
+     * @throws Exception                     If the action fails
+     */
+    public IdempotentResponse execute(String userId, String key, String fingerprint,
+                                      Callable<String> action, Context context) throws Exception {
+        validateKey(key);
+
+        if (idempotencyRepository == null || !idempotencyRepository.isEnabled()) {
+            return new IdempotentResponse(action.call(), false);
+        }
+
+        String id = userId + "#" + key;
+        long now = clock.millis();
+        long expiresAtSeconds = now / 1000 + ttlSeconds;
+        long lockExpiresAtMillis = now + LOCK_MILLIS;
+
+        boolean locked;
+        try {
+            locked = idempotencyRepository.tryLock(id, fingerprint, now, lockExpiresAtMillis, expiresAtSeconds);
+        } catch (Exception e) {
+            context.getLogger().log("Idempotency check failed, running request: " + e.getMessage());
+            return new IdempotentResponse(action.call(), false);
+        }
+
+        if (!locked) {
+            return replay(id, fingerprint, context)
+                    .orElseGet(() -> {
+                        throw new IdempotencyConflictException(409,
+                                "A request with this Idempotency-Key is already in progress");
+                    });
+        }
+
+        String body;
+        try {
+            body = action.call();
+        } catch (Exception e) {
+            release(id, fingerprint, lockExpiresAtMillis, context);
+            throw e;
+        }
+
+        complete(id, body, expiresAtSeconds, context);
+        return new IdempotentResponse(body, false);
+    }
+
+    /**
+     * Stores the response of a request that ran, retrying a failed write. A key that is never
+     * completed stays in progress until its lock expires, after which a retry of the request runs
+     * it again and uploads the images a second time.
+     */
+    private void complete(String id, String body, long expiresAtSeconds, Context context) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                idempotencyRepository.complete(id, body, expiresAtSeconds);
+                return;
+            } catch (Exception e) {
+                if (attempt == COMPLETE_ATTEMPTS) {
+                    context.getLogger().log("ERROR: Failed to store idempotent response for " + id + " after "
+                            + attempt + " attempts, a retry after its lock expires may upload again: " + e.getMessage());
+                    return;
+                }
+                context.getLogger().log("Failed to store idempotent response, retrying: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the stored response for a key held by another request, or empty if that request is
+     * still running.
+     */
+    private Optional<IdempotentResponse> replay(String id, String fingerprint, Context context) {
+        Optional<IdempotencyRecord> record;
+        try {
+            record = idempotencyRepository.find(id);
+        } catch (Exception e) {
+            context.getLogger().log("Failed to read idempotency key: " + e.getMessage());
+            return Optional.empty();
+        }
+
+        if (record.isEmpty()) {
+            // The key expired or was released between our write and read
+            return Optional.empty();
+        }
+        if (!record.get().fingerprint().equals(fingerprint)) {
+            throw new IdempotencyConflictException(422,
+                    "Idempotency-Key was already used for a different request");
+        }
+        if (!IdempotencyRecord.COMPLETED.equals(record.get().status())) {
+            return Optional.empty();
+        }
+        return Optional.of(new IdempotentResponse(record.get().responseBody(), true));
+    }
+
+    private void release(String id, String fingerprint, long lockExpiresAtMillis, Context context) {
+        try {
+            if (!idempotencyRepository.delete(id, fingerprint, lockExpiresAtMillis)) {
+                context.getLogger().log("Idempotency key " + id + " was taken over after its lock expired, leaving it");
+            }
+        } catch (Exception e) {
+            context.getLogger().log("Failed to release idempotency key: " + e.getMessage());
+        }
+    }
+
+    static void validateKey(String key) {
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c < 0x21 || c > 0x7e) {
+                throw new IllegalArgumentException("Idempotency-Key must contain only printable ASCII characters");
+            }
+        }
+    }
+}
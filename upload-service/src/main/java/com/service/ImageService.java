@@ -1,19 +1,60 @@
 package com.service;
 
+import com.repository.ImageMetadataRepository;
 import com.repository.S3Repository;
 import com.repository.SqsRepository;
 
 import com.amazonaws.services.lambda.runtime.Context;
-import java.io.ByteArrayInputStream;
-import java.net.URLConnection;
-import java.util.Base64;
+import com.model.Base64ImagePayload;
+import com.model.ImageHeader;
+import com.model.ImagePayload;
+import com.model.PresignedUpload;
+import com.model.StoredImage;
+import com.model.UploadRequest;
+import com.model.UploadResult;
+import com.util.ContentHash;
+import com.util.ImageHeaderParser;
+import com.util.TruncatedImageHeaderException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
 public class ImageService {
+    private static final String UPLOAD_PREFIX = "uploads/";
+    // Objects under this prefix are enqueued by the staging bucket's ObjectCreated notification
+    private static final String DIRECT_UPLOAD_PREFIX = "direct-uploads/";
+    private static final long DEFAULT_DIRECT_UPLOAD_TTL_SECONDS = 300;
+    // API Gateway rejects request bodies over 10 MB, so this is already the most a JSON upload can carry
+    private static final long DEFAULT_MAX_IMAGE_BYTES = 10L * 1024 * 1024;
+    private static final long DEFAULT_MAX_IMAGE_DIMENSION = 16_384;
+    // About 160 MB once decoded to ARGB by the processing service
+    private static final long DEFAULT_MAX_IMAGE_PIXELS = 40_000_000;
+    // Enough to reach the JPEG frame header past EXIF and ICC segments in most images
+    private static final long STAGED_HEADER_BYTES = 256 * 1024;
+    // Multi-segment ICC profiles and extended XMP can push the frame header much further
+    private static final long MAX_STAGED_HEADER_BYTES = 16L * 1024 * 1024;
+    private static final long DEFAULT_MAX_BATCH_IMAGES = 25;
+    private static final long DEFAULT_BATCH_UPLOAD_CONCURRENCY = 8;
+
+    // The S3 write runs here so the request thread can prepare the SQS message meanwhile
+    private static final Executor PIPELINE_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
     private final S3Repository s3Repository;
     private final SqsRepository sqsRepository;
+    private final ImageMetadataRepository imageMetadataRepository;
 
     /**
      * Default constructor that initializes repositories with default settings.
@@ -21,35 +62,70 @@ public class ImageService {
     public ImageService() {
         this.s3Repository = new S3Repository();
         this.sqsRepository = new SqsRepository();
+        this.imageMetadataRepository = new ImageMetadataRepository();
     }
 
     /**
      * Constructor with dependency injection for repositories.
+     * Duplicate detection is disabled.
      * 
      * @param s3Repository The S3 repository for file storage
      * @param sqsRepository The SQS repository for message queuing
      */
     public ImageService(S3Repository s3Repository, SqsRepository sqsRepository) {
+        this(s3Repository, sqsRepository, null);
+    }
+
+    /**
+     * Constructor with dependency injection for repositories.
+     *
+     * @param s3Repository            The S3 repository for file storage
+     * @param sqsRepository           The SQS repository for message queuing
+     * @param imageMetadataRepository The photo table used to detect duplicate uploads, or null to disable it
+     */
+    public ImageService(S3Repository s3Repository, SqsRepository sqsRepository, ImageMetadataRepository imageMetadataRepository) {
         this.s3Repository = s3Repository;
         this.sqsRepository = sqsRepository;
+        this.imageMetadataRepository = imageMetadataRepository;
     }
 
     /**
-     * Processes an image upload request by validating the image data,
-     * determining the content type, and storing the image in S3.
-     * Then sends a message to SQS with metadata including first and last name.
-     * The name is split at the first space, with everything before becoming firstName
-     * and everything after becoming lastName.
+     * Processes an image upload request from a base64 string.
      *
      * @param name         The name of the user uploading the image
      * @param email        The email of the user uploading the image
      * @param imageBase64  The base64-encoded image data
-     * @param contentType  The content type of the image (optional, will be detected if null)
+     * @param contentType  The content type declared by the client; the type read from the image header takes precedence
      * @param imageTitle   The title of the image (optional)
      * @return A map containing the URL of the uploaded image and a success message
      * @throws Exception If the image processing or upload fails
+     * @see #processImageUpload(String, String, ImagePayload, String, String, String, Context)
      */
     public Map<String, Object> processImageUpload(String name, String email, String imageBase64, String contentType, String imageTitle, String userId, Context context) throws Exception {
+        return processImageUpload(name, email, Base64ImagePayload.of(imageBase64), contentType, imageTitle, userId, context);
+    }
+
+    /**
+     * Processes an image upload request by reading the image header to determine
+     * its content type and dimensions, validating both, and storing the image in S3.
+     * If the user already has an active image with the same SHA-256, that image is returned
+     * with {@code duplicate: true} and nothing is stored or enqueued.
+     * The SQS message is prepared while the S3 write is in flight and sent as soon as the write
+     * is acknowledged, with metadata including first and last name. Per-stage timings are
+     * returned under {@code diagnostics.stages}.
+     * The name is split at the first space, with everything before becoming firstName
+     * and everything after becoming lastName.
+     *
+     * @param name         The name of the user uploading the image
+     * @param email        The email of the user uploading the image
+     * @param image        The decoded image payload, streamed to S3 without being buffered
+     * @param contentType  The content type declared by the client; the type read from the image header takes precedence
+     * @param imageTitle   The title of the image (optional)
+     * @return A map containing the URL of the uploaded image and a success message
+     * @throws IllegalArgumentException If the image is not a PNG or JPEG, or its size or dimensions exceed the configured limits
+     * @throws Exception If the image processing or upload fails
+     */
+    public Map<String, Object> processImageUpload(String name, String email, ImagePayload image, String contentType, String imageTitle, String userId, Context context) throws Exception {
         if (name == null || name.isEmpty()) {
             name = "unknown-user";
         }
@@ -58,37 +134,56 @@ public class ImageService {
             email = "unknown-email";
         }
         
-        String firstName = name;
-        String lastName = "_unknown";
-        
-        if (name.contains(" ")) {
-            String[] nameParts = name.split(" ", 2);
-            firstName = nameParts[0];
-            lastName = nameParts[1];
-        }
+        long started = System.nanoTime();
+        String[] nameParts = splitName(name);
+        String firstName = nameParts[0];
+        String lastName = nameParts[1];
 
-        String fileExtension = contentType != null ? "." + contentType.split("/")[1] : ".jpg";
-        
-        String fileName;
-        if (imageTitle != null && !imageTitle.isEmpty()) {
-            String safeTitle = imageTitle.replaceAll("[^a-zA-Z0-9-_.]", "_");
-            fileName = "uploads/" + name + "-" + email + "-" + safeTitle + "-" + UUID.randomUUID().toString() + fileExtension;
-        } else {
-            fileName = "uploads/" + name + "-" + email + "-" + UUID.randomUUID().toString() + fileExtension;
+        validateSize(image.size());
+
+        // The magic bytes decide the content type; a client-supplied type is never trusted over them
+        ImageHeader header;
+        try (InputStream in = new BufferedInputStream(image.openStream())) {
+            header = ImageHeaderParser.parse(in);
         }
+        String detectedContentType = header.contentType();
 
-        byte[] imageData = Base64.getDecoder().decode(imageBase64);
+        validateContentType(detectedContentType);
+        validateDimensions(header);
+        long validatedAt = System.nanoTime();
 
-        if (contentType == null) {
-            contentType = URLConnection.guessContentTypeFromStream(new ByteArrayInputStream(imageData));
+        String contentHash;
+        try (InputStream in = image.openStream()) {
+            contentHash = ContentHash.sha256Hex(in);
         }
+        long hashedAt = System.nanoTime();
 
-        if (contentType == null || (!contentType.equals("image/jpeg") &&
-                !contentType.equals("image/jpg") &&
-                !contentType.equals("image/png"))) {
-            throw new IllegalArgumentException("Unsupported file type. Only PNG and JPG/JPEG allowed.");
+        StoredImage existing = findDuplicate(userId, contentHash, context);
+        long dedupCheckedAt = System.nanoTime();
+        if (existing != null) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("url", existing.imageUrl());
+            response.put("imageKey", existing.imageKey());
+            response.put("message", "Image already uploaded");
+            response.put("duplicate", true);
+            response.put("name", name);
+            response.put("firstName", firstName);
+            response.put("lastName", lastName);
+            response.put("email", email);
+            response.put("imageTitle", existing.title());
+            response.put("contentHash", contentHash);
+
+            Map<String, Object> stages = new HashMap<>();
+            stages.put("validationMs", (validatedAt - started) / 1_000_000);
+            stages.put("hashMs", (hashedAt - validatedAt) / 1_000_000);
+            stages.put("dedupLookupMs", (dedupCheckedAt - hashedAt) / 1_000_000);
+            stages.put("totalMs", (System.nanoTime() - started) / 1_000_000);
+            response.put("diagnostics", Map.of("stages", stages));
+            return response;
         }
 
+        String fileName = buildFileName(UPLOAD_PREFIX, name, email, imageTitle, detectedContentType);
+
         Map<String, String> metadata = new HashMap<>();
         metadata.put("name", name);
         metadata.put("firstName", firstName);
@@ -100,17 +195,359 @@ public class ImageService {
             metadata.put("imageTitle", imageTitle);
         }
 
-        String fileUrl = s3Repository.uploadFile(fileName, imageData, contentType, metadata);
+        CompletableFuture<UploadResult> upload = CompletableFuture.supplyAsync(
+                () -> s3Repository.upload(fileName, image, detectedContentType, metadata), PIPELINE_EXECUTOR);
 
+        // Everything below is prepared while the S3 write is in flight
         Map<String, Object> response = new HashMap<>();
-        response.put("url", fileUrl);
         response.put("message", "Image uploaded successfully");
         response.put("name", name);
         response.put("firstName", firstName);
         response.put("lastName", lastName);
         response.put("email", email);
         response.put("imageTitle", imageTitle);
+        response.put("width", header.width());
+        response.put("height", header.height());
+
+        Map<String, String> messageAttributes = buildMessageAttributes(name, userId, firstName, lastName, email, fileName, imageTitle, header);
+        messageAttributes.put("contentHash", contentHash);
+        response.put("duplicate", false);
+        response.put("contentHash", contentHash);
+
+        Map<String, Object> sqsStatus = new HashMap<>();
+        sqsStatus.put("attempted", true);
+        sqsStatus.put("attributes", messageAttributes);
+
+        // The enqueue fires as soon as S3 acknowledges the write; an SQS failure is reported, not thrown
+        long[] sqsNanos = new long[1];
+        CompletableFuture<UploadResult> completion = upload.thenCompose(uploadResult -> {
+            long enqueueStarted = System.nanoTime();
+            return sqsRepository.sendMessageAsync(messageAttributes, context).handle((sent, error) -> {
+                sqsNanos[0] = System.nanoTime() - enqueueStarted;
+                if (error == null) {
+                    context.getLogger().log("SQS message attributes in SQS send message in processimageupload: " + messageAttributes);
+                    sqsStatus.put("success", true);
+                    sqsStatus.put("message", "Message successfully sent to SQS queue");
+                } else {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    sqsStatus.put("success", false);
+                    sqsStatus.put("error", cause.getMessage());
+                }
+                return uploadResult;
+            });
+        });
+
+        UploadResult uploadResult;
+        try {
+            uploadResult = completion.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+
+        response.put("url", uploadResult.url());
+        response.put("sqsStatus", sqsStatus);
+
+        Map<String, Object> stages = new HashMap<>();
+        stages.put("validationMs", (validatedAt - started) / 1_000_000);
+        stages.put("hashMs", (hashedAt - validatedAt) / 1_000_000);
+        stages.put("dedupLookupMs", (dedupCheckedAt - hashedAt) / 1_000_000);
+        stages.put("s3UploadMs", uploadResult.elapsedMillis());
+        stages.put("sqsEnqueueMs", sqsNanos[0] / 1_000_000);
+        stages.put("totalMs", (System.nanoTime() - started) / 1_000_000);
+
+        Map<String, Object> diagnostics = new HashMap<>();
+        diagnostics.put("s3Upload", uploadResult.toStats());
+        diagnostics.put("stages", stages);
+        response.put("diagnostics", diagnostics);
+
+        return response;
+    }
+
+    /**
+     * Processes several images from one request. Each image goes through {@link #processImageUpload}
+     * on its own virtual thread, at most {@code BATCH_UPLOAD_CONCURRENCY} at a time, so S3 writes
+     * overlap and their SQS messages can share {@code SendMessageBatch} calls. One image failing
+     * does not affect the others.
+     *
+     * @param name     The name of the user uploading the images
+     * @param email    The email of the user uploading the images
+     * @param requests The images to upload, in request order
+     * @param userId   The unique identifier of the user
+     * @param context  The Lambda execution context
+     * @return A map with a {@code results} array in request order and summary counts
+     * @throws IllegalArgumentException If the batch is empty or larger than {@code MAX_BATCH_IMAGES}
+     */
+    public Map<String, Object> processBatchUpload(String name, String email, List<UploadRequest> requests, String userId, Context context) {
+        long maxImages = getEnvLong("MAX_BATCH_IMAGES", DEFAULT_MAX_BATCH_IMAGES);
+        if (requests.isEmpty()) {
+            throw new IllegalArgumentException("At least one image is required");
+        }
+        if (requests.size() > maxImages) {
+            throw new IllegalArgumentException("A batch may contain at most " + maxImages + " images");
+        }
+
+        long started = System.nanoTime();
+        Semaphore permits = new Semaphore((int) getEnvLong("BATCH_UPLOAD_CONCURRENCY", DEFAULT_BATCH_UPLOAD_CONCURRENCY));
+        List<CompletableFuture<Map<String, Object>>> futures = new ArrayList<>(requests.size());
+
+        for (int i = 0; i < requests.size(); i++) {
+            int index = i;
+            UploadRequest request = requests.get(i);
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                permits.acquireUninterruptibly();
+                try {
+                    return processBatchItem(index, name, email, request, userId, context);
+                } finally {
+                    permits.release();
+                }
+            }, PIPELINE_EXECUTOR));
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>(requests.size());
+        int uploaded = 0;
+        int duplicates = 0;
+        int failed = 0;
+        for (CompletableFuture<Map<String, Object>> future : futures) {
+            Map<String, Object> result = future.join();
+            results.add(result);
+            switch ((String) result.get("status")) {
+                case "uploaded" -> uploaded++;
+                case "duplicate" -> duplicates++;
+                default -> failed++;
+            }
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("results", results);
+        response.put("total", requests.size());
+        response.put("uploaded", uploaded);
+        response.put("duplicates", duplicates);
+        response.put("failed", failed);
+        response.put("elapsedMs", (System.nanoTime() - started) / 1_000_000);
+        return response;
+    }
+
+    private Map<String, Object> processBatchItem(int index, String name, String email, UploadRequest request, String userId, Context context) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("index", index);
+
+        try {
+            if (request.image() == null || request.image().size() == 0) {
+                throw new IllegalArgumentException("Image data is required");
+            }
+            Map<String, Object> response = processImageUpload(name, email, request.image(), request.contentType(),
+                    request.imageTitle(), userId, context);
+            result.putAll(response);
+            result.put("status", Boolean.TRUE.equals(response.get("duplicate")) ? "duplicate" : "uploaded");
+            result.put("statusCode", 200);
+        } catch (IllegalArgumentException e) {
+            result.put("status", "rejected");
+            result.put("statusCode", 400);
+            result.put("error", e.getMessage());
+        } catch (Exception e) {
+            context.getLogger().log("ERROR: Batch item " + index + " failed - " + e.getMessage());
+            result.put("status", "failed");
+            result.put("statusCode", 500);
+            result.put("error", e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Issues a presigned PUT so the client can upload the image straight to the staging bucket
+     * without routing the bytes through API Gateway and this Lambda. The user's identity is bound
+     * into the signed object metadata; once the object lands, {@link #enqueueStagedImage} sends the
+     * same processing message as {@link #processImageUpload}.
+     *
+     * @param name         The name of the user uploading the image
+     * @param email        The email of the user uploading the image
+     * @param contentType   The content type the client will upload (required)
+     * @param contentLength The size in bytes the client will upload (required); it is signed, so S3
+     *                      rejects a PUT of any other size
+     * @param imageTitle    The title of the image (optional)
+     * @param userId        The unique identifier of the user
+     * @param context       The Lambda execution context
+     * @return A map containing the presigned URL, the headers the client must send and the object key
+     * @throws IllegalArgumentException If the content type is not a PNG or JPEG, or the content length
+     *                                  is missing or exceeds {@code MAX_IMAGE_BYTES}
+     */
+    public Map<String, Object> createDirectUpload(String name, String email, String contentType, Long contentLength, String imageTitle, String userId, Context context) {
+        if (name == null || name.isEmpty()) {
+            name = "unknown-user";
+        }
+
+        if (email == null || email.isEmpty()) {
+            email = "unknown-email";
+        }
+
+        if (contentType == null) {
+            throw new IllegalArgumentException("Content type is required for direct uploads");
+        }
+        validateContentType(contentType);
+
+        if (contentLength == null) {
+            throw new IllegalArgumentException("Content length is required for direct uploads");
+        }
+        validateSize(contentLength);
+
+        String fileName = buildFileName(DIRECT_UPLOAD_PREFIX, name, email, imageTitle, contentType);
+        Map<String, String> metadata = buildObjectMetadata(name, email, imageTitle, userId);
+
+        PresignedUpload upload = s3Repository.createPresignedUpload(fileName, contentType, contentLength, metadata, getDirectUploadExpiry());
+        context.getLogger().log("Issued presigned upload for key: " + fileName);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("uploadUrl", upload.url());
+        response.put("method", "PUT");
+        response.put("headers", upload.headers());
+        response.put("key", upload.key());
+        response.put("expiresAt", upload.expiration().toString());
+        response.put("message", "Upload URL created successfully");
+        return response;
+    }
+
+    /**
+     * Enqueues an object that was uploaded directly to the staging bucket, rebuilding the processing
+     * message from the metadata that was signed into its presigned URL. The object's header is read
+     * with ranged GETs and images that fail validation are deleted instead of enqueued. An object
+     * whose header cannot be read in full is enqueued unverified, and the processing service decides.
+     *
+     * @param fileName The object key in the staging bucket
+     * @param metadata The object's user metadata
+     * @param context  The Lambda execution context
+     * @return The result of the SQS send, or {@code rejected} if the image failed validation
+     * @throws Exception If the message could not be sent
+     */
+    public Map<String, Object> enqueueStagedImage(String fileName, Map<String, String> metadata, Context context) throws Exception {
+        ImageHeader header;
+        try (InputStream in = new StagedObjectStream(fileName)) {
+            header = ImageHeaderParser.parse(in);
+            validateContentType(header.contentType());
+            validateDimensions(header);
+        } catch (TruncatedImageHeaderException e) {
+            // Not proof that the image is bad, so it must not be deleted
+            context.getLogger().log("Header of direct upload " + fileName + " is not within its first "
+                    + MAX_STAGED_HEADER_BYTES + " bytes, enqueueing it unverified");
+            header = null;
+        } catch (IllegalArgumentException e) {
+            // Retrying cannot fix the image, so drop it rather than fail the notification
+            context.getLogger().log("Rejected direct upload " + fileName + ": " + e.getMessage());
+            s3Repository.deleteFile(fileName);
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", false);
+            result.put("rejected", true);
+            result.put("error", e.getMessage());
+            return result;
+        }
+
+        // S3 returns metadata keys in lower case
+        Map<String, String> objectMetadata = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        objectMetadata.putAll(metadata);
+
+        Map<String, String> messageAttributes = buildMessageAttributes(
+                objectMetadata.getOrDefault("name", "unknown-user"),
+                objectMetadata.getOrDefault("userId", "unknown-sub"),
+                objectMetadata.getOrDefault("firstName", "unknown-user"),
+                objectMetadata.getOrDefault("lastName", "_unknown"),
+                objectMetadata.getOrDefault("email", "unknown-email"),
+                fileName,
+                objectMetadata.get("imageTitle"),
+                header);
+
+        return sqsRepository.sendMessage(messageAttributes, context);
+    }
+
+    /**
+     * Looks up an active image the user already uploaded with the same content. A failed lookup is
+     * treated as a miss so the photo table can never block uploads.
+     */
+    private StoredImage findDuplicate(String userId, String contentHash, Context context) {
+        if (imageMetadataRepository == null || !imageMetadataRepository.isEnabled()
+                || userId == null || userId.isEmpty() || userId.equals("unknown-sub")) {
+            return null;
+        }
+
+        try {
+            return imageMetadataRepository.findActiveByContentHash(userId, contentHash).orElse(null);
+        } catch (Exception e) {
+            context.getLogger().log("Duplicate lookup failed, continuing with upload: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Builds the object metadata that {@link #enqueueStagedImage} turns back into a processing
+     * message once an object uploaded outside this Lambda lands in the staging bucket.
+     */
+    static Map<String, String> buildObjectMetadata(String name, String email, String imageTitle, String userId) {
+        String[] nameParts = splitName(name);
+
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put("name", name);
+        metadata.put("userId", userId);
+        metadata.put("firstName", nameParts[0]);
+        metadata.put("lastName", nameParts[1]);
+        metadata.put("email", email);
+        metadata.put("uploadDate", new java.util.Date().toString());
+
+        if (imageTitle != null && !imageTitle.isEmpty()) {
+            metadata.put("imageTitle", imageTitle);
+        }
+        return metadata;
+    }
+
+    /**
+     * Splits a display name at the first space into first and last name.
+     */
+    private static String[] splitName(String name) {
+        if (name.contains(" ")) {
+            return name.split(" ", 2);
+        }
+        return new String[]{name, "_unknown"};
+    }
+
+    static String buildFileName(String prefix, String name, String email, String imageTitle, String contentType) {
+        String fileExtension = contentType != null ? "." + contentType.split("/")[1] : ".jpg";
+
+        if (imageTitle != null && !imageTitle.isEmpty()) {
+            String safeTitle = imageTitle.replaceAll("[^a-zA-Z0-9-_.]", "_");
+            return prefix + name + "-" + email + "-" + safeTitle + "-" + UUID.randomUUID().toString() + fileExtension;
+        }
+        return prefix + name + "-" + email + "-" + UUID.randomUUID().toString() + fileExtension;
+    }
+
+    static void validateContentType(String contentType) {
+        if (contentType == null || (!contentType.equals("image/jpeg") &&
+                !contentType.equals("image/jpg") &&
+                !contentType.equals("image/png"))) {
+            throw new IllegalArgumentException("Unsupported file type. Only PNG and JPG/JPEG allowed.");
+        }
+    }
+
+    static void validateSize(long bytes) {
+        long maxBytes = getEnvLong("MAX_IMAGE_BYTES", DEFAULT_MAX_IMAGE_BYTES);
+        if (bytes <= 0 || bytes > maxBytes) {
+            throw new IllegalArgumentException("Image size " + bytes + " bytes must be between 1 and " + maxBytes + " bytes");
+        }
+    }
+
+    static void validateDimensions(ImageHeader header) {
+        long maxDimension = getEnvLong("MAX_IMAGE_DIMENSION", DEFAULT_MAX_IMAGE_DIMENSION);
+        long maxPixels = getEnvLong("MAX_IMAGE_PIXELS", DEFAULT_MAX_IMAGE_PIXELS);
 
+        if (header.width() > maxDimension || header.height() > maxDimension) {
+            throw new IllegalArgumentException("Image dimensions " + header.width() + "x" + header.height()
+                    + " exceed the maximum of " + maxDimension + " pixels per side");
+        }
+        // A small file can still declare a huge canvas; cap what a full decode would allocate
+        if (header.pixels() > maxPixels) {
+            throw new IllegalArgumentException("Image has " + header.pixels() + " pixels, more than the maximum of " + maxPixels);
+        }
+    }
+
+    private static Map<String, String> buildMessageAttributes(String name, String userId, String firstName, String lastName,
+                                                              String email, String fileName, String imageTitle, ImageHeader header) {
         Map<String, String> messageAttributes = new HashMap<>();
         messageAttributes.put("name", name);
         messageAttributes.put("userId", userId);
@@ -120,25 +557,87 @@ public class ImageService {
         messageAttributes.put("key", fileName);
         messageAttributes.put("uploadDate", new java.util.Date().toString());
         messageAttributes.put("imageTitle", imageTitle != null ? imageTitle : "");
+        if (header != null) {
+            messageAttributes.put("width", String.valueOf(header.width()));
+            messageAttributes.put("height", String.valueOf(header.height()));
+        }
+        return messageAttributes;
+    }
 
-        Map<String, Object> sqsStatus = new HashMap<>();
-        sqsStatus.put("attempted", true);
-        sqsStatus.put("attributes", messageAttributes);
+    /**
+     * Reads a staged object from its start with ranged GETs, each as long as everything read before
+     * it, so that a header far into the file costs a few requests rather than a download of the
+     * whole object. It ends at the end of the object or after {@value #MAX_STAGED_HEADER_BYTES} bytes.
+     */
+    private final class StagedObjectStream extends InputStream {
+        private final String fileName;
+        private InputStream range;
+        private long position;
+        private long rangeEnd;
+        private boolean objectEnded;
 
-        try {
-            sqsRepository.sendMessage(messageAttributes, context);
-            context.getLogger().log("SQS message attributes in SQS send message in processimageupload: " + messageAttributes);
-            sqsStatus.put("success", true);
-            sqsStatus.put("message", "Message successfully sent to SQS queue");
-        } catch (Exception e) {
-            sqsStatus.put("success", false);
-            sqsStatus.put("error", e.getMessage());
+        StagedObjectStream(String fileName) {
+            this.fileName = fileName;
         }
 
-        response.put("sqsStatus", sqsStatus);
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
 
-        return response;
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (true) {
+                if (range == null) {
+                    if (objectEnded || position >= MAX_STAGED_HEADER_BYTES) {
+                        return -1;
+                    }
+                    long length = position == 0 ? STAGED_HEADER_BYTES : Math.min(position, MAX_STAGED_HEADER_BYTES - position);
+                    try {
+                        range = position == 0
+                                ? s3Repository.openObjectPrefix(fileName, length)
+                                : s3Repository.openObjectRange(fileName, position, length);
+                    } catch (S3Exception e) {
+                        // The object ended exactly at the end of the last range
+                        if (e.statusCode() == 416) {
+                            objectEnded = true;
+                            return -1;
+                        }
+                        throw e;
+                    }
+                    rangeEnd = position + length;
+                }
+
+                int n = range.read(b, off, (int) Math.min(len, rangeEnd - position));
+                if (n > 0) {
+                    position += n;
+                    return n;
+                }
+                range.close();
+                range = null;
+                // A range cut short by the end of the object
+                objectEnded = position < rangeEnd;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (range != null) {
+                range.close();
+            }
+        }
     }
 
+    static long getEnvLong(String name, long defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isEmpty() ? Long.parseLong(value) : defaultValue;
+    }
 
-}
\ No newline at end of file
+    private static Duration getDirectUploadExpiry() {
+        return Duration.ofSeconds(getEnvLong("DIRECT_UPLOAD_URL_TTL_SECONDS", DEFAULT_DIRECT_UPLOAD_TTL_SECONDS));
+    }
+}
@@ -0,0 +1,24 @@
+package com.service;
+
+/**
+ * Thrown when a user has used up their upload allowance.
+ */
+public class RateLimitExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final long retryAfterSeconds;
+
+    public RateLimitExceededException(long retryAfterSeconds) {
+        super("Upload rate limit exceeded, retry after " + retryAfterSeconds + " seconds");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Returns how long the user must wait before the request can be admitted.
+     *
+     * @return The wait in whole seconds
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
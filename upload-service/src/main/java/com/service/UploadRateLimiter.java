@@ -0,0 +1,146 @@
+package com.service;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.model.TokenBucket;
+import com.repository.RateLimitRepository;
+
+import java.time.Clock;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-user admission control for uploads: a token bucket keyed by the JWT {@code sub}, shared across
+ * containers through {@link RateLimitRepository}.
+ * <p>
+ * Each container remembers the last bucket it wrote for a user, so a warm container admits a user's
+ * next request with a single conditional write instead of a read and a write. The remembered bucket
+ * can only hold more tokens than the shared one (other containers only ever spend), so a denial
+ * computed from it is always correct and is cached until the bucket refills, keeping a flooding
+ * client off the table entirely.
+ */
+public class UploadRateLimiter {
+    private static final long DEFAULT_CAPACITY = 30;
+    private static final long DEFAULT_REFILL_PER_MINUTE = 30;
+    private static final int MAX_ENTRIES = 1024;
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+
+    private final RateLimitRepository rateLimitRepository;
+    private final double capacity;
+    private final double tokensPerMilli;
+    private final Clock clock;
+    private final Map<String, LocalState> localStates;
+
+    /**
+     * Default constructor that reads the limits from {@code UPLOAD_RATE_LIMIT_CAPACITY} and
+     * {@code UPLOAD_RATE_LIMIT_PER_MINUTE}.
+     */
+    public UploadRateLimiter() {
+        this(new RateLimitRepository(),
+                ImageService.getEnvLong("UPLOAD_RATE_LIMIT_CAPACITY", DEFAULT_CAPACITY),
+                ImageService.getEnvLong("UPLOAD_RATE_LIMIT_PER_MINUTE", DEFAULT_REFILL_PER_MINUTE),
+                Clock.systemUTC());
+    }
+
+    /**
+     * @param rateLimitRepository The shared bucket store
+     * @param capacity            The burst size: how many images a user can upload at once
+     * @param refillPerMinute     The sustained rate: how many images a user can upload per minute
+     * @param clock               The clock buckets are refilled by
+     */
+    public UploadRateLimiter(RateLimitRepository rateLimitRepository, long capacity, long refillPerMinute, Clock clock) {
+        this.rateLimitRepository = rateLimitRepository;
+        this.capacity = capacity;
+        this.tokensPerMilli = refillPerMinute / 60_000.0;
+        this.clock = clock;
+        this.localStates = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LocalState> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+    }
+
+    /**
+     * Takes {@code permits} tokens from the user's bucket. Requests larger than the bucket are
+     * charged the whole bucket so they can still be admitted once it is full. If the shared store
+     * cannot be reached the request is admitted, so the table can never block uploads.
+     *
+     * @param userId  The user, as given by the JWT {@code sub}
+     * @param permits The number of images in the request
+     * @param context The Lambda execution context
+     * @throws RateLimitExceededException If the user must wait before uploading more
+     */
+    public void acquire(String userId, int permits, Context context) {
+        if (rateLimitRepository == null || !rateLimitRepository.isEnabled()) {
+            return;
+        }
+
+        double cost = Math.min(permits, capacity);
+        long now = clock.millis();
+
+        LocalState local;
+        synchronized (localStates) {
+            local = localStates.get(userId);
+        }
+        if (local != null && local.blockedUntilMillis > now) {
+            throw new RateLimitExceededException(toRetryAfterSeconds(local.blockedUntilMillis - now));
+        }
+
+        try {
+            TokenBucket expected = local != null ? local.bucket : rateLimitRepository.find(userId).orElse(null);
+
+            for (int attempt = 0; attempt < MAX_WRITE_ATTEMPTS; attempt++) {
+                TokenBucket available = expected != null
+                        ? expected.refill(now, capacity, tokensPerMilli)
+                        : new TokenBucket(capacity, now);
+
+                if (available.tokens() < cost) {
+                    long waitMillis = (long) Math.ceil((cost - available.tokens()) / tokensPerMilli);
+                    remember(userId, new LocalState(expected, now + waitMillis));
+                    throw new RateLimitExceededException(toRetryAfterSeconds(waitMillis));
+                }
+
+                TokenBucket updated = new TokenBucket(available.tokens() - cost, now);
+                if (rateLimitRepository.compareAndSet(userId, expected, updated, expiresAtSeconds(now))) {
+                    remember(userId, new LocalState(updated, 0));
+                    return;
+                }
+
+                // Another container drew from the bucket since we last saw it
+                expected = rateLimitRepository.find(userId).orElse(null);
+            }
+        } catch (RateLimitExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            context.getLogger().log("Rate limit check failed, admitting request: " + e.getMessage());
+            return;
+        }
+
+        // Only a user with many requests in flight at once loses every race for their own bucket
+        throw new RateLimitExceededException(1);
+    }
+
+    private void remember(String userId, LocalState state) {
+        synchronized (localStates) {
+            localStates.put(userId, state);
+        }
+    }
+
+    /**
+     * An untouched bucket refills completely by this time, so it can be deleted and recreated full.
+     */
+    private long expiresAtSeconds(long nowMillis) {
+        return (nowMillis + (long) Math.ceil(capacity / tokensPerMilli)) / 1000 + 60;
+    }
+
+    private static long toRetryAfterSeconds(long waitMillis) {
+        return Math.max(1, (waitMillis + 999) / 1000);
+    }
+
+    /**
+     * @param bucket             The last bucket this container wrote or read, or null if the user had none
+     * @param blockedUntilMillis Until when requests are denied without consulting the table
+     */
+    private record LocalState(TokenBucket bucket, long blockedUntilMillis) {
+    }
+}
@@ -0,0 +1,333 @@
+package com.service;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.model.ImageHeader;
+import com.model.ImagePayload;
+import com.model.UploadSession;
+import com.model.UploadedPart;
+import com.repository.S3Repository;
+import com.repository.UploadSessionRepository;
+import com.util.ImageHeaderParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Resumable uploads: a session wraps an S3 multipart upload so clients can send an image as
+ * numbered chunks, in parallel and in any order, retry only the chunks that failed and then
+ * complete the session. S3 is the record of which parts have arrived, so a chunk costs one
+ * {@code UploadPart} and no table writes.
+ */
+public class UploadSessionService {
+    private static final String UPLOAD_PREFIX = "uploads/";
+    // S3's minimum for every part but the last
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    // Base64 adds a third, so 6 MiB chunks stay well below API Gateway's 10 MB payload limit
+    private static final long DEFAULT_PART_SIZE = 6L * 1024 * 1024;
+    private static final long MAX_PART_COUNT = 10_000;
+    private static final long DEFAULT_MAX_SESSION_BYTES = 256L * 1024 * 1024;
+    private static final long DEFAULT_SESSION_TTL_SECONDS = 24 * 60 * 60;
+
+    private final S3Repository s3Repository;
+    private final UploadSessionRepository uploadSessionRepository;
+    private final ImageService imageService;
+
+    /**
+     * Default constructor that initializes repositories with default settings.
+     */
+    public UploadSessionService() {
+        this(new S3Repository(), new UploadSessionRepository(), new ImageService());
+    }
+
+    /**
+     * Constructor with dependency injection.
+     *
+     * @param s3Repository            The S3 repository holding the multipart uploads
+     * @param uploadSessionRepository The session table
+     * @param imageService            Used to validate and enqueue completed images
+     */
+    public UploadSessionService(S3Repository s3Repository, UploadSessionRepository uploadSessionRepository, ImageService imageService) {
+        this.s3Repository = s3Repository;
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.imageService = imageService;
+    }
+
+    /**
+     * Starts a session for an image of the given size. The response tells the client how to split
+     * the image: every chunk must be exactly {@code partSize} bytes except the last.
+     *
+     * @param name        The name of the user uploading the image
+     * @param email       The email of the user uploading the image
+     * @param contentType The content type of the image (required)
+     * @param imageTitle  The title of the image (optional)
+     * @param size        The total image size in bytes
+     * @param userId      The unique identifier of the user; only they can use the session
+     * @param context     The Lambda execution context
+     * @return A map containing the session ID, part size, part count and expiry
+     * @throws IllegalArgumentException If the content type is unsupported or the size is out of range
+     */
+    public Map<String, Object> createSession(String name, String email, String contentType, String imageTitle,
+                                             long size, String userId, Context context) {
+        if (name == null || name.isEmpty()) {
+            name = "unknown-user";
+        }
+
+        if (email == null || email.isEmpty()) {
+            email = "unknown-email";
+        }
+
+        if (contentType == null) {
+            throw new IllegalArgumentException("Content type is required for upload sessions");
+        }
+        ImageService.validateContentType(contentType);
+
+        long maxBytes = ImageService.getEnvLong("MAX_UPLOAD_SESSION_BYTES", DEFAULT_MAX_SESSION_BYTES);
+        if (size <= 0 || size > maxBytes) {
+            throw new IllegalArgumentException("Image size must be between 1 and " + maxBytes + " bytes");
+        }
+
+        long partSize = Math.max(MIN_PART_SIZE, ImageService.getEnvLong("UPLOAD_SESSION_PART_SIZE_BYTES", DEFAULT_PART_SIZE));
+        if ((size + partSize - 1) / partSize > MAX_PART_COUNT) {
+            throw new IllegalArgumentException("Image is too large for a part size of " + partSize + " bytes");
+        }
+
+        String fileName = ImageService.buildFileName(UPLOAD_PREFIX, name, email, imageTitle, contentType);
+        Map<String, String> metadata = ImageService.buildObjectMetadata(name, email, imageTitle, userId);
+        String uploadId = s3Repository.createMultipartUpload(fileName, contentType, metadata);
+
+        long expiresAt = Instant.now().getEpochSecond()
+                + ImageService.getEnvLong("UPLOAD_SESSION_TTL_SECONDS", DEFAULT_SESSION_TTL_SECONDS);
+        UploadSession session = new UploadSession(UUID.randomUUID().toString(), userId, fileName, uploadId,
+                contentType, size, (int) partSize, UploadSession.OPEN, metadata, expiresAt);
+        uploadSessionRepository.save(session);
+        context.getLogger().log("Created upload session " + session.sessionId() + " for key: " + fileName);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("sessionId", session.sessionId());
+        response.put("key", fileName);
+        response.put("size", size);
+        response.put("partSize", partSize);
+        response.put("partCount", session.partCount());
+        response.put("expiresAt", Instant.ofEpochSecond(expiresAt).toString());
+        response.put("message", "Upload session created successfully");
+        return response;
+    }
+
+    /**
+     * Uploads one chunk of a session. Re-sending a chunk replaces it, so a client can retry any
+     * chunk whose response it never saw. The first chunk carries the image header, which is
+     * validated here so an unacceptable image is refused before the rest of it is sent.
+     *
+     * @param sessionId  The session ID
+     * @param partNumber The 1-based chunk number
+     * @param chunk      The chunk bytes
+     * @param userId     The unique identifier of the user
+     * @param context    The Lambda execution context
+     * @return A map containing the part number and size
+     * @throws IllegalArgumentException If the session cannot be used, or the chunk number or size is wrong
+     * @throws Exception If the chunk could not be read or stored
+     */
+    public Map<String, Object> uploadPart(String sessionId, int partNumber, ImagePayload chunk, String userId, Context context) throws Exception {
+        UploadSession session = getOpenSession(sessionId, userId);
+
+        if (partNumber < 1 || partNumber > session.partCount()) {
+            throw new IllegalArgumentException("Part number must be between 1 and " + session.partCount());
+        }
+        long expectedSize = session.expectedPartSize(partNumber);
+        if (chunk == null || chunk.size() != expectedSize) {
+            throw new IllegalArgumentException("Part " + partNumber + " must be exactly " + expectedSize + " bytes");
+        }
+
+        byte[] part;
+        try (InputStream in = chunk.openStream()) {
+            part = in.readNBytes((int) expectedSize);
+        }
+
+        if (partNumber == 1) {
+            ImageHeader header = ImageHeaderParser.parse(new ByteArrayInputStream(part));
+            ImageService.validateContentType(header.contentType());
+            ImageService.validateDimensions(header);
+        }
+
+        UploadedPart uploaded = s3Repository.uploadPart(session.key(), session.uploadId(), partNumber, part);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("sessionId", sessionId);
+        response.put("partNumber", uploaded.partNumber());
+        response.put("size", uploaded.size());
+        return response;
+    }
+
+    /**
+     * Reports which chunks of a session have been received, so an interrupted client knows which
+     * ones to resend.
+     *
+     * @param sessionId The session ID
+     * @param userId    The unique identifier of the user
+     * @return A map containing the session status and the received and missing part numbers
+     * @throws IllegalArgumentException If the session does not exist or belongs to another user
+     */
+    public Map<String, Object> getSession(String sessionId, String userId) {
+        UploadSession session = getOwnedSession(sessionId, userId);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("sessionId", sessionId);
+        response.put("status", session.status());
+        response.put("size", session.size());
+        response.put("partSize", session.partSize());
+        response.put("partCount", session.partCount());
+        response.put("expiresAt", Instant.ofEpochSecond(session.expiresAt()).toString());
+
+        if (session.status().equals(UploadSession.OPEN)) {
+            List<UploadedPart> parts = s3Repository.listParts(session.key(), session.uploadId());
+            List<Integer> received = new ArrayList<>();
+            long bytesReceived = 0;
+            for (UploadedPart part : parts) {
+                received.add(part.partNumber());
+                bytesReceived += part.size();
+            }
+            response.put("receivedParts", received);
+            response.put("missingParts", findMissingParts(session, parts));
+            response.put("bytesReceived", bytesReceived);
+        }
+        return response;
+    }
+
+    /**
+     * Assembles the chunks into the staging object and enqueues it for processing, exactly as a
+     * presigned direct upload would be once it lands. If the object is assembled but cannot be
+     * enqueued, the session is left {@code assembled} and completing it again retries the enqueue.
+     *
+     * @param sessionId The session ID
+     * @param userId    The unique identifier of the user
+     * @param context   The Lambda execution context
+     * @return A map containing the object key and the result of the SQS send
+     * @throws IllegalArgumentException If the session cannot be used, chunks are missing, or the image is rejected
+     * @throws Exception If the object could not be assembled or enqueued
+     */
+    public Map<String, Object> completeSession(String sessionId, String userId, Context context) throws Exception {
+        UploadSession session = getUsableSession(sessionId, userId, UploadSession.OPEN, UploadSession.ASSEMBLED);
+
+        boolean assembled = session.status().equals(UploadSession.ASSEMBLED);
+        List<UploadedPart> parts = List.of();
+        if (!assembled) {
+            parts = s3Repository.listParts(session.key(), session.uploadId());
+            List<Integer> missing = findMissingParts(session, parts);
+            if (!missing.isEmpty()) {
+                throw new IllegalArgumentException("Upload session is missing parts: " + missing);
+            }
+        }
+
+        // Only one of two concurrent completions may assemble and enqueue the object
+        if (!uploadSessionRepository.updateStatus(sessionId, session.status(), UploadSession.COMPLETED)) {
+            throw new IllegalArgumentException("Upload session is no longer open");
+        }
+
+        if (!assembled) {
+            try {
+                s3Repository.completeMultipartUpload(session.key(), session.uploadId(), parts);
+            } catch (RuntimeException e) {
+                uploadSessionRepository.updateStatus(sessionId, UploadSession.COMPLETED, UploadSession.OPEN);
+                throw e;
+            }
+            context.getLogger().log("Completed upload session " + sessionId + " for key: " + session.key());
+        }
+
+        Map<String, Object> sqsStatus;
+        try {
+            sqsStatus = imageService.enqueueStagedImage(session.key(), session.metadata(), context);
+        } catch (Exception e) {
+            // The parts are gone, but the object can still be enqueued by completing the session again
+            context.getLogger().log("Could not enqueue upload session " + sessionId + ": " + e.getMessage());
+            uploadSessionRepository.updateStatus(sessionId, UploadSession.COMPLETED, UploadSession.ASSEMBLED);
+            throw e;
+        }
+        if (Boolean.TRUE.equals(sqsStatus.get("rejected"))) {
+            throw new IllegalArgumentException((String) sqsStatus.get("error"));
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("sessionId", sessionId);
+        response.put("key", session.key());
+        response.put("status", UploadSession.COMPLETED);
+        response.put("sqsStatus", sqsStatus);
+        response.put("message", "Image uploaded successfully");
+        return response;
+    }
+
+    /**
+     * Abandons a session and discards its chunks.
+     *
+     * @param sessionId The session ID
+     * @param userId    The unique identifier of the user
+     * @return A map containing the session status
+     * @throws IllegalArgumentException If the session cannot be used
+     */
+    public Map<String, Object> abortSession(String sessionId, String userId) {
+        UploadSession session = getOpenSession(sessionId, userId);
+
+        if (!uploadSessionRepository.updateStatus(sessionId, UploadSession.OPEN, UploadSession.ABORTED)) {
+            throw new IllegalArgumentException("Upload session is no longer open");
+        }
+        s3Repository.abortMultipartUpload(session.key(), session.uploadId());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("sessionId", sessionId);
+        response.put("status", UploadSession.ABORTED);
+        return response;
+    }
+
+    /**
+     * Returns the part numbers that have not been received with their expected size.
+     */
+    private static List<Integer> findMissingParts(UploadSession session, List<UploadedPart> parts) {
+        boolean[] received = new boolean[session.partCount() + 1];
+        for (UploadedPart part : parts) {
+            int number = part.partNumber();
+            if (number <= session.partCount() && part.size() == session.expectedPartSize(number)) {
+                received[number] = true;
+            }
+        }
+
+        List<Integer> missing = new ArrayList<>();
+        for (int number = 1; number <= session.partCount(); number++) {
+            if (!received[number]) {
+                missing.add(number);
+            }
+        }
+        return missing;
+    }
+
+    private UploadSession getOpenSession(String sessionId, String userId) {
+        return getUsableSession(sessionId, userId, UploadSession.OPEN);
+    }
+
+    /**
+     * Loads an unexpired session of the user's that has one of the given statuses.
+     */
+    private UploadSession getUsableSession(String sessionId, String userId, String... statuses) {
+        UploadSession session = getOwnedSession(sessionId, userId);
+        if (!List.of(statuses).contains(session.status())) {
+            throw new IllegalArgumentException("Upload session is " + session.status());
+        }
+        if (session.expiresAt() <= Instant.now().getEpochSecond()) {
+            throw new IllegalArgumentException("Upload session has expired");
+        }
+        return session;
+    }
+
+    /**
+     * Loads a session, treating another user's session as nonexistent so session IDs cannot be probed.
+     */
+    private UploadSession getOwnedSession(String sessionId, String userId) {
+        return uploadSessionRepository.find(sessionId)
+                .filter(session -> session.userId().equals(userId))
+                .orElseThrow(() -> new IllegalArgumentException("Upload session not found"));
+    }
+}
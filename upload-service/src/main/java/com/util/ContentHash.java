@@ -0,0 +1,71 @@
+package com.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Computes the SHA-256 of image content by streaming it through the digest in fixed-size chunks,
+ * so the decoded image is never held in memory. Request bodies are hashed the same way.
+ */
+public final class ContentHash {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ContentHash() {
+    }
+
+    /**
+     * Reads a stream to the end and returns its SHA-256.
+     *
+     * @param in The content to hash
+     * @return The digest as 64 lower-case hex characters
+     * @throws IOException If the stream cannot be read
+     */
+    public static String sha256Hex(InputStream in) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Returns the SHA-256 of the UTF-8 encoding of several strings. Each part is followed by a NUL,
+     * so text moved from one part to the next changes the digest. Long parts are encoded a chunk
+     * at a time rather than copied whole.
+     *
+     * @param parts The strings to hash; a null part hashes like an empty one
+     * @return The digest as 64 lower-case hex characters
+     */
+    public static String sha256Hex(String... parts) {
+        MessageDigest digest = newDigest();
+        for (String part : parts) {
+            if (part != null) {
+                for (int start = 0; start < part.length(); ) {
+                    int end = Math.min(part.length(), start + BUFFER_SIZE);
+                    // Keep surrogate pairs within one chunk so they encode as one character
+                    if (end < part.length() && Character.isHighSurrogate(part.charAt(end - 1))) {
+                        end--;
+                    }
+                    digest.update(part.substring(start, end).getBytes(StandardCharsets.UTF_8));
+                    start = end;
+                }
+            }
+            digest.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
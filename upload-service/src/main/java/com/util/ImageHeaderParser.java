@@ -0,0 +1,175 @@
+package com.util;
+
+import com.model.ImageHeader;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Identifies JPEG, PNG, GIF and WebP images from their magic bytes and reads their dimensions
+ * from the header (PNG IHDR, JPEG SOF, GIF logical screen, WebP VP8/VP8L/VP8X), so oversize
+ * images and decompression bombs can be rejected without decoding a single pixel.
+ */
+public final class ImageHeaderParser {
+
+    private ImageHeaderParser() {
+    }
+
+    /**
+     * Reads the image header from the start of a stream. Only as many bytes as the header needs are
+     * consumed; for JPEG that means skipping the marker segments that precede the frame header.
+     *
+     * @param in The image bytes, positioned at the start of the file
+     * @return The image's format and dimensions
+     * @throws IllegalArgumentException      If the format is not recognised or the header is malformed
+     * @throws TruncatedImageHeaderException If the stream ends before the header does
+     * @throws IOException                   If the stream cannot be read
+     */
+    public static ImageHeader parse(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] magic = new byte[4];
+
+        try {
+            data.readFully(magic);
+
+            ImageHeader header;
+            if ((magic[0] & 0xFF) == 0xFF && (magic[1] & 0xFF) == 0xD8) {
+                header = parseJpeg(data, magic);
+            } else if ((magic[0] & 0xFF) == 0x89 && magic[1] == 'P' && magic[2] == 'N' && magic[3] == 'G') {
+                header = parsePng(data);
+            } else if (magic[0] == 'G' && magic[1] == 'I' && magic[2] == 'F' && magic[3] == '8') {
+                header = parseGif(data);
+            } else if (magic[0] == 'R' && magic[1] == 'I' && magic[2] == 'F' && magic[3] == 'F') {
+                header = parseWebp(data);
+            } else {
+                throw new IllegalArgumentException("Unsupported file type. Only PNG and JPG/JPEG allowed.");
+            }
+
+            if (header.width() <= 0 || header.height() <= 0) {
+                throw new IllegalArgumentException("Image header has invalid dimensions");
+            }
+            return header;
+        } catch (EOFException e) {
+            throw new TruncatedImageHeaderException(e);
+        }
+    }
+
+    private static ImageHeader parseJpeg(DataInputStream in, byte[] magic) throws IOException {
+        // magic holds SOI followed by the first marker
+        int marker = (magic[2] & 0xFF) == 0xFF ? magic[3] & 0xFF : -1;
+        if (marker < 0) {
+            throw new IllegalArgumentException("Malformed JPEG header");
+        }
+
+        while (true) {
+            // Markers may be preceded by any number of 0xFF fill bytes
+            while (marker == 0xFF) {
+                marker = in.readUnsignedByte();
+            }
+
+            if (isStartOfFrame(marker)) {
+                in.readUnsignedShort(); // segment length
+                in.readUnsignedByte();  // sample precision
+                int height = in.readUnsignedShort();
+                int width = in.readUnsignedShort();
+                return new ImageHeader("image/jpeg", width, height);
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                throw new IllegalArgumentException("JPEG has no frame header before image data");
+            }
+            if (marker != 0x01 && (marker < 0xD0 || marker > 0xD7)) {
+                int length = in.readUnsignedShort();
+                if (length < 2) {
+                    throw new IllegalArgumentException("Malformed JPEG segment");
+                }
+                skipFully(in, length - 2);
+            }
+
+            if (in.readUnsignedByte() != 0xFF) {
+                throw new IllegalArgumentException("Malformed JPEG marker");
+            }
+            marker = in.readUnsignedByte();
+        }
+    }
+
+    private static boolean isStartOfFrame(int marker) {
+        // SOF0-SOF15, excluding DHT (C4), JPG (C8) and DAC (CC)
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+
+    private static ImageHeader parsePng(DataInputStream in) throws IOException {
+        // Rest of the signature, then the IHDR chunk which must come first
+        if (in.readInt() != 0x0D0A1A0A) {
+            throw new IllegalArgumentException("Malformed PNG signature");
+        }
+        in.readInt(); // chunk length
+        if (in.readInt() != 0x49484452) {
+            throw new IllegalArgumentException("PNG does not start with an IHDR chunk");
+        }
+        return new ImageHeader("image/png", in.readInt(), in.readInt());
+    }
+
+    private static ImageHeader parseGif(DataInputStream in) throws IOException {
+        skipFully(in, 2); // "7a" or "9a"
+        return new ImageHeader("image/gif", readUnsignedShortLE(in), readUnsignedShortLE(in));
+    }
+
+    private static ImageHeader parseWebp(DataInputStream in) throws IOException {
+        skipFully(in, 4); // RIFF size
+        if (in.readInt() != 0x57454250) {
+            throw new IllegalArgumentException("RIFF file is not a WebP image");
+        }
+
+        int chunk = in.readInt();
+        skipFully(in, 4); // chunk size
+
+        switch (chunk) {
+            case 0x56503820 -> { // "VP8 " (lossy)
+                skipFully(in, 3); // frame tag
+                if (in.readUnsignedByte() != 0x9D || in.readUnsignedByte() != 0x01 || in.readUnsignedByte() != 0x2A) {
+                    throw new IllegalArgumentException("Malformed WebP VP8 frame");
+                }
+                int width = readUnsignedShortLE(in) & 0x3FFF;
+                int height = readUnsignedShortLE(in) & 0x3FFF;
+                return new ImageHeader("image/webp", width, height);
+            }
+            case 0x5650384C -> { // "VP8L" (lossless)
+                if (in.readUnsignedByte() != 0x2F) {
+                    throw new IllegalArgumentException("Malformed WebP VP8L signature");
+                }
+                int bits = in.readUnsignedByte() | in.readUnsignedByte() << 8 | in.readUnsignedByte() << 16 | in.readUnsignedByte() << 24;
+                return new ImageHeader("image/webp", (bits & 0x3FFF) + 1, ((bits >>> 14) & 0x3FFF) + 1);
+            }
+            case 0x56503858 -> { // "VP8X" (extended)
+                skipFully(in, 4); // flags and reserved bytes
+                int width = readUnsigned24LE(in) + 1;
+                int height = readUnsigned24LE(in) + 1;
+                return new ImageHeader("image/webp", width, height);
+            }
+            default -> throw new IllegalArgumentException("Unknown WebP chunk");
+        }
+    }
+
+    private static int readUnsignedShortLE(DataInputStream in) throws IOException {
+        return in.readUnsignedByte() | in.readUnsignedByte() << 8;
+    }
+
+    private static int readUnsigned24LE(DataInputStream in) throws IOException {
+        return in.readUnsignedByte() | in.readUnsignedByte() << 8 | in.readUnsignedByte() << 16;
+    }
+
+    private static void skipFully(InputStream in, long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException();
+                }
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.util;
+
+import com.model.ImagePayload;
+import com.model.UploadRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Streams {@code multipart/form-data} upload bodies. The body is scanned once to find where each
+ * part starts and ends; file parts are returned as slices of the body and never copied, so only
+ * the small text fields are held in memory.
+ * <p>
+ * File parts are those named {@code image} or {@code file}, or any part with a filename. The
+ * fields {@code imageTitle} (or {@code title}) and {@code contentType} apply to the file parts in
+ * order; a file without a {@code contentType} field uses its part's {@code Content-Type}.
+ */
+public class MultipartFormParser {
+    private static final int MAX_HEADER_BYTES = 8 * 1024;
+    private static final int MAX_FIELD_BYTES = 64 * 1024;
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+
+    /**
+     * Parses a form that carries a single image.
+     *
+     * @param body        The decoded request body
+     * @param contentType The request's Content-Type header, which holds the boundary
+     * @return The upload request; its image is null if the form has no file part
+     * @throws IllegalArgumentException If the form is malformed or has more than one file part
+     * @throws IOException              If the body cannot be read
+     */
+    public UploadRequest parse(ImagePayload body, String contentType) throws IOException {
+        List<UploadRequest> requests = parseAll(body, contentType);
+        if (requests.size() > 1) {
+            throw new IllegalArgumentException("Exactly one image is allowed per upload");
+        }
+        return requests.isEmpty() ? new UploadRequest(null, null, null) : requests.get(0);
+    }
+
+    /**
+     * Parses a form that may carry several images, in the order they appear.
+     *
+     * @param body        The decoded request body
+     * @param contentType The request's Content-Type header, which holds the boundary
+     * @return One upload request per file part
+     * @throws IllegalArgumentException If the form is malformed
+     * @throws IOException              If the body cannot be read
+     */
+    public List<UploadRequest> parseAll(ImagePayload body, String contentType) throws IOException {
+        byte[] delimiter = ("\r\n--" + boundary(contentType)).getBytes(StandardCharsets.US_ASCII);
+
+        List<ImagePayload> files = new ArrayList<>();
+        List<String> fileContentTypes = new ArrayList<>();
+        List<String> titles = new ArrayList<>();
+        List<String> contentTypes = new ArrayList<>();
+
+        try (InputStream in = body.openStream()) {
+            Scanner scanner = new Scanner(in, delimiter);
+
+            // The first boundary may open the body, so scan as if a line break preceded it
+            scanner.skipToDelimiter(2, null);
+
+            while (!scanner.readDelimiterSuffix()) {
+                PartHeaders headers = scanner.readHeaders();
+                long start = scanner.position();
+
+                if (headers.isFile()) {
+                    long end = scanner.skipToDelimiter(0, null);
+                    files.add(body.slice(start, end - start));
+                    fileContentTypes.add(headers.contentType);
+                } else {
+                    ByteArrayOutputStream value = new ByteArrayOutputStream();
+                    scanner.skipToDelimiter(0, value);
+                    String text = value.toString(StandardCharsets.UTF_8);
+
+                    switch (headers.name) {
+                        case "imageTitle", "title" -> titles.add(text);
+                        case "contentType" -> contentTypes.add(text);
+                        default -> {
+                            // Unknown fields are ignored, as in JSON bodies
+                        }
+                    }
+                }
+            }
+        }
+
+        List<UploadRequest> requests = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            String imageContentType = i < contentTypes.size() ? contentTypes.get(i) : fileContentTypes.get(i);
+            String title = i < titles.size() ? titles.get(i) : null;
+            requests.add(new UploadRequest(files.get(i), imageContentType, title));
+        }
+        return requests;
+    }
+
+    private static String boundary(String contentType) {
+        if (contentType != null) {
+            for (String parameter : contentType.split(";")) {
+                String[] pair = parameter.trim().split("=", 2);
+                if (pair.length == 2 && pair[0].trim().equalsIgnoreCase("boundary")) {
+                    String value = pair[1].trim();
+                    if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                        value = value.substring(1, value.length() - 1);
+                    }
+                    if (!value.isEmpty() && value.length() <= 70) {
+                        return value;
+                    }
+                }
+            }
+        }
+        throw new IllegalArgumentException("Multipart request is missing a valid boundary");
+    }
+
+    /**
+     * The headers of one part that matter for uploads.
+     */
+    private record PartHeaders(String name, String filename, String contentType) {
+        boolean isFile() {
+            return filename != null || name.equals("image") || name.equals("file");
+        }
+    }
+
+    /**
+     * Reads the body through its own buffer, tracking the offset of every byte so file parts can be
+     * sliced, and finds delimiters with a Knuth-Morris-Pratt automaton so no byte is read twice.
+     */
+    private static class Scanner {
+        private final InputStream in;
+        private final byte[] delimiter;
+        private final int[] fallback;
+        private final byte[] buffer = new byte[READ_BUFFER_BYTES];
+        private int bufferPosition;
+        private int bufferLimit;
+        private long position;
+
+        Scanner(InputStream in, byte[] delimiter) {
+            this.in = in;
+            this.delimiter = delimiter;
+            this.fallback = new int[delimiter.length];
+            for (int i = 1, k = 0; i < delimiter.length; i++) {
+                while (k > 0 && delimiter[i] != delimiter[k]) {
+                    k = fallback[k - 1];
+                }
+                if (delimiter[i] == delimiter[k]) {
+                    k++;
+                }
+                fallback[i] = k;
+            }
+        }
+
+        long position() {
+            return position;
+        }
+
+        /**
+         * Consumes bytes up to and including the next delimiter.
+         *
+         * @param matched Number of delimiter bytes already considered matched
+         * @param value   Receives the bytes before the delimiter, or null to discard them
+         * @return The offset at which the delimiter starts
+         */
+        long skipToDelimiter(int matched, ByteArrayOutputStream value) throws IOException {
+            int b;
+            while ((b = read()) >= 0) {
+                while (matched > 0 && b != (delimiter[matched] & 0xFF)) {
+                    matched = fallback[matched - 1];
+                }
+                if (b == (delimiter[matched] & 0xFF)) {
+                    matched++;
+                }
+                if (value != null) {
+                    if (value.size() > MAX_FIELD_BYTES + delimiter.length) {
+                        throw new IllegalArgumentException("Form field exceeds " + MAX_FIELD_BYTES + " bytes");
+                    }
+                    value.write(b);
+                }
+                if (matched == delimiter.length) {
+                    if (value != null) {
+                        byte[] bytes = value.toByteArray();
+                        value.reset();
+                        value.write(bytes, 0, Math.max(0, bytes.length - delimiter.length));
+                    }
+                    return position - delimiter.length;
+                }
+            }
+            throw new IllegalArgumentException("Multipart body ended before its closing boundary");
+        }
+
+        /**
+         * Reads what follows a delimiter: {@code --} closes the form, a line break starts a part.
+         *
+         * @return true if the form is closed
+         */
+        boolean readDelimiterSuffix() throws IOException {
+            int first = read();
+            int second = read();
+            if (first == '-' && second == '-') {
+                return true;
+            }
+            // Transport padding may precede the line break
+            while (first == ' ' || first == '\t') {
+                first = second;
+                second = read();
+            }
+            if (first != '\r' || second != '\n') {
+                throw new IllegalArgumentException("Malformed multipart boundary");
+            }
+            return false;
+        }
+
+        PartHeaders readHeaders() throws IOException {
+            String name = null;
+            String filename = null;
+            String contentType = null;
+            int headerBytes = 0;
+
+            String line;
+            while (!(line = readLine()).isEmpty()) {
+                headerBytes += line.length();
+                if (headerBytes > MAX_HEADER_BYTES) {
+                    throw new IllegalArgumentException("Multipart part headers exceed " + MAX_HEADER_BYTES + " bytes");
+                }
+
+                int colon = line.indexOf(':');
+                if (colon < 0) {
+                    throw new IllegalArgumentException("Malformed multipart part header");
+                }
+                String header = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                String value = line.substring(colon + 1).trim();
+
+                if (header.equals("content-disposition")) {
+                    name = dispositionParameter(value, "name");
+                    filename = dispositionParameter(value, "filename");
+                } else if (header.equals("content-type")) {
+                    contentType = value.split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+                }
+            }
+
+            if (name == null) {
+                throw new IllegalArgumentException("Multipart part is missing a form field name");
+            }
+            return new PartHeaders(name, filename, contentType);
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            int b;
+            while ((b = read()) >= 0) {
+                if (b == '\r') {
+                    if (read() != '\n') {
+                        throw new IllegalArgumentException("Malformed multipart part header");
+                    }
+                    return line.toString();
+                }
+                if (line.length() > MAX_HEADER_BYTES) {
+                    throw new IllegalArgumentException("Multipart part headers exceed " + MAX_HEADER_BYTES + " bytes");
+                }
+                // Header values are ASCII, or UTF-8 read as Latin-1 and recoded below
+                line.append((char) b);
+            }
+            throw new IllegalArgumentException("Multipart body ended inside part headers");
+        }
+
+        private static String dispositionParameter(String disposition, String parameter) {
+            for (String part : disposition.split(";")) {
+                String[] pair = part.trim().split("=", 2);
+                if (pair.length == 2 && pair[0].trim().equalsIgnoreCase(parameter)) {
+                    String value = pair[1].trim();
+                    if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                        value = value.substring(1, value.length() - 1);
+                    }
+                    return new String(value.getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8);
+                }
+            }
+            return null;
+        }
+
+        private int read() throws IOException {
+            if (bufferPosition == bufferLimit) {
+                int count = in.read(buffer, 0, buffer.length);
+                if (count <= 0) {
+                    return -1;
+                }
+                bufferPosition = 0;
+                bufferLimit = count;
+            }
+            position++;
+            return buffer[bufferPosition++] & 0xFF;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.util;
+
+/**
+ * Thrown when the data ends before the image header does. Unlike other header errors this says
+ * nothing about the image itself when only part of it was read.
+ */
+public class TruncatedImageHeaderException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    public TruncatedImageHeaderException(Throwable cause) {
+        super("Image header is truncated", cause);
+    }
+}
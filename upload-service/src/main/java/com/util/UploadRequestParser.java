@@ -0,0 +1,158 @@
+package com.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.model.Base64ImagePayload;
+import com.model.ImagePayload;
+import com.model.InvalidImagePayload;
+import com.model.UploadRequest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tokenizes JSON upload bodies with Jackson's streaming parser.
+ * The base64 {@code image} value is never copied out of the request body: the parser skips over it
+ * and the returned payload decodes it lazily from the original string.
+ */
+public class UploadRequestParser {
+    private final JsonFactory jsonFactory;
+
+    public UploadRequestParser() {
+        this(new JsonFactory());
+    }
+
+    public UploadRequestParser(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * Parses a JSON upload body of the form {@code {"image": "...", "contentType": "...", "imageTitle": "..."}}.
+     * A direct upload request carries {@code "contentLength": <bytes>} instead of the image.
+     * Fields may appear in any order and unknown fields are ignored.
+     *
+     * @param body The raw request body
+     * @return The parsed upload request
+     * @throws IllegalArgumentException If the body is missing or is not a JSON object
+     * @throws IOException              If the body is not well-formed JSON
+     */
+    public UploadRequest parse(String body) throws IOException {
+        if (body == null || body.isEmpty()) {
+            throw new IllegalArgumentException("Request body is required");
+        }
+
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Request body must be a JSON object");
+            }
+            return readUploadRequest(parser, body, false);
+        }
+    }
+
+    /**
+     * Parses a batch upload body: either a JSON array of upload objects or an object with an
+     * {@code images} array. Each image is decoded lazily from the body exactly as in {@link #parse}.
+     * An image that is not valid base64 does not fail the batch: its payload throws the validation
+     * error when it is used, so it is reported as that item's failure.
+     *
+     * @param body The raw request body
+     * @return The parsed upload requests in request order
+     * @throws IllegalArgumentException If the body is missing or has no image array
+     * @throws IOException              If the body is not well-formed JSON
+     */
+    public List<UploadRequest> parseBatch(String body) throws IOException {
+        if (body == null || body.isEmpty()) {
+            throw new IllegalArgumentException("Request body is required");
+        }
+
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    token = parser.nextToken();
+                    if (field.equals("images") && token == JsonToken.START_ARRAY) {
+                        return readUploadRequests(parser, body);
+                    }
+                    parser.skipChildren();
+                }
+            } else if (token == JsonToken.START_ARRAY) {
+                return readUploadRequests(parser, body);
+            }
+            throw new IllegalArgumentException("Request body must be a JSON array of images or an object with an images array");
+        }
+    }
+
+    private List<UploadRequest> readUploadRequests(JsonParser parser, String body) throws IOException {
+        List<UploadRequest> requests = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+            requests.add(readUploadRequest(parser, body, true));
+        }
+        if (token != JsonToken.END_ARRAY) {
+            throw new IllegalArgumentException("Each batch item must be a JSON object");
+        }
+        return requests;
+    }
+
+    /**
+     * Reads the fields of one upload object; the parser must be positioned on its START_OBJECT.
+     *
+     * @param deferInvalidImage Whether an invalid image becomes an {@link InvalidImagePayload}
+     *                          rather than failing the parse
+     */
+    private UploadRequest readUploadRequest(JsonParser parser, String body, boolean deferInvalidImage) throws IOException {
+        ImagePayload image = null;
+        String contentType = null;
+        String imageTitle = null;
+        Long contentLength = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+
+            switch (field) {
+                case "image":
+                    image = value == JsonToken.VALUE_STRING ? imagePayload(parser, body, deferInvalidImage) : null;
+                    break;
+                case "contentType":
+                    contentType = parser.getValueAsString();
+                    break;
+                case "imageTitle":
+                    imageTitle = parser.getValueAsString();
+                    break;
+                case "contentLength":
+                    contentLength = value == JsonToken.VALUE_NUMBER_INT ? parser.getLongValue() : null;
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+
+        return new UploadRequest(image, contentType, imageTitle, contentLength);
+    }
+
+    /**
+     * Builds a payload over the current string token without asking the parser for its text.
+     * Base64 never needs JSON escaping, so the value ends at the next quote; if the client escaped
+     * characters anyway (e.g. {@code \/}) we fall back to the parser's unescaped copy.
+     */
+    private ImagePayload imagePayload(JsonParser parser, String body, boolean deferInvalidImage) throws IOException {
+        int start = (int) parser.getTokenLocation().getCharOffset() + 1;
+        int end = body.indexOf('"', start);
+
+        try {
+            if (start <= 0 || end < 0 || body.lastIndexOf('\\', end) >= start) {
+                return Base64ImagePayload.of(parser.getText());
+            }
+            return new Base64ImagePayload(body, start, end);
+        } catch (IllegalArgumentException e) {
+            if (!deferInvalidImage) {
+                throw e;
+            }
+            return new InvalidImagePayload(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.amazonaws.services.lambda.runtime.events.S3Event;
+import com.amazonaws.services.lambda.runtime.events.models.s3.S3EventNotification;
+import com.repository.S3Repository;
+import com.service.ImageService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DirectUploadHandlerTest {
+
+    @Mock
+    private S3Repository s3Repository;
+
+    @Mock
+    private ImageService imageService;
+
+    @Mock
+    private Context context;
+
+    @Mock
+    private LambdaLogger lambdaLogger;
+
+    private DirectUploadHandler handler;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(context.getLogger()).thenReturn(lambdaLogger);
+
+        handler = new DirectUploadHandler(s3Repository, imageService);
+    }
+
+    @Test
+    public void testHandleRequestEnqueuesDecodedKey() throws Exception {
+        // Setup
+        String key = "direct-uploads/John Doe-john@example.com-abc.jpeg";
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put("userid", "user123");
+
+        when(s3Repository.getObjectMetadata(key)).thenReturn(metadata);
+        when(imageService.enqueueStagedImage(anyString(), any(), any())).thenReturn(new HashMap<>());
+
+        // Execute
+        String result = handler.handleRequest(s3Event("direct-uploads/John+Doe-john%40example.com-abc.jpeg"), context);
+
+        // Verify
+        verify(imageService).enqueueStagedImage(eq(key), eq(metadata), eq(context));
+        assertEquals("Enqueued 1 direct uploads", result);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testHandleRequestRethrowsEnqueueFailure() throws Exception {
+        // Setup
+        when(s3Repository.getObjectMetadata(anyString())).thenReturn(new HashMap<>());
+        when(imageService.enqueueStagedImage(anyString(), any(), any())).thenThrow(new Exception("SQS unavailable"));
+
+        // Execute
+        handler.handleRequest(s3Event("direct-uploads/a.jpeg"), context);
+    }
+
+    private static S3Event s3Event(String key) {
+        S3EventNotification.S3ObjectEntity object = new S3EventNotification.S3ObjectEntity(key, 10L, "etag", null, null);
+        S3EventNotification.S3Entity s3 = new S3EventNotification.S3Entity(null, null, object, null);
+        S3EventNotification.S3EventNotificationRecord record = new S3EventNotification.S3EventNotificationRecord(
+                "us-east-1", "ObjectCreated:Put", "aws:s3", null, "2.1", null, null, s3, null);
+        return new S3Event(Collections.singletonList(record));
+    }
+}
@@ -0,0 +1,71 @@
+package com.auth;
+
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.Assert.*;
+
+public class JwtClaimsCacheTest {
+
+    private static final long NOW_SECONDS = 1_700_000_000L;
+
+    private final Clock clock = Clock.fixed(Instant.ofEpochSecond(NOW_SECONDS), ZoneOffset.UTC);
+
+    @Test
+    public void testRepeatedTokenIsServedFromCache() {
+        // Setup
+        JwtClaimsCache cache = new JwtClaimsCache(10, 60_000, clock);
+        String token = JwtClaimsTest.token("{\"sub\":\"user123\",\"exp\":" + (NOW_SECONDS + 600) + "}");
+
+        // Execute
+        JwtClaims first = cache.get(token);
+        JwtClaims second = cache.get(token);
+
+        // Verify
+        assertSame(first, second);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testExpiredTokenIsNotCached() {
+        // Setup
+        JwtClaimsCache cache = new JwtClaimsCache(10, 60_000, clock);
+        String token = JwtClaimsTest.token("{\"sub\":\"user123\",\"exp\":" + (NOW_SECONDS - 1) + "}");
+
+        // Execute
+        JwtClaims claims = cache.get(token);
+
+        // Verify
+        assertEquals("user123", claims.sub());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testSameSignatureWithDifferentPayloadIsDecodedAgain() {
+        // Setup - both tokens end in the same signature segment
+        JwtClaimsCache cache = new JwtClaimsCache(10, 60_000, clock);
+        String first = JwtClaimsTest.token("{\"sub\":\"user123\"}");
+        String second = JwtClaimsTest.token("{\"sub\":\"user456\"}");
+
+        // Execute & Verify
+        assertEquals("user123", cache.get(first).sub());
+        assertEquals("user456", cache.get(second).sub());
+    }
+
+    @Test
+    public void testCacheIsBounded() {
+        // Setup
+        JwtClaimsCache cache = new JwtClaimsCache(2, 60_000, clock);
+
+        // Execute
+        for (int i = 0; i < 5; i++) {
+            cache.get(JwtClaimsTest.token("{\"sub\":\"user" + i + "\"}").replace("c2lnbmF0dXJl", "sig" + i));
+        }
+
+        // Verify
+        assertEquals(2, cache.size());
+    }
+}
@@ -0,0 +1,60 @@
+package com.auth;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.Assert.*;
+
+public class JwtClaimsTest {
+
+    static String token(String payloadJson) {
+        return "eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9."
+                + Base64.getUrlEncoder().withoutPadding().encodeToString(payloadJson.getBytes(StandardCharsets.UTF_8))
+                + ".c2lnbmF0dXJl";
+    }
+
+    @Test
+    public void testParseExtractsAllClaimsInOnePass() {
+        // Execute
+        JwtClaims claims = JwtClaims.parse(token(
+                "{\"sub\":\"user123\",\"name\":\"John Doe\",\"email\":\"john@example.com\",\"exp\":1700000000,\"groups\":[\"a\"]}"));
+
+        // Verify
+        assertEquals("John Doe", claims.name());
+        assertEquals("john@example.com", claims.email());
+        assertEquals("user123", claims.sub());
+        assertEquals(1700000000L, claims.expiresAt());
+    }
+
+    @Test
+    public void testParseAppliesClaimFallbacks() {
+        // Execute
+        JwtClaims claims = JwtClaims.parse(token("{\"cognito:sub\":\"abc\",\"mail\":\"jane@example.com\"}"));
+
+        // Verify - name falls back to sub, then cognito:name
+        assertEquals("unknown-user", claims.name());
+        assertEquals("jane@example.com", claims.email());
+        assertEquals("abc", claims.sub());
+
+        JwtClaims subAsName = JwtClaims.parse(token("{\"sub\":\"user123\",\"cognito:name\":\"Jane\"}"));
+        assertEquals("user123", subAsName.name());
+        assertEquals("unknown-email", subAsName.email());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseRejectsMalformedToken() {
+        JwtClaims.parse("not-a-jwt");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseRejectsTokenWithExtraSegments() {
+        JwtClaims.parse("a.b.c.d");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseRejectsNonJsonPayload() {
+        JwtClaims.parse("a." + Base64.getUrlEncoder().encodeToString("nope".getBytes()) + ".c");
+    }
+}
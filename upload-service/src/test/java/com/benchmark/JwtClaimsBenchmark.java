@@ -0,0 +1,80 @@
+package com.benchmark;
+
+import com.auth.JwtClaims;
+import com.auth.JwtClaimsCache;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the previous three-pass claim extraction in App with {@link JwtClaims} and a warm {@link JwtClaimsCache}.
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.benchmark.JwtClaimsBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtClaimsBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private JwtClaimsCache cache;
+    private String token;
+
+    @Setup
+    public void setup() {
+        String payload = "{\"sub\":\"9b2c6a1e-4f7d-4c55-8a3e-0d8f1b2c3d4e\",\"cognito:groups\":[\"users\"],"
+                + "\"email_verified\":true,\"iss\":\"https://cognito-idp.eu-west-1.amazonaws.com/eu-west-1_example\","
+                + "\"cognito:username\":\"jdoe\",\"origin_jti\":\"0f1e2d3c-4b5a-6978-8a9b-0c1d2e3f4a5b\","
+                + "\"aud\":\"4k1example2client3id\",\"token_use\":\"id\",\"auth_time\":1700000000,"
+                + "\"name\":\"John Doe\",\"exp\":4102444800,\"iat\":1700000000,\"email\":\"john@example.com\"}";
+        token = "eyJraWQiOiJleGFtcGxlIiwiYWxnIjoiUlMyNTYifQ."
+                + Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8))
+                + ".ZXhhbXBsZS1zaWduYXR1cmUtYnl0ZXMtZm9yLWJlbmNobWFyaw";
+        cache = new JwtClaimsCache();
+    }
+
+    @Benchmark
+    public JwtClaims legacyThreePass() throws Exception {
+        return new JwtClaims(legacyExtract(token, "name"), legacyExtract(token, "email"), legacyExtract(token, "sub"), 0);
+    }
+
+    @Benchmark
+    public JwtClaims singlePass() {
+        return JwtClaims.parse(token);
+    }
+
+    @Benchmark
+    public JwtClaims cachedWarm() {
+        return cache.get(token);
+    }
+
+    // Mirrors the body of the removed App.extract*FromToken methods
+    private String legacyExtract(String token, String field) throws Exception {
+        String[] parts = token.split("\\.");
+        String payload = new String(Base64.getUrlDecoder().decode(parts[1]));
+        JsonNode payloadJson = objectMapper.readTree(payload);
+        return payloadJson.has(field) ? payloadJson.get(field).asText() : null;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtClaimsBenchmark.class.getSimpleName()).build()).run();
+    }
+}
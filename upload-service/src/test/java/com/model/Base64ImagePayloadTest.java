@@ -0,0 +1,88 @@
+package com.model;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Base64;
+
+import static org.junit.Assert.*;
+
+public class Base64ImagePayloadTest {
+
+    @Test
+    public void testSizeMatchesDecodedLength() {
+        for (int length = 0; length < 10; length++) {
+            byte[] data = new byte[length];
+            String padded = Base64.getEncoder().encodeToString(data);
+            String unpadded = Base64.getEncoder().withoutPadding().encodeToString(data);
+
+            assertEquals(length, Base64ImagePayload.of(padded).size());
+            assertEquals(length, Base64ImagePayload.of(unpadded).size());
+        }
+    }
+
+    @Test
+    public void testOpenStreamDecodesRegionOfLargerBody() throws Exception {
+        // Setup
+        byte[] data = "Hello World".getBytes();
+        String encoded = Base64.getEncoder().encodeToString(data);
+        String body = "{\"image\":\"" + encoded + "\"}";
+        int start = body.indexOf(encoded);
+
+        // Execute
+        Base64ImagePayload payload = new Base64ImagePayload(body, start, start + encoded.length());
+
+        // Verify - the stream can be opened repeatedly
+        assertArrayEquals(data, readAll(payload.openStream()));
+        assertArrayEquals(data, readAll(payload.openStream()));
+        assertEquals(encoded.length(), payload.encodedLength());
+    }
+
+    @Test
+    public void testSliceDecodesFromAnyOffset() throws Exception {
+        // Setup
+        byte[] data = "The quick brown fox".getBytes();
+        Base64ImagePayload payload = Base64ImagePayload.of(Base64.getEncoder().encodeToString(data));
+
+        // Execute & Verify - every offset within a base64 quantum and every length
+        for (int offset = 0; offset <= data.length; offset++) {
+            for (int length = 0; offset + length <= data.length; length++) {
+                ImagePayload slice = payload.slice(offset, length);
+                byte[] expected = new byte[length];
+                System.arraycopy(data, offset, expected, 0, length);
+
+                assertEquals(length, slice.size());
+                assertArrayEquals(expected, readAll(slice.openStream()));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSliceOutsidePayloadRejected() {
+        Base64ImagePayload.of("SGVsbG8gV29ybGQ=").slice(5, 7);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCharacterRejected() {
+        Base64ImagePayload.of("SGVsbG8*V29ybGQ=");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDataAfterPaddingRejected() {
+        Base64ImagePayload.of("SGVsbG8=V29ybGQ");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncatedInputRejected() {
+        Base64ImagePayload.of("SGVsb");
+    }
+
+    private static byte[] readAll(InputStream in) throws Exception {
+        try (in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            in.transferTo(out);
+            return out.toByteArray();
+        }
+    }
+}
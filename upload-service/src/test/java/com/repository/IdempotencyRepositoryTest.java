@@ -0,0 +1,123 @@
+package com.repository;
+
+import com.model.IdempotencyRecord;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class IdempotencyRepositoryTest {
+
+    @Mock
+    private DynamoDbClient dynamoDbClient;
+
+    private IdempotencyRepository idempotencyRepository;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        idempotencyRepository = new IdempotencyRepository(dynamoDbClient, "upload-idempotency");
+    }
+
+    @Test
+    public void testTryLockClaimsUnusedOrAbandonedKey() {
+        // Execute
+        boolean locked = idempotencyRepository.tryLock("user123#key", "POST /upload 2:abc", 1000, 61000, 86400);
+
+        // Verify
+        assertTrue(locked);
+        ArgumentCaptor<PutItemRequest> requestCaptor = ArgumentCaptor.forClass(PutItemRequest.class);
+        verify(dynamoDbClient).putItem(requestCaptor.capture());
+        PutItemRequest request = requestCaptor.getValue();
+        assertEquals("attribute_not_exists(idempotencyKey) OR (#status = :inProgress AND lockExpiresAt < :now)",
+                request.conditionExpression());
+        assertEquals("1000", request.expressionAttributeValues().get(":now").n());
+        assertEquals(IdempotencyRecord.IN_PROGRESS, request.item().get("status").s());
+        assertEquals("61000", request.item().get("lockExpiresAt").n());
+    }
+
+    @Test
+    public void testTryLockFailsWhenKeyIsHeld() {
+        // Setup
+        when(dynamoDbClient.putItem(any(PutItemRequest.class)))
+                .thenThrow(ConditionalCheckFailedException.builder().message("The conditional request failed").build());
+
+        // Execute & Verify
+        assertFalse(idempotencyRepository.tryLock("user123#key", "POST /upload 2:abc", 1000, 61000, 86400));
+    }
+
+    @Test
+    public void testFindReadsCompletedKey() {
+        // Setup
+        when(dynamoDbClient.getItem(any(GetItemRequest.class))).thenReturn(GetItemResponse.builder()
+                .item(Map.of(
+                        "idempotencyKey", AttributeValue.fromS("user123#key"),
+                        "status", AttributeValue.fromS(IdempotencyRecord.COMPLETED),
+                        "fingerprint", AttributeValue.fromS("POST /upload 2:abc"),
+                        "responseBody", AttributeValue.fromS("{}"),
+                        "lockExpiresAt", AttributeValue.fromN("61000")))
+                .build());
+
+        // Execute & Verify
+        assertEquals(new IdempotencyRecord(IdempotencyRecord.COMPLETED, "POST /upload 2:abc", "{}", 61000),
+                idempotencyRepository.find("user123#key").orElseThrow());
+    }
+
+    @Test
+    public void testCompleteStoresResponse() {
+        // Execute
+        idempotencyRepository.complete("user123#key", "{\"fileName\":\"uploads/a.jpg\"}", 86400);
+
+        // Verify
+        ArgumentCaptor<UpdateItemRequest> requestCaptor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(dynamoDbClient).updateItem(requestCaptor.capture());
+        UpdateItemRequest request = requestCaptor.getValue();
+        assertEquals("user123#key", request.key().get("idempotencyKey").s());
+        assertEquals(IdempotencyRecord.COMPLETED, request.expressionAttributeValues().get(":completed").s());
+        assertEquals("{\"fileName\":\"uploads/a.jpg\"}", request.expressionAttributeValues().get(":responseBody").s());
+    }
+
+    @Test
+    public void testDeleteReleasesKeyOnlyWhileLockIsHeld() {
+        // Execute
+        boolean released = idempotencyRepository.delete("user123#key", "POST /upload 2:abc", 61000);
+
+        // Verify
+        assertTrue(released);
+        ArgumentCaptor<DeleteItemRequest> requestCaptor = ArgumentCaptor.forClass(DeleteItemRequest.class);
+        verify(dynamoDbClient).deleteItem(requestCaptor.capture());
+        DeleteItemRequest request = requestCaptor.getValue();
+        assertEquals("user123#key", request.key().get("idempotencyKey").s());
+        assertEquals("#status = :inProgress AND fingerprint = :fingerprint AND lockExpiresAt = :lockExpiresAt",
+                request.conditionExpression());
+        assertEquals(IdempotencyRecord.IN_PROGRESS, request.expressionAttributeValues().get(":inProgress").s());
+        assertEquals("POST /upload 2:abc", request.expressionAttributeValues().get(":fingerprint").s());
+        assertEquals("61000", request.expressionAttributeValues().get(":lockExpiresAt").n());
+    }
+
+    @Test
+    public void testDeleteLeavesKeyTakenOverByAnotherRequest() {
+        // Setup
+        when(dynamoDbClient.deleteItem(any(DeleteItemRequest.class)))
+                .thenThrow(ConditionalCheckFailedException.builder().message("The conditional request failed").build());
+
+        // Execute & Verify
+        assertFalse(idempotencyRepository.delete("user123#key", "POST /upload 2:abc", 61000));
+    }
+}
@@ -0,0 +1,76 @@
+package com.repository;
+
+import com.model.StoredImage;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ImageMetadataRepositoryTest {
+
+    @Mock
+    private DynamoDbClient dynamoDbClient;
+
+    private ImageMetadataRepository imageMetadataRepository;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        imageMetadataRepository = new ImageMetadataRepository(dynamoDbClient, "photo");
+    }
+
+    @Test
+    public void testFindActiveByContentHashQueriesHashIndex() {
+        // Setup
+        when(dynamoDbClient.query(any(QueryRequest.class))).thenReturn(QueryResponse.builder()
+                .items(Map.of(
+                        "imageKey", AttributeValue.fromS("abc123"),
+                        "imageUrl", AttributeValue.fromS("https://processed.example.com/abc123"),
+                        "title", AttributeValue.fromS("Beach")))
+                .build());
+
+        // Execute
+        Optional<StoredImage> result = imageMetadataRepository.findActiveByContentHash("user123", "deadbeef");
+
+        // Verify
+        assertTrue(result.isPresent());
+        assertEquals("abc123", result.get().imageKey());
+        assertEquals("Beach", result.get().title());
+
+        ArgumentCaptor<QueryRequest> requestCaptor = ArgumentCaptor.forClass(QueryRequest.class);
+        verify(dynamoDbClient).query(requestCaptor.capture());
+        QueryRequest request = requestCaptor.getValue();
+        assertEquals("photo", request.tableName());
+        assertEquals("UserContentHashIndex", request.indexName());
+        assertEquals("deadbeef", request.expressionAttributeValues().get(":contentHash").s());
+        assertEquals("active", request.expressionAttributeValues().get(":active").s());
+    }
+
+    @Test
+    public void testFindActiveByContentHashReturnsEmptyWhenNoMatch() {
+        // Setup
+        when(dynamoDbClient.query(any(QueryRequest.class))).thenReturn(QueryResponse.builder().build());
+
+        // Execute & Verify
+        assertFalse(imageMetadataRepository.findActiveByContentHash("user123", "deadbeef").isPresent());
+    }
+
+    @Test
+    public void testIsEnabledRequiresTableName() {
+        assertTrue(imageMetadataRepository.isEnabled());
+        assertFalse(new ImageMetadataRepository(dynamoDbClient, null).isEnabled());
+    }
+}
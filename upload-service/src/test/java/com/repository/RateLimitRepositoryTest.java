@@ -0,0 +1,82 @@
+package com.repository;
+
+import com.model.TokenBucket;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RateLimitRepositoryTest {
+
+    @Mock
+    private DynamoDbClient dynamoDbClient;
+
+    private RateLimitRepository rateLimitRepository;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        rateLimitRepository = new RateLimitRepository(dynamoDbClient, "upload-rate-limits");
+    }
+
+    @Test
+    public void testCompareAndSetIsConditionalOnExpectedBucket() {
+        // Setup
+        when(dynamoDbClient.putItem(any(PutItemRequest.class)))
+                .thenThrow(ConditionalCheckFailedException.builder().message("The conditional request failed").build());
+
+        // Execute
+        boolean replaced = rateLimitRepository.compareAndSet("user123", new TokenBucket(2.5, 1000), new TokenBucket(1.5, 2000), 60);
+
+        // Verify
+        assertFalse(replaced);
+        ArgumentCaptor<PutItemRequest> requestCaptor = ArgumentCaptor.forClass(PutItemRequest.class);
+        verify(dynamoDbClient).putItem(requestCaptor.capture());
+        PutItemRequest request = requestCaptor.getValue();
+        assertEquals("tokens = :tokens AND updatedAt = :updatedAt", request.conditionExpression());
+        assertEquals("2.5", request.expressionAttributeValues().get(":tokens").n());
+        assertEquals("1.5", request.item().get("tokens").n());
+        assertEquals("2000", request.item().get("updatedAt").n());
+        assertEquals("60", request.item().get("expiresAt").n());
+    }
+
+    @Test
+    public void testCompareAndSetCreatesMissingBucket() {
+        // Execute
+        boolean replaced = rateLimitRepository.compareAndSet("user123", null, new TokenBucket(29, 2000), 60);
+
+        // Verify
+        assertTrue(replaced);
+        ArgumentCaptor<PutItemRequest> requestCaptor = ArgumentCaptor.forClass(PutItemRequest.class);
+        verify(dynamoDbClient).putItem(requestCaptor.capture());
+        assertEquals("attribute_not_exists(userId)", requestCaptor.getValue().conditionExpression());
+    }
+
+    @Test
+    public void testFindReadsBucket() {
+        // Setup
+        when(dynamoDbClient.getItem(any(GetItemRequest.class))).thenReturn(GetItemResponse.builder()
+                .item(Map.of(
+                        "userId", AttributeValue.fromS("user123"),
+                        "tokens", AttributeValue.fromN("4.25"),
+                        "updatedAt", AttributeValue.fromN("1234")))
+                .build());
+
+        // Execute & Verify
+        assertEquals(new TokenBucket(4.25, 1234), rateLimitRepository.find("user123").orElseThrow());
+    }
+}
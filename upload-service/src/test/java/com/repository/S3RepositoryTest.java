@@ -1,20 +1,49 @@
 package com.repository;
 
+import com.model.ByteArrayImagePayload;
+import com.model.PresignedUpload;
+import com.model.UploadResult;
+import com.model.UploadedPart;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListPartsRequest;
+import software.amazon.awssdk.services.s3.model.ListPartsResponse;
+import software.amazon.awssdk.services.s3.model.Part;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 import org.junit.Before;
 import org.junit.Test;
+import com.model.Base64ImagePayload;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
 
 import static org.junit.Assert.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class S3RepositoryTest {
@@ -90,4 +119,208 @@ public class S3RepositoryTest {
         assertTrue(result.contains(bucketName));
         assertTrue(result.contains(fileName));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testUploadFileStreamsPayload() {
+        // Setup
+        String fileName = "test-image.jpg";
+        Base64ImagePayload payload = Base64ImagePayload.of("SGVsbG8gV29ybGQ=");
+
+        when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+                .thenReturn(PutObjectResponse.builder().build());
+
+        // Execute
+        String result = s3Repository.uploadFile(fileName, payload, "image/jpeg", new HashMap<>());
+
+        // Verify
+        ArgumentCaptor<PutObjectRequest> requestCaptor = ArgumentCaptor.forClass(PutObjectRequest.class);
+        ArgumentCaptor<RequestBody> bodyCaptor = ArgumentCaptor.forClass(RequestBody.class);
+        verify(s3Client).putObject(requestCaptor.capture(), bodyCaptor.capture());
+        assertEquals(Long.valueOf(11), requestCaptor.getValue().contentLength());
+        assertEquals(Optional.of(11L), bodyCaptor.getValue().optionalContentLength());
+        assertTrue(result.contains(fileName));
+    }
+
+    @Test
+    public void testCreatePresignedUploadSignsMetadataAndContentLength() {
+        // Setup
+        S3Presigner presigner = S3Presigner.builder()
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("AKIDEXAMPLE", "secret")))
+                .build();
+        S3Repository repository = new S3Repository(s3Client, presigner, bucketName);
+
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put("userId", "user123");
+
+        // Execute
+        PresignedUpload upload = repository.createPresignedUpload("direct-uploads/test.jpeg", "image/jpeg", 1234, metadata, Duration.ofMinutes(5));
+
+        // Verify
+        assertTrue(upload.url().contains(bucketName));
+        assertTrue(upload.url().contains("direct-uploads/test.jpeg"));
+        assertTrue(upload.url().contains("X-Amz-Expires=300"));
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.putAll(upload.headers());
+        assertEquals("image/jpeg", headers.get("Content-Type"));
+        assertEquals("1234", headers.get("Content-Length"));
+        assertEquals("user123", headers.get("x-amz-meta-userId"));
+        assertFalse(headers.containsKey("Host"));
+        assertEquals("direct-uploads/test.jpeg", upload.key());
+    }
+
+    @Test
+    public void testGetObjectMetadata() {
+        // Setup
+        when(s3Client.headObject(any(HeadObjectRequest.class)))
+                .thenReturn(HeadObjectResponse.builder().metadata(Map.of("userid", "user123")).build());
+
+        // Execute
+        Map<String, String> metadata = s3Repository.getObjectMetadata("direct-uploads/test.jpeg");
+
+        // Verify
+        assertEquals("user123", metadata.get("userid"));
+    }
+
+    @Test
+    public void testUploadFileSendsSmallFileInSinglePut() {
+        // Setup
+        when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+                .thenReturn(PutObjectResponse.builder().build());
+
+        // Execute
+        UploadResult result = s3Repository.upload("test-image.jpg", new ByteArrayImagePayload(new byte[10]), "image/jpeg", null);
+
+        // Verify
+        verify(s3Client).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        verify(s3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+        assertEquals(1, result.parts());
+        assertEquals(10, result.bytes());
+    }
+
+    @Test
+    public void testUploadSplitsLargePayloadIntoChecksummedParts() {
+        // Setup - 25 bytes with a 10 byte threshold and part size gives parts of 10, 10 and 5
+        S3Repository repository = new S3Repository(s3Client, bucketName, 10, 10, 2);
+        byte[] data = new byte[25];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenAnswer(invocation -> UploadPartResponse.builder()
+                        .eTag("etag-" + invocation.getArgument(0, UploadPartRequest.class).partNumber())
+                        .build());
+
+        // Execute
+        UploadResult result = repository.upload("large.jpg", new ByteArrayImagePayload(data), "image/jpeg", Map.of("name", "John"));
+
+        // Verify
+        ArgumentCaptor<UploadPartRequest> partCaptor = ArgumentCaptor.forClass(UploadPartRequest.class);
+        verify(s3Client, times(3)).uploadPart(partCaptor.capture(), any(RequestBody.class));
+        for (UploadPartRequest part : partCaptor.getAllValues()) {
+            assertEquals("upload-1", part.uploadId());
+            assertNotNull(part.checksumCRC32C());
+            assertEquals(part.partNumber() == 3 ? Long.valueOf(5) : Long.valueOf(10), part.contentLength());
+        }
+
+        ArgumentCaptor<CompleteMultipartUploadRequest> completeCaptor = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3Client).completeMultipartUpload(completeCaptor.capture());
+        List<CompletedPart> parts = completeCaptor.getValue().multipartUpload().parts();
+        assertEquals(3, parts.size());
+        for (int i = 0; i < parts.size(); i++) {
+            assertEquals(Integer.valueOf(i + 1), parts.get(i).partNumber());
+            assertEquals("etag-" + (i + 1), parts.get(i).eTag());
+        }
+
+        assertEquals(3, result.parts());
+        assertEquals(3, result.partLatenciesMillis().size());
+        assertEquals(25, result.bytes());
+        verify(s3Client, never()).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void testDefaultThresholdSplitsImageUnderUploadCapIntoParts() {
+        // Setup - 7 MiB is within the 10 MiB MAX_IMAGE_BYTES, so the multipart path must be reachable
+        int size = 7 * 1024 * 1024;
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenAnswer(invocation -> UploadPartResponse.builder()
+                        .eTag("etag-" + invocation.getArgument(0, UploadPartRequest.class).partNumber())
+                        .build());
+
+        // Execute
+        UploadResult result = s3Repository.upload("large.jpg", new ByteArrayImagePayload(new byte[size]), "image/jpeg", null);
+
+        // Verify
+        assertEquals(2, result.parts());
+        ArgumentCaptor<UploadPartRequest> partCaptor = ArgumentCaptor.forClass(UploadPartRequest.class);
+        verify(s3Client, times(2)).uploadPart(partCaptor.capture(), any(RequestBody.class));
+        for (UploadPartRequest part : partCaptor.getAllValues()) {
+            assertEquals(part.partNumber() == 1 ? S3Repository.MIN_PART_SIZE : size - S3Repository.MIN_PART_SIZE,
+                    part.contentLength().longValue());
+        }
+        verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    }
+
+    @Test
+    public void testPartSizeBelowS3MinimumIsRejected() {
+        assertEquals(5 * 1024 * 1024, S3Repository.validatePartSize(S3Repository.MIN_PART_SIZE));
+        assertThrows(IllegalArgumentException.class, () -> S3Repository.validatePartSize(S3Repository.MIN_PART_SIZE - 1));
+        assertThrows(IllegalArgumentException.class, () -> S3Repository.validatePartSize(Integer.MAX_VALUE + 1L));
+    }
+
+    @Test
+    public void testUploadAbortsMultipartUploadOnPartFailure() {
+        // Setup
+        S3Repository repository = new S3Repository(s3Client, bucketName, 10, 10, 2);
+
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenThrow(S3Exception.builder().message("Slow down").build());
+
+        // Execute
+        try {
+            repository.upload("large.jpg", new ByteArrayImagePayload(new byte[25]), "image/jpeg", null);
+            fail("Expected the upload to fail");
+        } catch (S3Exception e) {
+            assertEquals("Slow down", e.getMessage());
+        }
+
+        // Verify
+        verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    public void testListPartsFollowsPagination() {
+        // Setup
+        when(s3Client.listParts(any(ListPartsRequest.class)))
+                .thenReturn(ListPartsResponse.builder()
+                        .parts(Part.builder().partNumber(1).size(10L).eTag("etag-1").checksumCRC32C("crc-1").build())
+                        .isTruncated(true)
+                        .nextPartNumberMarker(1)
+                        .build())
+                .thenReturn(ListPartsResponse.builder()
+                        .parts(Part.builder().partNumber(3).size(5L).eTag("etag-3").checksumCRC32C("crc-3").build())
+                        .isTruncated(false)
+                        .build());
+
+        // Execute
+        List<UploadedPart> parts = s3Repository.listParts("session.jpg", "upload-1");
+
+        // Verify
+        assertEquals(2, parts.size());
+        assertEquals(new UploadedPart(1, 10, "etag-1", "crc-1"), parts.get(0));
+        assertEquals(new UploadedPart(3, 5, "etag-3", "crc-3"), parts.get(1));
+
+        ArgumentCaptor<ListPartsRequest> requestCaptor = ArgumentCaptor.forClass(ListPartsRequest.class);
+        verify(s3Client, times(2)).listParts(requestCaptor.capture());
+        assertNull(requestCaptor.getAllValues().get(0).partNumberMarker());
+        assertEquals(Integer.valueOf(1), requestCaptor.getAllValues().get(1).partNumberMarker());
+    }
+}
@@ -2,20 +2,38 @@ package com.repository;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
 import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResultEntry;
 import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
 import software.amazon.awssdk.services.sqs.model.SendMessageResponse;
+import software.amazon.awssdk.services.sqs.model.SqsException;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class SqsRepositoryTest {
@@ -79,4 +97,150 @@ public class SqsRepositoryTest {
         assertTrue((Boolean) result.get("success"));
         assertEquals("msg123", result.get("messageId"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSendMessageKeepsDimensionsInBodyOnly() throws Exception {
+        // Setup
+        Map<String, String> messageAttributes = new HashMap<>();
+        messageAttributes.put("key", "test-image.jpg");
+        messageAttributes.put("width", "640");
+        messageAttributes.put("height", "480");
+
+        when(sqsClient.sendMessage(any(SendMessageRequest.class)))
+                .thenReturn(SendMessageResponse.builder().messageId("msg123").build());
+
+        // Execute
+        sqsRepository.sendMessage(messageAttributes, context);
+
+        // Verify
+        ArgumentCaptor<SendMessageRequest> requestCaptor = ArgumentCaptor.forClass(SendMessageRequest.class);
+        verify(sqsClient).sendMessage(requestCaptor.capture());
+        SendMessageRequest request = requestCaptor.getValue();
+        assertTrue(request.messageBody().contains("\"width\":\"640\""));
+        assertTrue(request.messageAttributes().containsKey("key"));
+        assertFalse(request.messageAttributes().containsKey("width"));
+        assertFalse(request.messageAttributes().containsKey("height"));
+    }
+
+    @Test
+    public void testSendMessageAsyncBatchesBodyOnlyMessages() throws Exception {
+        // Setup
+        SqsAsyncClient sqsAsyncClient = mock(SqsAsyncClient.class);
+        when(sqsAsyncClient.sendMessageBatch(any(SendMessageBatchRequest.class))).thenAnswer(invocation -> {
+            SendMessageBatchRequest request = invocation.getArgument(0);
+            return CompletableFuture.completedFuture(SendMessageBatchResponse.builder()
+                    .successful(request.entries().stream()
+                            .map(entry -> SendMessageBatchResultEntry.builder().id(entry.id()).messageId("msg-" + entry.id()).build())
+                            .collect(Collectors.toList()))
+                    .build());
+        });
+        SqsRepository batchingRepository = new SqsRepository(sqsClient, sqsAsyncClient, queueUrl, 60_000);
+
+        // Execute - ten messages fill a batch without waiting for the linger time
+        List<CompletableFuture<Map<String, Object>>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Map<String, String> messageAttributes = new HashMap<>();
+            messageAttributes.put("key", "image-" + i + ".jpg");
+            messageAttributes.put("imageTitle", "");
+            futures.add(batchingRepository.sendMessageAsync(messageAttributes, context));
+        }
+
+        // Verify
+        for (CompletableFuture<Map<String, Object>> future : futures) {
+            assertTrue((Boolean) future.get(5, TimeUnit.SECONDS).get("success"));
+        }
+        ArgumentCaptor<SendMessageBatchRequest> requestCaptor = ArgumentCaptor.forClass(SendMessageBatchRequest.class);
+        verify(sqsAsyncClient, times(1)).sendMessageBatch(requestCaptor.capture());
+        SendMessageBatchRequestEntry entry = requestCaptor.getValue().entries().get(0);
+        assertEquals("{\"messageType\":\"userUpload\",\"key\":\"image-0.jpg\"}", entry.messageBody());
+        assertTrue(entry.messageAttributes().isEmpty());
+        verify(sqsClient, never()).sendMessage(any(SendMessageRequest.class));
+    }
+
+    @Test
+    public void testSendMessageAsyncRetriesServerFaultsAndFailsSenderFaults() throws Exception {
+        // Setup - the first batch fails both entries, the retry succeeds
+        SqsAsyncClient sqsAsyncClient = mock(SqsAsyncClient.class);
+        when(sqsAsyncClient.sendMessageBatch(any(SendMessageBatchRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(SendMessageBatchResponse.builder()
+                        .failed(BatchResultErrorEntry.builder().id("1").code("InternalError").senderFault(false).build(),
+                                BatchResultErrorEntry.builder().id("2").code("InvalidMessageContents").senderFault(true).build())
+                        .build()))
+                .thenReturn(CompletableFuture.completedFuture(SendMessageBatchResponse.builder()
+                        .successful(SendMessageBatchResultEntry.builder().id("1").messageId("msg123").build())
+                        .build()));
+        SqsRepository batchingRepository = new SqsRepository(sqsClient, sqsAsyncClient, queueUrl, 200);
+
+        // Execute
+        CompletableFuture<Map<String, Object>> retried = batchingRepository.sendMessageAsync(new HashMap<>(Map.of("key", "a.jpg")), context);
+        CompletableFuture<Map<String, Object>> rejected = batchingRepository.sendMessageAsync(new HashMap<>(Map.of("key", "b.jpg")), context);
+
+        // Verify
+        assertEquals("msg123", retried.get(5, TimeUnit.SECONDS).get("messageId"));
+        try {
+            rejected.get(5, TimeUnit.SECONDS);
+            fail("Expected the sender fault to fail the entry");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SqsException);
+            assertEquals("InvalidMessageContents", ((SqsException) e.getCause()).awsErrorDetails().errorCode());
+        }
+    }
+
+    @Test
+    public void testSendMessageToFifoQueueGroupsByUser() throws Exception {
+        // Setup
+        SqsRepository fifoRepository = new SqsRepository(sqsClient, null, queueUrl + ".fifo", 5, 0, false);
+        when(sqsClient.sendMessage(any(SendMessageRequest.class)))
+                .thenReturn(SendMessageResponse.builder().messageId("msg123").build());
+
+        // Execute
+        fifoRepository.sendMessage(new HashMap<>(Map.of("key", "a.jpg", "userId", "user123")), context);
+        fifoRepository.sendMessage(new HashMap<>(Map.of("key", "b.jpg")), context);
+
+        // Verify
+        ArgumentCaptor<SendMessageRequest> requestCaptor = ArgumentCaptor.forClass(SendMessageRequest.class);
+        verify(sqsClient, times(2)).sendMessage(requestCaptor.capture());
+        assertEquals("user123", requestCaptor.getAllValues().get(0).messageGroupId());
+        assertNotNull(requestCaptor.getAllValues().get(0).messageDeduplicationId());
+        assertEquals("userUploads", requestCaptor.getAllValues().get(1).messageGroupId());
+    }
+
+    @Test
+    public void testMessageGroupIdHashesUsersIntoShards() {
+        // Setup
+        SqsRepository shardedRepository = new SqsRepository(sqsClient, null, queueUrl + ".fifo", 5, 4, false);
+
+        // Execute
+        String group = shardedRepository.messageGroupId(Map.of("userId", "user123"));
+
+        // Verify - stable per user and one of the four shards
+        assertEquals(group, shardedRepository.messageGroupId(Map.of("userId", "user123")));
+        assertTrue(List.of("uploads-0", "uploads-1", "uploads-2", "uploads-3").contains(group));
+        assertEquals("user-" + Integer.toHexString("user 123".hashCode()),
+                sqsRepository.messageGroupId(Map.of("userId", "user 123")));
+    }
+
+    @Test
+    public void testSendMessageAsyncSetsGroupOnFairStandardQueue() throws Exception {
+        // Setup
+        SqsAsyncClient sqsAsyncClient = mock(SqsAsyncClient.class);
+        when(sqsAsyncClient.sendMessageBatch(any(SendMessageBatchRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(SendMessageBatchResponse.builder()
+                        .successful(SendMessageBatchResultEntry.builder().id("1").messageId("msg123").build())
+                        .build()));
+        SqsRepository fairRepository = new SqsRepository(sqsClient, sqsAsyncClient, queueUrl, 60_000, 0, true);
+
+        // Execute
+        CompletableFuture<Map<String, Object>> future = fairRepository.sendMessageAsync(
+                new HashMap<>(Map.of("key", "a.jpg", "userId", "user123")), context);
+        fairRepository.flush();
+
+        // Verify
+        assertEquals("msg123", future.get(5, TimeUnit.SECONDS).get("messageId"));
+        ArgumentCaptor<SendMessageBatchRequest> requestCaptor = ArgumentCaptor.forClass(SendMessageBatchRequest.class);
+        verify(sqsAsyncClient).sendMessageBatch(requestCaptor.capture());
+        SendMessageBatchRequestEntry entry = requestCaptor.getValue().entries().get(0);
+        assertEquals("user123", entry.messageGroupId());
+        assertNull(entry.messageDeduplicationId());
+    }
+}
@@ -0,0 +1,93 @@
+package com.repository;
+
+import com.model.UploadSession;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UploadSessionRepositoryTest {
+
+    @Mock
+    private DynamoDbClient dynamoDbClient;
+
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        uploadSessionRepository = new UploadSessionRepository(dynamoDbClient, "upload-sessions");
+    }
+
+    @Test
+    public void testSaveAndFindRoundTripSession() {
+        // Setup
+        UploadSession session = new UploadSession("session-1", "user123", "uploads/big.jpg", "upload-1", "image/jpeg",
+                12_000_000, 6_291_456, UploadSession.OPEN, Map.of("name", "John Doe"), 1_700_000_000L);
+
+        // Execute
+        uploadSessionRepository.save(session);
+
+        ArgumentCaptor<PutItemRequest> putCaptor = ArgumentCaptor.forClass(PutItemRequest.class);
+        verify(dynamoDbClient).putItem(putCaptor.capture());
+        PutItemRequest put = putCaptor.getValue();
+        when(dynamoDbClient.getItem(any(GetItemRequest.class)))
+                .thenReturn(GetItemResponse.builder().item(put.item()).build());
+
+        Optional<UploadSession> found = uploadSessionRepository.find("session-1");
+
+        // Verify
+        assertEquals("upload-sessions", put.tableName());
+        assertEquals("attribute_not_exists(sessionId)", put.conditionExpression());
+        assertTrue(found.isPresent());
+        assertEquals(session, found.get());
+        assertEquals(2, found.get().partCount());
+
+        ArgumentCaptor<GetItemRequest> getCaptor = ArgumentCaptor.forClass(GetItemRequest.class);
+        verify(dynamoDbClient).getItem(getCaptor.capture());
+        assertTrue(getCaptor.getValue().consistentRead());
+    }
+
+    @Test
+    public void testFindReturnsEmptyForUnknownSession() {
+        // Setup
+        when(dynamoDbClient.getItem(any(GetItemRequest.class))).thenReturn(GetItemResponse.builder().build());
+
+        // Execute & Verify
+        assertFalse(uploadSessionRepository.find("missing").isPresent());
+    }
+
+    @Test
+    public void testUpdateStatusIsConditionalOnExpectedStatus() {
+        // Setup
+        when(dynamoDbClient.updateItem(any(UpdateItemRequest.class)))
+                .thenThrow(ConditionalCheckFailedException.builder().message("The conditional request failed").build());
+
+        // Execute
+        boolean updated = uploadSessionRepository.updateStatus("session-1", UploadSession.OPEN, UploadSession.COMPLETED);
+
+        // Verify
+        assertFalse(updated);
+        ArgumentCaptor<UpdateItemRequest> updateCaptor = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(dynamoDbClient).updateItem(updateCaptor.capture());
+        Map<String, AttributeValue> values = updateCaptor.getValue().expressionAttributeValues();
+        assertEquals("open", values.get(":expected").s());
+        assertEquals("completed", values.get(":status").s());
+    }
+}
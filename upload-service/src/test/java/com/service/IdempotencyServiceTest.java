@@ -0,0 +1,202 @@
+package com.service;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.model.IdempotencyRecord;
+import com.model.IdempotentResponse;
+import com.repository.IdempotencyRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Clock;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class IdempotencyServiceTest {
+    private static final String FINGERPRINT = "POST /upload 2:abc";
+
+    @Mock
+    private IdempotencyRepository idempotencyRepository;
+
+    @Mock
+    private Clock clock;
+
+    @Mock
+    private Context context;
+
+    @Mock
+    private LambdaLogger logger;
+
+    private IdempotencyService idempotencyService;
+    private AtomicInteger calls;
+    private Callable<String> action;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(context.getLogger()).thenReturn(logger);
+        when(idempotencyRepository.isEnabled()).thenReturn(true);
+        when(clock.millis()).thenReturn(1_000_000L);
+        idempotencyService = new IdempotencyService(idempotencyRepository, 3600, clock);
+        calls = new AtomicInteger();
+        action = () -> "{\"call\":" + calls.incrementAndGet() + "}";
+    }
+
+    @Test
+    public void testExecuteRunsActionAndStoresResponse() throws Exception {
+        // Setup
+        when(idempotencyRepository.tryLock("user123#key-1", FINGERPRINT, 1_000_000L, 1_060_000L, 4600L)).thenReturn(true);
+
+        // Execute
+        IdempotentResponse response = idempotencyService.execute("user123", "key-1", FINGERPRINT, action, context);
+
+        // Verify
+        assertEquals(new IdempotentResponse("{\"call\":1}", false), response);
+        verify(idempotencyRepository).complete("user123#key-1", "{\"call\":1}", 4600L);
+    }
+
+    @Test
+    public void testExecuteReplaysCompletedResponse() throws Exception {
+        // Setup
+        when(idempotencyRepository.tryLock(anyString(), anyString(), anyLong(), anyLong(), anyLong())).thenReturn(false);
+        when(idempotencyRepository.find("user123#key-1")).thenReturn(Optional.of(
+                new IdempotencyRecord(IdempotencyRecord.COMPLETED, FINGERPRINT, "{\"call\":1}", 1_060_000L)));
+
+        // Execute
+        IdempotentResponse response = idempotencyService.execute("user123", "key-1", FINGERPRINT, action, context);
+
+        // Verify
+        assertEquals(new IdempotentResponse("{\"call\":1}", true), response);
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    public void testExecuteRejectsKeyReusedForDifferentRequest() {
+        // Setup
+        when(idempotencyRepository.tryLock(anyString(), anyString(), anyLong(), anyLong(), anyLong())).thenReturn(false);
+        when(idempotencyRepository.find("user123#key-1")).thenReturn(Optional.of(
+                new IdempotencyRecord(IdempotencyRecord.COMPLETED, "POST /upload 9:def", "{}", 1_060_000L)));
+
+        // Execute
+        IdempotencyConflictException e = assertThrows(IdempotencyConflictException.class,
+                () -> idempotencyService.execute("user123", "key-1", FINGERPRINT, action, context));
+
+        // Verify
+        assertEquals(422, e.getStatusCode());
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    public void testExecuteRejectsKeyStillInProgress() {
+        // Setup
+        when(idempotencyRepository.tryLock(anyString(), anyString(), anyLong(), anyLong(), anyLong())).thenReturn(false);
+        when(idempotencyRepository.find("user123#key-1")).thenReturn(Optional.of(
+                new IdempotencyRecord(IdempotencyRecord.IN_PROGRESS, FINGERPRINT, null, 1_060_000L)));
+
+        // Execute
+        IdempotencyConflictException e = assertThrows(IdempotencyConflictException.class,
+                () -> idempotencyService.execute("user123", "key-1", FINGERPRINT, action, context));
+
+        // Verify
+        assertEquals(409, e.getStatusCode());
+    }
+
+    @Test
+    public void testExecuteReleasesKeyWhenActionFails() {
+        // Setup
+        when(idempotencyRepository.tryLock(anyString(), anyString(), anyLong(), anyLong(), anyLong())).thenReturn(true);
+        when(idempotencyRepository.delete("user123#key-1", FINGERPRINT, 1_060_000L)).thenReturn(true);
+
+        // Execute
+        assertThrows(IllegalStateException.class, () -> idempotencyService.execute("user123", "key-1", FINGERPRINT,
+                () -> { throw new IllegalStateException("S3 unavailable"); }, context));
+
+        // Verify
+        verify(idempotencyRepository).delete("user123#key-1", FINGERPRINT, 1_060_000L);
+        verify(idempotencyRepository, never()).complete(anyString(), anyString(), anyLong());
+    }
+
+    @Test
+    public void testExecuteLeavesKeyTakenOverAfterLockExpired() {
+        // Setup
+        when(idempotencyRepository.tryLock(anyString(), anyString(), anyLong(), anyLong(), anyLong())).thenReturn(true);
+        when(idempotencyRepository.delete("user123#key-1", FINGERPRINT, 1_060_000L)).thenReturn(false);
+
+        // Execute
+        assertThrows(IllegalStateException.class, () -> idempotencyService.execute("user123", "key-1", FINGERPRINT,
+                () -> { throw new IllegalStateException("S3 unavailable"); }, context));
+
+        // Verify
+        verify(logger).log("Idempotency key user123#key-1 was taken over after its lock expired, leaving it");
+    }
+
+    @Test
+    public void testExecuteRetriesStoringResponse() throws Exception {
+        // Setup
+        when(idempotencyRepository.tryLock(anyString(), anyString(), anyLong(), anyLong(), anyLong())).thenReturn(true);
+        doThrow(new RuntimeException("Throughput exceeded")).doNothing()
+                .when(idempotencyRepository).complete("user123#key-1", "{\"call\":1}", 4600L);
+
+        // Execute
+        IdempotentResponse response = idempotencyService.execute("user123", "key-1", FINGERPRINT, action, context);
+
+        // Verify
+        assertEquals(new IdempotentResponse("{\"call\":1}", false), response);
+        verify(idempotencyRepository, times(2)).complete("user123#key-1", "{\"call\":1}", 4600L);
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void testExecuteLogsDuplicateRiskWhenResponseCannotBeStored() throws Exception {
+        // Setup
+        when(idempotencyRepository.tryLock(anyString(), anyString(), anyLong(), anyLong(), anyLong())).thenReturn(true);
+        doThrow(new RuntimeException("Throughput exceeded"))
+                .when(idempotencyRepository).complete(anyString(), anyString(), anyLong());
+
+        // Execute
+        IdempotentResponse response = idempotencyService.execute("user123", "key-1", FINGERPRINT, action, context);
+
+        // Verify - the upload succeeded, so its response is still returned
+        assertEquals(new IdempotentResponse("{\"call\":1}", false), response);
+        verify(idempotencyRepository, times(3)).complete("user123#key-1", "{\"call\":1}", 4600L);
+        verify(logger).log("ERROR: Failed to store idempotent response for user123#key-1 after 3 attempts, "
+                + "a retry after its lock expires may upload again: Throughput exceeded");
+    }
+
+    @Test
+    public void testExecuteRunsActionWhenTableFails() throws Exception {
+        // Setup
+        when(idempotencyRepository.tryLock(anyString(), anyString(), anyLong(), anyLong(), anyLong()))
+                .thenThrow(new RuntimeException("DynamoDB unavailable"));
+
+        // Execute
+        IdempotentResponse response = idempotencyService.execute("user123", "key-1", FINGERPRINT, action, context);
+
+        // Verify
+        assertEquals(new IdempotentResponse("{\"call\":1}", false), response);
+        verify(logger).log("Idempotency check failed, running request: DynamoDB unavailable");
+    }
+
+    @Test
+    public void testExecuteRejectsInvalidKey() {
+        assertThrows(IllegalArgumentException.class,
+                () -> idempotencyService.execute("user123", "", FINGERPRINT, action, context));
+        assertThrows(IllegalArgumentException.class,
+                () -> idempotencyService.execute("user123", "has space", FINGERPRINT, action, context));
+        verify(idempotencyRepository, never()).tryLock(anyString(), anyString(), anyLong(), anyLong(), eq(0L));
+        assertEquals(0, calls.get());
+    }
+}
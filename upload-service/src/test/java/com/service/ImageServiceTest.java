@@ -1,19 +1,48 @@
 
 package com.service;
 
+import com.repository.ImageMetadataRepository;
 import com.repository.S3Repository;
 import com.repository.SqsRepository;
+import com.model.ByteArrayImagePayload;
+import com.model.ImagePayload;
+import com.model.InvalidImagePayload;
+import com.model.PresignedUpload;
+import com.model.StoredImage;
+import com.model.UploadRequest;
+import com.model.UploadResult;
+import com.util.ImageHeaderParserTest;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.Assert.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class ImageServiceTest {
@@ -24,11 +53,17 @@ public class ImageServiceTest {
     @Mock
     private SqsRepository sqsRepository;
 
+    @Mock
+    private Context context;
+
     private ImageService imageService;
 
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
+        when(context.getLogger()).thenReturn(mock(LambdaLogger.class));
+        when(sqsRepository.sendMessageAsync(any(Map.class), any()))
+                .thenReturn(CompletableFuture.completedFuture(new HashMap<>()));
         imageService = new ImageService(s3Repository, sqsRepository);
     }
 
@@ -48,23 +83,23 @@ public class ImageServiceTest {
         // Setup
         String name = "John Doe";
         String email = "john@example.com";
-        String imageBase64 = "SGVsbG8gV29ybGQ="; // "Hello World" in base64
+        String imageBase64 = Base64.getEncoder().encodeToString(ImageHeaderParserTest.jpegHeader(640, 480));
         String contentType = "image/jpeg";
         String imageTitle = "Test Image";
         String userId = "user123";
         
         // Mock S3 upload
-        when(s3Repository.uploadFile(anyString(), any(byte[].class), anyString(), any(Map.class)))
-                .thenReturn("https://example.com/test-image.jpg");
+        when(s3Repository.upload(anyString(), any(ImagePayload.class), anyString(), any(Map.class)))
+                .thenReturn(new UploadResult("https://example.com/test-image.jpg", 11, 5, 1, List.of(5L)));
         
         // Mock SQS send
         Map<String, Object> sqsResponse = new HashMap<>();
         sqsResponse.put("success", true);
         sqsResponse.put("messageId", "msg123");
-        when(sqsRepository.sendMessage(any(Map.class), any())).thenReturn(sqsResponse);
+        when(sqsRepository.sendMessageAsync(any(Map.class), any())).thenReturn(CompletableFuture.completedFuture(sqsResponse));
         
         // Execute
-        Map<String, Object> result = imageService.processImageUpload(name, email, imageBase64, contentType, imageTitle, userId, null);
+        Map<String, Object> result = imageService.processImageUpload(name, email, imageBase64, contentType, imageTitle, userId, context);
         
         // Verify
         assertNotNull(result);
@@ -72,5 +107,386 @@ public class ImageServiceTest {
         assertTrue(result.containsKey("message"));
         assertEquals("John", result.get("firstName"));
         assertEquals("Doe", result.get("lastName"));
+        assertEquals(640, result.get("width"));
+        assertEquals(480, result.get("height"));
+
+        assertEquals(true, ((Map<String, Object>) result.get("sqsStatus")).get("success"));
+
+        ArgumentCaptor<Map<String, String>> messageCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(sqsRepository).sendMessageAsync(messageCaptor.capture(), any());
+        assertEquals("640", messageCaptor.getValue().get("width"));
+        assertEquals("480", messageCaptor.getValue().get("height"));
+    }
+
+    @Test
+    public void testProcessImageUploadStreamsPayloadToS3() throws Exception {
+        // Setup - the client claims PNG but the bytes are a JPEG
+        ImagePayload payload = new ByteArrayImagePayload(ImageHeaderParserTest.jpegHeader(640, 480));
+
+        when(s3Repository.upload(anyString(), any(ImagePayload.class), anyString(), any(Map.class)))
+                .thenReturn(new UploadResult("https://example.com/test-image.jpeg", 11, 5, 1, List.of(5L)));
+
+        // Execute
+        Map<String, Object> result = imageService.processImageUpload("Jane", "jane@example.com", payload, "image/png", null, "user456", context);
+
+        // Verify
+        verify(s3Repository).upload(startsWith("uploads/Jane-jane@example.com-"), eq(payload), eq("image/jpeg"), any(Map.class));
+        assertEquals("https://example.com/test-image.jpeg", result.get("url"));
+        Map<String, Object> diagnostics = (Map<String, Object>) result.get("diagnostics");
+        assertEquals(2200L, ((Map<String, Object>) diagnostics.get("s3Upload")).get("bytesPerSecond"));
+        assertEquals("_unknown", result.get("lastName"));
+
+        Map<String, Object> stages = (Map<String, Object>) diagnostics.get("stages");
+        assertEquals(5L, stages.get("s3UploadMs"));
+        assertTrue(stages.containsKey("validationMs"));
+        assertTrue(stages.containsKey("sqsEnqueueMs"));
+        assertTrue(stages.containsKey("totalMs"));
+    }
+
+    @Test
+    public void testProcessImageUploadReportsSqsFailureWithoutFailingUpload() throws Exception {
+        // Setup
+        ImagePayload payload = new ByteArrayImagePayload(ImageHeaderParserTest.jpegHeader(640, 480));
+
+        when(s3Repository.upload(anyString(), any(ImagePayload.class), anyString(), any(Map.class)))
+                .thenReturn(new UploadResult("https://example.com/test-image.jpeg", 11, 5, 1, List.of(5L)));
+        when(sqsRepository.sendMessageAsync(any(Map.class), any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Queue unavailable")));
+
+        // Execute
+        Map<String, Object> result = imageService.processImageUpload("Jane", "jane@example.com", payload, null, null, "user456", context);
+
+        // Verify
+        Map<String, Object> sqsStatus = (Map<String, Object>) result.get("sqsStatus");
+        assertEquals(false, sqsStatus.get("success"));
+        assertEquals("Queue unavailable", sqsStatus.get("error"));
+        assertEquals("https://example.com/test-image.jpeg", result.get("url"));
+    }
+
+    @Test
+    public void testProcessImageUploadDoesNotEnqueueWhenS3WriteFails() throws Exception {
+        // Setup
+        ImagePayload payload = new ByteArrayImagePayload(ImageHeaderParserTest.jpegHeader(640, 480));
+
+        when(s3Repository.upload(anyString(), any(ImagePayload.class), anyString(), any(Map.class)))
+                .thenThrow(new IllegalStateException("S3 unavailable"));
+
+        // Execute
+        try {
+            imageService.processImageUpload("Jane", "jane@example.com", payload, null, null, "user456", context);
+            fail("Expected the S3 failure to propagate");
+        } catch (IllegalStateException e) {
+            // Verify
+            assertEquals("S3 unavailable", e.getMessage());
+        }
+        verify(sqsRepository, never()).sendMessageAsync(any(Map.class), any());
+    }
+
+    @Test
+    public void testProcessImageUploadReturnsExistingImageForDuplicateContent() throws Exception {
+        // Setup
+        byte[] imageBytes = ImageHeaderParserTest.jpegHeader(640, 480);
+        String contentHash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(imageBytes));
+        ImageMetadataRepository imageMetadataRepository = mock(ImageMetadataRepository.class);
+        when(imageMetadataRepository.isEnabled()).thenReturn(true);
+        when(imageMetadataRepository.findActiveByContentHash("user456", contentHash))
+                .thenReturn(Optional.of(new StoredImage("abc123", "https://processed.example.com/abc123", "Beach")));
+        ImageService dedupingService = new ImageService(s3Repository, sqsRepository, imageMetadataRepository);
+
+        // Execute
+        Map<String, Object> result = dedupingService.processImageUpload("Jane", "jane@example.com",
+                new ByteArrayImagePayload(imageBytes), null, null, "user456", context);
+
+        // Verify
+        assertEquals(true, result.get("duplicate"));
+        assertEquals("https://processed.example.com/abc123", result.get("url"));
+        assertEquals(contentHash, result.get("contentHash"));
+        verify(s3Repository, never()).upload(anyString(), any(ImagePayload.class), anyString(), any(Map.class));
+        verify(sqsRepository, never()).sendMessageAsync(any(Map.class), any());
+    }
+
+    @Test
+    public void testProcessImageUploadSendsContentHashForNewContent() throws Exception {
+        // Setup
+        byte[] imageBytes = ImageHeaderParserTest.jpegHeader(640, 480);
+        ImageMetadataRepository imageMetadataRepository = mock(ImageMetadataRepository.class);
+        when(imageMetadataRepository.isEnabled()).thenReturn(true);
+        when(imageMetadataRepository.findActiveByContentHash(anyString(), anyString())).thenReturn(Optional.empty());
+        when(s3Repository.upload(anyString(), any(ImagePayload.class), anyString(), any(Map.class)))
+                .thenReturn(new UploadResult("https://example.com/test-image.jpeg", 11, 5, 1, List.of(5L)));
+        ImageService dedupingService = new ImageService(s3Repository, sqsRepository, imageMetadataRepository);
+
+        // Execute
+        Map<String, Object> result = dedupingService.processImageUpload("Jane", "jane@example.com",
+                new ByteArrayImagePayload(imageBytes), null, null, "user456", context);
+
+        // Verify
+        assertEquals(false, result.get("duplicate"));
+        ArgumentCaptor<Map<String, String>> messageCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(sqsRepository).sendMessageAsync(messageCaptor.capture(), any());
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(imageBytes)),
+                messageCaptor.getValue().get("contentHash"));
+    }
+
+    @Test
+    public void testProcessImageUploadRejectsDecompressionBombBeforeUpload() throws Exception {
+        // Setup - a tiny file declaring a 60000x60000 canvas
+        ImagePayload payload = new ByteArrayImagePayload(ImageHeaderParserTest.jpegHeader(60000, 60000));
+
+        // Execute
+        try {
+            imageService.processImageUpload("Jane", "jane@example.com", payload, null, null, "user456", null);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Verify
+            assertTrue(e.getMessage().contains("60000x60000"));
+        }
+        verify(s3Repository, never()).upload(anyString(), any(ImagePayload.class), anyString(), any(Map.class));
+    }
+
+    @Test
+    public void testProcessImageUploadRejectsImageOverSizeLimit() throws Exception {
+        // Setup - a valid header padded past the 10 MiB default
+        byte[] header = ImageHeaderParserTest.jpegHeader(640, 480);
+        byte[] data = new byte[10 * 1024 * 1024 + 1];
+        System.arraycopy(header, 0, data, 0, header.length);
+
+        // Execute
+        try {
+            imageService.processImageUpload("Jane", "jane@example.com", new ByteArrayImagePayload(data), null, null, "user456", null);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Verify
+            assertTrue(e.getMessage().contains("10485761"));
+        }
+        verify(s3Repository, never()).upload(anyString(), any(ImagePayload.class), anyString(), any(Map.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testProcessImageUploadRejectsNonImageData() throws Exception {
+        imageService.processImageUpload("Jane", "jane@example.com", "SGVsbG8gV29ybGQ=", "image/png", null, "user456", null);
+    }
+
+    @Test
+    public void testProcessBatchUploadReturnsPerItemResultsInOrder() throws Exception {
+        // Setup
+        when(s3Repository.upload(anyString(), any(ImagePayload.class), anyString(), any(Map.class)))
+                .thenReturn(new UploadResult("https://example.com/test-image.jpeg", 11, 5, 1, List.of(5L)));
+        List<UploadRequest> requests = List.of(
+                new UploadRequest(new ByteArrayImagePayload(ImageHeaderParserTest.jpegHeader(640, 480)), null, "One"),
+                new UploadRequest(new ByteArrayImagePayload("Hello World".getBytes()), "image/png", "Two"),
+                new UploadRequest(new ByteArrayImagePayload(ImageHeaderParserTest.jpegHeader(800, 600)), null, "Three"));
+
+        // Execute
+        Map<String, Object> result = imageService.processBatchUpload("Jane", "jane@example.com", requests, "user456", context);
+
+        // Verify
+        List<Map<String, Object>> results = (List<Map<String, Object>>) result.get("results");
+        assertEquals(3, results.size());
+        assertEquals("uploaded", results.get(0).get("status"));
+        assertEquals(640, results.get(0).get("width"));
+        assertEquals("rejected", results.get(1).get("status"));
+        assertEquals(400, results.get(1).get("statusCode"));
+        assertEquals(800, results.get(2).get("width"));
+        assertEquals(2, result.get("uploaded"));
+        assertEquals(1, result.get("failed"));
+        verify(sqsRepository, times(2)).sendMessageAsync(any(Map.class), any());
+    }
+
+    @Test
+    public void testProcessBatchUploadRejectsOnlyItemWithInvalidImage() throws Exception {
+        // Setup
+        when(s3Repository.upload(anyString(), any(ImagePayload.class), anyString(), any(Map.class)))
+                .thenReturn(new UploadResult("https://example.com/test-image.jpeg", 11, 5, 1, List.of(5L)));
+        List<UploadRequest> requests = List.of(
+                new UploadRequest(new InvalidImagePayload("Invalid base64 image data"), null, "One"),
+                new UploadRequest(new ByteArrayImagePayload(ImageHeaderParserTest.jpegHeader(640, 480)), null, "Two"));
+
+        // Execute
+        Map<String, Object> result = imageService.processBatchUpload("Jane", "jane@example.com", requests, "user456", context);
+
+        // Verify
+        List<Map<String, Object>> results = (List<Map<String, Object>>) result.get("results");
+        assertEquals("rejected", results.get(0).get("status"));
+        assertEquals(400, results.get(0).get("statusCode"));
+        assertEquals("Invalid base64 image data", results.get(0).get("error"));
+        assertEquals("uploaded", results.get(1).get("status"));
+        assertEquals(1, result.get("uploaded"));
+        assertEquals(1, result.get("failed"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testProcessBatchUploadRejectsEmptyBatch() {
+        imageService.processBatchUpload("Jane", "jane@example.com", List.of(), "user456", context);
+    }
+
+    @Test
+    public void testCreateDirectUploadBindsIdentityIntoMetadata() {
+        // Setup
+        Context context = mock(Context.class);
+        when(context.getLogger()).thenReturn(mock(LambdaLogger.class));
+
+        PresignedUpload presigned = new PresignedUpload("https://test-bucket.s3.amazonaws.com/signed",
+                "direct-uploads/key.jpeg", Map.of("content-type", "image/jpeg"), Instant.now());
+        when(s3Repository.createPresignedUpload(anyString(), anyString(), anyLong(), any(Map.class), any(Duration.class)))
+                .thenReturn(presigned);
+
+        // Execute
+        Map<String, Object> result = imageService.createDirectUpload("John Doe", "john@example.com", "image/jpeg", 1234L, "Beach", "user123", context);
+
+        // Verify
+        ArgumentCaptor<Map<String, String>> metadataCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(s3Repository).createPresignedUpload(startsWith("direct-uploads/John Doe-john@example.com-Beach-"),
+                eq("image/jpeg"), eq(1234L), metadataCaptor.capture(), any(Duration.class));
+        assertEquals("user123", metadataCaptor.getValue().get("userId"));
+        assertEquals("Doe", metadataCaptor.getValue().get("lastName"));
+        assertEquals("https://test-bucket.s3.amazonaws.com/signed", result.get("uploadUrl"));
+        assertEquals("PUT", result.get("method"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateDirectUploadRequiresSupportedContentType() {
+        imageService.createDirectUpload("John Doe", "john@example.com", "image/gif", 1234L, null, "user123", null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateDirectUploadRequiresContentLength() {
+        imageService.createDirectUpload("John Doe", "john@example.com", "image/jpeg", null, null, "user123", null);
+    }
+
+    @Test
+    public void testCreateDirectUploadRejectsContentLengthOverJsonUploadLimit() {
+        // Execute
+        try {
+            imageService.createDirectUpload("John Doe", "john@example.com", "image/jpeg", 10L * 1024 * 1024 + 1, null, "user123", null);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Verify
+            assertTrue(e.getMessage().contains("10485761"));
+        }
+        verify(s3Repository, never()).createPresignedUpload(anyString(), anyString(), anyLong(), any(Map.class), any(Duration.class));
+    }
+
+    @Test
+    public void testEnqueueStagedImageRebuildsUploadMessage() throws Exception {
+        // Setup - S3 returns metadata keys in lower case
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put("name", "John Doe");
+        metadata.put("userid", "user123");
+        metadata.put("firstname", "John");
+        metadata.put("lastname", "Doe");
+        metadata.put("email", "john@example.com");
+        metadata.put("imagetitle", "Beach");
+
+        when(s3Repository.openObjectPrefix(eq("direct-uploads/key.jpeg"), anyLong()))
+                .thenReturn(new ByteArrayInputStream(ImageHeaderParserTest.jpegHeader(800, 600)));
+        when(sqsRepository.sendMessage(any(Map.class), any())).thenReturn(new HashMap<>());
+
+        // Execute
+        imageService.enqueueStagedImage("direct-uploads/key.jpeg", metadata, null);
+
+        // Verify
+        ArgumentCaptor<Map<String, String>> messageCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(sqsRepository).sendMessage(messageCaptor.capture(), any());
+        Map<String, String> message = messageCaptor.getValue();
+        assertEquals("direct-uploads/key.jpeg", message.get("key"));
+        assertEquals("user123", message.get("userId"));
+        assertEquals("John", message.get("firstName"));
+        assertEquals("Doe", message.get("lastName"));
+        assertEquals("Beach", message.get("imageTitle"));
+        assertEquals("800", message.get("width"));
+        assertEquals("600", message.get("height"));
+    }
+
+    @Test
+    public void testEnqueueStagedImageDeletesInvalidImage() throws Exception {
+        // Setup
+        Context context = mock(Context.class);
+        when(context.getLogger()).thenReturn(mock(LambdaLogger.class));
+        when(s3Repository.openObjectPrefix(eq("direct-uploads/key.png"), anyLong()))
+                .thenReturn(new ByteArrayInputStream("Hello World".getBytes()));
+
+        // Execute
+        Map<String, Object> result = imageService.enqueueStagedImage("direct-uploads/key.png", new HashMap<>(), context);
+
+        // Verify
+        assertEquals(true, result.get("rejected"));
+        verify(s3Repository).deleteFile("direct-uploads/key.png");
+        verify(sqsRepository, never()).sendMessage(any(Map.class), any());
+    }
+
+    /**
+     * Serves ranged reads of an object from a byte array, as S3 would.
+     */
+    private void stageObject(String key, byte[] object) {
+        when(s3Repository.openObjectPrefix(eq(key), anyLong())).thenAnswer(invocation ->
+                new ByteArrayInputStream(object, 0, (int) Math.min(object.length, invocation.<Long>getArgument(1))));
+        when(s3Repository.openObjectRange(eq(key), anyLong(), anyLong())).thenAnswer(invocation -> {
+            int offset = (int) (long) invocation.<Long>getArgument(1);
+            return new ByteArrayInputStream(object, offset, (int) Math.min(object.length - offset, invocation.<Long>getArgument(2)));
+        });
+    }
+
+    @Test
+    public void testEnqueueStagedImageReadsPastLargeAppSegments() throws Exception {
+        // Setup - six maximum-size APP1 segments (about 384 KiB) between SOI and the frame header
+        byte[] header = ImageHeaderParserTest.jpegHeader(4000, 3000);
+        ByteArrayOutputStream object = new ByteArrayOutputStream();
+        object.write(header, 0, 2);
+        for (int i = 0; i < 6; i++) {
+            object.write(new byte[]{(byte) 0xFF, (byte) 0xE1, (byte) 0xFF, (byte) 0xFF});
+            object.write(new byte[0xFFFF - 2]);
+        }
+        object.write(header, 2, header.length - 2);
+        object.write(new byte[1024]);
+        stageObject("direct-uploads/key.jpeg", object.toByteArray());
+        when(sqsRepository.sendMessage(any(Map.class), any())).thenReturn(new HashMap<>());
+        Context context = mock(Context.class);
+        when(context.getLogger()).thenReturn(mock(LambdaLogger.class));
+
+        // Execute
+        Map<String, Object> result = imageService.enqueueStagedImage("direct-uploads/key.jpeg", new HashMap<>(), context);
+
+        // Verify
+        assertNull(result.get("rejected"));
+        verify(s3Repository, never()).deleteFile(anyString());
+        verify(s3Repository).openObjectRange(eq("direct-uploads/key.jpeg"), eq(256L * 1024), anyLong());
+        ArgumentCaptor<Map<String, String>> messageCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(sqsRepository).sendMessage(messageCaptor.capture(), any());
+        assertEquals("4000", messageCaptor.getValue().get("width"));
+        assertEquals("3000", messageCaptor.getValue().get("height"));
+    }
+
+    @Test
+    public void testEnqueueStagedImageEnqueuesUnverifiedImageWhenHeaderIsCutShort() throws Exception {
+        // Setup - the object ends inside a segment before any frame header
+        byte[] header = ImageHeaderParserTest.jpegHeader(4000, 3000);
+        byte[] object = new byte[300 * 1024];
+        System.arraycopy(header, 0, object, 0, 2);
+        object[2] = (byte) 0xFF;
+        object[3] = (byte) 0xE1;
+        object[4] = (byte) 0xFF;
+        object[5] = (byte) 0xFF;
+        for (int i = 6 + 0xFFFF - 2; i + 4 <= object.length; i += 0xFFFF + 2) {
+            object[i] = (byte) 0xFF;
+            object[i + 1] = (byte) 0xE2;
+            object[i + 2] = (byte) 0xFF;
+            object[i + 3] = (byte) 0xFF;
+        }
+        stageObject("direct-uploads/key.jpeg", object);
+        when(sqsRepository.sendMessage(any(Map.class), any())).thenReturn(new HashMap<>());
+        Context context = mock(Context.class);
+        when(context.getLogger()).thenReturn(mock(LambdaLogger.class));
+
+        // Execute
+        Map<String, Object> result = imageService.enqueueStagedImage("direct-uploads/key.jpeg", new HashMap<>(), context);
+
+        // Verify
+        assertNull(result.get("rejected"));
+        verify(s3Repository, never()).deleteFile(anyString());
+        ArgumentCaptor<Map<String, String>> messageCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(sqsRepository).sendMessage(messageCaptor.capture(), any());
+        assertEquals("direct-uploads/key.jpeg", messageCaptor.getValue().get("key"));
+        assertNull(messageCaptor.getValue().get("width"));
     }
 }
@@ -0,0 +1,126 @@
+package com.service;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.model.TokenBucket;
+import com.repository.RateLimitRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Clock;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UploadRateLimiterTest {
+
+    @Mock
+    private RateLimitRepository rateLimitRepository;
+
+    @Mock
+    private Clock clock;
+
+    @Mock
+    private Context context;
+
+    @Mock
+    private LambdaLogger logger;
+
+    private UploadRateLimiter uploadRateLimiter;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(context.getLogger()).thenReturn(logger);
+        when(rateLimitRepository.isEnabled()).thenReturn(true);
+        when(clock.millis()).thenReturn(1_000_000L);
+        // A burst of 3 images, refilled at one image every 2 seconds
+        uploadRateLimiter = new UploadRateLimiter(rateLimitRepository, 3, 30, clock);
+    }
+
+    @Test
+    public void testAcquireDeniesOnceBucketIsEmptyAndCachesDenial() {
+        // Setup
+        when(rateLimitRepository.find("user123")).thenReturn(Optional.empty());
+        when(rateLimitRepository.compareAndSet(eq("user123"), any(), any(TokenBucket.class), anyLong())).thenReturn(true);
+
+        // Execute
+        uploadRateLimiter.acquire("user123", 2, context);
+        uploadRateLimiter.acquire("user123", 1, context);
+        RateLimitExceededException denied = assertThrows(RateLimitExceededException.class,
+                () -> uploadRateLimiter.acquire("user123", 1, context));
+        assertThrows(RateLimitExceededException.class, () -> uploadRateLimiter.acquire("user123", 1, context));
+
+        // Verify - only the first request read the table; the second denial never touched it
+        assertEquals(2, denied.getRetryAfterSeconds());
+        verify(rateLimitRepository, times(1)).find("user123");
+        verify(rateLimitRepository).compareAndSet(eq("user123"), isNull(), eq(new TokenBucket(1, 1_000_000L)), anyLong());
+        verify(rateLimitRepository).compareAndSet(eq("user123"), eq(new TokenBucket(1, 1_000_000L)), eq(new TokenBucket(0, 1_000_000L)), anyLong());
+    }
+
+    @Test
+    public void testAcquireRefillsOverTime() {
+        // Setup
+        when(rateLimitRepository.find("user123")).thenReturn(Optional.of(new TokenBucket(0, 1_000_000L)));
+        when(rateLimitRepository.compareAndSet(eq("user123"), any(), any(TokenBucket.class), anyLong())).thenReturn(true);
+        assertThrows(RateLimitExceededException.class, () -> uploadRateLimiter.acquire("user123", 1, context));
+
+        // Execute
+        when(clock.millis()).thenReturn(1_002_000L);
+        uploadRateLimiter.acquire("user123", 1, context);
+
+        // Verify
+        verify(rateLimitRepository).compareAndSet(eq("user123"), eq(new TokenBucket(0, 1_000_000L)), eq(new TokenBucket(0, 1_002_000L)), anyLong());
+    }
+
+    @Test
+    public void testAcquireRereadsBucketAfterLosingRace() {
+        // Setup
+        TokenBucket stale = new TokenBucket(3, 1_000_000L);
+        TokenBucket current = new TokenBucket(1, 1_000_000L);
+        when(rateLimitRepository.find("user123")).thenReturn(Optional.of(stale), Optional.of(current));
+        when(rateLimitRepository.compareAndSet(eq("user123"), eq(stale), any(TokenBucket.class), anyLong())).thenReturn(false);
+        when(rateLimitRepository.compareAndSet(eq("user123"), eq(current), any(TokenBucket.class), anyLong())).thenReturn(true);
+
+        // Execute
+        uploadRateLimiter.acquire("user123", 1, context);
+
+        // Verify
+        verify(rateLimitRepository).compareAndSet(eq("user123"), eq(current), eq(new TokenBucket(0, 1_000_000L)), anyLong());
+    }
+
+    @Test
+    public void testAcquireAdmitsWhenTableFails() {
+        // Setup
+        when(rateLimitRepository.find(anyString())).thenThrow(new RuntimeException("DynamoDB unavailable"));
+
+        // Execute
+        uploadRateLimiter.acquire("user123", 1, context);
+
+        // Verify
+        verify(logger).log("Rate limit check failed, admitting request: DynamoDB unavailable");
+    }
+
+    @Test
+    public void testAcquireIsNoOpWithoutTable() {
+        // Setup
+        when(rateLimitRepository.isEnabled()).thenReturn(false);
+
+        // Execute
+        uploadRateLimiter.acquire("user123", 100, context);
+
+        // Verify
+        verify(rateLimitRepository, never()).find(anyString());
+    }
+}
@@ -0,0 +1,249 @@
+package com.service;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.model.ByteArrayImagePayload;
+import com.model.UploadSession;
+import com.model.UploadedPart;
+import com.repository.S3Repository;
+import com.repository.UploadSessionRepository;
+import com.util.ImageHeaderParserTest;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import software.amazon.awssdk.services.sqs.model.SqsException;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UploadSessionServiceTest {
+
+    @Mock
+    private S3Repository s3Repository;
+
+    @Mock
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Mock
+    private ImageService imageService;
+
+    @Mock
+    private Context context;
+
+    @Mock
+    private LambdaLogger logger;
+
+    private UploadSessionService uploadSessionService;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(context.getLogger()).thenReturn(logger);
+        uploadSessionService = new UploadSessionService(s3Repository, uploadSessionRepository, imageService);
+    }
+
+    /**
+     * An open session for a 60 byte image sent as a 40 byte and a 20 byte chunk.
+     */
+    private UploadSession openSession() {
+        return new UploadSession("session-1", "user123", "uploads/big.jpg", "upload-1", "image/jpeg", 60, 40,
+                UploadSession.OPEN, Map.of("name", "John Doe", "userId", "user123"), Instant.now().getEpochSecond() + 3600);
+    }
+
+    @Test
+    public void testCreateSessionStartsMultipartUpload() {
+        // Setup
+        when(s3Repository.createMultipartUpload(anyString(), eq("image/jpeg"), anyMap())).thenReturn("upload-1");
+
+        // Execute
+        Map<String, Object> result = uploadSessionService.createSession("John Doe", "john@example.com", "image/jpeg",
+                "Mountains", 13L * 1024 * 1024, "user123", context);
+
+        // Verify
+        ArgumentCaptor<UploadSession> sessionCaptor = ArgumentCaptor.forClass(UploadSession.class);
+        verify(uploadSessionRepository).save(sessionCaptor.capture());
+        UploadSession session = sessionCaptor.getValue();
+        assertEquals("user123", session.userId());
+        assertEquals("upload-1", session.uploadId());
+        assertEquals(UploadSession.OPEN, session.status());
+        assertEquals("user123", session.metadata().get("userId"));
+        assertTrue(session.key().startsWith("uploads/"));
+
+        assertEquals(session.sessionId(), result.get("sessionId"));
+        assertEquals(3, result.get("partCount"));
+        assertEquals(6L * 1024 * 1024, result.get("partSize"));
+        assertFalse(result.containsKey("uploadId"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateSessionRejectsEmptyImage() {
+        uploadSessionService.createSession("John Doe", "john@example.com", "image/jpeg", null, 0, "user123", context);
+    }
+
+    @Test
+    public void testUploadPartValidatesFirstChunkHeader() throws Exception {
+        // Setup
+        when(uploadSessionRepository.find("session-1")).thenReturn(Optional.of(openSession()));
+        when(s3Repository.uploadPart(anyString(), anyString(), anyInt(), any(byte[].class)))
+                .thenReturn(new UploadedPart(1, 40, "etag-1", "crc-1"));
+        byte[] chunk = Arrays.copyOf(ImageHeaderParserTest.jpegHeader(640, 480), 40);
+
+        // Execute
+        Map<String, Object> result = uploadSessionService.uploadPart("session-1", 1, new ByteArrayImagePayload(chunk), "user123", context);
+
+        // Verify
+        verify(s3Repository).uploadPart("uploads/big.jpg", "upload-1", 1, chunk);
+        assertEquals(1, result.get("partNumber"));
+        assertEquals(40L, result.get("size"));
+    }
+
+    @Test
+    public void testUploadPartRejectsFirstChunkThatIsNotAnImage() throws Exception {
+        // Setup
+        when(uploadSessionRepository.find("session-1")).thenReturn(Optional.of(openSession()));
+
+        // Execute
+        try {
+            uploadSessionService.uploadPart("session-1", 1, new ByteArrayImagePayload(new byte[40]), "user123", context);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Verify
+            verify(s3Repository, never()).uploadPart(anyString(), anyString(), anyInt(), any(byte[].class));
+        }
+    }
+
+    @Test
+    public void testUploadPartRejectsChunkOfWrongSize() throws Exception {
+        // Setup
+        when(uploadSessionRepository.find("session-1")).thenReturn(Optional.of(openSession()));
+
+        // Execute
+        try {
+            uploadSessionService.uploadPart("session-1", 2, new ByteArrayImagePayload(new byte[40]), "user123", context);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Verify
+            assertEquals("Part 2 must be exactly 20 bytes", e.getMessage());
+            verify(s3Repository, never()).uploadPart(anyString(), anyString(), anyInt(), any(byte[].class));
+        }
+    }
+
+    @Test
+    public void testGetSessionReportsMissingParts() {
+        // Setup
+        when(uploadSessionRepository.find("session-1")).thenReturn(Optional.of(openSession()));
+        when(s3Repository.listParts("uploads/big.jpg", "upload-1"))
+                .thenReturn(List.of(new UploadedPart(2, 20, "etag-2", "crc-2")));
+
+        // Execute
+        Map<String, Object> result = uploadSessionService.getSession("session-1", "user123");
+
+        // Verify
+        assertEquals(List.of(2), result.get("receivedParts"));
+        assertEquals(List.of(1), result.get("missingParts"));
+        assertEquals(20L, result.get("bytesReceived"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetSessionHidesOtherUsersSessions() {
+        when(uploadSessionRepository.find("session-1")).thenReturn(Optional.of(openSession()));
+        uploadSessionService.getSession("session-1", "someone-else");
+    }
+
+    @Test
+    public void testCompleteSessionRequiresAllParts() throws Exception {
+        // Setup
+        when(uploadSessionRepository.find("session-1")).thenReturn(Optional.of(openSession()));
+        when(s3Repository.listParts("uploads/big.jpg", "upload-1"))
+                .thenReturn(List.of(new UploadedPart(1, 40, "etag-1", "crc-1")));
+
+        // Execute
+        try {
+            uploadSessionService.completeSession("session-1", "user123", context);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Verify
+            assertEquals("Upload session is missing parts: [2]", e.getMessage());
+            verify(s3Repository, never()).completeMultipartUpload(anyString(), anyString(), anyList());
+            verify(uploadSessionRepository, never()).updateStatus(anyString(), anyString(), anyString());
+        }
+    }
+
+    @Test
+    public void testCompleteSessionAssemblesAndEnqueuesImage() throws Exception {
+        // Setup
+        UploadSession session = openSession();
+        List<UploadedPart> parts = List.of(new UploadedPart(1, 40, "etag-1", "crc-1"), new UploadedPart(2, 20, "etag-2", "crc-2"));
+        when(uploadSessionRepository.find("session-1")).thenReturn(Optional.of(session));
+        when(s3Repository.listParts("uploads/big.jpg", "upload-1")).thenReturn(parts);
+        when(uploadSessionRepository.updateStatus("session-1", UploadSession.OPEN, UploadSession.COMPLETED)).thenReturn(true);
+        when(imageService.enqueueStagedImage(eq("uploads/big.jpg"), anyMap(), any())).thenReturn(Map.of("success", true));
+
+        // Execute
+        Map<String, Object> result = uploadSessionService.completeSession("session-1", "user123", context);
+
+        // Verify
+        verify(s3Repository).completeMultipartUpload("uploads/big.jpg", "upload-1", parts);
+        verify(imageService).enqueueStagedImage("uploads/big.jpg", session.metadata(), context);
+        assertEquals(UploadSession.COMPLETED, result.get("status"));
+        assertEquals(Map.of("success", true), result.get("sqsStatus"));
+    }
+
+    @Test
+    public void testCompleteSessionLeavesSessionAssembledWhenEnqueueFails() throws Exception {
+        // Setup
+        UploadSession session = openSession();
+        List<UploadedPart> parts = List.of(new UploadedPart(1, 40, "etag-1", "crc-1"), new UploadedPart(2, 20, "etag-2", "crc-2"));
+        when(uploadSessionRepository.find("session-1")).thenReturn(Optional.of(session));
+        when(s3Repository.listParts("uploads/big.jpg", "upload-1")).thenReturn(parts);
+        when(uploadSessionRepository.updateStatus("session-1", UploadSession.OPEN, UploadSession.COMPLETED)).thenReturn(true);
+        when(imageService.enqueueStagedImage(eq("uploads/big.jpg"), anyMap(), any()))
+                .thenThrow(SqsException.builder().message("Service unavailable").build());
+
+        // Execute
+        try {
+            uploadSessionService.completeSession("session-1", "user123", context);
+            fail("Expected SqsException");
+        } catch (SqsException e) {
+            // Verify
+            verify(s3Repository).completeMultipartUpload("uploads/big.jpg", "upload-1", parts);
+            verify(uploadSessionRepository).updateStatus("session-1", UploadSession.COMPLETED, UploadSession.ASSEMBLED);
+            verify(uploadSessionRepository, never()).updateStatus("session-1", UploadSession.COMPLETED, UploadSession.OPEN);
+        }
+    }
+
+    @Test
+    public void testCompleteSessionRetriesEnqueueOfAssembledSession() throws Exception {
+        // Setup
+        UploadSession session = new UploadSession("session-1", "user123", "uploads/big.jpg", "upload-1", "image/jpeg", 60, 40,
+                UploadSession.ASSEMBLED, Map.of("name", "John Doe", "userId", "user123"), Instant.now().getEpochSecond() + 3600);
+        when(uploadSessionRepository.find("session-1")).thenReturn(Optional.of(session));
+        when(uploadSessionRepository.updateStatus("session-1", UploadSession.ASSEMBLED, UploadSession.COMPLETED)).thenReturn(true);
+        when(imageService.enqueueStagedImage(eq("uploads/big.jpg"), anyMap(), any())).thenReturn(Map.of("success", true));
+
+        // Execute
+        Map<String, Object> result = uploadSessionService.completeSession("session-1", "user123", context);
+
+        // Verify
+        verify(s3Repository, never()).listParts(anyString(), anyString());
+        verify(s3Repository, never()).completeMultipartUpload(anyString(), anyString(), anyList());
+        verify(imageService).enqueueStagedImage("uploads/big.jpg", session.metadata(), context);
+        assertEquals(UploadSession.COMPLETED, result.get("status"));
+    }
+}
@@ -0,0 +1,92 @@
+package com.util;
+
+import com.model.ImageHeader;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class ImageHeaderParserTest {
+
+    /**
+     * Builds the header of a baseline JPEG: SOI, a JFIF APP0 segment and a SOF0 frame header.
+     */
+    public static byte[] jpegHeader(int width, int height) {
+        return new byte[]{
+                (byte) 0xFF, (byte) 0xD8,
+                (byte) 0xFF, (byte) 0xE0, 0x00, 0x10, 'J', 'F', 'I', 'F', 0x00, 0x01, 0x01, 0x00, 0x00, 0x01, 0x00, 0x01, 0x00, 0x00,
+                (byte) 0xFF, (byte) 0xC0, 0x00, 0x11, 0x08,
+                (byte) (height >> 8), (byte) height, (byte) (width >> 8), (byte) width,
+                0x03, 0x01, 0x22, 0x00, 0x02, 0x11, 0x01, 0x03, 0x11, 0x01
+        };
+    }
+
+    @Test
+    public void testParseReadsJpegFrameHeader() throws IOException {
+        // Execute
+        ImageHeader header = ImageHeaderParser.parse(new ByteArrayInputStream(jpegHeader(640, 480)));
+
+        // Verify
+        assertEquals("image/jpeg", header.contentType());
+        assertEquals(640, header.width());
+        assertEquals(480, header.height());
+    }
+
+    @Test
+    public void testParseReadsEncodedImages() throws IOException {
+        // Setup
+        BufferedImage image = new BufferedImage(123, 45, BufferedImage.TYPE_INT_RGB);
+
+        // Execute & Verify
+        for (String format : new String[]{"png", "jpeg", "gif"}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image, format, out);
+
+            ImageHeader header = ImageHeaderParser.parse(new ByteArrayInputStream(out.toByteArray()));
+            assertEquals("image/" + format, header.contentType());
+            assertEquals(123, header.width());
+            assertEquals(45, header.height());
+        }
+    }
+
+    @Test
+    public void testParseReadsWebpCanvasSize() throws IOException {
+        // Setup - RIFF header followed by a VP8X chunk with a 1000x500 canvas
+        byte[] webp = {
+                'R', 'I', 'F', 'F', 0x00, 0x00, 0x00, 0x00, 'W', 'E', 'B', 'P',
+                'V', 'P', '8', 'X', 0x0A, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+                (byte) 0xE7, 0x03, 0x00, (byte) 0xF3, 0x01, 0x00
+        };
+
+        // Execute
+        ImageHeader header = ImageHeaderParser.parse(new ByteArrayInputStream(webp));
+
+        // Verify
+        assertEquals("image/webp", header.contentType());
+        assertEquals(1000, header.width());
+        assertEquals(500, header.height());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseRejectsUnknownFormat() throws IOException {
+        ImageHeaderParser.parse(new ByteArrayInputStream("Hello World".getBytes()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseRejectsTruncatedHeader() throws IOException {
+        byte[] header = jpegHeader(640, 480);
+        byte[] truncated = new byte[22];
+        System.arraycopy(header, 0, truncated, 0, truncated.length);
+        ImageHeaderParser.parse(new ByteArrayInputStream(truncated));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseRejectsZeroDimensions() throws IOException {
+        ImageHeaderParser.parse(new ByteArrayInputStream(jpegHeader(0, 480)));
+    }
+}
@@ -0,0 +1,120 @@
+package com.util;
+
+import com.model.Base64ImagePayload;
+import com.model.ByteArrayImagePayload;
+import com.model.UploadRequest;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MultipartFormParserTest {
+
+    private static final String BOUNDARY = "----FormBoundary7MA4YWxkTrZu0gW";
+    private static final String CONTENT_TYPE = "multipart/form-data; boundary=" + BOUNDARY;
+
+    private final MultipartFormParser parser = new MultipartFormParser();
+
+    /**
+     * Builds a form body; each part is a header block followed by its content.
+     */
+    private static byte[] form(Object... headersAndContents) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < headersAndContents.length; i += 2) {
+            out.write(("--" + BOUNDARY + "\r\n" + headersAndContents[i] + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            Object content = headersAndContents[i + 1];
+            out.write(content instanceof byte[] bytes ? bytes : content.toString().getBytes(StandardCharsets.UTF_8));
+            out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+        }
+        out.write(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testParseSlicesFilePartOutOfBase64Body() throws Exception {
+        // Setup - the image contains bytes that start like the delimiter
+        byte[] image = ("ÿØ binary\r\n--not-the-boundary\r\n--" + BOUNDARY.substring(0, 10) + " end")
+                .getBytes(StandardCharsets.ISO_8859_1);
+        byte[] body = form(
+                "Content-Disposition: form-data; name=\"imageTitle\"", "Café terrace",
+                "Content-Disposition: form-data; name=\"image\"; filename=\"photo.jpg\"\r\nContent-Type: image/jpeg", image);
+
+        // Execute
+        UploadRequest request = parser.parse(Base64ImagePayload.of(Base64.getEncoder().encodeToString(body)), CONTENT_TYPE);
+
+        // Verify
+        assertEquals("Café terrace", request.imageTitle());
+        assertEquals("image/jpeg", request.contentType());
+        assertEquals(image.length, request.image().size());
+        assertArrayEquals(image, readAll(request.image().openStream()));
+    }
+
+    @Test
+    public void testParseAllPairsFieldsWithFilesInOrder() throws Exception {
+        // Setup
+        byte[] body = form(
+                "Content-Disposition: form-data; name=\"file\"; filename=\"a.png\"\r\nContent-Type: image/png", "first",
+                "Content-Disposition: form-data; name=\"title\"", "One",
+                "Content-Disposition: form-data; name=\"unused\"", "ignored",
+                "Content-Disposition: form-data; name=\"file\"; filename=\"b.jpg\"\r\nContent-Type: image/jpeg", "second",
+                "Content-Disposition: form-data; name=\"title\"", "Two");
+
+        // Execute
+        List<UploadRequest> requests = parser.parseAll(new ByteArrayImagePayload(body), "multipart/form-data; boundary=\"" + BOUNDARY + "\"");
+
+        // Verify
+        assertEquals(2, requests.size());
+        assertEquals("One", requests.get(0).imageTitle());
+        assertEquals("image/png", requests.get(0).contentType());
+        assertEquals("first", new String(readAll(requests.get(0).image().openStream())));
+        assertEquals("Two", requests.get(1).imageTitle());
+        assertEquals("image/jpeg", requests.get(1).contentType());
+        assertEquals("second", new String(readAll(requests.get(1).image().openStream())));
+    }
+
+    @Test
+    public void testParseWithoutFileReturnsNoImage() throws Exception {
+        // Setup
+        byte[] body = form("Content-Disposition: form-data; name=\"imageTitle\"", "Nothing attached");
+
+        // Execute
+        UploadRequest request = parser.parse(new ByteArrayImagePayload(body), CONTENT_TYPE);
+
+        // Verify
+        assertNull(request.image());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseRejectsMissingBoundary() throws Exception {
+        parser.parse(new ByteArrayImagePayload(form()), "multipart/form-data");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseRejectsTruncatedBody() throws Exception {
+        byte[] body = form("Content-Disposition: form-data; name=\"image\"; filename=\"a.jpg\"", "data");
+        byte[] truncated = new byte[body.length - 12];
+        System.arraycopy(body, 0, truncated, 0, truncated.length);
+        parser.parse(new ByteArrayImagePayload(truncated), CONTENT_TYPE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseRejectsSeveralFiles() throws Exception {
+        byte[] body = form(
+                "Content-Disposition: form-data; name=\"image\"; filename=\"a.jpg\"", "one",
+                "Content-Disposition: form-data; name=\"image\"; filename=\"b.jpg\"", "two");
+        parser.parse(new ByteArrayImagePayload(body), CONTENT_TYPE);
+    }
+
+    private static byte[] readAll(InputStream in) throws Exception {
+        try (in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            in.transferTo(out);
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.util;
+
+import com.model.Base64ImagePayload;
+import com.model.UploadRequest;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class UploadRequestParserTest {
+
+    private final UploadRequestParser parser = new UploadRequestParser();
+
+    @Test
+    public void testParseExtractsFieldsInAnyOrder() throws Exception {
+        // Setup
+        String body = "{\"imageTitle\":\"Sunset\",\"extra\":{\"nested\":[1,2]},"
+                + "\"image\":\"SGVsbG8gV29ybGQ=\",\"contentType\":\"image/png\"}";
+
+        // Execute
+        UploadRequest request = parser.parse(body);
+
+        // Verify
+        assertEquals("Sunset", request.imageTitle());
+        assertEquals("image/png", request.contentType());
+        assertEquals(11, request.image().size());
+        assertEquals("Hello World", new String(readAll(request.image().openStream())));
+    }
+
+    @Test
+    public void testImageIsNotCopiedOutOfBody() throws Exception {
+        // Setup - payload large enough that Jackson reads the body in chunks
+        byte[] data = new byte[200_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        String body = "{ \"contentType\" : \"image/jpeg\", \"image\" : \""
+                + Base64.getEncoder().encodeToString(data) + "\" }";
+
+        // Execute
+        UploadRequest request = parser.parse(body);
+
+        // Verify
+        assertTrue(request.image() instanceof Base64ImagePayload);
+        assertEquals(data.length, request.image().size());
+        assertArrayEquals(data, readAll(request.image().openStream()));
+    }
+
+    @Test
+    public void testEscapedSlashesFallBackToUnescapedText() throws Exception {
+        // Setup - "///+" encodes bytes 0xFF 0xFF 0xFE, some encoders escape '/' as "\/"
+        String body = "{\"image\":\"\\/\\/\\/+\"}";
+
+        // Execute
+        UploadRequest request = parser.parse(body);
+
+        // Verify
+        assertArrayEquals(new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFE}, readAll(request.image().openStream()));
+    }
+
+    @Test
+    public void testMissingImageReturnsNullPayload() throws Exception {
+        UploadRequest request = parser.parse("{\"contentType\":\"image/png\",\"image\":null}");
+
+        assertNull(request.image());
+        assertNull(request.imageTitle());
+        assertNull(request.contentLength());
+    }
+
+    @Test
+    public void testParseExtractsDeclaredContentLength() throws Exception {
+        UploadRequest request = parser.parse("{\"contentType\":\"image/jpeg\",\"contentLength\":1234}");
+
+        assertNull(request.image());
+        assertEquals(Long.valueOf(1234), request.contentLength());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullBodyRejected() throws Exception {
+        parser.parse(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonObjectBodyRejected() throws Exception {
+        parser.parse("[\"image\"]");
+    }
+
+    @Test
+    public void testParseBatchAcceptsArrayAndWrappedForms() throws Exception {
+        // Setup
+        String items = "[{\"image\":\"SGVsbG8gV29ybGQ=\",\"imageTitle\":\"One\"},"
+                + "{\"imageTitle\":\"Two\",\"image\":\"SGk=\",\"contentType\":\"image/png\"}]";
+
+        // Execute
+        List<UploadRequest> bare = parser.parseBatch(items);
+        List<UploadRequest> wrapped = parser.parseBatch("{\"album\":\"Trip\",\"images\":" + items + "}");
+
+        // Verify
+        for (List<UploadRequest> requests : List.of(bare, wrapped)) {
+            assertEquals(2, requests.size());
+            assertEquals("One", requests.get(0).imageTitle());
+            assertEquals("Hello World", new String(readAll(requests.get(0).image().openStream())));
+            assertEquals("image/png", requests.get(1).contentType());
+            assertEquals(2, requests.get(1).image().size());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseBatchRejectsBodyWithoutImages() throws Exception {
+        parser.parseBatch("{\"image\":\"SGk=\"}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseBatchRejectsNonObjectItems() throws Exception {
+        parser.parseBatch("[\"SGk=\"]");
+    }
+
+    @Test
+    public void testParseBatchDefersInvalidImageToItsItem() throws Exception {
+        // Execute
+        List<UploadRequest> requests = parser.parseBatch(
+                "[{\"image\":\"SGk=\"},{\"image\":\"SGVsbG8*V29ybGQ=\",\"imageTitle\":\"Bad\"}]");
+
+        // Verify
+        assertEquals(2, requests.size());
+        assertEquals(2, requests.get(0).image().size());
+        assertEquals("Bad", requests.get(1).imageTitle());
+        try {
+            requests.get(1).image().size();
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Invalid base64 image data", e.getMessage());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseStillRejectsInvalidImage() throws Exception {
+        parser.parse("{\"image\":\"SGVsbG8*V29ybGQ=\"}");
+    }
+
+    private static byte[] readAll(InputStream in) throws Exception {
+        try (in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            in.transferTo(out);
+            return out.toByteArray();
+        }
+    }
+}